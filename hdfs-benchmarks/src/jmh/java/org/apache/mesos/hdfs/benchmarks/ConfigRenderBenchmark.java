@@ -0,0 +1,66 @@
+package org.apache.mesos.hdfs.benchmarks;
+
+import org.apache.mesos.hdfs.config.ConfigRenderer;
+import org.apache.mesos.hdfs.config.ConfigRenderer.RenderedConfig;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering hdfs-site.xml for an executor as the config server does, once from the renderer's cache and
+ * once for a host it has no config for yet, which reads every task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigRenderBenchmark {
+  @Param({"100", "1000", "10000"})
+  private int tasks;
+
+  private HdfsFrameworkConfig config;
+  private HdfsState state;
+  private ConfigRenderer renderer;
+
+  @Setup
+  public void setup() throws Exception {
+    config = BenchmarkConfigs.create(null);
+    state = Fixtures.createState(config, tasks, 2);
+    renderer = new ConfigRenderer(config, state);
+    renderer.render("host0", "1", null);
+  }
+
+  @Benchmark
+  public RenderedConfig renderCached() throws Exception {
+    return renderer.render("host0", "1", null);
+  }
+
+  @Benchmark
+  public RenderedConfig renderUncached(Uncached uncached) throws Exception {
+    return uncached.renderer.render("host1", "2", null);
+  }
+
+  /**
+   * A renderer which loaded the template but has no config for host1.  Rendering takes milliseconds, so creating one
+   * per invocation doesn't skew the measurement.
+   */
+  @State(Scope.Thread)
+  public static class Uncached {
+    private ConfigRenderer renderer;
+
+    @Setup(Level.Invocation)
+    public void setup(ConfigRenderBenchmark benchmark) throws Exception {
+      renderer = new ConfigRenderer(benchmark.config, benchmark.state);
+      renderer.render("host0", "1", null);
+    }
+  }
+}
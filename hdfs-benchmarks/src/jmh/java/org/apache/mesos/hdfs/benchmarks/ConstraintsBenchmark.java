@@ -0,0 +1,52 @@
+package org.apache.mesos.hdfs.benchmarks;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.hdfs.scheduler.HdfsMesosConstraints;
+import org.apache.mesos.protobuf.AttributeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matching an offer against text, set, scalar and range constraints, which every offer goes through.  The
+ * matching offer satisfies all of them, the other is outside the disks range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConstraintsBenchmark {
+  private HdfsMesosConstraints constraints;
+  private Offer matching;
+  private Offer failing;
+
+  @Setup
+  public void setup() throws Exception {
+    constraints = new HdfsMesosConstraints(BenchmarkConfigs.create("rack:r1;zone:a,b;cpus:8;disks:4"));
+    matching = Fixtures.createOffer("host1",
+      AttributeUtil.createTextAttribute("rack", "r1"),
+      AttributeUtil.createTextAttributeSet("zone", "a,b,c"),
+      AttributeUtil.createScalarAttribute("cpus", 16),
+      AttributeUtil.createRangeAttribute("disks", 1, 8));
+    failing = Fixtures.createOffer("host2",
+      AttributeUtil.createTextAttribute("rack", "r1"),
+      AttributeUtil.createTextAttributeSet("zone", "a,b,c"),
+      AttributeUtil.createScalarAttribute("cpus", 16),
+      AttributeUtil.createRangeAttribute("disks", 5, 8));
+  }
+
+  @Benchmark
+  public boolean matching() {
+    return constraints.constraintsAllow(matching);
+  }
+
+  @Benchmark
+  public boolean failing() {
+    return constraints.constraintsAllow(failing);
+  }
+}
@@ -0,0 +1,83 @@
+package org.apache.mesos.hdfs.benchmarks;
+
+import org.apache.mesos.Protos.Attribute;
+import org.apache.mesos.Protos.CommandInfo;
+import org.apache.mesos.Protos.Environment;
+import org.apache.mesos.Protos.ExecutorInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.scheduler.InMemoryStateFactory;
+import org.apache.mesos.hdfs.scheduler.StateFactory;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.protobuf.CommandInfoBuilder;
+import org.apache.mesos.protobuf.ExecutorInfoBuilder;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.apache.mesos.protobuf.ResourceBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the offers, tasks and state the benchmarks run against.  Hosts are named host&lt;n&gt;, and a
+ * cluster of n tasks has its JournalNodes and NameNodes on the first hosts and one DataNode on each of the others.
+ */
+final class Fixtures {
+  private Fixtures() {
+  }
+
+  /**
+   * Returns the state of a cluster with the given number of tasks in total, of which the given number are NameNodes.
+   */
+  static HdfsState createState(HdfsFrameworkConfig config, int taskCount, int nameNodeCount) throws Exception {
+    return createState(config, new InMemoryStateFactory(), taskCount, nameNodeCount);
+  }
+
+  static HdfsState createState(HdfsFrameworkConfig config, StateFactory stateFactory, int taskCount,
+    int nameNodeCount) throws Exception {
+    HdfsState state = new HdfsState(config, stateFactory);
+    int journalNodeCount = config.getJournalNodeCount();
+    for (int i = 0; i < taskCount; i++) {
+      if (i < journalNodeCount) {
+        state.recordTask(createTask(HDFSConstants.JOURNAL_NODE_ID, i, "host" + i));
+      } else if (i < journalNodeCount + nameNodeCount) {
+        int host = i - journalNodeCount;
+        state.recordTask(createTask(HDFSConstants.NAME_NODE_ID, host, "host" + host));
+      } else {
+        state.recordTask(createTask(HDFSConstants.DATA_NODE_ID, i, "host" + i));
+      }
+    }
+    return state;
+  }
+
+  static Task createTask(String type, int index, String hostname) {
+    ExecutorInfo execInfo = ExecutorInfoBuilder.createExecutorInfoBuilder()
+      .setName("executor")
+      .setExecutorId(ExecutorInfoBuilder.createExecutorId("executor." + index))
+      .setCommand(CommandInfoBuilder.createCmdInfo("bin/hdfs-mesos-executor", new ArrayList<CommandInfo.URI>(),
+        new ArrayList<Environment.Variable>()))
+      .build();
+    String name = type + (index + 1);
+    return new Task(createResources(1, 1024), execInfo, createOffer(hostname), name, type,
+      name + "." + index);
+  }
+
+  static Offer createOffer(String hostname, Attribute... attributes) {
+    OfferBuilder builder = new OfferBuilder("offer." + hostname, "framework", "slave." + hostname, hostname)
+      .addAllResources(createResources(32, 131072));
+    for (Attribute attribute : attributes) {
+      builder.addAttribute(attribute);
+    }
+    return builder.build();
+  }
+
+  private static List<Resource> createResources(double cpus, double mem) {
+    ResourceBuilder builder = new ResourceBuilder("*");
+    List<Resource> resources = new ArrayList<>();
+    resources.add(builder.createCpuResource(cpus));
+    resources.add(builder.createMemResource(mem));
+    return resources;
+  }
+}
@@ -0,0 +1,65 @@
+package org.apache.mesos.hdfs.benchmarks;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.hdfs.config.ConfigRenderer;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.scheduler.DataNode;
+import org.apache.mesos.hdfs.scheduler.NameNode;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.util.DnsResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluating one offer for a DataNode and a NameNode, in a cluster of growing size without NameNodes.  The
+ * new host is accepted for a DataNode only after all checks ran, and so is the JournalNode host for a NameNode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OfferEvaluationBenchmark {
+  @Param({"100", "1000", "10000"})
+  private int tasks;
+
+  private DataNode dataNode;
+  private NameNode nameNode;
+  private Offer newHost;
+  private Offer occupiedHost;
+  private Offer journalNodeHost;
+
+  @Setup
+  public void setup() throws Exception {
+    HdfsFrameworkConfig config = BenchmarkConfigs.create(null);
+    HdfsState state = Fixtures.createState(config, tasks, 0);
+    ConfigRenderer renderer = new ConfigRenderer(config, state);
+    dataNode = new DataNode(state, config, renderer);
+    // The scheduler is only needed with Mesos-DNS, which the config doesn't use
+    nameNode = new NameNode(state, new DnsResolver(null, config), config, renderer);
+    newHost = Fixtures.createOffer("host" + tasks);
+    occupiedHost = Fixtures.createOffer("host" + (tasks - 1));
+    journalNodeHost = Fixtures.createOffer("host0");
+  }
+
+  @Benchmark
+  public boolean dataNodeAccepted() {
+    return dataNode.evaluate(newHost);
+  }
+
+  @Benchmark
+  public boolean dataNodeDeclined() {
+    return dataNode.evaluate(occupiedHost);
+  }
+
+  @Benchmark
+  public boolean nameNodeAccepted() {
+    return nameNode.evaluate(journalNodeHost);
+  }
+}
@@ -0,0 +1,47 @@
+package org.apache.mesos.hdfs.benchmarks;
+
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.Serializer;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serializing a task as it is stored in the state, and reading it back, which every task query does once
+ * per task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializerBenchmark {
+  private Task task;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() throws Exception {
+    task = Fixtures.createTask(HDFSConstants.DATA_NODE_ID, 0, "host0");
+    bytes = Serializer.serialize(task);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws Exception {
+    return Serializer.serialize(task);
+  }
+
+  @Benchmark
+  public Object deserialize() throws Exception {
+    return Serializer.deserialize(bytes);
+  }
+
+  @Benchmark
+  public Object roundTrip() throws Exception {
+    return Serializer.deserialize(Serializer.serialize(task));
+  }
+}
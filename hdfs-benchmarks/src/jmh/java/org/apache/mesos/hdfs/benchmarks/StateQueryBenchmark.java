@@ -0,0 +1,58 @@
+package org.apache.mesos.hdfs.benchmarks;
+
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the state queries made while evaluating offers and rendering configs, over an in-memory state of growing
+ * size.  These read and deserialize every task, unlike the task view served by the state API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StateQueryBenchmark {
+  @Param({"100", "1000", "10000"})
+  private int tasks;
+
+  private HdfsState state;
+  private String lastHost;
+
+  @Setup
+  public void setup() throws Exception {
+    state = Fixtures.createState(BenchmarkConfigs.create(null), tasks, 2);
+    lastHost = "host" + (tasks - 1);
+  }
+
+  @Benchmark
+  public List<Task> getTasks() throws Exception {
+    return state.getTasks();
+  }
+
+  @Benchmark
+  public int getNameCount() throws Exception {
+    return state.getNameCount();
+  }
+
+  @Benchmark
+  public boolean hostOccupied() {
+    return state.hostOccupied(lastHost, HDFSConstants.DATA_NODE_ID);
+  }
+
+  @Benchmark
+  public Collection<Task> getTaskView() {
+    return state.getTaskView();
+  }
+}
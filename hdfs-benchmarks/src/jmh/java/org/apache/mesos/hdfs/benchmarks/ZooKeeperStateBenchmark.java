@@ -0,0 +1,134 @@
+package org.apache.mesos.hdfs.benchmarks;
+
+import org.apache.curator.test.TestingServer;
+import org.apache.mesos.MesosNativeLibrary;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.scheduler.StateFactory;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.scheduler.ZKStateFactory;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.state.State;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures HdfsState over the real persistence path, ZooKeeperState and Java serialization, against an embedded
+ * ZooKeeper started for each trial.  Each benchmark reports its throughput and, from sampled times, its percentiles.
+ * <p/>
+ * ZooKeeperState is implemented in libmesos, so these fail at setup unless it can be loaded, e.g. from
+ * MESOS_NATIVE_JAVA_LIBRARY.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ZooKeeperStateBenchmark {
+  @Param({"100", "1000", "5000"})
+  private int tasks;
+
+  private TestingServer server;
+  private HdfsFrameworkConfig config;
+  private StateFactory stateFactory;
+  private HdfsState state;
+  private List<TaskID> taskIds;
+  private int nextUpdate;
+  private int nextRecord;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    try {
+      MesosNativeLibrary.load();
+    } catch (UnsatisfiedLinkError e) {
+      throw new IllegalStateException("ZooKeeperState needs libmesos, set MESOS_NATIVE_JAVA_LIBRARY to its path", e);
+    }
+    server = new TestingServer(true);
+    config = BenchmarkConfigs.create(null, Collections.singletonMap("mesos.hdfs.state.zk",
+      server.getConnectString()));
+    stateFactory = new ReusingStateFactory(new ZKStateFactory());
+    state = Fixtures.createState(config, stateFactory, tasks, 2);
+    taskIds = new ArrayList<>();
+    for (Task task : state.getTasks()) {
+      taskIds.add(task.getId());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    server.close();
+  }
+
+  /**
+   * Records a DataNode launched on a new host.  The hosts cycle through as many as there are tasks, so the state
+   * grows to at most twice its size and later records overwrite earlier ones, as relaunches do.
+   */
+  @Benchmark
+  public void recordTask() throws Exception {
+    int index = tasks + nextRecord++ % tasks;
+    state.recordTask(Fixtures.createTask(HDFSConstants.DATA_NODE_ID, index, "host" + index));
+  }
+
+  /**
+   * Applies a running status update, which reads, merges and stores the task.
+   */
+  @Benchmark
+  public void update() {
+    TaskID taskId = taskIds.get(nextUpdate++ % taskIds.size());
+    state.update(null, TaskStatus.newBuilder()
+      .setTaskId(taskId)
+      .setState(TaskState.TASK_RUNNING)
+      .build());
+  }
+
+  @Benchmark
+  public List<Task> getTasks() throws Exception {
+    return state.getTasks();
+  }
+
+  /**
+   * Loads the state as a newly elected scheduler does.  ZooKeeper sessions are reused, so this measures reading
+   * the tasks rather than connecting.
+   */
+  @Benchmark
+  public HdfsState failoverReload() {
+    return new HdfsState(config, stateFactory);
+  }
+
+  /**
+   * Creates one State per path and hands it out again, since ZooKeeperState has no way to close its session.
+   */
+  private static final class ReusingStateFactory implements StateFactory {
+    private final StateFactory backend;
+    private final Map<String, State> states = new HashMap<>();
+
+    private ReusingStateFactory(StateFactory backend) {
+      this.backend = backend;
+    }
+
+    @Override
+    public synchronized State create(String path, HdfsFrameworkConfig config) {
+      State state = states.get(path);
+      if (state == null) {
+        state = backend.create(path, config);
+        states.put(path, state);
+      }
+      return state;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package org.apache.mesos.hdfs.benchmarks;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Creates the scheduler configs the benchmarks and the simulator run with.  They render the hdfs-site.xml template
+ * from conf/, which is copied to a temporary file since the renderer reads it from the file system.
+ */
+public final class BenchmarkConfigs {
+  private static final String TEMPLATE = "hdfs-site.xml";
+
+  private BenchmarkConfigs() {
+  }
+
+  /**
+   * Returns a config with the defaults, requiring the given constraints if any.
+   */
+  public static HdfsFrameworkConfig create(String constraints) throws IOException {
+    return create(constraints, Collections.<String, String>emptyMap());
+  }
+
+  /**
+   * Returns a config with the defaults overridden by the given properties, e.g. mesos.hdfs.state.zk.
+   */
+  public static HdfsFrameworkConfig create(String constraints, Map<String, String> properties) throws IOException {
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hdfs.config.path", writeTemplate().getPath());
+    if (constraints != null) {
+      conf.set("mesos.hdfs.constraints", constraints);
+    }
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      conf.set(property.getKey(), property.getValue());
+    }
+    return new HdfsFrameworkConfig(conf);
+  }
+
+  private static File writeTemplate() throws IOException {
+    File template = File.createTempFile("hdfs-site", ".xml");
+    template.deleteOnExit();
+    try (InputStream in = BenchmarkConfigs.class.getClassLoader().getResourceAsStream(TEMPLATE)) {
+      if (in == null) {
+        throw new IOException(TEMPLATE + " isn't on the classpath");
+      }
+      Files.copy(in, template.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    return template;
+  }
+}
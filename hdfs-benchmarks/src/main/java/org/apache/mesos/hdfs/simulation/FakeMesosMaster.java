@@ -0,0 +1,620 @@
+package org.apache.mesos.hdfs.simulation;
+
+import org.apache.mesos.Protos.Attribute;
+import org.apache.mesos.Protos.ExecutorID;
+import org.apache.mesos.Protos.Filters;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.Request;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.Protos.Status;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hdfs.scheduler.HdfsMesosConstraints;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.hdfs.util.TaskStatusFactory;
+import org.apache.mesos.protobuf.AttributeUtil;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.apache.mesos.protobuf.ResourceBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stand-in for the Mesos master and the scheduler driver, which offers the resources of a synthetic cluster and
+ * answers launches, kills and reconciliation with status updates as the agents would.  Time is simulated: the
+ * simulation advances the clock, collects offers every allocation and delivers the status updates which are due.
+ * Offers are held from their allocation until answered, on the same clock.
+ * <p/>
+ * Offers split an agent's free resources into fragments, and a fraction of them is rescinded while the scheduler
+ * evaluates them, so launching on them fails with TASK_LOST.  Declined agents aren't offered again for the refuse
+ * time.  Launched tasks are reported running after a start delay, NameNodes initialized after a longer one.
+ */
+class FakeMesosMaster implements SchedulerDriver {
+  private static final String ROLE = "*";
+  private static final int PORTS_BEGIN = 31000;
+  private static final int PORTS_END = 32000;
+  private static final double[] AGENT_CPUS = {8, 16, 32};
+  private static final double[] AGENT_MEM = {32768, 65536, 131072};
+
+  private final SimulationOptions options;
+  private final Random random;
+  private final List<SimulatedAgent> agents = new ArrayList<>();
+  private final Map<String, SimulatedAgent> agentsById = new HashMap<>();
+  private final Map<String, OutstandingOffer> offers = new HashMap<>();
+  private final Map<String, SimulatedTask> tasks = new LinkedHashMap<>();
+  private final PriorityQueue<PendingUpdate> updates = new PriorityQueue<>();
+  private final LatencySamples offerHoldTime = new LatencySamples();
+  private final SimulatedClock clock;
+
+  private long offerSeq;
+  private long updateSeq;
+
+  private long offersSent;
+  private long offersDeclined;
+  private long offersAccepted;
+  private long offersRescinded;
+  private long invalidLaunches;
+  private long tasksLaunched;
+  private long tasksLost;
+  private long tasksFailed;
+  private long tasksKilled;
+  private long frameworkMessages;
+  private long reconcileRequests;
+
+  FakeMesosMaster(SimulationOptions options, int agentCount, SimulatedClock clock, Random random) {
+    this.options = options;
+    this.clock = clock;
+    this.random = random;
+    for (int i = 0; i < agentCount; i++) {
+      List<Attribute> attributes = Arrays.asList(
+        AttributeUtil.createTextAttribute("rack", "r" + (i % 10)),
+        AttributeUtil.createTextAttribute("zone", "z" + (i % 3)));
+      SimulatedAgent agent = new SimulatedAgent("host" + i, attributes,
+        AGENT_CPUS[random.nextInt(AGENT_CPUS.length)], AGENT_MEM[random.nextInt(AGENT_MEM.length)]);
+      agents.add(agent);
+      agentsById.put(agent.getId().getValue(), agent);
+    }
+  }
+
+  /**
+   * Offers the free resources of every agent which can be offered, in random order.  The offers to rescind while the
+   * scheduler evaluates them are added to the given list.
+   */
+  synchronized List<Offer> allocate(Collection<OfferID> toRescind) {
+    long nowMs = clock.nowMs();
+    List<SimulatedAgent> offerable = new ArrayList<>();
+    for (SimulatedAgent agent : agents) {
+      if (agent.isOfferable(nowMs)) {
+        offerable.add(agent);
+      }
+    }
+    Collections.shuffle(offerable, random);
+
+    List<Offer> allocated = new ArrayList<>();
+    ResourceBuilder resources = new ResourceBuilder(ROLE);
+    for (SimulatedAgent agent : offerable) {
+      int fragments = options.getFragments();
+      for (int i = 0; i < fragments; i++) {
+        OfferID offerId = OfferID.newBuilder().setValue("offer." + offerSeq++).build();
+        OfferBuilder builder = new OfferBuilder(offerId.getValue(), "framework", agent.getId().getValue(),
+          agent.getHostname())
+          .addResource(resources.createCpuResource(agent.getFreeCpus() / fragments))
+          .addResource(resources.createMemResource(agent.getFreeMem() / fragments));
+        if (i == 0) {
+          builder.addResource(resources.createPortResource(PORTS_BEGIN, PORTS_END));
+        }
+        for (Attribute attribute : agent.getAttributes()) {
+          builder.addAttribute(attribute);
+        }
+        Offer offer = builder.build();
+        OutstandingOffer outstanding = new OutstandingOffer(agent, offer, clock.nowNanos());
+        offers.put(offerId.getValue(), outstanding);
+        allocated.add(offer);
+        if (random.nextDouble() < options.getRescindRate()) {
+          outstanding.rescinded = true;
+          toRescind.add(offerId);
+          offersRescinded++;
+        }
+      }
+      agent.offered(fragments);
+    }
+    offersSent += allocated.size();
+    return allocated;
+  }
+
+  /**
+   * Declines the offers the scheduler neither declined nor accepted, as the master would once they time out.
+   */
+  synchronized int expire(List<Offer> delivered) {
+    int expired = 0;
+    for (Offer offer : delivered) {
+      if (offers.containsKey(offer.getId().getValue())) {
+        answer(offer.getId(), options.getRefuseMs());
+        expired++;
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Returns the status updates due by now.
+   */
+  synchronized List<TaskStatus> takeDueUpdates() {
+    long nowMs = clock.nowMs();
+    List<TaskStatus> due = new ArrayList<>();
+    while (!updates.isEmpty() && updates.peek().dueMs <= nowMs) {
+      TaskStatus status = updates.poll().status;
+      SimulatedTask task = tasks.get(status.getTaskId().getValue());
+      if (task != null && isTerminal(task.state) && !isTerminal(status.getState())) {
+        // The task ended before it was reported running
+        continue;
+      }
+      if (task != null && task.state != status.getState() && !isTerminal(task.state)) {
+        task.state = status.getState();
+      }
+      due.add(status);
+    }
+    return due;
+  }
+
+  /**
+   * Returns when the next status update is due, or Long.MAX_VALUE if none is pending.
+   */
+  synchronized long getNextUpdateMs() {
+    return updates.isEmpty() ? Long.MAX_VALUE : updates.peek().dueMs;
+  }
+
+  /**
+   * Loses each live agent with the loss rate for the elapsed time, reporting its tasks lost, and lets lost agents
+   * rejoin once their time is up.  Returns the agents lost.
+   */
+  synchronized List<SlaveID> loseAgents(long elapsedMs) {
+    long nowMs = clock.nowMs();
+    List<SlaveID> lost = new ArrayList<>();
+    double probability = options.getAgentLossRate() * elapsedMs / TimeUnit.MINUTES.toMillis(1);
+    for (SimulatedAgent agent : agents) {
+      if (agent.rejoinIfDue(nowMs) || !agent.isAlive() || random.nextDouble() >= probability) {
+        continue;
+      }
+      for (String taskId : agent.getTaskIds()) {
+        SimulatedTask task = tasks.get(taskId);
+        task.state = TaskState.TASK_LOST;
+        queue(task, TaskState.TASK_LOST, "Slave " + agent.getHostname() + " removed", 0);
+        tasksLost++;
+      }
+      agent.lose(nowMs + options.getAgentReturnMs());
+      lost.add(agent.getId());
+    }
+    return lost;
+  }
+
+  /**
+   * Fails each running task with the failure rate for the elapsed time.
+   */
+  synchronized void failTasks(long elapsedMs) {
+    double probability = options.getTaskFailureRate() * elapsedMs / TimeUnit.MINUTES.toMillis(1);
+    for (SimulatedTask task : tasks.values()) {
+      if (task.state == TaskState.TASK_RUNNING && random.nextDouble() < probability) {
+        stop(task, TaskState.TASK_FAILED, "Process exited");
+        tasksFailed++;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of DataNodes running.
+   */
+  synchronized int getRunningDataNodes() {
+    int running = 0;
+    for (SimulatedTask task : tasks.values()) {
+      if (task.state == TaskState.TASK_RUNNING && HDFSConstants.DATA_NODE_ID.equals(task.type)) {
+        running++;
+      }
+    }
+    return running;
+  }
+
+  /**
+   * Returns the number of DataNodes of a full cluster: one on every live agent which satisfies the constraints, but
+   * none on the agents of JournalNodes and NameNodes if DataNodes run exclusively.
+   */
+  synchronized int getExpectedDataNodes(HdfsMesosConstraints constraints, boolean exclusive) {
+    int expected = 0;
+    for (SimulatedAgent agent : agents) {
+      if (!agent.isAlive() || (exclusive && hostsMasterNode(agent))) {
+        continue;
+      }
+      OfferBuilder builder = new OfferBuilder("check", "framework", agent.getId().getValue(), agent.getHostname());
+      for (Attribute attribute : agent.getAttributes()) {
+        builder.addAttribute(attribute);
+      }
+      if (constraints.constraintsAllow(builder.build())) {
+        expected++;
+      }
+    }
+    return expected;
+  }
+
+  private boolean hostsMasterNode(SimulatedAgent agent) {
+    for (String taskId : agent.getTaskIds()) {
+      String type = tasks.get(taskId).type;
+      if (HDFSConstants.JOURNAL_NODE_ID.equals(type) || HDFSConstants.NAME_NODE_ID.equals(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public synchronized Status launchTasks(Collection<OfferID> offerIds, Collection<TaskInfo> taskInfos,
+    Filters filters) {
+    SimulatedAgent agent = null;
+    boolean valid = !offerIds.isEmpty();
+    double offeredCpus = 0;
+    double offeredMem = 0;
+    for (OfferID offerId : offerIds) {
+      OutstandingOffer offer = offers.get(offerId.getValue());
+      if (offer == null || offer.rescinded || (agent != null && agent != offer.agent)) {
+        valid = false;
+      }
+      if (offer != null) {
+        agent = offer.agent;
+        offeredCpus += getScalar(offer.offer.getResourcesList(), "cpus");
+        offeredMem += getScalar(offer.offer.getResourcesList(), "mem");
+        answer(offerId, 0);
+      }
+    }
+
+    double launchedCpus = 0;
+    double launchedMem = 0;
+    for (TaskInfo taskInfo : taskInfos) {
+      launchedCpus += getScalar(taskInfo.getResourcesList(), "cpus");
+      launchedMem += getScalar(taskInfo.getResourcesList(), "mem");
+    }
+    if (valid && !taskInfos.isEmpty() && !agent.hasExecutor(getExecutorId(taskInfos.iterator().next()))) {
+      List<Resource> executorResources = taskInfos.iterator().next().getExecutor().getResourcesList();
+      launchedCpus += getScalar(executorResources, "cpus");
+      launchedMem += getScalar(executorResources, "mem");
+    }
+
+    if (!valid || launchedCpus > offeredCpus + 0.001 || launchedMem > offeredMem + 0.001) {
+      invalidLaunches++;
+      for (TaskInfo taskInfo : taskInfos) {
+        SimulatedTask task = new SimulatedTask(taskInfo, agent);
+        task.state = TaskState.TASK_LOST;
+        tasks.put(taskInfo.getTaskId().getValue(), task);
+        queue(task, TaskState.TASK_LOST, "Task launched with invalid offers", 0);
+        tasksLost++;
+      }
+      return Status.DRIVER_RUNNING;
+    }
+
+    offersAccepted++;
+    for (TaskInfo taskInfo : taskInfos) {
+      SimulatedTask task = new SimulatedTask(taskInfo, agent);
+      task.cpus = getScalar(taskInfo.getResourcesList(), "cpus");
+      task.mem = getScalar(taskInfo.getResourcesList(), "mem");
+      if (!agent.hasExecutor(task.executorId)) {
+        task.cpus += getScalar(taskInfo.getExecutor().getResourcesList(), "cpus");
+        task.mem += getScalar(taskInfo.getExecutor().getResourcesList(), "mem");
+      }
+      agent.start(task.id.getValue(), task.executorId, task.cpus, task.mem);
+      tasks.put(task.id.getValue(), task);
+      tasksLaunched++;
+
+      long startMs = options.getTaskStartMs() + random.nextInt((int) options.getTaskStartMs() + 1);
+      queue(task, TaskState.TASK_RUNNING, null, startMs);
+      if (HDFSConstants.NAME_NODE_ID.equals(task.type)) {
+        TaskStatus initialized = TaskStatusFactory.createNameNodeStatus(task.id, true).toBuilder()
+          .setSlaveId(agent.getId())
+          .build();
+        updates.add(new PendingUpdate(clock.nowMs() + startMs + options.getNameNodeInitMs(), updateSeq++,
+          initialized));
+      }
+    }
+    return Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Status launchTasks(Collection<OfferID> offerIds, Collection<TaskInfo> taskInfos) {
+    return launchTasks(offerIds, taskInfos, Filters.getDefaultInstance());
+  }
+
+  @Override
+  public Status launchTasks(OfferID offerId, Collection<TaskInfo> taskInfos, Filters filters) {
+    return launchTasks(Collections.singletonList(offerId), taskInfos, filters);
+  }
+
+  @Override
+  public Status launchTasks(OfferID offerId, Collection<TaskInfo> taskInfos) {
+    return launchTasks(Collections.singletonList(offerId), taskInfos, Filters.getDefaultInstance());
+  }
+
+  @Override
+  public synchronized Status killTask(TaskID taskId) {
+    SimulatedTask task = tasks.get(taskId.getValue());
+    if (task != null && !isTerminal(task.state)) {
+      stop(task, TaskState.TASK_KILLED, "Killed by the framework");
+      tasksKilled++;
+    }
+    return Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Status acceptOffers(Collection<OfferID> offerIds, Collection<Offer.Operation> operations,
+    Filters filters) {
+    throw new UnsupportedOperationException("The scheduler launches tasks through launchTasks");
+  }
+
+  @Override
+  public synchronized Status declineOffer(OfferID offerId, Filters filters) {
+    if (offers.containsKey(offerId.getValue())) {
+      offersDeclined++;
+      answer(offerId, filters.hasRefuseSeconds()
+        ? (long) (filters.getRefuseSeconds() * 1000) : options.getRefuseMs());
+    }
+    return Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Status declineOffer(OfferID offerId) {
+    return declineOffer(offerId, Filters.getDefaultInstance());
+  }
+
+  @Override
+  public synchronized Status reviveOffers() {
+    for (SimulatedAgent agent : agents) {
+      agent.clearRefusal();
+    }
+    return Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Status acknowledgeStatusUpdate(TaskStatus status) {
+    return Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public synchronized Status sendFrameworkMessage(ExecutorID executorId, SlaveID slaveId, byte[] data) {
+    frameworkMessages++;
+    return Status.DRIVER_RUNNING;
+  }
+
+  /**
+   * Answers explicit reconciliation with the state of each task, or TASK_LOST for unknown ones, and implicit
+   * reconciliation with the state of all tasks which haven't ended.
+   */
+  @Override
+  public synchronized Status reconcileTasks(Collection<TaskStatus> statuses) {
+    reconcileRequests++;
+    if (statuses.isEmpty()) {
+      for (SimulatedTask task : tasks.values()) {
+        if (!isTerminal(task.state)) {
+          queue(task, task.state, "Reconciliation", 0);
+        }
+      }
+    } else {
+      for (TaskStatus status : statuses) {
+        SimulatedTask task = tasks.get(status.getTaskId().getValue());
+        if (task == null) {
+          TaskStatus lost = TaskStatus.newBuilder()
+            .setTaskId(status.getTaskId())
+            .setState(TaskState.TASK_LOST)
+            .setMessage("Reconciliation: task is unknown")
+            .build();
+          updates.add(new PendingUpdate(clock.nowMs(), updateSeq++, lost));
+        } else {
+          queue(task, task.state, "Reconciliation", 0);
+        }
+      }
+    }
+    return Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Status start() {
+    return Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Status stop(boolean failover) {
+    return Status.DRIVER_STOPPED;
+  }
+
+  @Override
+  public Status stop() {
+    return Status.DRIVER_STOPPED;
+  }
+
+  @Override
+  public Status abort() {
+    return Status.DRIVER_ABORTED;
+  }
+
+  @Override
+  public Status join() {
+    return Status.DRIVER_STOPPED;
+  }
+
+  @Override
+  public Status run() {
+    return Status.DRIVER_STOPPED;
+  }
+
+  @Override
+  public Status requestResources(Collection<Request> requests) {
+    return Status.DRIVER_RUNNING;
+  }
+
+  private void answer(OfferID offerId, long refuseMs) {
+    OutstandingOffer offer = offers.remove(offerId.getValue());
+    offerHoldTime.add(clock.nowNanos() - offer.allocatedNanos);
+    if (offer.agent.isAlive()) {
+      offer.agent.offerAnswered();
+      if (refuseMs > 0) {
+        offer.agent.refuse(clock.nowMs() + refuseMs);
+      }
+    }
+  }
+
+  private void stop(SimulatedTask task, TaskState state, String message) {
+    task.state = state;
+    task.agent.stop(task.id.getValue(), task.executorId, task.cpus, task.mem);
+    queue(task, state, message, 0);
+  }
+
+  private void queue(SimulatedTask task, TaskState state, String message, long delayMs) {
+    TaskStatus.Builder status = TaskStatus.newBuilder()
+      .setTaskId(task.id)
+      .setState(state);
+    if (task.agent != null) {
+      status.setSlaveId(task.agent.getId());
+    }
+    if (message != null) {
+      status.setMessage(message);
+    }
+    updates.add(new PendingUpdate(clock.nowMs() + delayMs, updateSeq++, status.build()));
+  }
+
+  private static double getScalar(List<Resource> resources, String name) {
+    double value = 0;
+    for (Resource resource : resources) {
+      if (resource.getName().equals(name)) {
+        value += resource.getScalar().getValue();
+      }
+    }
+    return value;
+  }
+
+  private static String getExecutorId(TaskInfo taskInfo) {
+    return taskInfo.getExecutor().getExecutorId().getValue();
+  }
+
+  private static boolean isTerminal(TaskState state) {
+    return state == TaskState.TASK_FAILED || state == TaskState.TASK_FINISHED || state == TaskState.TASK_KILLED
+      || state == TaskState.TASK_LOST || state == TaskState.TASK_ERROR;
+  }
+
+  /**
+   * Returns how long offers were held, from their allocation until the scheduler answered them.
+   */
+  LatencySamples getOfferHoldTime() {
+    return offerHoldTime;
+  }
+
+  synchronized long getOffersSent() {
+    return offersSent;
+  }
+
+  synchronized long getOffersDeclined() {
+    return offersDeclined;
+  }
+
+  synchronized long getOffersAccepted() {
+    return offersAccepted;
+  }
+
+  synchronized long getOffersRescinded() {
+    return offersRescinded;
+  }
+
+  synchronized long getInvalidLaunches() {
+    return invalidLaunches;
+  }
+
+  synchronized long getTasksLaunched() {
+    return tasksLaunched;
+  }
+
+  synchronized long getTasksLost() {
+    return tasksLost;
+  }
+
+  synchronized long getTasksFailed() {
+    return tasksFailed;
+  }
+
+  synchronized long getTasksKilled() {
+    return tasksKilled;
+  }
+
+  synchronized long getFrameworkMessages() {
+    return frameworkMessages;
+  }
+
+  synchronized long getReconcileRequests() {
+    return reconcileRequests;
+  }
+
+  /**
+   * An offer the scheduler hasn't answered yet.
+   */
+  private static final class OutstandingOffer {
+    private final SimulatedAgent agent;
+    private final Offer offer;
+    private final long allocatedNanos;
+    private boolean rescinded;
+
+    private OutstandingOffer(SimulatedAgent agent, Offer offer, long allocatedNanos) {
+      this.agent = agent;
+      this.offer = offer;
+      this.allocatedNanos = allocatedNanos;
+    }
+  }
+
+  /**
+   * A task launched on an agent, whose type is taken from its id, e.g. task.datanode.datanode.host1.
+   */
+  private static final class SimulatedTask {
+    private final TaskID id;
+    private final String type;
+    private final String executorId;
+    private final SimulatedAgent agent;
+    private double cpus;
+    private double mem;
+    private TaskState state = TaskState.TASK_STAGING;
+
+    private SimulatedTask(TaskInfo taskInfo, SimulatedAgent agent) {
+      this.id = taskInfo.getTaskId();
+      String[] parts = id.getValue().split("\\.");
+      this.type = parts.length > 1 ? parts[1] : "";
+      this.executorId = getExecutorId(taskInfo);
+      this.agent = agent;
+    }
+  }
+
+  /**
+   * A status update due at a simulated time, in the order queued for the same time.
+   */
+  private static final class PendingUpdate implements Comparable<PendingUpdate> {
+    private final long dueMs;
+    private final long seq;
+    private final TaskStatus status;
+
+    private PendingUpdate(long dueMs, long seq, TaskStatus status) {
+      this.dueMs = dueMs;
+      this.seq = seq;
+      this.status = status;
+    }
+
+    @Override
+    public int compareTo(PendingUpdate other) {
+      int byTime = Long.compare(dueMs, other.dueMs);
+      return byTime != 0 ? byTime : Long.compare(seq, other.seq);
+    }
+  }
+}
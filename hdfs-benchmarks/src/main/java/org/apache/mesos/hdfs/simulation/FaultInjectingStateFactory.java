@@ -0,0 +1,214 @@
+package org.apache.mesos.hdfs.simulation;
+
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.scheduler.StateFactory;
+import org.apache.mesos.state.State;
+import org.apache.mesos.state.Variable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorates the States created by another StateFactory, the backend, to make every fetch, store, expunge and names
+ * slow or failing the way a struggling ZooKeeper is.  Each operation draws a latency from a distribution, which it
+ * takes when its result is first taken:
+ * <ul>
+ * <li>latencies above the timeout fail the operation with a TimeoutException once the timeout has passed</li>
+ * <li>others fail with an IOException at the failure rate</li>
+ * <li>the rest return the backend's result</li>
+ * </ul>
+ * Failed operations never reach the backend.  The latency is slept through, or only added up when the caller keeps
+ * simulated time and charges it with getInjectedNanos, so a simulation of a slow ZooKeeper doesn't take as long.
+ */
+public class FaultInjectingStateFactory implements StateFactory {
+  private final StateFactory backend;
+  private final LatencyDistribution latency;
+  private final long timeoutNanos;
+  private final double failureRate;
+  private final Random random;
+  private final boolean sleep;
+
+  private final AtomicLong operations = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong injectedNanos = new AtomicLong();
+
+  public FaultInjectingStateFactory(StateFactory backend, LatencyDistribution latency, long timeoutMs,
+    double failureRate, Random random, boolean sleep) {
+    this.backend = backend;
+    this.latency = latency;
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    this.failureRate = failureRate;
+    this.random = random;
+    this.sleep = sleep;
+  }
+
+  @Override
+  public State create(String path, HdfsFrameworkConfig config) {
+    return new FaultInjectingState(backend.create(path, config));
+  }
+
+  public LatencyDistribution getLatency() {
+    return latency;
+  }
+
+  public long getOperations() {
+    return operations.get();
+  }
+
+  /**
+   * Returns the number of operations failed, not counting those timed out.
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  public long getTimeouts() {
+    return timeouts.get();
+  }
+
+  /**
+   * Returns the latency taken by all operations so far, whether slept through or not.
+   */
+  public long getInjectedNanos() {
+    return injectedNanos.get();
+  }
+
+  /**
+   * Draws the latency and outcome of an operation as it is issued.
+   */
+  private Fault draw() {
+    operations.incrementAndGet();
+    long sampled = latency.sampleNanos(random);
+    if (sampled > timeoutNanos) {
+      timeouts.incrementAndGet();
+      return new Fault(timeoutNanos, true, false);
+    }
+    if (random.nextDouble() < failureRate) {
+      failures.incrementAndGet();
+      return new Fault(sampled, false, true);
+    }
+    return new Fault(sampled, false, false);
+  }
+
+  private final class FaultInjectingState implements State {
+    private final State state;
+
+    private FaultInjectingState(State state) {
+      this.state = state;
+    }
+
+    @Override
+    public Future<Variable> fetch(String name) {
+      Fault fault = draw();
+      return new FaultyFuture<>(fault, fault.isFailed() ? null : state.fetch(name));
+    }
+
+    @Override
+    public Future<Variable> store(Variable variable) {
+      Fault fault = draw();
+      return new FaultyFuture<>(fault, fault.isFailed() ? null : state.store(variable));
+    }
+
+    @Override
+    public Future<Boolean> expunge(Variable variable) {
+      Fault fault = draw();
+      return new FaultyFuture<>(fault, fault.isFailed() ? null : state.expunge(variable));
+    }
+
+    @Override
+    public Future<Iterator<String>> names() {
+      Fault fault = draw();
+      return new FaultyFuture<>(fault, fault.isFailed() ? null : state.names());
+    }
+  }
+
+  private static final class Fault {
+    private final long latencyNanos;
+    private final boolean timesOut;
+    private final boolean fails;
+
+    private Fault(long latencyNanos, boolean timesOut, boolean fails) {
+      this.latencyNanos = latencyNanos;
+      this.timesOut = timesOut;
+      this.fails = fails;
+    }
+
+    private boolean isFailed() {
+      return timesOut || fails;
+    }
+  }
+
+  /**
+   * The result of an operation, which takes its latency once, on whichever get comes first.
+   */
+  private final class FaultyFuture<T> implements Future<T> {
+    private final Fault fault;
+    private final Future<T> future;
+    private boolean taken;
+
+    private FaultyFuture(Fault fault, Future<T> future) {
+      this.fault = fault;
+      this.future = future;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+      take(fault.latencyNanos);
+      return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      if (unit.toNanos(timeout) < fault.latencyNanos) {
+        take(unit.toNanos(timeout));
+        throw new TimeoutException("Operation took longer than " + unit.toMillis(timeout) + "ms");
+      }
+      take(fault.latencyNanos);
+      return result();
+    }
+
+    private synchronized void take(long nanos) throws InterruptedException {
+      if (taken) {
+        return;
+      }
+      taken = nanos == fault.latencyNanos;
+      injectedNanos.addAndGet(nanos);
+      if (sleep) {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+      }
+    }
+
+    private T result() throws InterruptedException, ExecutionException {
+      if (fault.timesOut) {
+        throw new ExecutionException(new TimeoutException("Injected timeout after "
+          + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms"));
+      }
+      if (fault.fails) {
+        throw new ExecutionException(new IOException("Injected failure"));
+      }
+      return future.get();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return future != null && future.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return future != null && future.isCancelled();
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+      return taken;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package org.apache.mesos.hdfs.simulation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A distribution of operation latencies, parsed from &lt;kind&gt;:&lt;milliseconds&gt;... as one of:
+ * <ul>
+ * <li>none, no latency</li>
+ * <li>fixed:&lt;ms&gt;, always the same latency</li>
+ * <li>uniform:&lt;min&gt;:&lt;max&gt;, any latency in between equally likely</li>
+ * <li>lognormal:&lt;median&gt;:&lt;p99&gt;, mostly near the median with a long tail, as ZooKeeper latencies are</li>
+ * </ul>
+ */
+public final class LatencyDistribution {
+  public static final LatencyDistribution NONE = new LatencyDistribution("none", 0, 0, 0);
+
+  // The z-score of the 99th percentile of the standard normal distribution
+  private static final double Z_99 = 2.326;
+
+  private final String description;
+  private final String kind;
+  private final double a;
+  private final double b;
+
+  private LatencyDistribution(String kind, double a, double b, int params) {
+    this.kind = kind;
+    this.a = a;
+    this.b = b;
+    this.description = params == 0 ? kind : params == 1 ? kind + ":" + format(a) : kind + ":" + format(a) + ":"
+      + format(b);
+  }
+
+  public static LatencyDistribution parse(String value) {
+    String[] parts = value.trim().split(":");
+    try {
+      switch (parts[0]) {
+        case "none":
+          if (parts.length == 1) {
+            return NONE;
+          }
+          break;
+        case "fixed":
+          if (parts.length == 2) {
+            return new LatencyDistribution("fixed", nonNegative(parts[1]), 0, 1);
+          }
+          break;
+        case "uniform":
+          if (parts.length == 3 && nonNegative(parts[1]) <= nonNegative(parts[2])) {
+            return new LatencyDistribution("uniform", nonNegative(parts[1]), nonNegative(parts[2]), 2);
+          }
+          break;
+        case "lognormal":
+          if (parts.length == 3 && 0 < nonNegative(parts[1]) && nonNegative(parts[1]) <= nonNegative(parts[2])) {
+            return new LatencyDistribution("lognormal", nonNegative(parts[1]), nonNegative(parts[2]), 2);
+          }
+          break;
+        default:
+          break;
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid latency distribution " + value, e);
+    }
+    throw new IllegalArgumentException("Invalid latency distribution " + value
+      + ", expected none, fixed:<ms>, uniform:<min>:<max> or lognormal:<median>:<p99>");
+  }
+
+  /**
+   * Returns a latency drawn from the distribution, in nanoseconds.
+   */
+  public long sampleNanos(Random random) {
+    double ms;
+    switch (kind) {
+      case "fixed":
+        ms = a;
+        break;
+      case "uniform":
+        ms = a + random.nextDouble() * (b - a);
+        break;
+      case "lognormal":
+        double sigma = Math.log(b / a) / Z_99;
+        ms = a * Math.exp(sigma * random.nextGaussian());
+        break;
+      default:
+        ms = 0;
+        break;
+    }
+    return (long) (ms * TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  public boolean isNone() {
+    return this == NONE;
+  }
+
+  @Override
+  public String toString() {
+    return description;
+  }
+
+  private static double nonNegative(String value) {
+    double ms = Double.parseDouble(value);
+    if (ms < 0 || Double.isNaN(ms) || Double.isInfinite(ms)) {
+      throw new NumberFormatException("Latency must be a non-negative number of milliseconds: " + value);
+    }
+    return ms;
+  }
+
+  private static String format(double ms) {
+    return ms == Math.rint(ms) ? String.valueOf((long) ms) : String.valueOf(ms);
+  }
+}
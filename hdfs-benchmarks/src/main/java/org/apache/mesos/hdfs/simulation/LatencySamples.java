@@ -0,0 +1,45 @@
+package org.apache.mesos.hdfs.simulation;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps every latency observed, so its percentiles are exact however long the tail.  The metrics Histogram tops out
+ * at a minute, which a callback reaches against a slow enough state.
+ */
+class LatencySamples {
+  private long[] nanos = new long[1024];
+  private int count;
+
+  synchronized void add(long latencyNanos) {
+    if (count == nanos.length) {
+      nanos = Arrays.copyOf(nanos, count * 2);
+    }
+    nanos[count++] = latencyNanos;
+  }
+
+  synchronized int getCount() {
+    return count;
+  }
+
+  synchronized double getSumSeconds() {
+    long sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += nanos[i];
+    }
+    return sum / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  /**
+   * Returns the given percentile by the nearest-rank method, in milliseconds, or 0 if nothing was observed.
+   */
+  synchronized double getPercentileMs(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(nanos, count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return sorted[Math.max(0, rank - 1)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
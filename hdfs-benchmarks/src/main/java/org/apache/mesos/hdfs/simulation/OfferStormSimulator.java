@@ -0,0 +1,59 @@
+package org.apache.mesos.hdfs.simulation;
+
+import org.apache.mesos.hdfs.scheduler.InMemoryStateFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs a simulation for each cluster size given with --agents and each state latency given with --state-latency,
+ * prints a summary of each and writes the full reports as JSON to the --output file if given.
+ */
+public final class OfferStormSimulator {
+  private OfferStormSimulator() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    SimulationOptions options;
+    try {
+      options = SimulationOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(2);
+      return;
+    }
+
+    List<Map<String, Object>> results = new ArrayList<>();
+    System.out.println(String.format("%8s %20s %6s %12s %10s %10s %8s %12s %12s %12s %10s", "agents",
+      "state_latency", "full", "sim_s_full", "wall_s", "offers/s", "declined", "offers_p99ms", "status_p99ms",
+      "hold_p99ms", "heap_mb"));
+    for (LatencyDistribution latency : options.getStateLatencies()) {
+      for (int agents : options.getAgentCounts()) {
+        FaultInjectingStateFactory stateFactory = new FaultInjectingStateFactory(new InMemoryStateFactory(), latency,
+          options.getStateTimeoutMs(), options.getStateFailureRate(), new Random(options.getSeed()), false);
+        SimulationReport report = new Simulation(options, agents, stateFactory).run();
+        results.add(report.toMap());
+        System.out.println(String.format("%8d %20s %6s %12s %10s %10.0f %8.3f %12.1f %12.1f %12.1f %10.0f",
+          report.getAgents(), report.getStateLatency(), report.isFull(), format(report.getSimulatedSecondsToFull()),
+          format(report.getWallSecondsToFull()), report.getOffersPerSecond(), report.getDeclineRatio(),
+          report.getResourceOffersP99Ms(), report.getStatusUpdateP99Ms(), report.getOfferHoldP99Ms(),
+          report.getPeakHeapMb()));
+      }
+    }
+
+    if (options.getOutput() != null) {
+      new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(new File(options.getOutput()), results);
+      System.out.println("Wrote " + options.getOutput());
+    }
+    // The scheduler leaves non-daemon threads behind, e.g. the reconciler's
+    System.exit(0);
+  }
+
+  private static String format(Double seconds) {
+    return seconds == null ? "-" : String.format("%.1f", seconds);
+  }
+}
@@ -0,0 +1,141 @@
+package org.apache.mesos.hdfs.simulation;
+
+import org.apache.mesos.Protos.Attribute;
+import org.apache.mesos.Protos.SlaveID;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An agent of the simulated cluster, with the resources and executors its tasks use and the number of its offers the
+ * scheduler holds.
+ */
+class SimulatedAgent {
+  private final SlaveID id;
+  private final String hostname;
+  private final List<Attribute> attributes;
+  private final double cpus;
+  private final double mem;
+  private final Set<String> taskIds = new HashSet<>();
+  // The number of tasks of each executor, which exits with its last task
+  private final Map<String, Integer> executors = new HashMap<>();
+  private double usedCpus;
+  private double usedMem;
+  private int outstandingOffers;
+  private long refusedUntilMs;
+  private boolean alive = true;
+  private long returnsAtMs;
+
+  SimulatedAgent(String hostname, List<Attribute> attributes, double cpus, double mem) {
+    this.id = SlaveID.newBuilder().setValue("slave." + hostname).build();
+    this.hostname = hostname;
+    this.attributes = attributes;
+    this.cpus = cpus;
+    this.mem = mem;
+  }
+
+  SlaveID getId() {
+    return id;
+  }
+
+  String getHostname() {
+    return hostname;
+  }
+
+  List<Attribute> getAttributes() {
+    return attributes;
+  }
+
+  double getFreeCpus() {
+    return cpus - usedCpus;
+  }
+
+  double getFreeMem() {
+    return mem - usedMem;
+  }
+
+  Set<String> getTaskIds() {
+    return taskIds;
+  }
+
+  /**
+   * Returns whether the agent can be offered: it is alive, not offered already and not refused by a decline.
+   */
+  boolean isOfferable(long nowMs) {
+    return alive && outstandingOffers == 0 && nowMs >= refusedUntilMs && getFreeCpus() > 0 && getFreeMem() > 0;
+  }
+
+  void offered(int offers) {
+    outstandingOffers += offers;
+  }
+
+  void offerAnswered() {
+    outstandingOffers--;
+  }
+
+  void refuse(long untilMs) {
+    refusedUntilMs = Math.max(refusedUntilMs, untilMs);
+  }
+
+  void clearRefusal() {
+    refusedUntilMs = 0;
+  }
+
+  boolean hasExecutor(String executorId) {
+    return executors.containsKey(executorId);
+  }
+
+  /**
+   * Starts a task using the given resources, which include those of its executor if it starts the executor.
+   */
+  void start(String taskId, String executorId, double taskCpus, double taskMem) {
+    taskIds.add(taskId);
+    Integer tasks = executors.get(executorId);
+    executors.put(executorId, tasks == null ? 1 : tasks + 1);
+    usedCpus += taskCpus;
+    usedMem += taskMem;
+  }
+
+  void stop(String taskId, String executorId, double taskCpus, double taskMem) {
+    if (!taskIds.remove(taskId)) {
+      return;
+    }
+    Integer tasks = executors.get(executorId);
+    if (tasks == null || tasks <= 1) {
+      executors.remove(executorId);
+    } else {
+      executors.put(executorId, tasks - 1);
+    }
+    usedCpus -= taskCpus;
+    usedMem -= taskMem;
+  }
+
+  boolean isAlive() {
+    return alive;
+  }
+
+  /**
+   * Loses the agent along with its tasks, executors and offers.  It rejoins empty at the given time.
+   */
+  void lose(long returnsAtMs) {
+    alive = false;
+    this.returnsAtMs = returnsAtMs;
+    taskIds.clear();
+    executors.clear();
+    usedCpus = 0;
+    usedMem = 0;
+    outstandingOffers = 0;
+    refusedUntilMs = 0;
+  }
+
+  boolean rejoinIfDue(long nowMs) {
+    if (!alive && nowMs >= returnsAtMs) {
+      alive = true;
+      return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,62 @@
+package org.apache.mesos.hdfs.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time of a simulation.  It stands still between events and runs while the scheduler handles a callback, by the
+ * wall time the callback takes plus the latency injected into the state meanwhile, since the driver's one callback
+ * thread is busy for that long and offers and status updates wait for it.
+ */
+class SimulatedClock {
+  private final FaultInjectingStateFactory injector;
+  private long nowNanos;
+  private boolean inCallback;
+  private long callbackWallNanos;
+  private long callbackInjectedNanos;
+
+  /**
+   * Creates a clock charging callbacks the latency injected by the given factory, if any.
+   */
+  SimulatedClock(FaultInjectingStateFactory injector) {
+    this.injector = injector;
+  }
+
+  synchronized long nowNanos() {
+    return inCallback ? nowNanos + getCallbackNanos() : nowNanos;
+  }
+
+  long nowMs() {
+    return TimeUnit.NANOSECONDS.toMillis(nowNanos());
+  }
+
+  /**
+   * Moves the clock forward to the given time, if it isn't past it already.
+   */
+  synchronized void advanceTo(long ms) {
+    nowNanos = Math.max(nowNanos, TimeUnit.MILLISECONDS.toNanos(ms));
+  }
+
+  synchronized void beginCallback() {
+    inCallback = true;
+    callbackWallNanos = System.nanoTime();
+    callbackInjectedNanos = getInjectedNanos();
+  }
+
+  /**
+   * Ends a callback, moving the clock past it, and returns how long it took.
+   */
+  synchronized long endCallback() {
+    long nanos = getCallbackNanos();
+    inCallback = false;
+    nowNanos += nanos;
+    return nanos;
+  }
+
+  private long getCallbackNanos() {
+    return System.nanoTime() - callbackWallNanos + getInjectedNanos() - callbackInjectedNanos;
+  }
+
+  private long getInjectedNanos() {
+    return injector == null ? 0 : injector.getInjectedNanos();
+  }
+}
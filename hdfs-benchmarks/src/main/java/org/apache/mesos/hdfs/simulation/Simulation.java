@@ -0,0 +1,151 @@
+package org.apache.mesos.hdfs.simulation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.MasterInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.hdfs.benchmarks.BenchmarkConfigs;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.scheduler.HdfsMesosConstraints;
+import org.apache.mesos.hdfs.scheduler.HdfsScheduler;
+import org.apache.mesos.hdfs.scheduler.Reconciler;
+import org.apache.mesos.hdfs.state.AcquisitionPhase;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.state.StateMachine;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a HdfsScheduler against a FakeMesosMaster on a simulated clock until the cluster is full, i.e. a DataNode
+ * runs on every agent which can hold one, or until the simulated or wall time runs out.  Callbacks run on the
+ * calling thread one at a time, as the driver would run them, and take as long on the clock as they took on the
+ * wall clock plus the latency injected into the state.
+ */
+public class Simulation {
+  private final Log log = LogFactory.getLog(Simulation.class);
+
+  private final SimulationOptions options;
+  private final int agentCount;
+  private final FaultInjectingStateFactory stateFactory;
+  private final SimulatedClock clock;
+
+  private final LatencySamples resourceOffersTime = new LatencySamples();
+  private final LatencySamples statusUpdateTime = new LatencySamples();
+
+  public Simulation(SimulationOptions options, int agentCount, FaultInjectingStateFactory stateFactory) {
+    this.options = options;
+    this.agentCount = agentCount;
+    this.stateFactory = stateFactory;
+    this.clock = new SimulatedClock(stateFactory);
+  }
+
+  public SimulationReport run() throws Exception {
+    HdfsFrameworkConfig config = BenchmarkConfigs.create(options.getConstraints());
+    HdfsMesosConstraints constraints = new HdfsMesosConstraints(config);
+    HdfsState state = new HdfsState(config, stateFactory);
+    StateMachine stateMachine = new StateMachine(state, config, new Reconciler(config, state));
+    HdfsScheduler scheduler = new HdfsScheduler(config, state, stateMachine);
+    FakeMesosMaster master = new FakeMesosMaster(options, agentCount, clock, new Random(options.getSeed()));
+    SimulationReport report = new SimulationReport(agentCount, stateFactory.getLatency());
+
+    long wallStartNanos = System.nanoTime();
+    long maxWallNanos = TimeUnit.MILLISECONDS.toNanos(options.getMaxWallMs());
+    Runtime runtime = Runtime.getRuntime();
+    long peakHeapBytes = 0;
+
+    clock.beginCallback();
+    scheduler.registered(master, FrameworkID.newBuilder().setValue("framework").build(),
+      MasterInfo.newBuilder().setId("master").setIp(0).setPort(5050).build());
+    clock.endCallback();
+
+    long nextAllocationMs = 0;
+    long lastFaultsMs = 0;
+    long allocations = 0;
+    while (clock.nowMs() <= options.getMaxSimulatedMs() && System.nanoTime() - wallStartNanos < maxWallNanos) {
+      deliverUpdates(scheduler, master);
+
+      long nowMs = clock.nowMs();
+      if (nowMs >= nextAllocationMs) {
+        for (SlaveID slaveId : master.loseAgents(nowMs - lastFaultsMs)) {
+          clock.beginCallback();
+          scheduler.slaveLost(master, slaveId);
+          clock.endCallback();
+        }
+        master.failTasks(nowMs - lastFaultsMs);
+        lastFaultsMs = nowMs;
+        deliverUpdates(scheduler, master);
+
+        allocate(scheduler, master);
+        allocations++;
+        // Offers freed by a slow callback are allocated again as soon as it returns
+        nextAllocationMs = Math.max(nextAllocationMs + options.getAllocationIntervalMs(), clock.nowMs());
+        peakHeapBytes = Math.max(peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+
+        if (stateMachine.getCurrentPhase() == AcquisitionPhase.DATA_NODES) {
+          int expected = master.getExpectedDataNodes(constraints, config.getRunDatanodeExclusively());
+          int running = master.getRunningDataNodes();
+          if (expected > 0 && running >= expected) {
+            report.fullAt(clock.nowMs() / 1000.0, (System.nanoTime() - wallStartNanos) / 1e9);
+            break;
+          }
+        }
+        if (allocations % 60 == 0) {
+          log.info(String.format("agents=%d state_latency=%s simulated=%ds phase=%s datanodes=%d", agentCount,
+            stateFactory.getLatency(), clock.nowMs() / 1000, stateMachine.getCurrentPhase(),
+            master.getRunningDataNodes()));
+        }
+      }
+      clock.advanceTo(Math.min(nextAllocationMs, master.getNextUpdateMs()));
+    }
+
+    report.ended(clock.nowMs() / 1000.0, (System.nanoTime() - wallStartNanos) / 1e9, allocations);
+    report.master(master);
+    report.dataNodes(master.getRunningDataNodes(),
+      master.getExpectedDataNodes(constraints, config.getRunDatanodeExclusively()));
+    report.callbacks(resourceOffersTime, statusUpdateTime);
+    report.state(stateFactory);
+    System.gc();
+    report.heap(peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+    return report;
+  }
+
+  private void deliverUpdates(HdfsScheduler scheduler, FakeMesosMaster master) {
+    for (TaskStatus status : master.takeDueUpdates()) {
+      clock.beginCallback();
+      scheduler.statusUpdate(master, status);
+      statusUpdateTime.add(clock.endCallback());
+    }
+  }
+
+  /**
+   * Offers the cluster to the scheduler, in callbacks of at most offersPerCallback offers.  Offers chosen for
+   * rescinding are rescinded once the callback evaluating them returns, as if the rescind crossed it.
+   */
+  private void allocate(HdfsScheduler scheduler, FakeMesosMaster master) {
+    Set<OfferID> rescinded = new HashSet<>();
+    List<Offer> offers = master.allocate(rescinded);
+    int batchSize = options.getOffersPerCallback() > 0 ? options.getOffersPerCallback() : offers.size();
+    for (int from = 0; from < offers.size(); from += batchSize) {
+      List<Offer> batch = offers.subList(from, Math.min(offers.size(), from + batchSize));
+      clock.beginCallback();
+      scheduler.resourceOffers(master, batch);
+      resourceOffersTime.add(clock.endCallback());
+      for (Offer offer : batch) {
+        if (rescinded.contains(offer.getId())) {
+          clock.beginCallback();
+          scheduler.offerRescinded(master, offer.getId());
+          clock.endCallback();
+        }
+      }
+      master.expire(batch);
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package org.apache.mesos.hdfs.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parameters of a simulation, parsed from --name value pairs.  Rates of agent loss and task failure are the
+ * fraction of live agents or running tasks lost per simulated minute.  Each cluster size is simulated with each of
+ * the comma-separated state latency distributions, see LatencyDistribution.
+ */
+public class SimulationOptions {
+  static final String USAGE = "Usage: OfferStormSimulator [--agents 100,1000,5000] [--fragments 1]"
+    + " [--offers-per-callback 0] [--rescind-rate 0.01] [--agent-loss-rate 0.001] [--task-failure-rate 0.001]"
+    + " [--state-latency none,fixed:5,lognormal:50:500] [--state-timeout-ms 10000] [--state-failure-rate 0]"
+    + " [--constraints <constraints>] [--max-simulated-minutes 240] [--max-wall-minutes 30] [--seed 1]"
+    + " [--output <file>]";
+
+  private List<Integer> agentCounts = new ArrayList<>();
+  private int fragments = 1;
+  private int offersPerCallback;
+  private double rescindRate = 0.01;
+  private double agentLossRate = 0.001;
+  private double taskFailureRate = 0.001;
+  private List<LatencyDistribution> stateLatencies = new ArrayList<>();
+  private long stateTimeoutMs = 10000;
+  private double stateFailureRate;
+  private String constraints;
+  private long allocationIntervalMs = 1000;
+  private long refuseMs = 5000;
+  private long taskStartMs = 3000;
+  private long nameNodeInitMs = 10000;
+  private long agentReturnMs = 120000;
+  private long maxSimulatedMs = 240 * 60000L;
+  private long maxWallMs = 30 * 60000L;
+  private long seed = 1;
+  private String output;
+
+  public SimulationOptions() {
+    agentCounts.add(100);
+    agentCounts.add(1000);
+    agentCounts.add(5000);
+    stateLatencies.add(LatencyDistribution.NONE);
+  }
+
+  public static SimulationOptions parse(String[] args) {
+    SimulationOptions options = new SimulationOptions();
+    if (args.length % 2 != 0) {
+      throw new IllegalArgumentException(USAGE);
+    }
+    for (int i = 0; i < args.length; i += 2) {
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "--agents":
+          options.agentCounts = new ArrayList<>();
+          for (String count : value.split(",")) {
+            options.agentCounts.add(Integer.parseInt(count.trim()));
+          }
+          break;
+        case "--fragments":
+          options.fragments = Integer.parseInt(value);
+          break;
+        case "--offers-per-callback":
+          options.offersPerCallback = Integer.parseInt(value);
+          break;
+        case "--rescind-rate":
+          options.rescindRate = Double.parseDouble(value);
+          break;
+        case "--agent-loss-rate":
+          options.agentLossRate = Double.parseDouble(value);
+          break;
+        case "--task-failure-rate":
+          options.taskFailureRate = Double.parseDouble(value);
+          break;
+        case "--state-latency":
+          options.stateLatencies = new ArrayList<>();
+          for (String latency : value.split(",")) {
+            options.stateLatencies.add(LatencyDistribution.parse(latency));
+          }
+          break;
+        case "--state-timeout-ms":
+          options.stateTimeoutMs = Long.parseLong(value);
+          break;
+        case "--state-failure-rate":
+          options.stateFailureRate = Double.parseDouble(value);
+          break;
+        case "--constraints":
+          options.constraints = value;
+          break;
+        case "--max-simulated-minutes":
+          options.maxSimulatedMs = Long.parseLong(value) * 60000;
+          break;
+        case "--max-wall-minutes":
+          options.maxWallMs = Long.parseLong(value) * 60000;
+          break;
+        case "--seed":
+          options.seed = Long.parseLong(value);
+          break;
+        case "--output":
+          options.output = value;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + args[i] + "\n" + USAGE);
+      }
+    }
+    for (int count : options.agentCounts) {
+      if (count < 3) {
+        throw new IllegalArgumentException("At least 3 agents are needed for the JournalNodes");
+      }
+    }
+    if (options.fragments < 1) {
+      throw new IllegalArgumentException("Agents must be offered in at least one fragment");
+    }
+    return options;
+  }
+
+  public List<Integer> getAgentCounts() {
+    return agentCounts;
+  }
+
+  /**
+   * Returns the number of offers each agent's free resources are split into.
+   */
+  public int getFragments() {
+    return fragments;
+  }
+
+  /**
+   * Returns the maximum number of offers per resourceOffers callback, or 0 to send all offers of an allocation in
+   * one callback as the Mesos master does.
+   */
+  public int getOffersPerCallback() {
+    return offersPerCallback;
+  }
+
+  /**
+   * Returns the fraction of offers rescinded while the scheduler is evaluating them.
+   */
+  public double getRescindRate() {
+    return rescindRate;
+  }
+
+  public double getAgentLossRate() {
+    return agentLossRate;
+  }
+
+  public double getTaskFailureRate() {
+    return taskFailureRate;
+  }
+
+  public List<LatencyDistribution> getStateLatencies() {
+    return stateLatencies;
+  }
+
+  /**
+   * Returns how long a state operation may take before it fails, as a ZooKeeper session would time out.
+   */
+  public long getStateTimeoutMs() {
+    return stateTimeoutMs;
+  }
+
+  /**
+   * Returns the fraction of state operations which fail outright.
+   */
+  public double getStateFailureRate() {
+    return stateFailureRate;
+  }
+
+  public String getConstraints() {
+    return constraints;
+  }
+
+  public long getAllocationIntervalMs() {
+    return allocationIntervalMs;
+  }
+
+  /**
+   * Returns how long a declined agent isn't offered again, unless the decline sets its own filter.
+   */
+  public long getRefuseMs() {
+    return refuseMs;
+  }
+
+  public long getTaskStartMs() {
+    return taskStartMs;
+  }
+
+  public long getNameNodeInitMs() {
+    return nameNodeInitMs;
+  }
+
+  public long getAgentReturnMs() {
+    return agentReturnMs;
+  }
+
+  public long getMaxSimulatedMs() {
+    return maxSimulatedMs;
+  }
+
+  public long getMaxWallMs() {
+    return maxWallMs;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public String getOutput() {
+    return output;
+  }
+}
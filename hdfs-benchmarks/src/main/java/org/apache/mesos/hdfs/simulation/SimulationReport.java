@@ -0,0 +1,179 @@
+package org.apache.mesos.hdfs.simulation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The outcome of one simulation.  Latencies are in simulated milliseconds, and the time to a full cluster is null if
+ * it was never reached.
+ */
+public class SimulationReport {
+  private final int agents;
+  private final LatencyDistribution stateLatency;
+  private boolean full;
+  private Double simulatedSecondsToFull;
+  private Double wallSecondsToFull;
+  private double simulatedSeconds;
+  private double wallSeconds;
+  private long allocations;
+  private long offersSent;
+  private long offersDeclined;
+  private long offersAccepted;
+  private long offersRescinded;
+  private long invalidLaunches;
+  private long tasksLaunched;
+  private long tasksLost;
+  private long tasksFailed;
+  private int runningDataNodes;
+  private int expectedDataNodes;
+  private double offersPerSecond;
+  private double resourceOffersP99Ms;
+  private double resourceOffersMaxMs;
+  private double statusUpdateP99Ms;
+  private double statusUpdateMaxMs;
+  private double offerHoldP50Ms;
+  private double offerHoldP99Ms;
+  private long stateOperations;
+  private long stateFailures;
+  private long stateTimeouts;
+  private double peakHeapMb;
+  private double heapAfterGcMb;
+
+  SimulationReport(int agents, LatencyDistribution stateLatency) {
+    this.agents = agents;
+    this.stateLatency = stateLatency;
+  }
+
+  void fullAt(double simulatedSeconds, double wallSeconds) {
+    full = true;
+    simulatedSecondsToFull = simulatedSeconds;
+    wallSecondsToFull = wallSeconds;
+  }
+
+  void ended(double simulatedSeconds, double wallSeconds, long allocations) {
+    this.simulatedSeconds = simulatedSeconds;
+    this.wallSeconds = wallSeconds;
+    this.allocations = allocations;
+  }
+
+  void master(FakeMesosMaster master) {
+    offersSent = master.getOffersSent();
+    offersDeclined = master.getOffersDeclined();
+    offersAccepted = master.getOffersAccepted();
+    offersRescinded = master.getOffersRescinded();
+    invalidLaunches = master.getInvalidLaunches();
+    tasksLaunched = master.getTasksLaunched();
+    tasksLost = master.getTasksLost();
+    tasksFailed = master.getTasksFailed();
+    offerHoldP50Ms = master.getOfferHoldTime().getPercentileMs(50);
+    offerHoldP99Ms = master.getOfferHoldTime().getPercentileMs(99);
+  }
+
+  void dataNodes(int running, int expected) {
+    runningDataNodes = running;
+    expectedDataNodes = expected;
+  }
+
+  /**
+   * Records the callback latencies, and the offers evaluated per second spent in resourceOffers.
+   */
+  void callbacks(LatencySamples resourceOffers, LatencySamples statusUpdate) {
+    resourceOffersP99Ms = resourceOffers.getPercentileMs(99);
+    resourceOffersMaxMs = resourceOffers.getPercentileMs(100);
+    statusUpdateP99Ms = statusUpdate.getPercentileMs(99);
+    statusUpdateMaxMs = statusUpdate.getPercentileMs(100);
+    double seconds = resourceOffers.getSumSeconds();
+    offersPerSecond = seconds > 0 ? offersSent / seconds : 0;
+  }
+
+  void state(FaultInjectingStateFactory stateFactory) {
+    stateOperations = stateFactory.getOperations();
+    stateFailures = stateFactory.getFailures();
+    stateTimeouts = stateFactory.getTimeouts();
+  }
+
+  void heap(long peakBytes, long afterGcBytes) {
+    peakHeapMb = peakBytes / (1024.0 * 1024.0);
+    heapAfterGcMb = afterGcBytes / (1024.0 * 1024.0);
+  }
+
+  public int getAgents() {
+    return agents;
+  }
+
+  public LatencyDistribution getStateLatency() {
+    return stateLatency;
+  }
+
+  public boolean isFull() {
+    return full;
+  }
+
+  public Double getSimulatedSecondsToFull() {
+    return simulatedSecondsToFull;
+  }
+
+  public Double getWallSecondsToFull() {
+    return wallSecondsToFull;
+  }
+
+  public double getOffersPerSecond() {
+    return offersPerSecond;
+  }
+
+  public double getDeclineRatio() {
+    return offersSent == 0 ? 0 : (double) offersDeclined / offersSent;
+  }
+
+  public double getResourceOffersP99Ms() {
+    return resourceOffersP99Ms;
+  }
+
+  public double getStatusUpdateP99Ms() {
+    return statusUpdateP99Ms;
+  }
+
+  public double getOfferHoldP99Ms() {
+    return offerHoldP99Ms;
+  }
+
+  public double getPeakHeapMb() {
+    return peakHeapMb;
+  }
+
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("agents", agents);
+    map.put("state_latency", stateLatency.toString());
+    map.put("full", full);
+    map.put("simulated_seconds_to_full", simulatedSecondsToFull);
+    map.put("wall_seconds_to_full", wallSecondsToFull);
+    map.put("simulated_seconds", simulatedSeconds);
+    map.put("wall_seconds", wallSeconds);
+    map.put("allocations", allocations);
+    map.put("offers_sent", offersSent);
+    map.put("offers_declined", offersDeclined);
+    map.put("offers_accepted", offersAccepted);
+    map.put("offers_rescinded", offersRescinded);
+    map.put("decline_ratio", getDeclineRatio());
+    map.put("invalid_launches", invalidLaunches);
+    map.put("tasks_launched", tasksLaunched);
+    map.put("tasks_lost", tasksLost);
+    map.put("tasks_failed", tasksFailed);
+    map.put("running_datanodes", runningDataNodes);
+    map.put("expected_datanodes", expectedDataNodes);
+    map.put("offers_per_second", offersPerSecond);
+    map.put("resource_offers_p99_ms", resourceOffersP99Ms);
+    map.put("resource_offers_max_ms", resourceOffersMaxMs);
+    map.put("status_update_p99_ms", statusUpdateP99Ms);
+    map.put("status_update_max_ms", statusUpdateMaxMs);
+    map.put("offer_hold_p50_ms", offerHoldP50Ms);
+    map.put("offer_hold_p99_ms", offerHoldP99Ms);
+    map.put("state_operations", stateOperations);
+    map.put("state_failures", stateFailures);
+    map.put("state_timeouts", stateTimeouts);
+    map.put("peak_heap_mb", peakHeapMb);
+    map.put("heap_after_gc_mb", heapAfterGcMb);
+    return map;
+  }
+}
@@ -0,0 +1,687 @@
+package org.apache.mesos.hdfs.config;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The framework configuration parsed once into typed values, so reading a value is a field access rather than a
+ * lookup, variable expansion and parse in the Hadoop Configuration.  A snapshot never changes; reloading the
+ * configuration builds a new one.
+ * <p/>
+ * A snapshot built from a previous one keeps the previous values of the settings which can only take effect on a
+ * restart, such as the framework name, the state and master connections, the role and the credentials, and logs
+ * those whose configured value has changed.
+ * <p/>
+ * The cpus and heap of each node type and the target number of DataNodes are taken from the ScaleSettings the
+ * snapshot is built with where they are set, and from the configuration otherwise.
+ */
+public final class ConfigSnapshot {
+  /**
+   * The DataNode count meaning one DataNode on every host which can hold one.
+   */
+  public static final int ALL_HOSTS = -1;
+
+  private static final int DEFAULT_HADOOP_HEAP_SIZE = 512;
+  private static final int DEFAULT_EXECUTOR_HEAP_SIZE = 256;
+  private static final int DEFAULT_DATANODE_HEAP_SIZE = 1024;
+  private static final int DEFAULT_NAMENODE_HEAP_SIZE = 4096;
+
+  private static final double DEFAULT_EXECUTOR_CPUS = 0.5;
+  private static final double DEFAULT_NAMENODE_CPUS = 1;
+  private static final double DEFAULT_JOURNAL_CPUS = 1;
+  private static final double DEFAULT_DATANODE_CPUS = 1;
+
+  private static final double DEFAULT_JVM_OVERHEAD = 1.35;
+  private static final int DEFAULT_JOURNAL_NODE_COUNT = 3;
+  private static final int DEFAULT_REPLICATION = 3;
+  private static final int DEFAULT_FAILOVER_TIMEOUT_SEC = 31449600;
+  private static final int DEFAULT_ZK_TIME_MS = 20000;
+  private static final int DEFAULT_RECONCILIATION_TIMEOUT_SEC = 4;
+  private static final int DEFAULT_MAX_RECONCILIATION_TIMEOUT_SEC = 30;
+  private static final int DEFAULT_DEADNODE_TIMEOUT_SEC = 90;
+  private static final int DEFAULT_HEALTH_CHECK_FREQUENCY_MS = 60000;
+  private static final int DEFAULT_HEALTH_CHECK_WAITING_PERIOD_MS = 900000;
+  private static final int DEFAULT_HEALTH_CHECK_TIMEOUT_MS = 10000;
+  private static final int DEFAULT_HEALTH_CHECK_MAX_FAILURES = 3;
+  private static final long DEFAULT_HEALTH_CHECK_JOURNAL_MAX_LAG_TXNS = 10000;
+  private static final int DEFAULT_HEALTH_CHECK_DATANODE_MAX_FAILED_VOLUMES = 0;
+  private static final int DEFAULT_HEALTH_CHECK_DATANODE_MAX_XCEIVERS = 3500;
+  private static final int DEFAULT_EXECUTOR_FETCH_MAX_CONCURRENT = 32;
+  private static final int DEFAULT_EXECUTOR_FETCH_QUEUE_SIZE = 1024;
+  private static final int DEFAULT_EXECUTOR_FETCH_QUEUE_TIMEOUT_MS = 120000;
+  private static final int DEFAULT_CONFIG_WATCH_TIMEOUT_SEC = 60;
+  private static final int DEFAULT_CONFIG_RELOAD_INTERVAL_MS = 5000;
+  private static final int DEFAULT_TELEMETRY_INTERVAL_MS = 10000;
+  private static final int DEFAULT_PROCESS_LOG_MAX_SIZE_MB = 100;
+  private static final int DEFAULT_PROCESS_MAX_RESTARTS = 5;
+  private static final int DEFAULT_PROCESS_RESTART_WINDOW_SEC = 600;
+  private static final int DEFAULT_PROCESS_RESTART_BACKOFF_MS = 1000;
+  private static final int DEFAULT_PROCESS_RESTART_MAX_BACKOFF_MS = 60000;
+  private static final int DEFAULT_PROCESS_STOP_GRACE_MS = 5000;
+  private static final int DEFAULT_PROCESS_LOG_MAX_SEGMENTS = 5;
+  private static final int DEFAULT_TELEMETRY_BATCH_SIZE = 6;
+  private static final int DEFAULT_TELEMETRY_HISTORY_SIZE = 360;
+  private static final int DEFAULT_DNS_CACHE_TTL_MS = 60000;
+  private static final int DEFAULT_DNS_NEGATIVE_CACHE_TTL_MS = 1000;
+  private static final int DEFAULT_LAUNCH_TRACE_HISTORY_SIZE = 100;
+
+  private static final String DEFAULT_JVM_OPTS = ""
+    + "-XX:+UseConcMarkSweepGC "
+    + "-XX:+CMSClassUnloadingEnabled "
+    + "-XX:+UseTLAB "
+    + "-XX:+AggressiveOpts "
+    + "-XX:+UseCompressedOops "
+    + "-XX:+UseFastEmptyMethods "
+    + "-XX:+UseFastAccessorMethods "
+    + "-Xss256k "
+    + "-XX:+AlwaysPreTouch "
+    + "-XX:+UseParNewGC "
+    + "-Djava.library.path=/usr/lib:/usr/local/lib:lib/native";
+
+  private static final String[] NODE_TYPES = {HDFSConstants.DATA_NODE_ID,
+    HDFSConstants.NAME_NODE_ID, HDFSConstants.ZKFC_NODE_ID, HDFSConstants.JOURNAL_NODE_ID};
+
+  private final Log log = LogFactory.getLog(ConfigSnapshot.class);
+
+  // Only take effect on a restart, and are also kept by name for the next snapshot, see keep
+  private final Map<String, Object> restartOnly = new HashMap<>();
+  private final String frameworkName;
+  private final long failoverTimeout;
+  private final String hdfsUser;
+  private final String hdfsRole;
+  private final String principal;
+  private final String secret;
+  private final String mesosMasterUri;
+  private final String stateZkServers;
+  private final int stateZkTimeout;
+  private final String nativeLibrary;
+  private final String frameworkHostAddress;
+  private final int configServerPort;
+  private final int journalNodeCount;
+
+  private final boolean mesosDns;
+  private final String mesosDnsDomain;
+  private final int dnsCacheTtl;
+  private final int dnsNegativeCacheTtl;
+  private final boolean nativeHadoopBinaries;
+  private final boolean dynamicPorts;
+  private final String executorPath;
+  private final String configPath;
+  private final int executorHeap;
+  private final double executorCpus;
+  private final double jvmOverhead;
+  private final String jvmOpts;
+  private final Map<String, NodeConfig> nodeConfigs;
+  private final String dataDir;
+  private final String secondaryDataDir;
+  private final String dataNodeDiskAttribute;
+  private final String dataNodeDiskGlob;
+  private final boolean dataNodeDiskMountedOnly;
+  private final String domainSocketDir;
+  private final String backupDir;
+  private final String haZookeeperQuorum;
+  private final String frameworkMountPath;
+  private final int executorFetchMaxConcurrent;
+  private final int executorFetchQueueSize;
+  private final int executorFetchQueueTimeout;
+  private final int reconciliationTimeout;
+  private final int maxReconciliationTimeout;
+  private final int deadNodeTimeout;
+  private final String jreUrl;
+  private final String jreVersion;
+  private final String ldLibraryPath;
+  private final boolean configEmbedded;
+  private final boolean configWatchEnabled;
+  private final int configWatchTimeout;
+  private final int configReloadInterval;
+  private final boolean telemetryEnabled;
+  private final int telemetryInterval;
+  private final int telemetryBatchSize;
+  private final int telemetryHistorySize;
+  private final boolean stateInstrumented;
+  private final int launchTraceHistorySize;
+  private final int processLogMaxSize;
+  private final int processLogMaxSegments;
+  private final int processMaxRestarts;
+  private final int processRestartWindow;
+  private final int processRestartBackoff;
+  private final int processRestartMaxBackoff;
+  private final int processStopGracePeriod;
+  private final boolean fetcherCacheEnabled;
+  private final int healthCheckFrequency;
+  private final int healthCheckWaitingPeriod;
+  private final int healthCheckTimeout;
+  private final int healthCheckMaxFailures;
+  private final long healthCheckJournalMaxLagTxns;
+  private final int healthCheckDataNodeMaxFailedVolumes;
+  private final int healthCheckDataNodeMaxXceivers;
+  private final Map<String, String> mesosSlaveConstraints;
+  private final boolean runDatanodeExclusively;
+  private final String apiToken;
+  private final ScaleSettings scaleSettings;
+  private final int dataNodeCount;
+  private final int replication;
+
+  public ConfigSnapshot(Configuration conf) {
+    this(conf, null, ScaleSettings.NONE);
+  }
+
+  /**
+   * @param previous the snapshot this one replaces, whose restart-only values are kept, or null
+   * @param scaleSettings the settings overriding the configuration
+   */
+  public ConfigSnapshot(Configuration conf, ConfigSnapshot previous, ScaleSettings scaleSettings) {
+    frameworkName = keep(previous, "mesos.hdfs.framework.name", conf.get("mesos.hdfs.framework.name", "hdfs"));
+    failoverTimeout = keep(previous, "mesos.failover.timeout.sec",
+      conf.getLong("mesos.failover.timeout.sec", DEFAULT_FAILOVER_TIMEOUT_SEC));
+    hdfsUser = keep(previous, "mesos.hdfs.user", conf.get("mesos.hdfs.user", "root"));
+    hdfsRole = keep(previous, "mesos.hdfs.role", conf.get("mesos.hdfs.role", "*"));
+    principal = keep(previous, "mesos.hdfs.principal", conf.get("mesos.hdfs.principal", ""));
+    secret = keep(previous, "mesos.hdfs.secret", conf.get("mesos.hdfs.secret", ""));
+    mesosMasterUri = keep(previous, "mesos.master.uri", conf.get("mesos.master.uri", "zk://localhost:2181/mesos"));
+    stateZkServers = keep(previous, "mesos.hdfs.state.zk", conf.get("mesos.hdfs.state.zk", "localhost:2181"));
+    stateZkTimeout = keep(previous, "mesos.hdfs.state.zk.timeout.ms",
+      conf.getInt("mesos.hdfs.state.zk.timeout.ms", DEFAULT_ZK_TIME_MS));
+    nativeLibrary = keep(previous, "mesos.native.library",
+      conf.get("mesos.native.library", "/usr/local/lib/libmesos.so"));
+    frameworkHostAddress = keep(previous, "mesos.hdfs.framework.hostaddress",
+      conf.get("mesos.hdfs.framework.hostaddress"));
+    configServerPort = keep(previous, "mesos.hdfs.config.server.port", readConfigServerPort(conf));
+    journalNodeCount = keep(previous, "mesos.hdfs.journalnode.count",
+      conf.getInt("mesos.hdfs.journalnode.count", DEFAULT_JOURNAL_NODE_COUNT));
+
+    mesosDns = Boolean.valueOf(conf.get("mesos.hdfs.mesosdns", "false"));
+    mesosDnsDomain = conf.get("mesos.hdfs.mesosdns.domain", "mesos");
+    dnsCacheTtl = conf.getInt("mesos.hdfs.mesosdns.cache.ttl.ms", DEFAULT_DNS_CACHE_TTL_MS);
+    dnsNegativeCacheTtl = conf.getInt("mesos.hdfs.mesosdns.negative.cache.ttl.ms", DEFAULT_DNS_NEGATIVE_CACHE_TTL_MS);
+    nativeHadoopBinaries = Boolean.valueOf(conf.get("mesos.hdfs.native-hadoop-binaries", "false"));
+    dynamicPorts = conf.getBoolean("mesos.hdfs.dynamic.ports", false);
+    executorPath = conf.get("mesos.hdfs.executor.path", ".");
+    configPath = conf.get("mesos.hdfs.config.path", "etc/hadoop/hdfs-site.xml");
+    executorHeap = conf.getInt("mesos.hdfs.executor.heap.size", DEFAULT_EXECUTOR_HEAP_SIZE);
+    executorCpus = conf.getDouble("mesos.hdfs.executor.cpus", DEFAULT_EXECUTOR_CPUS);
+    jvmOverhead = conf.getDouble("mesos.hdfs.jvm.overhead", DEFAULT_JVM_OVERHEAD);
+    jvmOpts = conf.get("mesos.hdfs.jvm.opts", DEFAULT_JVM_OPTS);
+    dataDir = conf.get("mesos.hdfs.data.dir", "/var/lib/hdfs/data");
+    secondaryDataDir = conf.get("mesos.hdfs.secondary.data.dir");
+    dataNodeDiskAttribute = conf.get("mesos.hdfs.datanode.disks.attribute");
+    dataNodeDiskGlob = conf.get("mesos.hdfs.datanode.disks.glob");
+    dataNodeDiskMountedOnly = conf.getBoolean("mesos.hdfs.datanode.disks.mounted.only", true);
+    domainSocketDir = conf.get("mesos.hdfs.domain.socket.dir", "/var/run/hadoop-hdfs");
+    backupDir = conf.get("mesos.hdfs.backup.dir");
+    haZookeeperQuorum = conf.get("mesos.hdfs.zkfc.ha.zookeeper.quorum", "localhost:2181");
+    frameworkMountPath = conf.get("mesos.hdfs.framework.mnt.path", "/opt/mesosphere");
+    executorFetchMaxConcurrent = conf.getInt("mesos.hdfs.executor.fetch.max.concurrent",
+      DEFAULT_EXECUTOR_FETCH_MAX_CONCURRENT);
+    executorFetchQueueSize = conf.getInt("mesos.hdfs.executor.fetch.queue.size", DEFAULT_EXECUTOR_FETCH_QUEUE_SIZE);
+    executorFetchQueueTimeout = conf.getInt("mesos.hdfs.executor.fetch.queue.timeout.ms",
+      DEFAULT_EXECUTOR_FETCH_QUEUE_TIMEOUT_MS);
+    reconciliationTimeout = conf.getInt("mesos.reconciliation.timeout.sec", DEFAULT_RECONCILIATION_TIMEOUT_SEC);
+    maxReconciliationTimeout = conf.getInt("mesos.max-reconciliation.timeout.sec",
+      DEFAULT_MAX_RECONCILIATION_TIMEOUT_SEC);
+    deadNodeTimeout = conf.getInt("mesos.hdfs.deadnode.timeout.sec", DEFAULT_DEADNODE_TIMEOUT_SEC);
+    jreUrl = conf.get("mesos.hdfs.jre-url", "https://downloads.mesosphere.io/java/jre-7u76-linux-x64.tar.gz");
+    jreVersion = conf.get("mesos.hdfs.jre-version", "jre1.7.0_76");
+    ldLibraryPath = conf.get("mesos.hdfs.ld-library-path", "/usr/local/lib");
+    configEmbedded = conf.getBoolean("mesos.hdfs.config.embedded", true);
+    configWatchEnabled = conf.getBoolean("mesos.hdfs.config.watch.enabled", true);
+    configWatchTimeout = conf.getInt("mesos.hdfs.config.watch.timeout.sec", DEFAULT_CONFIG_WATCH_TIMEOUT_SEC);
+    configReloadInterval = conf.getInt("mesos.hdfs.config.reload.interval.ms", DEFAULT_CONFIG_RELOAD_INTERVAL_MS);
+    telemetryEnabled = conf.getBoolean("mesos.hdfs.telemetry.enabled", true);
+    telemetryInterval = conf.getInt("mesos.hdfs.telemetry.interval.ms", DEFAULT_TELEMETRY_INTERVAL_MS);
+    telemetryBatchSize = conf.getInt("mesos.hdfs.telemetry.batch.size", DEFAULT_TELEMETRY_BATCH_SIZE);
+    telemetryHistorySize = conf.getInt("mesos.hdfs.telemetry.history.size", DEFAULT_TELEMETRY_HISTORY_SIZE);
+    stateInstrumented = conf.getBoolean("mesos.hdfs.state.instrumented", true);
+    launchTraceHistorySize = conf.getInt("mesos.hdfs.launch.trace.history.size", DEFAULT_LAUNCH_TRACE_HISTORY_SIZE);
+    processLogMaxSize = conf.getInt("mesos.hdfs.process.log.max.size.mb", DEFAULT_PROCESS_LOG_MAX_SIZE_MB);
+    processLogMaxSegments = conf.getInt("mesos.hdfs.process.log.max.segments", DEFAULT_PROCESS_LOG_MAX_SEGMENTS);
+    processMaxRestarts = conf.getInt("mesos.hdfs.process.max.restarts", DEFAULT_PROCESS_MAX_RESTARTS);
+    processRestartWindow = conf.getInt("mesos.hdfs.process.restart.window.sec", DEFAULT_PROCESS_RESTART_WINDOW_SEC);
+    processRestartBackoff = conf.getInt("mesos.hdfs.process.restart.backoff.ms", DEFAULT_PROCESS_RESTART_BACKOFF_MS);
+    processRestartMaxBackoff = conf.getInt("mesos.hdfs.process.restart.max.backoff.ms",
+      DEFAULT_PROCESS_RESTART_MAX_BACKOFF_MS);
+    processStopGracePeriod = conf.getInt("mesos.hdfs.process.stop.grace.ms", DEFAULT_PROCESS_STOP_GRACE_MS);
+    fetcherCacheEnabled = conf.getBoolean("mesos.hdfs.fetcher.cache.enabled", true);
+    healthCheckFrequency = conf.getInt("mesos.hdfs.healthcheck.frequency.ms", DEFAULT_HEALTH_CHECK_FREQUENCY_MS);
+    healthCheckWaitingPeriod = conf.getInt("mesos.hdfs.healthcheck.waitingperiod.ms",
+      DEFAULT_HEALTH_CHECK_WAITING_PERIOD_MS);
+    healthCheckTimeout = conf.getInt("mesos.hdfs.healthcheck.timeout.ms", DEFAULT_HEALTH_CHECK_TIMEOUT_MS);
+    healthCheckMaxFailures = Math.max(1, conf.getInt("mesos.hdfs.healthcheck.max.failures",
+      DEFAULT_HEALTH_CHECK_MAX_FAILURES));
+    healthCheckJournalMaxLagTxns = conf.getLong("mesos.hdfs.healthcheck.journalnode.max.lag.txns",
+      DEFAULT_HEALTH_CHECK_JOURNAL_MAX_LAG_TXNS);
+    healthCheckDataNodeMaxFailedVolumes = conf.getInt("mesos.hdfs.healthcheck.datanode.max.failed.volumes",
+      DEFAULT_HEALTH_CHECK_DATANODE_MAX_FAILED_VOLUMES);
+    healthCheckDataNodeMaxXceivers = conf.getInt("mesos.hdfs.healthcheck.datanode.max.xceivers",
+      DEFAULT_HEALTH_CHECK_DATANODE_MAX_XCEIVERS);
+    mesosSlaveConstraints = Collections.unmodifiableMap(parseConstraints(conf.get("mesos.hdfs.constraints")));
+    runDatanodeExclusively = conf.getBoolean("mesos.hdfs.datanode.exclusive", true);
+    apiToken = conf.get("mesos.hdfs.api.token", "");
+
+    this.scaleSettings = scaleSettings;
+    dataNodeCount = scaleSettings.getDataNodeCount() != null
+      ? scaleSettings.getDataNodeCount()
+      : conf.getInt("mesos.hdfs.datanode.count", ALL_HOSTS);
+    replication = conf.getInt("mesos.hdfs.replication", DEFAULT_REPLICATION);
+    Map<String, NodeConfig> configs = new HashMap<>();
+    for (String nodeType : NODE_TYPES) {
+      NodeConfig config = createNodeConfig(conf, nodeType);
+      if (scaleSettings.getCpus(nodeType) != null) {
+        config.setCpus(scaleSettings.getCpus(nodeType));
+      }
+      if (scaleSettings.getHeap(nodeType) != null) {
+        config.setMaxHeap(scaleSettings.getHeap(nodeType));
+      }
+      configs.put(nodeType, config);
+    }
+    nodeConfigs = Collections.unmodifiableMap(configs);
+  }
+
+  /**
+   * Returns the value of a restart-only setting, which is the previous snapshot's if there is one, and records it for
+   * the snapshot replacing this one.
+   */
+  private <T> T keep(ConfigSnapshot previous, String name, T configured) {
+    T value = configured;
+    if (previous != null) {
+      @SuppressWarnings("unchecked")
+      T kept = (T) previous.restartOnly.get(name);
+      if (!Objects.equals(kept, configured)) {
+        log.warn("Ignoring the new value of " + name + " until the scheduler restarts");
+      }
+      value = kept;
+    }
+    restartOnly.put(name, value);
+    return value;
+  }
+
+  // The port can be changed by setting the PORT0 environment variable
+  // See /bin/hdfs-mesos for more details
+  private static int readConfigServerPort(Configuration conf) {
+    String configServerPortString = System.getProperty("mesos.hdfs.config.server.port");
+    if (configServerPortString == null) {
+      configServerPortString = conf.get("mesos.hdfs.config.server.port", "8765");
+    }
+    return Integer.parseInt(configServerPortString);
+  }
+
+  private static NodeConfig createNodeConfig(Configuration conf, String nodeType) {
+    NodeConfig config = new NodeConfig();
+    config.setType(nodeType);
+    switch (nodeType) {
+      case HDFSConstants.ZKFC_NODE_ID:
+        config.setCpus(conf.getDouble("mesos.hdfs.executor.cpus", DEFAULT_EXECUTOR_CPUS));
+        config.setMaxHeap(conf.getInt("mesos.hdfs.zkfc.heap.size",
+          conf.getInt("mesos.hdfs.hadoop.heap.size", DEFAULT_HADOOP_HEAP_SIZE)));
+        break;
+      case HDFSConstants.NAME_NODE_ID:
+        config.setCpus(conf.getDouble("mesos.hdfs.namenode.cpus", DEFAULT_NAMENODE_CPUS));
+        config.setMaxHeap(conf.getInt("mesos.hdfs.namenode.heap.size", DEFAULT_NAMENODE_HEAP_SIZE));
+        break;
+      case HDFSConstants.DATA_NODE_ID:
+        config.setCpus(conf.getDouble("mesos.hdfs.datanode.cpus", DEFAULT_DATANODE_CPUS));
+        config.setMaxHeap(conf.getInt("mesos.hdfs.datanode.heap.size", DEFAULT_DATANODE_HEAP_SIZE));
+        break;
+      case HDFSConstants.JOURNAL_NODE_ID:
+        config.setCpus(conf.getDouble("mesos.hdfs.journalnode.cpus", DEFAULT_JOURNAL_CPUS));
+        config.setMaxHeap(conf.getInt("mesos.hdfs.journalnode.heap.size",
+          conf.getInt("mesos.hdfs.hadoop.heap.size", DEFAULT_HADOOP_HEAP_SIZE)));
+        break;
+      default:
+        throw new ConfigurationException("Invalid node type " + nodeType);
+    }
+    return config;
+  }
+
+  private static Map<String, String> parseConstraints(String constraints) {
+    Map<String, String> constraintsMap = new LinkedHashMap<>();
+    if (!StringUtils.isBlank(constraints)) {
+      String[] constraintsPairs = constraints.split(";");
+      for (String pair : constraintsPairs) {
+        String[] keyValue = pair.split(":");
+        if (keyValue.length > 0) {
+          String key = keyValue[0];
+          String value = keyValue.length == 1 ? "" :
+            keyValue.length == 2 ? keyValue[1] : pair.substring(pair.indexOf(":"));
+          constraintsMap.put(key, value);
+        }
+      }
+    }
+    return constraintsMap;
+  }
+
+  public NodeConfig getNodeConfig(String nodeType) {
+    return nodeConfigs.get(nodeType);
+  }
+
+  public String getPrincipal() {
+    return principal;
+  }
+
+  public String getSecret() {
+    return secret;
+  }
+
+  public boolean usingMesosDns() {
+    return mesosDns;
+  }
+
+  public String getMesosDnsDomain() {
+    return mesosDnsDomain;
+  }
+
+  public int getDnsCacheTtl() {
+    return dnsCacheTtl;
+  }
+
+  public int getDnsNegativeCacheTtl() {
+    return dnsNegativeCacheTtl;
+  }
+
+  public boolean usingNativeHadoopBinaries() {
+    return nativeHadoopBinaries;
+  }
+
+  public boolean usingDynamicPorts() {
+    return dynamicPorts;
+  }
+
+  public String getExecutorPath() {
+    return executorPath;
+  }
+
+  public String getConfigPath() {
+    return configPath;
+  }
+
+  public int getExecutorHeap() {
+    return executorHeap;
+  }
+
+  public double getJvmOverhead() {
+    return jvmOverhead;
+  }
+
+  public String getJvmOpts() {
+    return jvmOpts;
+  }
+
+  public double getExecutorCpus() {
+    return executorCpus;
+  }
+
+  public int getJournalNodeCount() {
+    return journalNodeCount;
+  }
+
+  public String getFrameworkName() {
+    return frameworkName;
+  }
+
+  public long getFailoverTimeout() {
+    return failoverTimeout;
+  }
+
+  public String getHdfsUser() {
+    return hdfsUser;
+  }
+
+  public String getHdfsRole() {
+    return hdfsRole;
+  }
+
+  public String getMesosMasterUri() {
+    return mesosMasterUri;
+  }
+
+  public String getDataDir() {
+    return dataDir;
+  }
+
+  public String getSecondaryDataDir() {
+    return secondaryDataDir;
+  }
+
+  public String getDataNodeDiskAttribute() {
+    return dataNodeDiskAttribute;
+  }
+
+  public String getDataNodeDiskGlob() {
+    return dataNodeDiskGlob;
+  }
+
+  public boolean getDataNodeDiskMountedOnly() {
+    return dataNodeDiskMountedOnly;
+  }
+
+  public String getDomainSocketDir() {
+    return domainSocketDir;
+  }
+
+  public String getBackupDir() {
+    return backupDir;
+  }
+
+  public String getHaZookeeperQuorum() {
+    return haZookeeperQuorum;
+  }
+
+  public String getStateZkServers() {
+    return stateZkServers;
+  }
+
+  public int getStateZkTimeout() {
+    return stateZkTimeout;
+  }
+
+  public String getNativeLibrary() {
+    return nativeLibrary;
+  }
+
+  public String getFrameworkMountPath() {
+    return frameworkMountPath;
+  }
+
+  /**
+   * Returns the configured host address, or else the address of the local host, looked up on each call since it is
+   * rarely read.
+   */
+  public String getFrameworkHostAddress() {
+    if (frameworkHostAddress != null) {
+      return frameworkHostAddress;
+    }
+    try {
+      return InetAddress.getLocalHost().getHostAddress();
+    } catch (UnknownHostException e) {
+      throw new ConfigurationException(e);
+    }
+  }
+
+  public int getConfigServerPort() {
+    return configServerPort;
+  }
+
+  public int getExecutorFetchMaxConcurrent() {
+    return executorFetchMaxConcurrent;
+  }
+
+  public int getExecutorFetchQueueSize() {
+    return executorFetchQueueSize;
+  }
+
+  public int getExecutorFetchQueueTimeout() {
+    return executorFetchQueueTimeout;
+  }
+
+  public int getReconciliationTimeout() {
+    return reconciliationTimeout;
+  }
+
+  public int getMaxReconciliationTimeout() {
+    return maxReconciliationTimeout;
+  }
+
+  public int getDeadNodeTimeout() {
+    return deadNodeTimeout;
+  }
+
+  public String getJreUrl() {
+    return jreUrl;
+  }
+
+  public boolean isConfigEmbedded() {
+    return configEmbedded;
+  }
+
+  public boolean isConfigWatchEnabled() {
+    return configWatchEnabled;
+  }
+
+  public int getConfigWatchTimeout() {
+    return configWatchTimeout;
+  }
+
+  public int getConfigReloadInterval() {
+    return configReloadInterval;
+  }
+
+  public boolean isTelemetryEnabled() {
+    return telemetryEnabled;
+  }
+
+  public int getTelemetryInterval() {
+    return telemetryInterval;
+  }
+
+  public int getTelemetryBatchSize() {
+    return telemetryBatchSize;
+  }
+
+  public int getTelemetryHistorySize() {
+    return telemetryHistorySize;
+  }
+
+  public boolean isStateInstrumented() {
+    return stateInstrumented;
+  }
+
+  public int getLaunchTraceHistorySize() {
+    return launchTraceHistorySize;
+  }
+
+  public int getProcessLogMaxSize() {
+    return processLogMaxSize;
+  }
+
+  public int getProcessLogMaxSegments() {
+    return processLogMaxSegments;
+  }
+
+  public int getProcessMaxRestarts() {
+    return processMaxRestarts;
+  }
+
+  public int getProcessRestartWindow() {
+    return processRestartWindow;
+  }
+
+  public int getProcessRestartBackoff() {
+    return processRestartBackoff;
+  }
+
+  public int getProcessRestartMaxBackoff() {
+    return processRestartMaxBackoff;
+  }
+
+  public int getProcessStopGracePeriod() {
+    return processStopGracePeriod;
+  }
+
+  public boolean isFetcherCacheEnabled() {
+    return fetcherCacheEnabled;
+  }
+
+  public String getLdLibraryPath() {
+    return ldLibraryPath;
+  }
+
+  public String getJreVersion() {
+    return jreVersion;
+  }
+
+  public int getHealthCheckFrequency() {
+    return healthCheckFrequency;
+  }
+
+  public int getHealthCheckWaitingPeriod() {
+    return healthCheckWaitingPeriod;
+  }
+
+  public int getHealthCheckTimeout() {
+    return healthCheckTimeout;
+  }
+
+  public int getHealthCheckMaxFailures() {
+    return healthCheckMaxFailures;
+  }
+
+  public long getHealthCheckJournalMaxLagTxns() {
+    return healthCheckJournalMaxLagTxns;
+  }
+
+  public int getHealthCheckDataNodeMaxFailedVolumes() {
+    return healthCheckDataNodeMaxFailedVolumes;
+  }
+
+  public int getHealthCheckDataNodeMaxXceivers() {
+    return healthCheckDataNodeMaxXceivers;
+  }
+
+  /**
+   * Returns the constraints an offer's attributes must meet, parsed from mesos.hdfs.constraints.  The map cannot be
+   * modified.
+   */
+  public Map<String, String> getMesosSlaveConstraints() {
+    return mesosSlaveConstraints;
+  }
+
+  public boolean getRunDatanodeExclusively() {
+    return runDatanodeExclusively;
+  }
+
+  /**
+   * Returns the token requests changing the scheduler's settings must carry, or an empty string if they are refused.
+   */
+  public String getApiToken() {
+    return apiToken;
+  }
+
+  public ScaleSettings getScaleSettings() {
+    return scaleSettings;
+  }
+
+  /**
+   * Returns the target number of DataNodes, or ALL_HOSTS.
+   */
+  public int getDataNodeCount() {
+    return dataNodeCount;
+  }
+
+  /**
+   * Returns the value of dfs.replication rendered into hdfs-site.xml.
+   */
+  public int getReplication() {
+    return replication;
+  }
+}
@@ -0,0 +1,71 @@
+package org.apache.mesos.hdfs.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A rendered hdfs-site.xml shipped to the executor in its ExecutorInfo data, so the executor can start its nodes
+ * without fetching the config from the config server.  It carries the version of the config and the URL to fetch
+ * later versions from.  The whole envelope is gzipped.
+ */
+public final class EmbeddedConfig {
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+
+  private final String version;
+  private final String url;
+  private final byte[] content;
+
+  public EmbeddedConfig(String version, String url, byte[] content) {
+    this.version = version;
+    this.url = url;
+    this.content = content.clone();
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public byte[] getContent() {
+    return content.clone();
+  }
+
+  public byte[] toBytes() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(version);
+      out.writeUTF(url);
+      out.writeInt(content.length);
+      out.write(content);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static EmbeddedConfig fromBytes(byte[] data) throws IOException {
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+      int formatVersion = in.readInt();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException("Unsupported embedded config format: " + formatVersion);
+      }
+      String version = in.readUTF();
+      String url = in.readUTF();
+      int length = in.readInt();
+      if (length < 0 || length > MAX_CONTENT_LENGTH) {
+        throw new IOException("Invalid embedded config length: " + length);
+      }
+      byte[] content = new byte[length];
+      in.readFully(content);
+      return new EmbeddedConfig(version, url, content);
+    }
+  }
+}
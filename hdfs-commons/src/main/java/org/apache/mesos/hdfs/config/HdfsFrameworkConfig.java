@@ -1,69 +1,51 @@
 package org.apache.mesos.hdfs.config;
 
 import com.google.inject.Singleton;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
-import org.apache.mesos.hdfs.util.HDFSConstants;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.HashMap;
+import java.io.File;
 import java.util.Map;
+import java.util.Observable;
 import java.util.Properties;
 
 /**
  * Provides executor configurations for launching processes at the slave leveraging hadoop
  * configurations.
+ * <p/>
+ * Values are read from a ConfigSnapshot parsed once from the configuration.  {@link #reload()} parses the
+ * configuration again and swaps the new snapshot in, so a caller which reads several related values should take
+ * them from one {@link #getSnapshot()} rather than from several getters.  Observers are notified with the new snapshot
+ * whenever one is swapped in.
  */
 @Singleton
-public class HdfsFrameworkConfig {
-
-  private Configuration hadoopConfig;
-
-  private static final int DEFAULT_HADOOP_HEAP_SIZE = 512;
-  private static final int DEFAULT_EXECUTOR_HEAP_SIZE = 256;
-  private static final int DEFAULT_DATANODE_HEAP_SIZE = 1024;
-  private static final int DEFAULT_NAMENODE_HEAP_SIZE = 4096;
-
-  private static final double DEFAULT_CPUS = 0.5;
-  private static final double DEFAULT_EXECUTOR_CPUS = DEFAULT_CPUS;
-  private static final double DEFAULT_NAMENODE_CPUS = 1;
-  private static final double DEFAULT_JOURNAL_CPUS = 1;
-  private static final double DEFAULT_DATANODE_CPUS = 1;
-
-  private static final double DEFAULT_JVM_OVERHEAD = 1.35;
-  private static final int DEFAULT_JOURNAL_NODE_COUNT = 3;
-  private static final int DEFAULT_FAILOVER_TIMEOUT_SEC = 31449600;
-  private static final int DEFAULT_ZK_TIME_MS = 20000;
-  private static final int DEFAULT_RECONCILIATION_TIMEOUT_SEC = 4;
-  private static final int DEFAULT_MAX_RECONCILIATION_TIMEOUT_SEC = 30;
-  private static final int DEFAULT_DEADNODE_TIMEOUT_SEC = 90;
-  private static final int DEFAULT_HEALTH_CHECK_FREQUENCY_MS = 60000;
-  private static final int DEFAULT_HEALTH_CHECK_WAITING_PERIOD_MS = 900000;
-
-  private static final String[] NODE_TYPES = {HDFSConstants.DATA_NODE_ID,
-    HDFSConstants.NAME_NODE_ID, HDFSConstants.ZKFC_NODE_ID, HDFSConstants.JOURNAL_NODE_ID};
+public class HdfsFrameworkConfig extends Observable {
 
   private final Log log = LogFactory.getLog(HdfsFrameworkConfig.class);
 
-  private HashMap<String, NodeConfig> nodeConfigMap = new HashMap<>();
+  private final Configuration hadoopConfig;
+  private final File configFile;
+  private volatile ConfigSnapshot snapshot;
 
   public HdfsFrameworkConfig() {
     // The path is configurable via the mesos.conf.path system property
     // so it can be changed when starting up the scheduler via bash
     Properties props = System.getProperties();
-    Path configPath = new Path(props.getProperty("mesos.conf.path", "etc/hadoop/mesos-site.xml"));
+    String configPath = props.getProperty("mesos.conf.path", "etc/hadoop/mesos-site.xml");
     Configuration configuration = new Configuration();
-    configuration.addResource(configPath);
+    configuration.addResource(new Path(configPath));
     configuration.addResource(getEnvConfiguration());
-    setConf(configuration);
+    this.hadoopConfig = configuration;
+    this.configFile = new File(configPath);
+    this.snapshot = new ConfigSnapshot(configuration);
   }
 
   public HdfsFrameworkConfig(Configuration conf) {
-    setConf(conf);
+    this.hadoopConfig = conf;
+    this.configFile = null;
+    this.snapshot = new ConfigSnapshot(conf);
   }
 
   private Configuration getEnvConfiguration() {
@@ -82,317 +64,362 @@ public class HdfsFrameworkConfig {
     return cfg;
   }
 
-  private void setConf(Configuration conf) {
-    this.hadoopConfig = conf;
-    initializeConfigMaps();
+  /**
+   * Returns the current snapshot of the configuration.  It never changes, so values read from it are consistent
+   * with each other even if the configuration is reloaded meanwhile.
+   */
+  public ConfigSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Returns the mesos-site.xml file this configuration was read from, or null if it was given a Configuration.
+   */
+  public File getConfigFile() {
+    return configFile;
   }
 
-  private void initializeConfigMaps() {
-    nodeConfigMap = new HashMap<>();
-    for (String nodeType : NODE_TYPES) {
-      nodeConfigMap.put(nodeType, initializeNodeConfig(nodeType));
+  /**
+   * Reads the configuration's resources again and swaps in a snapshot of them.  Values which only take effect on a
+   * restart keep their current value.  If the configuration cannot be parsed the current snapshot is kept.
+   */
+  public void reload() {
+    ConfigSnapshot reloaded;
+    synchronized (this) {
+      hadoopConfig.reloadConfiguration();
+      try {
+        reloaded = new ConfigSnapshot(hadoopConfig, snapshot, snapshot.getScaleSettings());
+      } catch (RuntimeException e) {
+        throw new ConfigurationException("Keeping the current configuration, the reloaded one is invalid", e);
+      }
+      snapshot = reloaded;
+    }
+    log.info("Reloaded configuration");
+    snapshotChanged(reloaded);
+  }
+
+  /**
+   * Swaps in a snapshot with the given settings overriding the configuration.
+   */
+  public void setScaleSettings(ScaleSettings scaleSettings) {
+    ConfigSnapshot scaled;
+    synchronized (this) {
+      scaled = new ConfigSnapshot(hadoopConfig, snapshot, scaleSettings);
+      snapshot = scaled;
     }
+    log.info("Applied " + scaleSettings);
+    snapshotChanged(scaled);
   }
 
-  private NodeConfig initializeNodeConfig(String nodeType) {
-    NodeConfig config = new NodeConfig();
-    config.setCpus(getTaskCpus(nodeType));
-    config.setMaxHeap(getTaskHeapSize(nodeType));
-    config.setType(nodeType);
-    return config;
+  private void snapshotChanged(ConfigSnapshot changed) {
+    setChanged();
+    notifyObservers(changed);
   }
 
-  private Configuration getConf() {
-    return hadoopConfig;
+  public ScaleSettings getScaleSettings() {
+    return snapshot.getScaleSettings();
   }
 
   public NodeConfig getNodeConfig(String nodeType) {
-    return nodeConfigMap.get(nodeType);
+    return snapshot.getNodeConfig(nodeType);
   }
 
   public String getPrincipal() {
-    return getConf().get("mesos.hdfs.principal", "");
+    return snapshot.getPrincipal();
   }
 
   public String getSecret() {
-    return getConf().get("mesos.hdfs.secret", "");
+    return snapshot.getSecret();
   }
 
   public boolean cramCredentialsEnabled() {
-    String principal = getPrincipal();
-    String secret = getSecret();
-    boolean principalExists = !principal.isEmpty();
-    boolean secretExists = !secret.isEmpty();
-
-    return principalExists && secretExists;
+    ConfigSnapshot current = snapshot;
+    return !current.getPrincipal().isEmpty() && !current.getSecret().isEmpty();
   }
 
   public boolean usingMesosDns() {
-    return Boolean.valueOf(getConf().get("mesos.hdfs.mesosdns", "false"));
+    return snapshot.usingMesosDns();
   }
 
   public String getMesosDnsDomain() {
-    return getConf().get("mesos.hdfs.mesosdns.domain", "mesos");
-  }
-
-  public boolean usingNativeHadoopBinaries() {
-    return Boolean.valueOf(getConf().get("mesos.hdfs.native-hadoop-binaries", "false"));
+    return snapshot.getMesosDnsDomain();
   }
 
-  public String getExecutorPath() {
-    return getConf().get("mesos.hdfs.executor.path", ".");
+  public int getDnsCacheTtl() {
+    return snapshot.getDnsCacheTtl();
   }
 
-  public String getConfigPath() {
-    return getConf().get("mesos.hdfs.config.path", "etc/hadoop/hdfs-site.xml");
+  public int getDnsNegativeCacheTtl() {
+    return snapshot.getDnsNegativeCacheTtl();
   }
 
-  private int getHadoopHeapSize() {
-    return getConf().getInt("mesos.hdfs.hadoop.heap.size", DEFAULT_HADOOP_HEAP_SIZE);
+  public boolean usingNativeHadoopBinaries() {
+    return snapshot.usingNativeHadoopBinaries();
   }
 
-  private int getDataNodeHeapSize() {
-    return getConf().getInt("mesos.hdfs.datanode.heap.size", DEFAULT_DATANODE_HEAP_SIZE);
+  public boolean usingDynamicPorts() {
+    return snapshot.usingDynamicPorts();
   }
 
-  private int getJournalNodeHeapSize() {
-    return getHadoopHeapSize();
+  public String getExecutorPath() {
+    return snapshot.getExecutorPath();
   }
 
-  private int getNameNodeHeapSize() {
-    return getConf().getInt("mesos.hdfs.namenode.heap.size", DEFAULT_NAMENODE_HEAP_SIZE);
+  public String getConfigPath() {
+    return snapshot.getConfigPath();
   }
 
   public int getExecutorHeap() {
-    return getConf().getInt("mesos.hdfs.executor.heap.size", DEFAULT_EXECUTOR_HEAP_SIZE);
-  }
-
-  private int getZkfcHeapSize() {
-    return getHadoopHeapSize();
-  }
-
-  private int getTaskHeapSize(String taskName) {
-    int size;
-    switch (taskName) {
-      case "zkfc":
-        size = getZkfcHeapSize();
-        break;
-      case "namenode":
-        size = getNameNodeHeapSize();
-        break;
-      case "datanode":
-        size = getDataNodeHeapSize();
-        break;
-      case "journalnode":
-        size = getJournalNodeHeapSize();
-        break;
-      default:
-        final String msg = "Invalid request for heapsize for taskName = " + taskName;
-        log.error(msg);
-        throw new ConfigurationException(msg);
-    }
-    return size;
+    return snapshot.getExecutorHeap();
   }
 
   public double getJvmOverhead() {
-    return getConf().getDouble("mesos.hdfs.jvm.overhead", DEFAULT_JVM_OVERHEAD);
+    return snapshot.getJvmOverhead();
   }
 
   public String getJvmOpts() {
-    return getConf().get(
-      "mesos.hdfs.jvm.opts", ""
-        + "-XX:+UseConcMarkSweepGC "
-        + "-XX:+CMSClassUnloadingEnabled "
-        + "-XX:+UseTLAB "
-        + "-XX:+AggressiveOpts "
-        + "-XX:+UseCompressedOops "
-        + "-XX:+UseFastEmptyMethods "
-        + "-XX:+UseFastAccessorMethods "
-        + "-Xss256k "
-        + "-XX:+AlwaysPreTouch "
-        + "-XX:+UseParNewGC "
-        + "-Djava.library.path=/usr/lib:/usr/local/lib:lib/native");
+    return snapshot.getJvmOpts();
   }
 
   public double getExecutorCpus() {
-    return getConf().getDouble("mesos.hdfs.executor.cpus", DEFAULT_EXECUTOR_CPUS);
-  }
-
-  private double getZkfcCpus() {
-    return getExecutorCpus();
-  }
-
-  private double getNameNodeCpus() {
-    return getConf().getDouble("mesos.hdfs.namenode.cpus", DEFAULT_NAMENODE_CPUS);
-  }
-
-  private double getJournalNodeCpus() {
-    return getConf().getDouble("mesos.hdfs.journalnode.cpus", DEFAULT_JOURNAL_CPUS);
-  }
-
-  private double getDataNodeCpus() {
-    return getConf().getDouble("mesos.hdfs.datanode.cpus", DEFAULT_DATANODE_CPUS);
-  }
-
-  private double getTaskCpus(String taskName) {
-    double cpus = DEFAULT_CPUS;
-    switch (taskName) {
-      case "zkfc":
-        cpus = getZkfcCpus();
-        break;
-      case "namenode":
-        cpus = getNameNodeCpus();
-        break;
-      case "datanode":
-        cpus = getDataNodeCpus();
-        break;
-      case "journalnode":
-        cpus = getJournalNodeCpus();
-        break;
-      default:
-        final String msg = "Invalid request for CPUs for taskName= " + taskName;
-        log.error(msg);
-        throw new ConfigurationException(msg);
-    }
-    return cpus;
+    return snapshot.getExecutorCpus();
   }
 
   public int getJournalNodeCount() {
-    return getConf().getInt("mesos.hdfs.journalnode.count", DEFAULT_JOURNAL_NODE_COUNT);
+    return snapshot.getJournalNodeCount();
   }
 
   public String getFrameworkName() {
-    return getConf().get("mesos.hdfs.framework.name", "hdfs");
+    return snapshot.getFrameworkName();
   }
 
   public long getFailoverTimeout() {
-    return getConf().getLong("mesos.failover.timeout.sec", DEFAULT_FAILOVER_TIMEOUT_SEC);
+    return snapshot.getFailoverTimeout();
   }
 
   // TODO(elingg) Most likely this user name will change to HDFS
   public String getHdfsUser() {
-    return getConf().get("mesos.hdfs.user", "root");
+    return snapshot.getHdfsUser();
   }
 
   // TODO(elingg) This role needs to be updated.
   public String getHdfsRole() {
-    return getConf().get("mesos.hdfs.role", "*");
+    return snapshot.getHdfsRole();
   }
 
   public String getMesosMasterUri() {
-    return getConf().get("mesos.master.uri", "zk://localhost:2181/mesos");
+    return snapshot.getMesosMasterUri();
   }
 
   public String getDataDir() {
-    return getConf().get("mesos.hdfs.data.dir", "/var/lib/hdfs/data");
+    return snapshot.getDataDir();
   }
 
   public String getSecondaryDataDir() {
-    return getConf().get("mesos.hdfs.secondary.data.dir");
+    return snapshot.getSecondaryDataDir();
+  }
+
+  public String getDataNodeDiskAttribute() {
+    return snapshot.getDataNodeDiskAttribute();
+  }
+
+  public String getDataNodeDiskGlob() {
+    return snapshot.getDataNodeDiskGlob();
+  }
+
+  public boolean getDataNodeDiskMountedOnly() {
+    return snapshot.getDataNodeDiskMountedOnly();
   }
 
   public String getDomainSocketDir() {
-    return getConf().get("mesos.hdfs.domain.socket.dir", "/var/run/hadoop-hdfs");
+    return snapshot.getDomainSocketDir();
   }
 
   public String getBackupDir() {
-    return getConf().get("mesos.hdfs.backup.dir");
+    return snapshot.getBackupDir();
   }
 
   public String getHaZookeeperQuorum() {
-    return getConf().get("mesos.hdfs.zkfc.ha.zookeeper.quorum", "localhost:2181");
+    return snapshot.getHaZookeeperQuorum();
   }
 
   public String getStateZkServers() {
-    return getConf().get("mesos.hdfs.state.zk", "localhost:2181");
+    return snapshot.getStateZkServers();
   }
 
   public int getStateZkTimeout() {
-    return getConf().getInt("mesos.hdfs.state.zk.timeout.ms", DEFAULT_ZK_TIME_MS);
+    return snapshot.getStateZkTimeout();
   }
 
   public String getNativeLibrary() {
-    return getConf().get("mesos.native.library", "/usr/local/lib/libmesos.so");
+    return snapshot.getNativeLibrary();
   }
 
   public String getFrameworkMountPath() {
-    return getConf().get("mesos.hdfs.framework.mnt.path", "/opt/mesosphere");
+    return snapshot.getFrameworkMountPath();
   }
 
   public String getFrameworkHostAddress() {
-    String hostAddress = getConf().get("mesos.hdfs.framework.hostaddress");
-    if (hostAddress == null) {
-      try {
-        hostAddress = InetAddress.getLocalHost().getHostAddress();
-      } catch (UnknownHostException e) {
-        throw new ConfigurationException(e);
-      }
-    }
-    return hostAddress;
+    return snapshot.getFrameworkHostAddress();
   }
 
-  // The port can be changed by setting the PORT0 environment variable
-  // See /bin/hdfs-mesos for more details
   public int getConfigServerPort() {
-    String configServerPortString = System.getProperty("mesos.hdfs.config.server.port");
-    if (configServerPortString == null) {
-      configServerPortString = getConf().get("mesos.hdfs.config.server.port", "8765");
-    }
-    return Integer.parseInt(configServerPortString);
+    return snapshot.getConfigServerPort();
+  }
+
+  public int getExecutorFetchMaxConcurrent() {
+    return snapshot.getExecutorFetchMaxConcurrent();
+  }
+
+  public int getExecutorFetchQueueSize() {
+    return snapshot.getExecutorFetchQueueSize();
+  }
+
+  public int getExecutorFetchQueueTimeout() {
+    return snapshot.getExecutorFetchQueueTimeout();
   }
 
   public int getReconciliationTimeout() {
-    return getConf().getInt("mesos.reconciliation.timeout.sec", DEFAULT_RECONCILIATION_TIMEOUT_SEC);
+    return snapshot.getReconciliationTimeout();
   }
 
   public int getMaxReconciliationTimeout() {
-    return getConf().getInt("mesos.max-reconciliation.timeout.sec", DEFAULT_MAX_RECONCILIATION_TIMEOUT_SEC);
+    return snapshot.getMaxReconciliationTimeout();
   }
 
   public int getDeadNodeTimeout() {
-    return getConf().getInt("mesos.hdfs.deadnode.timeout.sec", DEFAULT_DEADNODE_TIMEOUT_SEC);
+    return snapshot.getDeadNodeTimeout();
   }
 
   public String getJreUrl() {
-    return getConf().get("mesos.hdfs.jre-url", "https://downloads.mesosphere.io/java/jre-7u76-linux-x64.tar.gz");
+    return snapshot.getJreUrl();
+  }
+
+  public boolean isConfigEmbedded() {
+    return snapshot.isConfigEmbedded();
+  }
+
+  public boolean isConfigWatchEnabled() {
+    return snapshot.isConfigWatchEnabled();
+  }
+
+  public int getConfigWatchTimeout() {
+    return snapshot.getConfigWatchTimeout();
+  }
+
+  public int getConfigReloadInterval() {
+    return snapshot.getConfigReloadInterval();
+  }
+
+  public boolean isTelemetryEnabled() {
+    return snapshot.isTelemetryEnabled();
+  }
+
+  public int getTelemetryInterval() {
+    return snapshot.getTelemetryInterval();
+  }
+
+  public int getTelemetryBatchSize() {
+    return snapshot.getTelemetryBatchSize();
+  }
+
+  public int getTelemetryHistorySize() {
+    return snapshot.getTelemetryHistorySize();
+  }
+
+  public boolean isStateInstrumented() {
+    return snapshot.isStateInstrumented();
+  }
+
+  public int getLaunchTraceHistorySize() {
+    return snapshot.getLaunchTraceHistorySize();
+  }
+
+  public int getProcessLogMaxSize() {
+    return snapshot.getProcessLogMaxSize();
+  }
+
+  public int getProcessLogMaxSegments() {
+    return snapshot.getProcessLogMaxSegments();
+  }
+
+  public int getProcessMaxRestarts() {
+    return snapshot.getProcessMaxRestarts();
+  }
+
+  public int getProcessRestartWindow() {
+    return snapshot.getProcessRestartWindow();
+  }
+
+  public int getProcessRestartBackoff() {
+    return snapshot.getProcessRestartBackoff();
+  }
+
+  public int getProcessRestartMaxBackoff() {
+    return snapshot.getProcessRestartMaxBackoff();
+  }
+
+  public int getProcessStopGracePeriod() {
+    return snapshot.getProcessStopGracePeriod();
+  }
+
+  public boolean isFetcherCacheEnabled() {
+    return snapshot.isFetcherCacheEnabled();
   }
 
   public String getLdLibraryPath() {
-    return getConf().get("mesos.hdfs.ld-library-path", "/usr/local/lib");
+    return snapshot.getLdLibraryPath();
   }
 
   public String getJreVersion() {
-    return getConf().get("mesos.hdfs.jre-version", "jre1.7.0_76");
+    return snapshot.getJreVersion();
   }
 
   public int getHealthCheckFrequency() {
-    return getConf().getInt("mesos.hdfs.healthcheck.frequency.ms", DEFAULT_HEALTH_CHECK_FREQUENCY_MS);
+    return snapshot.getHealthCheckFrequency();
   }
 
   public int getHealthCheckWaitingPeriod() {
-    return getConf().getInt("mesos.hdfs.healthcheck.waitingperiod.ms", DEFAULT_HEALTH_CHECK_WAITING_PERIOD_MS);
+    return snapshot.getHealthCheckWaitingPeriod();
   }
 
-  public Map<String, String> getMesosSlaveConstraints() {
-    String constraints = getConf().get("mesos.hdfs.constraints");
-    Map<String, String> constraintsMap = new HashMap<String, String>();
-    if (!StringUtils.isBlank(constraints)) {
-      String[] constraintsPairs = constraints.split(";");
-      for (String pair : constraintsPairs) {
-        String[] keyValue = pair.split(":");
-        if (keyValue.length > 0) {
-          String key = keyValue[0];
-          String value = keyValue.length == 1 ? "" :
-            keyValue.length == 2 ? keyValue[1] : pair.substring(pair.indexOf(":"));
-          constraintsMap.put(key, value);
-        }
-      }
-    }
+  public int getHealthCheckTimeout() {
+    return snapshot.getHealthCheckTimeout();
+  }
+
+  public int getHealthCheckMaxFailures() {
+    return snapshot.getHealthCheckMaxFailures();
+  }
+
+  public long getHealthCheckJournalMaxLagTxns() {
+    return snapshot.getHealthCheckJournalMaxLagTxns();
+  }
+
+  public int getHealthCheckDataNodeMaxFailedVolumes() {
+    return snapshot.getHealthCheckDataNodeMaxFailedVolumes();
+  }
 
-    return constraintsMap;
+  public int getHealthCheckDataNodeMaxXceivers() {
+    return snapshot.getHealthCheckDataNodeMaxXceivers();
+  }
+
+  public Map<String, String> getMesosSlaveConstraints() {
+    return snapshot.getMesosSlaveConstraints();
   }
 
   public boolean getRunDatanodeExclusively() {
-    return getConf().getBoolean("mesos.hdfs.datanode.exclusive", true);
+    return snapshot.getRunDatanodeExclusively();
+  }
+
+  public String getApiToken() {
+    return snapshot.getApiToken();
+  }
+
+  public int getDataNodeCount() {
+    return snapshot.getDataNodeCount();
+  }
+
+  public int getReplication() {
+    return snapshot.getReplication();
   }
 }
@@ -0,0 +1,105 @@
+package org.apache.mesos.hdfs.config;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings changed at runtime which override the configuration: the target number of DataNodes and the cpus and heap
+ * of each node type.  An unset value leaves the configured one in effect.  Settings never change; each change makes
+ * new settings, which the scheduler persists so they survive a failover.
+ */
+public final class ScaleSettings implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final ScaleSettings NONE = new ScaleSettings(null, new HashMap<String, Double>(),
+    new HashMap<String, Integer>());
+
+  private final Integer dataNodeCount;
+  private final HashMap<String, Double> cpus;
+  private final HashMap<String, Integer> heaps;
+
+  private ScaleSettings(Integer dataNodeCount, HashMap<String, Double> cpus, HashMap<String, Integer> heaps) {
+    this.dataNodeCount = dataNodeCount;
+    this.cpus = cpus;
+    this.heaps = heaps;
+  }
+
+  /**
+   * Returns the target number of DataNodes, or null if it is not set.
+   */
+  public Integer getDataNodeCount() {
+    return dataNodeCount;
+  }
+
+  /**
+   * Returns the cpus of the given node type, or null if they are not set.
+   */
+  public Double getCpus(String nodeType) {
+    return cpus.get(nodeType);
+  }
+
+  /**
+   * Returns the heap of the given node type in MB, or null if it is not set.
+   */
+  public Integer getHeap(String nodeType) {
+    return heaps.get(nodeType);
+  }
+
+  public Map<String, Double> getAllCpus() {
+    return Collections.unmodifiableMap(cpus);
+  }
+
+  public Map<String, Integer> getAllHeaps() {
+    return Collections.unmodifiableMap(heaps);
+  }
+
+  public ScaleSettings withDataNodeCount(Integer count) {
+    return new ScaleSettings(count, cpus, heaps);
+  }
+
+  public ScaleSettings withCpus(String nodeType, Double value) {
+    HashMap<String, Double> changed = new HashMap<>(cpus);
+    if (value == null) {
+      changed.remove(nodeType);
+    } else {
+      changed.put(nodeType, value);
+    }
+    return new ScaleSettings(dataNodeCount, changed, heaps);
+  }
+
+  public ScaleSettings withHeap(String nodeType, Integer value) {
+    HashMap<String, Integer> changed = new HashMap<>(heaps);
+    if (value == null) {
+      changed.remove(nodeType);
+    } else {
+      changed.put(nodeType, value);
+    }
+    return new ScaleSettings(dataNodeCount, cpus, changed);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof ScaleSettings)) {
+      return false;
+    }
+    ScaleSettings other = (ScaleSettings) obj;
+    return (dataNodeCount == null ? other.dataNodeCount == null : dataNodeCount.equals(other.dataNodeCount))
+      && cpus.equals(other.cpus) && heaps.equals(other.heaps);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * (dataNodeCount == null ? 0 : dataNodeCount.hashCode()) + cpus.hashCode()) + heaps.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "ScaleSettings{" +
+      "dataNodeCount=" + dataNodeCount +
+      ", cpus=" + cpus +
+      ", heaps=" + heaps +
+      '}';
+  }
+}
@@ -0,0 +1,176 @@
+package org.apache.mesos.hdfs.telemetry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of metric samples of one task, sent by its executor to the scheduler in a framework message.  Every sample
+ * has a value for each of the batch's metrics.  Timestamps and values are encoded as zigzag varints of the difference
+ * to the previous sample, so slowly changing gauges and counters take a byte or two per value.
+ */
+public final class TelemetryBatch {
+  private static final byte[] MAGIC = {'H', 'T'};
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAX_METRICS = 256;
+  private static final int MAX_SAMPLES = 65536;
+
+  private final String taskId;
+  private final String taskType;
+  private final List<String> metrics;
+  private final List<Long> timestamps = new ArrayList<>();
+  private final List<long[]> samples = new ArrayList<>();
+
+  public TelemetryBatch(String taskId, String taskType, List<String> metrics) {
+    if (metrics.size() > MAX_METRICS) {
+      throw new IllegalArgumentException("Too many metrics: " + metrics.size());
+    }
+    this.taskId = taskId;
+    this.taskType = taskType;
+    this.metrics = Collections.unmodifiableList(new ArrayList<>(metrics));
+  }
+
+  public void add(long timestampMs, long[] values) {
+    if (values.length != metrics.size()) {
+      throw new IllegalArgumentException(String.format("Expected %d values, got %d", metrics.size(), values.length));
+    }
+    timestamps.add(timestampMs);
+    samples.add(values.clone());
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public String getTaskType() {
+    return taskType;
+  }
+
+  public List<String> getMetrics() {
+    return metrics;
+  }
+
+  public int size() {
+    return samples.size();
+  }
+
+  public long getTimestamp(int sample) {
+    return timestamps.get(sample);
+  }
+
+  public long[] getValues(int sample) {
+    return samples.get(sample).clone();
+  }
+
+  /**
+   * Returns whether a framework message is a telemetry batch, as opposed to some other message.
+   */
+  public static boolean isTelemetry(byte[] data) {
+    return data != null && data.length > MAGIC.length && data[0] == MAGIC[0] && data[1] == MAGIC[1];
+  }
+
+  public byte[] toBytes() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.write(MAGIC);
+      out.writeByte(FORMAT_VERSION);
+      out.writeUTF(taskId);
+      out.writeUTF(taskType);
+      writeVarLong(out, metrics.size());
+      for (String metric : metrics) {
+        out.writeUTF(metric);
+      }
+
+      writeVarLong(out, samples.size());
+      long prevTimestamp = 0;
+      long[] prevValues = new long[metrics.size()];
+      for (int i = 0; i < samples.size(); i++) {
+        long timestamp = timestamps.get(i);
+        writeVarLong(out, zigzag(timestamp - prevTimestamp));
+        prevTimestamp = timestamp;
+        long[] values = samples.get(i);
+        for (int j = 0; j < values.length; j++) {
+          writeVarLong(out, zigzag(values[j] - prevValues[j]));
+          prevValues[j] = values[j];
+        }
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  public static TelemetryBatch fromBytes(byte[] data) throws IOException {
+    if (!isTelemetry(data)) {
+      throw new IOException("Not a telemetry batch");
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, MAGIC.length,
+      data.length - MAGIC.length))) {
+      int formatVersion = in.readUnsignedByte();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException("Unsupported telemetry format: " + formatVersion);
+      }
+      String taskId = in.readUTF();
+      String taskType = in.readUTF();
+      int metricCount = readCount(in, MAX_METRICS);
+      List<String> metrics = new ArrayList<>(metricCount);
+      for (int i = 0; i < metricCount; i++) {
+        metrics.add(in.readUTF());
+      }
+
+      TelemetryBatch batch = new TelemetryBatch(taskId, taskType, metrics);
+      int sampleCount = readCount(in, MAX_SAMPLES);
+      long timestamp = 0;
+      long[] values = new long[metricCount];
+      for (int i = 0; i < sampleCount; i++) {
+        timestamp += unzigzag(readVarLong(in));
+        for (int j = 0; j < metricCount; j++) {
+          values[j] += unzigzag(readVarLong(in));
+        }
+        batch.add(timestamp, values);
+      }
+      return batch;
+    }
+  }
+
+  private static int readCount(DataInput in, int max) throws IOException {
+    long count = readVarLong(in);
+    if (count < 0 || count > max) {
+      throw new IOException("Invalid telemetry count: " + count);
+    }
+    return (int) count;
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint in telemetry batch");
+  }
+}
@@ -0,0 +1,102 @@
+package org.apache.mesos.hdfs.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.Attribute;
+
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for the data disks of a DataNode host, shared by the executor which discovers them and the scheduler which
+ * renders them into dfs.datanode.data.dir.
+ */
+public final class DataDisks {
+  // Characters which would change the meaning of the config the disks are rendered into
+  private static final String UNSAFE_CHARS = "<>&\"',";
+
+  private static final Log log = LogFactory.getLog(DataDisks.class);
+
+  private DataDisks() {
+  }
+
+  /**
+   * Returns the disks listed by the attribute of the given name, either as comma separated text or as a set, or an
+   * empty list if there is no such attribute.
+   */
+  public static List<String> fromAttributes(List<Attribute> attributes, String attributeName) {
+    List<String> disks = new ArrayList<>();
+    if (StringUtils.isBlank(attributeName)) {
+      return disks;
+    }
+    for (Attribute attribute : attributes) {
+      if (!attribute.getName().equals(attributeName)) {
+        continue;
+      }
+      switch (attribute.getType()) {
+        case TEXT:
+          disks.addAll(parse(attribute.getText().getValue()));
+          break;
+        case SET:
+          for (String disk : attribute.getSet().getItemList()) {
+            add(disks, disk);
+          }
+          break;
+        default:
+          log.warn(String.format("Ignoring attribute %s of unsupported type %s", attributeName, attribute.getType()));
+      }
+    }
+    return disks;
+  }
+
+  /**
+   * Returns the disks of a comma separated list, without blanks or duplicates.
+   */
+  public static List<String> parse(String disks) {
+    List<String> parsed = new ArrayList<>();
+    if (disks != null) {
+      for (String disk : disks.split(",")) {
+        add(parsed, disk);
+      }
+    }
+    return parsed;
+  }
+
+  /**
+   * Returns true if the disk is an absolute, normalized path which matches the glob.
+   */
+  public static boolean matchesGlob(String disk, String glob) {
+    if (StringUtils.isBlank(glob) || !isValid(disk)) {
+      return false;
+    }
+    return FileSystems.getDefault().getPathMatcher("glob:" + glob).matches(Paths.get(disk));
+  }
+
+  /**
+   * Returns true if the disk is an absolute path without relative parts, so it cannot point outside of where it
+   * appears to, and can be rendered into hdfs-site.xml as is.
+   */
+  public static boolean isValid(String disk) {
+    if (StringUtils.containsAny(disk, UNSAFE_CHARS)) {
+      return false;
+    }
+    try {
+      Path path = Paths.get(disk);
+      return path.isAbsolute() && path.normalize().toString().equals(disk);
+    } catch (InvalidPathException e) {
+      return false;
+    }
+  }
+
+  private static void add(List<String> disks, String disk) {
+    String trimmed = disk.trim();
+    if (!trimmed.isEmpty() && !disks.contains(trimmed)) {
+      disks.add(trimmed);
+    }
+  }
+}
@@ -18,6 +18,7 @@ public final class HDFSConstants {
   public static final String NAME_NODE_BOOTSTRAP_MESSAGE = "-b";
   public static final String JOURNAL_NODE_INIT_MESSAGE = "-s";
   public static final String RELOAD_CONFIG = "reload config";
+  public static final String EXCLUDE_HOSTS = "exclude hosts";
 
   // NodeIds
   public static final String NAME_NODE_ID = "namenode";
@@ -38,14 +39,33 @@ public final class HDFSConstants {
   // Current HDFS Binary File Name
   public static final String HDFS_BINARY_FILE_NAME = "hdfs-mesos-executor-0.1.5.tgz";
 
+  // Time the scheduler built the executor's launch command, used to report launch latency
+  public static final String EXECUTOR_LAUNCH_TIME_ENV = "HDFS_EXECUTOR_LAUNCH_TIME_MS";
+
   // HDFS Config File Name
   public static final String HDFS_CONFIG_FILE_NAME = "hdfs-site.xml";
 
-  // Listening Ports
+  // File of the hosts excluded on a NameNode, dfs.hosts.exclude
+  public static final String HOSTS_EXCLUDE_FILE_NAME = "dfs.exclude";
+
+  // Sandbox dir the STDOUT and STDERR of nodes are written to
+  public static final String PROCESS_LOG_DIR = "logs";
+
+  // Default Listening Ports, used unless ports are allocated from offers
   public static final Integer DATA_NODE_PORT = 50075;
+  public static final Integer DATA_NODE_DATA_PORT = 50010;
+  public static final Integer DATA_NODE_IPC_PORT = 50020;
   public static final Integer JOURNAL_NODE_PORT = 8480;
+  public static final Integer JOURNAL_NODE_RPC_PORT = 8485;
   public static final Integer ZKFC_NODE_PORT = 8019;
   public static final Integer NAME_NODE_PORT = 50070;
+  public static final Integer NAME_NODE_RPC_PORT = 50071;
+
+  // Port Names
+  public static final String RPC_PORT_NAME = "rpc";
+  public static final String HTTP_PORT_NAME = "http";
+  public static final String DATA_PORT_NAME = "data";
+  public static final String IPC_PORT_NAME = "ipc";
 
   // Exit codes
   public static final Integer PROC_EXIT_CODE = 1;
@@ -55,10 +75,37 @@ public final class HDFSConstants {
 
   // NameNode initialization constants 
   public static final String ZK_FRAMEWORK_ID_KEY = "FrameworkId";
+  public static final String ZK_SCALE_SETTINGS_KEY = "ScaleSettings";
   public static final Integer ZK_MUTEX_ACQUIRE_TIMEOUT_SEC = 30;
   public static final Integer CURATOR_MAX_RETRIES = 3;
 
   public static final String NAMENODE_NUM_PARAM = "nn";
+  public static final String DATA_DIRS_PARAM = "datadirs";
+  public static final String HOSTNAME_PARAM = "host";
+  public static final String WAIT_PARAM = "wait";
+
+  // DataNode data disks discovered by the executor
+  public static final String DATA_DIRS_KEY = "data_dirs";
+
+  // Summary of the last health check of a node, see NodeHealthChecker
+  public static final String HEALTH_KEY = "health";
+  public static final String HEALTH_HEALTHY_VAL = "healthy";
+  public static final String HEALTH_UNHEALTHY_VAL = "unhealthy";
+  public static final String HEALTH_KEY_PREFIX = "health.";
+
+  // Metrics of the health check of a NameNode the scheduler decommissions DataNodes by, lists of hosts are comma
+  // separated
+  public static final String HA_STATE_METRIC = "ha_state";
+  public static final String HA_STATE_ACTIVE_VAL = "active";
+  public static final String DECOMMISSIONING_METRIC = "decommissioning";
+  public static final String DECOMMISSIONED_METRIC = "decommissioned";
+  public static final String UNDER_REPLICATED_BLOCKS_METRIC = "under_replicated_blocks";
+
+  // Number of times the executor restarted a node in place
+  public static final String RESTARTS_KEY = "restarts";
+
+  // When the stages of a task's launch were reached on the executor, see LaunchStage
+  public static final String LAUNCH_TRACE_KEY_PREFIX = "trace.";
 
   public static final String NN_STATUS_KEY = "status";
   public static final String NN_STATUS_INIT_VAL = "initialized";
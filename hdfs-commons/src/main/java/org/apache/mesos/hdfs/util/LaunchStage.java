@@ -0,0 +1,40 @@
+package org.apache.mesos.hdfs.util;
+
+/**
+ * The stages of launching a task, from the offer it is launched on to its node passing a health check.  The stages
+ * reached on the executor are sent to the scheduler as epoch millis on TaskStatus labels, e.g.
+ * trace.process_started=1443100000000.
+ */
+public enum LaunchStage {
+  OFFER_RECEIVED,
+  OFFER_EVALUATED,
+  STATE_RECORDED,
+  LAUNCH_ISSUED,
+  EXECUTOR_REGISTERED,
+  CONFIG_FETCHED,
+  PROCESS_STARTED,
+  TASK_RUNNING,
+  HEALTH_CHECK_PASSED;
+
+  public String getName() {
+    return name().toLowerCase();
+  }
+
+  public String getLabel() {
+    return HDFSConstants.LAUNCH_TRACE_KEY_PREFIX + getName();
+  }
+
+  /**
+   * Returns the stage whose label this is, or null if it isn't a trace label.
+   */
+  public static LaunchStage fromLabel(String label) {
+    if (label == null || !label.startsWith(HDFSConstants.LAUNCH_TRACE_KEY_PREFIX)) {
+      return null;
+    }
+    try {
+      return valueOf(label.substring(HDFSConstants.LAUNCH_TRACE_KEY_PREFIX.length()).toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
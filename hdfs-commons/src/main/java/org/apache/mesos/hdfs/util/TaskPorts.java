@@ -0,0 +1,114 @@
+package org.apache.mesos.hdfs.util;
+
+import org.apache.mesos.Protos.DiscoveryInfo;
+import org.apache.mesos.Protos.Port;
+import org.apache.mesos.Protos.Ports;
+import org.apache.mesos.Protos.TaskInfo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes the ports each type of task listens on.  The ports assigned to a task are recorded as named ports in
+ * the DiscoveryInfo of its TaskInfo, so both the scheduler and the executor can look them up.
+ */
+public final class TaskPorts {
+
+  private TaskPorts() {
+  }
+
+  /**
+   * Returns the names of the ports a task of the given type listens on.
+   */
+  public static List<String> getPortNames(String taskType) {
+    switch (taskType) {
+      case HDFSConstants.NAME_NODE_ID:
+      case HDFSConstants.JOURNAL_NODE_ID:
+        return Arrays.asList(HDFSConstants.RPC_PORT_NAME, HDFSConstants.HTTP_PORT_NAME);
+      case HDFSConstants.DATA_NODE_ID:
+        return Arrays.asList(HDFSConstants.DATA_PORT_NAME, HDFSConstants.HTTP_PORT_NAME,
+          HDFSConstants.IPC_PORT_NAME);
+      case HDFSConstants.ZKFC_NODE_ID:
+        return Arrays.asList(HDFSConstants.RPC_PORT_NAME);
+      default:
+        return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Returns the well known port of the given type and name, or -1 if there is none.
+   */
+  public static int getDefaultPort(String taskType, String portName) {
+    switch (taskType + "." + portName) {
+      case HDFSConstants.NAME_NODE_ID + "." + HDFSConstants.RPC_PORT_NAME:
+        return HDFSConstants.NAME_NODE_RPC_PORT;
+      case HDFSConstants.NAME_NODE_ID + "." + HDFSConstants.HTTP_PORT_NAME:
+        return HDFSConstants.NAME_NODE_PORT;
+      case HDFSConstants.JOURNAL_NODE_ID + "." + HDFSConstants.RPC_PORT_NAME:
+        return HDFSConstants.JOURNAL_NODE_RPC_PORT;
+      case HDFSConstants.JOURNAL_NODE_ID + "." + HDFSConstants.HTTP_PORT_NAME:
+        return HDFSConstants.JOURNAL_NODE_PORT;
+      case HDFSConstants.DATA_NODE_ID + "." + HDFSConstants.DATA_PORT_NAME:
+        return HDFSConstants.DATA_NODE_DATA_PORT;
+      case HDFSConstants.DATA_NODE_ID + "." + HDFSConstants.HTTP_PORT_NAME:
+        return HDFSConstants.DATA_NODE_PORT;
+      case HDFSConstants.DATA_NODE_ID + "." + HDFSConstants.IPC_PORT_NAME:
+        return HDFSConstants.DATA_NODE_IPC_PORT;
+      case HDFSConstants.ZKFC_NODE_ID + "." + HDFSConstants.RPC_PORT_NAME:
+        return HDFSConstants.ZKFC_NODE_PORT;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Returns the well known ports of a task of the given type.
+   */
+  public static Map<String, Integer> getDefaultPorts(String taskType) {
+    Map<String, Integer> ports = new LinkedHashMap<>();
+    for (String portName : getPortNames(taskType)) {
+      ports.put(portName, getDefaultPort(taskType, portName));
+    }
+    return ports;
+  }
+
+  /**
+   * Returns the ports recorded in the task's DiscoveryInfo.  Ports which were not recorded, as is the case for tasks
+   * launched before ports were allocated from offers, fall back to the well known ports.
+   */
+  public static Map<String, Integer> getPorts(TaskInfo taskInfo, String taskType) {
+    Map<String, Integer> ports = getDefaultPorts(taskType);
+    if (taskInfo.hasDiscovery() && taskInfo.getDiscovery().hasPorts()) {
+      for (Port port : taskInfo.getDiscovery().getPorts().getPortsList()) {
+        if (port.hasName()) {
+          ports.put(port.getName(), port.getNumber());
+        }
+      }
+    }
+    return ports;
+  }
+
+  public static int getPort(TaskInfo taskInfo, String taskType, String portName) {
+    Integer port = getPorts(taskInfo, taskType).get(portName);
+    return port == null ? -1 : port;
+  }
+
+  public static DiscoveryInfo createDiscoveryInfo(String name, Map<String, Integer> ports) {
+    Ports.Builder portsBuilder = Ports.newBuilder();
+    for (Map.Entry<String, Integer> port : ports.entrySet()) {
+      portsBuilder.addPorts(Port.newBuilder()
+        .setName(port.getKey())
+        .setNumber(port.getValue())
+        .setProtocol("tcp"));
+    }
+
+    return DiscoveryInfo.newBuilder()
+      .setVisibility(DiscoveryInfo.Visibility.FRAMEWORK)
+      .setName(name)
+      .setPorts(portsBuilder)
+      .build();
+  }
+}
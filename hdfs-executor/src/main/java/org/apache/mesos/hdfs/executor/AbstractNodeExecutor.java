@@ -9,17 +9,28 @@ import org.apache.mesos.ExecutorDriver;
 import org.apache.mesos.Protos.CommandInfo;
 import org.apache.mesos.Protos.ExecutorInfo;
 import org.apache.mesos.Protos.FrameworkInfo;
+import org.apache.mesos.Protos.Labels;
 import org.apache.mesos.Protos.SlaveInfo;
 import org.apache.mesos.Protos.TaskInfo;
 import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.concurrent.SharedScheduler;
 import org.apache.mesos.file.FileUtils;
+import org.apache.mesos.hdfs.config.EmbeddedConfig;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.config.NodeConfig;
 import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.hdfs.util.LaunchStage;
+import org.apache.mesos.hdfs.util.TaskPorts;
+import org.apache.mesos.net.ListeningPorts;
 import org.apache.mesos.process.FailureUtils;
 import org.apache.mesos.process.ProcessUtil;
-import org.apache.mesos.process.ProcessWatcher;
+import org.apache.mesos.process.ProcessFailureHandler;
+import org.apache.mesos.process.ProcessSupervisor;
+import org.apache.mesos.process.ProcessTree;
+import org.apache.mesos.process.RestartPolicy;
 import org.apache.mesos.protobuf.TaskStatusBuilder;
+import org.apache.mesos.stream.RotatingLogFile;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -27,37 +38,65 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The base for several types of HDFS executors.  It also contains the main which is consistent for all executors.
  */
 public abstract class AbstractNodeExecutor implements Executor {
 
+  private static final long PORT_RELEASE_TIMEOUT_MS = 5000;
+
   private final Log log = LogFactory.getLog(AbstractNodeExecutor.class);
   protected ExecutorInfo executorInfo;
   protected HdfsFrameworkConfig config;
-  private ProcessWatcher procWatcher;
-
-  // Timed Health Check for node health monitoring
-  protected Timer healthCheckTimer;
-  private NodeHealthChecker nodeHealthChecker;
+  private final ProcessFailureHandler processExitHandler = new HdfsProcessExitHandler();
+  protected List<String> dataDisks = new ArrayList<>();
+
+  private final ConfigReloader configReloader =
+    new ConfigReloader(Paths.get("etc", "hadoop", HDFSConstants.HDFS_CONFIG_FILE_NAME));
+
+  // The config embedded by the scheduler at launch, current until the scheduler asks for a reload
+  private EmbeddedConfig embeddedConfig;
+  private volatile boolean embeddedConfigCurrent;
+
+  // Runs the health checks and telemetry samples of all tasks
+  protected final SharedScheduler scheduler = SharedScheduler.getInstance();
+  private final NodeHealthChecker nodeHealthChecker;
+  // The health check and telemetry jobs of each task, cancelled when the task is stopped
+  private final ConcurrentMap<String, List<ScheduledFuture<?>>> taskJobs = new ConcurrentHashMap<>();
+  // The health labels last sent for each task, so the scheduler only hears about changes
+  private final Map<String, Labels> healthLabels = new ConcurrentHashMap<>();
+  // When the executor registered with the slave, the first stage of each task's launch reached here
+  private volatile long registeredMs;
 
   /**
    * Constructor which takes in configuration.
    */
   @Inject
   AbstractNodeExecutor(HdfsFrameworkConfig config) {
+    this(config, new NodeHealthChecker(config));
+  }
+
+  AbstractNodeExecutor(HdfsFrameworkConfig config, NodeHealthChecker nodeHealthChecker) {
     this.config = config;
-    this.procWatcher = new ProcessWatcher(new HdfsProcessExitHandler());
-    healthCheckTimer = new Timer(true);
+    this.nodeHealthChecker = nodeHealthChecker;
   }
 
   /**
@@ -66,6 +105,7 @@ public abstract class AbstractNodeExecutor implements Executor {
   @Override
   public void registered(ExecutorDriver driver, ExecutorInfo executorInfo,
     FrameworkInfo frameworkInfo, SlaveInfo slaveInfo) {
+    registeredMs = System.currentTimeMillis();
     // Set up data dir
     setUpDataDir();
     setUpDomainSocketDir();
@@ -73,6 +113,49 @@ public abstract class AbstractNodeExecutor implements Executor {
       createSymbolicLink(driver);
     }
     log.info("Executor registered with the slave");
+    reportLaunchLatency();
+    writeEmbeddedConfig(executorInfo);
+    if (config.isConfigWatchEnabled() && !config.usingNativeHadoopBinaries()) {
+      Thread watcher = new Thread(new ConfigWatcher(), "ConfigWatcher");
+      watcher.setDaemon(true);
+      watcher.start();
+    }
+  }
+
+  /**
+   * Writes the hdfs-site.xml embedded in the ExecutorInfo data by the scheduler, if any, so nodes can be started
+   * without contacting the config server.
+   */
+  private void writeEmbeddedConfig(ExecutorInfo executorInfo) {
+    if (config.usingNativeHadoopBinaries() || !executorInfo.hasData() || executorInfo.getData().isEmpty()) {
+      return;
+    }
+    try {
+      embeddedConfig = EmbeddedConfig.fromBytes(executorInfo.getData().toByteArray());
+      configReloader.write(embeddedConfig.getContent(), embeddedConfig.getVersion());
+      embeddedConfigCurrent = true;
+      log.info("Wrote embedded hdfs-site.xml version " + embeddedConfig.getVersion());
+    } catch (IOException e) {
+      log.error("Unable to write embedded hdfs-site.xml, it will be fetched from the config server", e);
+    }
+  }
+
+  /**
+   * Logs the time between the scheduler building the launch command and the executor registering, which is
+   * dominated by fetching the executor's URIs.  Clocks of the scheduler and slave hosts are assumed to be in sync.
+   */
+  private void reportLaunchLatency() {
+    String launchTime = System.getenv(HDFSConstants.EXECUTOR_LAUNCH_TIME_ENV);
+    if (StringUtils.isBlank(launchTime)) {
+      return;
+    }
+    try {
+      long latencyMs = System.currentTimeMillis() - Long.parseLong(launchTime);
+      log.info(String.format("Executor launch latency: %d ms (fetcher cache %s)", latencyMs,
+        config.isFetcherCacheEnabled() ? "enabled" : "disabled"));
+    } catch (NumberFormatException e) {
+      log.warn("Invalid executor launch time: " + launchTime);
+    }
   }
 
   /**
@@ -194,22 +277,34 @@ public abstract class AbstractNodeExecutor implements Executor {
   }
 
   /**
-   * Starts a task's process so it goes into running state.
+   * Starts a task's process so it goes into running state.  The process is supervised, so it is restarted in place
+   * when it exits, until it crash loops.
    */
-  protected Process startProcess(ExecutorDriver driver, Task task) {
+  protected Process startProcess(ExecutorDriver driver, final Task task) {
     log.info(String.format("Starting process: %s", task.getCmd()));
     Process proc = task.getProcess();
+    if (registeredMs > 0) {
+      task.markStage(LaunchStage.EXECUTOR_REGISTERED, registeredMs);
+    }
     reloadConfig();
+    task.markStage(LaunchStage.CONFIG_FETCHED, System.currentTimeMillis());
     if (proc == null) {
       try {
-        Map<String, String> envMap = createHdfsNodeEnvironment(task);
-
-        Process process = ProcessUtil.startCmd(envMap, task.getCmd());
-        procWatcher.watch(process);
-        task.setProcess(process);
-      } catch (IOException e) {
+        ProcessSupervisor supervisor = new ProcessSupervisor(task.getType(), new Callable<Process>() {
+          @Override
+          public Process call() throws IOException {
+            Map<String, String> envMap = createHdfsNodeEnvironment(task);
+            return ProcessUtil.startCmd(envMap, createLogFile(task, "stdout"), createLogFile(task, "stderr"),
+              task.getCmd());
+          }
+        }, new TaskProcessListener(driver, task), new RestartPolicy(config.getProcessMaxRestarts(),
+          TimeUnit.SECONDS.toMillis(config.getProcessRestartWindow()), config.getProcessRestartBackoff(),
+          config.getProcessRestartMaxBackoff()));
+        task.setSupervisor(supervisor);
+        task.setProcess(supervisor.start());
+        task.markStage(LaunchStage.PROCESS_STARTED, System.currentTimeMillis());
+      } catch (Exception e) {
         log.error("Unable to start process:", e);
-        task.getProcess().destroy();
         sendTaskFailed(driver, task);
       }
     } else {
@@ -219,6 +314,32 @@ public abstract class AbstractNodeExecutor implements Executor {
     return proc;
   }
 
+  /**
+   * Stops a task's process for good.  Its process tree is sent SIGTERM and SIGKILL after the grace period, and its
+   * ports are confirmed to be released, so this returns within bounded time and a replacement node can bind them.
+   */
+  protected void stopProcess(Task task) {
+    stopJobs(task);
+    if (task.getSupervisor() != null) {
+      task.getSupervisor().stop(config.getProcessStopGracePeriod());
+    } else if (task.getProcess() != null) {
+      ProcessTree.terminate(task.getProcess(), config.getProcessStopGracePeriod());
+    }
+    task.setProcess(null);
+    Collection<Integer> ports = TaskPorts.getPorts(task.getTaskInfo(), task.getType()).values();
+    if (!ListeningPorts.awaitReleased(ports, PORT_RELEASE_TIMEOUT_MS)) {
+      log.warn("Ports of task " + task.getTaskInfo().getTaskId().getValue() + " were not released");
+    }
+  }
+
+  /**
+   * Returns the size-rotated file in the sandbox's logs dir the given stream of the task's node is written to.
+   */
+  private RotatingLogFile createLogFile(Task task, String stream) {
+    return new RotatingLogFile(new File(HDFSConstants.PROCESS_LOG_DIR, task.getType() + "." + stream + ".log"),
+      config.getProcessLogMaxSize() * 1024L * 1024L, config.getProcessLogMaxSegments());
+  }
+
   private Map<String, String> createHdfsNodeEnvironment(Task task) {
     Map<String, String> envMap = new HashMap<>();
     NodeConfig nodeConfig = config.getNodeConfig(task.getType());
@@ -242,30 +363,93 @@ public abstract class AbstractNodeExecutor implements Executor {
     if (config.usingNativeHadoopBinaries()) {
       return;
     }
-    // Find config URI
-    String configUri = "";
-    for (CommandInfo.URI uri : executorInfo.getCommand().getUrisList()) {
-      if (uri.getValue().contains("hdfs-site.xml")) {
-        configUri = uri.getValue();
-      }
+    // Discovered data disks are only known to the config server once this executor reports them
+    if (embeddedConfigCurrent && dataDisks.isEmpty()) {
+      log.info("Using embedded hdfs-site.xml version " + embeddedConfig.getVersion());
+      return;
     }
+    String configUri = getConfigUri();
     if (configUri.isEmpty()) {
       log.error("Couldn't find hdfs-site.xml URI");
       return;
     }
     try {
-      log.info(String.format("Reloading hdfs-site.xml from %s", configUri));
-      Process process = ProcessUtil.startCmd(
-        String.format("curl -o hdfs-site.xml %s && mv hdfs-site.xml etc/hadoop/", configUri));
-      //TODO(nicgrayson) check if the config has changed
-      int exitCode = process.waitFor();
-      if (exitCode == 0) {
-        log.info("Finished reloading hdfs-site.xml, exited with status " + exitCode);
-      } else {
-        log.error("Error reloading hdfs-site.xml.");
+      if (!configReloader.reload(configUri)) {
+        log.info("hdfs-site.xml is unchanged at version " + configReloader.getVersion());
+      }
+    } catch (IOException e) {
+      log.error("Error reloading hdfs-site.xml from " + configUri, e);
+    }
+  }
+
+  /**
+   * Returns the URI of this executor's hdfs-site.xml on the config server, or an empty string if it is not known yet.
+   */
+  private String getConfigUri() {
+    String configUri = "";
+    if (embeddedConfig != null) {
+      configUri = embeddedConfig.getUrl();
+    }
+    if (executorInfo != null) {
+      for (CommandInfo.URI uri : executorInfo.getCommand().getUrisList()) {
+        if (uri.getValue().contains("hdfs-site.xml")) {
+          configUri = uri.getValue();
+        }
+      }
+    }
+    if (!configUri.isEmpty() && !dataDisks.isEmpty()) {
+      configUri = addDataDirsParam(configUri);
+    }
+    return configUri;
+  }
+
+  /**
+   * Report the discovered data disks to the config server so it renders them into dfs.datanode.data.dir.
+   */
+  private String addDataDirsParam(String configUri) {
+    try {
+      String dataDirs = URLEncoder.encode(StringUtils.join(dataDisks, ","), "UTF-8");
+      return configUri + (configUri.contains("?") ? "&" : "?") + HDFSConstants.DATA_DIRS_PARAM + "=" + dataDirs;
+    } catch (IOException e) {
+      log.error("Unable to encode data disks " + dataDisks, e);
+      return configUri;
+    }
+  }
+
+  /**
+   * Keeps hdfs-site.xml up to date by watching it on the config server, so the scheduler does not have to tell
+   * every executor about every change.
+   */
+  private class ConfigWatcher implements Runnable {
+    private static final long RETRY_DELAY_MS = 5000;
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          String configUri = getConfigUri();
+          if (configUri.isEmpty() || !watch(configUri)) {
+            Thread.sleep(RETRY_DELAY_MS);
+          }
+        }
+      } catch (InterruptedException e) {
+        log.info("Stopped watching hdfs-site.xml");
+      }
+    }
+
+    /**
+     * Returns false if watching failed and should be retried later.
+     */
+    private boolean watch(String configUri) {
+      try {
+        if (configReloader.watch(configUri, config.getConfigWatchTimeout())) {
+          embeddedConfigCurrent = false;
+        }
+        return true;
+      } catch (IOException e) {
+        log.warn("Watching hdfs-site.xml failed, retrying: " + e);
+        return false;
       }
-    } catch (InterruptedException | IOException e) {
-      log.error("Caught exception", e);
     }
   }
 
@@ -282,16 +466,12 @@ public abstract class AbstractNodeExecutor implements Executor {
         log.info("Finished running command, exited with status " + exitCode);
       } else {
         log.error("Unable to run command, exit code:" + exitCode);
-        if (task.getProcess() != null) {
-          task.getProcess().destroy();
-        }
+        stopProcess(task);
         sendTaskFailed(driver, task);
       }
     } catch (InterruptedException | IOException e) {
       log.error("Unable to run command:", e);
-      if (task.getProcess() != null) {
-        task.getProcess().destroy();
-      }
+      stopProcess(task);
       sendTaskFailed(driver, task);
     }
   }
@@ -308,9 +488,19 @@ public abstract class AbstractNodeExecutor implements Executor {
 
   @Override
   public void frameworkMessage(ExecutorDriver driver, byte[] msg) {
-    reloadConfig();
     String messageStr = new String(msg, Charset.defaultCharset());
     log.info("Executor received framework message: " + messageStr);
+
+    // Reload messages carry the version of the config the scheduler currently renders for this executor
+    String version = messageStr.startsWith(HDFSConstants.RELOAD_CONFIG)
+      ? messageStr.substring(HDFSConstants.RELOAD_CONFIG.length()).trim()
+      : "";
+    if (!version.isEmpty() && version.equals(configReloader.getVersion())) {
+      log.info("hdfs-site.xml is already at version " + version);
+      return;
+    }
+    embeddedConfigCurrent = false;
+    reloadConfig();
   }
 
   @Override
@@ -318,18 +508,78 @@ public abstract class AbstractNodeExecutor implements Executor {
     log.error(this.getClass().getName() + ".error: " + message);
   }
 
-  private void launchHealthCheck(ExecutorDriver driver, Task task) {
+  /**
+   * Runs a health check of the task's node and returns the number of health checks in a row the node failed.  A
+   * node is only killed once it fails as many checks in a row as configured, so a single slow answer, e.g. during a
+   * long GC pause, doesn't take it down.
+   */
+  private int launchHealthCheck(ExecutorDriver driver, Task task, int failures) {
     String taskIdStr = task.getTaskInfo().getTaskId().getValue();
     log.info("Performing health check for task: " + taskIdStr);
 
-    boolean taskHealthy = nodeHealthChecker.runHealthCheckForTask(driver, task);
-    if (!taskHealthy) {
+    NodeHealth health = nodeHealthChecker.runHealthCheckForTask(task);
+    if (!health.isAlive()) {
+      ProcessSupervisor supervisor = task.getSupervisor();
+      if (supervisor != null && supervisor.getUptimeMs() < config.getHealthCheckWaitingPeriod()) {
+        log.info("Node of task " + taskIdStr + " is not answering yet after being restarted");
+        return 0;
+      }
+      if (failures + 1 < config.getHealthCheckMaxFailures()) {
+        log.warn(String.format("Node health check failed for task %s, %d of %d failures in a row", taskIdStr,
+          failures + 1, config.getHealthCheckMaxFailures()));
+        return failures + 1;
+      }
       log.fatal("Node health check failed for task: " + taskIdStr);
+      if (supervisor != null) {
+        // Restarted in place, until it crash loops
+        supervisor.kill(config.getProcessStopGracePeriod());
+        return 0;
+      }
       killTask(driver, task.getTaskInfo().getTaskId());
-      // TODO (elingg) with better process supervision
-      // (i.e. monitoring of ZKFC's), we do not need to exit the executors
       shutdownExecutor(driver, 2, "Failed health check");
+      return failures + 1;
+    }
+
+    if (!health.isHealthy()) {
+      log.warn(String.format("Node health check for task %s found problems: %s", taskIdStr, health));
     }
+    Labels labels = health.toLabels();
+    boolean changed = !labels.equals(healthLabels.put(taskIdStr, labels));
+    // The first passed health check completes the task's launch
+    boolean passed = health.isHealthy() && task.markStage(LaunchStage.HEALTH_CHECK_PASSED, System.currentTimeMillis());
+    if (changed || passed) {
+      TaskStatusBuilder status = new TaskStatusBuilder()
+        .setTaskId(task.getTaskInfo().getTaskId())
+        .setState(TaskState.TASK_RUNNING)
+        .setLabels(labels);
+      if (passed) {
+        status.setLabels(task.getLaunchTraceLabels());
+      }
+      driver.sendStatusUpdate(status.build());
+    }
+    return 0;
+  }
+
+  /**
+   * Adds the stages of the task's launch reached so far to a status update.
+   */
+  protected TaskStatus withLaunchTrace(TaskStatus status, Task task) {
+    return new TaskStatusBuilder(status)
+      .setLabels(status.getLabels())
+      .setLabels(task.getLaunchTraceLabels())
+      .build();
+  }
+
+  /**
+   * Starts sending telemetry samples of the task's node to the scheduler, if enabled and supported by the node.
+   */
+  protected void startTelemetry(ExecutorDriver driver, Task task) {
+    if (!config.isTelemetryEnabled() || !TelemetryReporter.isSupported(task)) {
+      return;
+    }
+    addJob(task, scheduler.scheduleAtFixedRate(TelemetryReporter.JOB_NAME, new TelemetryReporter(config, driver, task),
+      config.getTelemetryInterval(),
+      config.getTelemetryInterval()));
   }
 
   /**
@@ -350,11 +600,92 @@ public abstract class AbstractNodeExecutor implements Executor {
   }
 
   /**
-   * Implementation of a TimedHealthCheck through use of TimerTask.
+   * Tells the scheduler how often a task's node was restarted in place, and fails the task once it crash loops.
+   */
+  private class TaskProcessListener implements ProcessSupervisor.Listener {
+    private final ExecutorDriver driver;
+    private final Task task;
+
+    TaskProcessListener(ExecutorDriver driver, Task task) {
+      this.driver = driver;
+      this.task = task;
+    }
+
+    @Override
+    public void restarted(int restarts, Process process) {
+      task.setProcess(process);
+      driver.sendStatusUpdate(new TaskStatusBuilder()
+        .setTaskId(task.getTaskInfo().getTaskId())
+        .setState(TaskState.TASK_RUNNING)
+        .addLabel(HDFSConstants.RESTARTS_KEY, String.valueOf(restarts))
+        .build());
+    }
+
+    @Override
+    public void failed(int restarts, int exitCode) {
+      task.setProcess(null);
+      stopJobs(task);
+      driver.sendStatusUpdate(new TaskStatusBuilder()
+        .setTaskId(task.getTaskInfo().getTaskId())
+        .setState(TaskState.TASK_FAILED)
+        .setMessage(String.format("Process exited with %d after %d restarts", exitCode, restarts))
+        .addLabel(HDFSConstants.RESTARTS_KEY, String.valueOf(restarts))
+        .build());
+      processExitHandler.handle();
+    }
+
+    @Override
+    public void stopped(int exitCode) {
+      log.info(String.format("Process of task %s stopped with %d", task.getTaskInfo().getTaskId().getValue(),
+        exitCode));
+    }
+  }
+
+  /**
+   * Schedules the periodic health check of a task's node.
+   */
+  protected void startHealthCheck(ExecutorDriver driver, Task task) {
+    addJob(task, scheduler.scheduleAtFixedRate("health-check", new TimedHealthCheck(driver, task),
+      config.getHealthCheckWaitingPeriod(),
+      config.getHealthCheckFrequency()));
+  }
+
+  private void addJob(Task task, ScheduledFuture<?> job) {
+    String taskIdStr = task.getTaskInfo().getTaskId().getValue();
+    taskJobs.putIfAbsent(taskIdStr, new CopyOnWriteArrayList<ScheduledFuture<?>>());
+    taskJobs.get(taskIdStr).add(job);
+  }
+
+  /**
+   * Cancels the health check and telemetry jobs of a task, leaving those of the other tasks of this executor running.
+   */
+  protected void stopJobs(Task task) {
+    String taskIdStr = task.getTaskInfo().getTaskId().getValue();
+    List<ScheduledFuture<?>> jobs = taskJobs.remove(taskIdStr);
+    if (jobs != null) {
+      for (ScheduledFuture<?> job : jobs) {
+        job.cancel(false);
+      }
+    }
+    healthLabels.remove(taskIdStr);
+  }
+
+  /**
+   * Returns the jobs currently scheduled for a task.
+   */
+  List<ScheduledFuture<?>> getJobs(String taskId) {
+    List<ScheduledFuture<?>> jobs = taskJobs.get(taskId);
+    return jobs == null ? Collections.<ScheduledFuture<?>>emptyList() : jobs;
+  }
+
+  /**
+   * Implementation of a TimedHealthCheck run on the shared scheduler.
    */
-  protected class TimedHealthCheck extends TimerTask {
+  protected class TimedHealthCheck implements Runnable {
     Task task;
     ExecutorDriver driver;
+    // Runs of a job never overlap, so this is only touched by one thread at a time
+    private int failures;
 
     public TimedHealthCheck(ExecutorDriver driver, Task task) {
       this.driver = driver;
@@ -363,7 +694,7 @@ public abstract class AbstractNodeExecutor implements Executor {
 
     @Override
     public void run() {
-      launchHealthCheck(driver, task);
+      failures = launchHealthCheck(driver, task, failures);
     }
   }
 }
@@ -0,0 +1,132 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps hdfs-site.xml up to date with the config server.  Fetches are conditional on the version of the config on
+ * disk, and new versions are written to a temp file, synced and renamed over the config, so nodes never read a
+ * partially written config.
+ */
+public class ConfigReloader {
+  private static final int CONNECT_TIMEOUT_MS = 10000;
+  private static final int READ_TIMEOUT_MS = 30000;
+
+  private final Log log = LogFactory.getLog(ConfigReloader.class);
+  private final Path configPath;
+  private volatile String version;
+
+  public ConfigReloader(Path configPath) {
+    this.configPath = configPath;
+  }
+
+  /**
+   * Returns the version of the config on disk, or null if it is unknown.
+   */
+  public String getVersion() {
+    return version;
+  }
+
+  /**
+   * Fetches the config unless the server still has the version on disk.  Returns true if the config changed.
+   */
+  public boolean reload(String configUri) throws IOException {
+    return reload(configUri, READ_TIMEOUT_MS);
+  }
+
+  /**
+   * Waits up to the given time for the config server to render a config other than the version on disk and writes
+   * it.  Returns true if the config changed, false if the wait expired.
+   */
+  public boolean watch(String configUri, int waitSec) throws IOException {
+    String watchUri = configUri + (configUri.contains("?") ? "&" : "?") + HDFSConstants.WAIT_PARAM + "=" + waitSec;
+    return reload(watchUri, (int) TimeUnit.SECONDS.toMillis(waitSec) + READ_TIMEOUT_MS);
+  }
+
+  private boolean reload(String configUri, int readTimeoutMs) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(configUri).openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+    connection.setReadTimeout(readTimeoutMs);
+    String currVersion = version;
+    if (currVersion != null && Files.exists(configPath)) {
+      connection.setRequestProperty("If-None-Match", "\"" + currVersion + "\"");
+    }
+
+    try {
+      int status = connection.getResponseCode();
+      if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return false;
+      }
+      if (status != HttpURLConnection.HTTP_OK) {
+        throw new IOException(String.format("Fetching %s failed with status %d", configUri, status));
+      }
+
+      String newVersion = getVersion(connection.getHeaderField("ETag"));
+      try (InputStream in = connection.getInputStream()) {
+        write(in, connection.getContentLengthLong());
+      }
+      version = newVersion;
+      log.info(String.format("Reloaded hdfs-site.xml version %s from %s", newVersion, configUri));
+      return true;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Writes a config of a known version, e.g. one embedded in the ExecutorInfo.
+   */
+  public void write(byte[] content, String newVersion) throws IOException {
+    write(new ByteArrayInputStream(content), content.length);
+    version = newVersion;
+  }
+
+  /**
+   * Writes the config, unless fewer bytes than expected can be read, which happens when the connection to the config
+   * server is closed early.  An expected length of -1 means it is unknown.
+   */
+  private void write(InputStream in, long expectedLength) throws IOException {
+    Path tempPath = configPath.resolveSibling(configPath.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING)) {
+      OutputStream out = Channels.newOutputStream(channel);
+      byte[] buffer = new byte[8192];
+      long length = 0;
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        length += read;
+      }
+      if (expectedLength != -1 && length != expectedLength) {
+        throw new IOException(String.format("Read %d of %d bytes of hdfs-site.xml", length, expectedLength));
+      }
+      channel.force(true);
+    } catch (IOException e) {
+      Files.deleteIfExists(tempPath);
+      throw e;
+    }
+    Files.move(tempPath, configPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private String getVersion(String etag) {
+    if (etag == null || etag.length() < 2 || !etag.startsWith("\"") || !etag.endsWith("\"")) {
+      return null;
+    }
+    return etag.substring(1, etag.length() - 1);
+  }
+}
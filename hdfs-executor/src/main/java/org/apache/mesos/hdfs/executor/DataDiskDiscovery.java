@@ -0,0 +1,173 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.SlaveInfo;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.util.DataDisks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Discovers the data disks of the local host for the DataNode.  Disks are taken from the slave attribute named by
+ * mesos.hdfs.datanode.disks.attribute when the slave advertises it, otherwise from the directories matching
+ * mesos.hdfs.datanode.disks.glob.
+ */
+public class DataDiskDiscovery {
+  private static final String PROC_MOUNTS = "/proc/mounts";
+  private static final String GLOB_CHARS = "*?[{";
+
+  private final Log log = LogFactory.getLog(DataDiskDiscovery.class);
+  private final HdfsFrameworkConfig config;
+  private final File mountTable;
+
+  @edu.umd.cs.findbugs.annotations.SuppressWarnings(
+    value = "DMI_HARDCODED_ABSOLUTE_FILENAME",
+    justification = "mount table is always at this location")
+  public DataDiskDiscovery(HdfsFrameworkConfig config) {
+    this(config, new File(PROC_MOUNTS));
+  }
+
+  DataDiskDiscovery(HdfsFrameworkConfig config, File mountTable) {
+    this.config = config;
+    this.mountTable = mountTable;
+  }
+
+  /**
+   * Returns the sorted list of data disk paths, or an empty list if none were discovered.
+   */
+  public List<String> discover(SlaveInfo slaveInfo) {
+    List<String> disks = getAttributeDisks(slaveInfo);
+    if (disks.isEmpty()) {
+      disks = getGlobDisks();
+    }
+    for (Iterator<String> iterator = disks.iterator(); iterator.hasNext();) {
+      String disk = iterator.next();
+      // The scheduler would refuse to render these
+      if (!DataDisks.isValid(disk)) {
+        log.warn("Skipping data disk which is not an absolute path: " + disk);
+        iterator.remove();
+      }
+    }
+    Collections.sort(disks);
+    log.info("Discovered data disks: " + disks);
+    return disks;
+  }
+
+  private List<String> getAttributeDisks(SlaveInfo slaveInfo) {
+    if (slaveInfo == null) {
+      return new ArrayList<>();
+    }
+    return DataDisks.fromAttributes(slaveInfo.getAttributesList(), config.getDataNodeDiskAttribute());
+  }
+
+  private List<String> getGlobDisks() {
+    final List<String> disks = new ArrayList<>();
+    String glob = config.getDataNodeDiskGlob();
+    if (StringUtils.isBlank(glob)) {
+      return disks;
+    }
+
+    Path root = getGlobRoot(glob);
+    if (!Files.isDirectory(root)) {
+      log.warn("Data disk glob root does not exist: " + root);
+      return disks;
+    }
+
+    final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    final Set<String> mountPoints = config.getDataNodeDiskMountedOnly() ? getMountPoints() : null;
+    int depth = Paths.get(glob).getNameCount() - root.getNameCount();
+    try {
+      Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), depth, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+          collect(dir, attrs);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          collect(file, attrs);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          log.warn("Unable to inspect candidate data disk " + file, e);
+          return FileVisitResult.CONTINUE;
+        }
+
+        private void collect(Path path, BasicFileAttributes attrs) {
+          if (!attrs.isDirectory() || !matcher.matches(path)) {
+            return;
+          }
+          if (mountPoints != null && !mountPoints.contains(path.toString())) {
+            log.warn("Skipping data disk which is not a mount point: " + path);
+            return;
+          }
+          disks.add(path.toString());
+        }
+      });
+    } catch (IOException e) {
+      log.error("Unable to discover data disks matching " + glob, e);
+    }
+    return disks;
+  }
+
+  /**
+   * Returns the longest leading part of the glob which contains no wildcards.
+   */
+  private Path getGlobRoot(String glob) {
+    Path path = Paths.get(glob);
+    Path root = path.getRoot() == null ? Paths.get("") : path.getRoot();
+    for (Path name : path) {
+      if (StringUtils.containsAny(name.toString(), GLOB_CHARS)) {
+        break;
+      }
+      root = root.resolve(name);
+    }
+    return root;
+  }
+
+  /**
+   * Returns the mount points of the host, or null if they cannot be read so that no disk is filtered out.
+   */
+  private Set<String> getMountPoints() {
+    if (!mountTable.canRead()) {
+      return null;
+    }
+    Set<String> mountPoints = new HashSet<>();
+    try {
+      for (String line : Files.readAllLines(mountTable.toPath(), Charset.defaultCharset())) {
+        String[] fields = line.split(" ");
+        if (fields.length > 1) {
+          // Spaces in mount points are octal escaped
+          mountPoints.add(fields[1].replace("\\040", " "));
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Unable to read " + mountTable, e);
+      return null;
+    }
+    return mountPoints;
+  }
+}
@@ -0,0 +1,80 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads MBeans of a node through the /jmx servlet on its http port.
+ */
+public class JmxClient {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final String host;
+  private final int port;
+  private final int timeoutMs;
+
+  public JmxClient(String host, int port, int timeoutMs) {
+    this.host = host;
+    this.port = port;
+    this.timeoutMs = timeoutMs;
+  }
+
+  /**
+   * Returns the beans matching the query, which may be a pattern.  Fails if the node doesn't answer.
+   */
+  public List<JsonNode> query(String query) throws IOException {
+    URL url = new URL(String.format("http://%s:%d/jmx?qry=%s", host, port, URLEncoder.encode(query, "UTF-8")));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(timeoutMs);
+    connection.setReadTimeout(timeoutMs);
+    try {
+      int status = connection.getResponseCode();
+      if (status != HttpURLConnection.HTTP_OK) {
+        throw new IOException(String.format("Querying %s failed with status %d", url, status));
+      }
+      List<JsonNode> beans = new ArrayList<>();
+      try (InputStream in = connection.getInputStream()) {
+        JsonNode root = MAPPER.readTree(in);
+        JsonNode beansNode = root == null ? null : root.get("beans");
+        if (beansNode != null) {
+          for (JsonNode bean : beansNode) {
+            beans.add(bean);
+          }
+        }
+      }
+      return beans;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  public static String getText(JsonNode bean, String attribute) {
+    JsonNode value = bean.get(attribute);
+    return value == null || value.isNull() ? "" : value.getValueAsText();
+  }
+
+  /**
+   * Returns an attribute holding JSON text, e.g. the nodes listed by NameNodeInfo, or an empty object if the bean
+   * doesn't have it.
+   */
+  public static JsonNode getJson(JsonNode bean, String attribute) throws IOException {
+    String text = getText(bean, attribute);
+    return text.isEmpty() ? MAPPER.createObjectNode() : MAPPER.readTree(text);
+  }
+
+  /**
+   * Returns a numeric attribute, truncated to a long, or 0 if the bean doesn't have it.
+   */
+  public static long getLong(JsonNode bean, String attribute) {
+    JsonNode value = bean.get(attribute);
+    return value != null && value.isNumber() ? value.getLongValue() : 0;
+  }
+}
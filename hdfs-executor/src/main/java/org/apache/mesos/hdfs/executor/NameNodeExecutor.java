@@ -20,23 +20,41 @@ import org.apache.mesos.file.FileUtils;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.util.HDFSConstants;
 import org.apache.mesos.hdfs.util.TaskStatusFactory;
+import org.apache.mesos.net.CachingResolver;
 import org.apache.mesos.process.FailureUtils;
+import org.apache.mesos.process.ProcessUtil;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.InetAddress;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
  * The Executor for NameNodes.
  */
 public class NameNodeExecutor extends AbstractNodeExecutor {
+  private static final long EXCLUDE_RETRY_DELAY_MS = 10000;
+
   private final Log log = LogFactory.getLog(NameNodeExecutor.class);
   private final CuratorFramework curatorClient;
+  private final CachingResolver resolver;
 
   private Task nameNodeTask;
   private Task zkfcNodeTask;
+  // The ids of the tasks launched and not yet killed, the driver is stopped once none are left
+  private final Set<String> liveTaskIds = new HashSet<>();
+  private final Path excludeFile = Paths.get("etc", "hadoop", HDFSConstants.HOSTS_EXCLUDE_FILE_NAME);
+  // The hosts the scheduler last asked to exclude, comma separated
+  private volatile String excludedHosts = "";
 
   /**
    * The constructor for the primary name node which saves the configuration.
@@ -45,6 +63,7 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
   NameNodeExecutor(HdfsFrameworkConfig config) {
     super(config);
     curatorClient = createCuratorClient();
+    resolver = new CachingResolver(config.getDnsCacheTtl(), config.getDnsNegativeCacheTtl());
   }
 
   private CuratorFramework createCuratorClient() {
@@ -74,15 +93,16 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
   @Override
   public void launchTask(final ExecutorDriver driver, final TaskInfo taskInfo) {
     executorInfo = taskInfo.getExecutor();
+    synchronized (liveTaskIds) {
+      liveTaskIds.add(taskInfo.getTaskId().getValue());
+    }
 
     // NameNode Task
     if (taskInfo.getTaskId().getValue().contains(HDFSConstants.NAME_NODE_TASKID)) {
       launchNameNodeTask(driver, taskInfo);
 
-      TimedHealthCheck healthCheckNN = new TimedHealthCheck(driver, nameNodeTask);
-      healthCheckTimer.scheduleAtFixedRate(healthCheckNN,
-        config.getHealthCheckWaitingPeriod(),
-        config.getHealthCheckFrequency());
+      startHealthCheck(driver, nameNodeTask);
+      startTelemetry(driver, nameNodeTask);
       return;
     }
 
@@ -90,10 +110,7 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
     if (taskInfo.getTaskId().getValue().contains(HDFSConstants.ZKFC_NODE_ID)) {
       launchZKFCTask(driver, taskInfo);
 
-      TimedHealthCheck healthCheckZN = new TimedHealthCheck(driver, zkfcNodeTask);
-      healthCheckTimer.scheduleAtFixedRate(healthCheckZN,
-        config.getHealthCheckWaitingPeriod(),
-        config.getHealthCheckFrequency());
+      startHealthCheck(driver, zkfcNodeTask);
       return;
     }
 
@@ -193,7 +210,7 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
     }
 
     TaskStatus status = TaskStatusFactory.createRunningStatus(zkfcNodeTask.getTaskInfo().getTaskId());
-    driver.sendStatusUpdate(status);
+    driver.sendStatusUpdate(withLaunchTrace(status, zkfcNodeTask));
   }
 
   private String getNameNodeStatus() throws Exception {
@@ -216,6 +233,7 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
   private void startNameNode(ExecutorDriver driver, String startType) {
     log.info("Starting NN, startType=" + startType);
     initDir();
+    initExcludeFile();
 
     if (startType != null) {
       runNameNodeCommand(driver, startType);
@@ -225,9 +243,9 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
       startProcess(driver, nameNodeTask);
     }
 
-    TaskStatus status = TaskStatusFactory.createNameNodeStatus(
+    TaskStatus status = withLaunchTrace(TaskStatusFactory.createNameNodeStatus(
       nameNodeTask.getTaskInfo().getTaskId(),
-      true);
+      true), nameNodeTask);
 
     log.info("Sending status update: " + status);
     driver.sendStatusUpdate(status);
@@ -237,35 +255,14 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
     runCommand(driver, nameNodeTask, "bin/hdfs-mesos-namenode " + cmd);
   }
 
-  private boolean waitDnsResolution(String dnsName) {
-    while (!dnsResolves(dnsName)) {
-      log.info("Waiting for DNS resolution: " + dnsName);
-      try {
-        Thread.sleep(HDFSConstants.POLL_DELAY_MS);
-      } catch (InterruptedException ex) {
-        log.warn("DNS sleep interrupted.");
-      }
-    }
-
-    log.info("DNS resolved: " + dnsName);
-    return true;
-  }
-
-  private boolean dnsResolves(String dnsName) {
+  private void waitDnsResolution(String dnsName) throws InterruptedException {
     // Short circuit since Mesos handles this otherwise
     if (!config.usingMesosDns()) {
-      return true;
-    }
-
-    log.info("Resolving DNS for " + dnsName);
-    try {
-      InetAddress.getByName(dnsName);
-      log.info("Successfully found " + dnsName);
-      return true;
-    } catch (SecurityException | IOException e) {
-      log.warn("Couldn't resolve dnsName " + dnsName);
-      return false;
+      return;
     }
+    log.info("Waiting for DNS resolution: " + dnsName);
+    resolver.awaitResolvable(Collections.singleton(dnsName));
+    log.info("DNS resolved: " + dnsName);
   }
 
   private String getStatusPath() {
@@ -292,6 +289,56 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
     }
   }
 
+  /**
+   * Creates dfs.hosts.exclude, which the NameNode refuses to start without.  A restarted NameNode keeps reading the
+   * hosts excluded so far.
+   */
+  private void initExcludeFile() {
+    if (Files.exists(excludeFile)) {
+      return;
+    }
+    try {
+      writeExcludeFile(excludedHosts);
+    } catch (IOException e) {
+      final String errorMsg = "unable to write " + excludeFile;
+      log.error(errorMsg, e);
+      throw new ExecutorException(errorMsg, e);
+    }
+  }
+
+  private void writeExcludeFile(String hosts) throws IOException {
+    List<String> lines = hosts.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(hosts.split(","));
+    Path tempPath = excludeFile.resolveSibling(excludeFile.getFileName() + ".tmp");
+    Files.write(tempPath, lines, Charset.forName("UTF-8"));
+    Files.move(tempPath, excludeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Writes the hosts to dfs.hosts.exclude and has the NameNodes reread it, which starts decommissioning the DataNodes
+   * on hosts added and puts those on hosts removed back in service.  Returns false if it should be retried.
+   */
+  private synchronized boolean refreshExcludedHosts(String hosts) {
+    if (!hosts.equals(excludedHosts)) {
+      // The scheduler asked for other hosts since
+      return true;
+    }
+    try {
+      writeExcludeFile(hosts);
+      log.info("Excluding hosts [" + hosts + "], refreshing the NameNodes");
+      int exitCode = ProcessUtil.startCmd("bin/hdfs dfsadmin -refreshNodes").waitFor();
+      if (exitCode == 0) {
+        return true;
+      }
+      log.error("Refreshing the NameNodes failed with exit code " + exitCode);
+    } catch (IOException e) {
+      log.error("Excluding hosts [" + hosts + "] failed", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return true;
+    }
+    return false;
+  }
+
   @Override
   public void killTask(ExecutorDriver driver, TaskID taskId) {
     log.info("Killing task : " + taskId.getValue());
@@ -303,13 +350,23 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
     }
 
     if (task != null && task.getProcess() != null) {
-      task.getProcess().destroy();
-      task.setProcess(null);
+      stopProcess(task);
+    } else if (task != null) {
+      stopJobs(task);
     }
 
     TaskStatus status = TaskStatusFactory.createKilledStatus(taskId);
     log.info("Sending status update: " + status);
     driver.sendStatusUpdate(status);
+    // The NameNode and its ZKFC share this executor, killing one of them leaves the other running
+    boolean lastTask;
+    synchronized (liveTaskIds) {
+      liveTaskIds.remove(taskId.getValue());
+      lastTask = liveTaskIds.isEmpty();
+    }
+    if (lastTask) {
+      driver.stop();
+    }
   }
 
   @Override
@@ -326,9 +383,35 @@ public class NameNodeExecutor extends AbstractNodeExecutor {
 
   @Override
   public void frameworkMessage(ExecutorDriver driver, byte[] msg) {
-    super.frameworkMessage(driver, msg);
     String messageStr = new String(msg, Charset.defaultCharset());
     log.info(String.format("Received framework message: %s", messageStr));
+    if (messageStr.startsWith(HDFSConstants.EXCLUDE_HOSTS)) {
+      excludedHosts = messageStr.substring(HDFSConstants.EXCLUDE_HOSTS.length()).trim();
+      // Refreshing waits on the NameNodes, so it is kept off the driver thread
+      scheduler.execute(ExcludedHostsRefresh.JOB_NAME, new ExcludedHostsRefresh(excludedHosts));
+      return;
+    }
+    super.frameworkMessage(driver, msg);
+  }
+
+  /**
+   * Refreshes the excluded hosts, retrying until it succeeds or the scheduler asks for other hosts.
+   */
+  private class ExcludedHostsRefresh implements Runnable {
+    static final String JOB_NAME = "exclude-hosts";
+
+    private final String hosts;
+
+    ExcludedHostsRefresh(String hosts) {
+      this.hosts = hosts;
+    }
+
+    @Override
+    public void run() {
+      if (!refreshExcludedHosts(hosts)) {
+        scheduler.schedule(JOB_NAME, this, EXCLUDE_RETRY_DELAY_MS);
+      }
+    }
   }
 
   private boolean processRunning(Task task) {
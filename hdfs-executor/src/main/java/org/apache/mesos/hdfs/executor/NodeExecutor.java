@@ -3,15 +3,20 @@ package org.apache.mesos.hdfs.executor;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.ExecutorDriver;
 import org.apache.mesos.MesosExecutorDriver;
+import org.apache.mesos.Protos.ExecutorInfo;
+import org.apache.mesos.Protos.FrameworkInfo;
+import org.apache.mesos.Protos.SlaveInfo;
 import org.apache.mesos.Protos.Status;
 import org.apache.mesos.Protos.TaskID;
 import org.apache.mesos.Protos.TaskInfo;
 import org.apache.mesos.Protos.TaskState;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.util.HDFSConstants;
 import org.apache.mesos.process.FailureUtils;
 import org.apache.mesos.protobuf.TaskStatusBuilder;
 
@@ -42,6 +47,14 @@ public class NodeExecutor extends AbstractNodeExecutor {
     FailureUtils.exit("mesos driver exited", driver.run() == Status.DRIVER_STOPPED ? 0 : 1);
   }
 
+  @Override
+  public void registered(ExecutorDriver driver, ExecutorInfo executorInfo,
+    FrameworkInfo frameworkInfo, SlaveInfo slaveInfo) {
+    // Discovered first, so the config is fetched and watched with the data disks from the start
+    dataDisks = new DataDiskDiscovery(config).discover(slaveInfo);
+    super.registered(driver, executorInfo, frameworkInfo, slaveInfo);
+  }
+
   /**
    * Add tasks to the task list and then start the tasks.
    */
@@ -50,23 +63,34 @@ public class NodeExecutor extends AbstractNodeExecutor {
     executorInfo = taskInfo.getExecutor();
     task = new Task(taskInfo);
     startProcess(driver, task);
-    driver.sendStatusUpdate(TaskStatusBuilder.newBuilder()
+    TaskStatusBuilder status = TaskStatusBuilder.newBuilder()
       .setTaskId(taskInfo.getTaskId())
       .setState(TaskState.TASK_RUNNING)
-      .setData(taskInfo.getData()).build());
+      .setData(taskInfo.getData())
+      .setLabels(task.getLaunchTraceLabels());
+    if (task.getType().equals(HDFSConstants.DATA_NODE_ID) && !dataDisks.isEmpty()) {
+      status.addLabel(HDFSConstants.DATA_DIRS_KEY, StringUtils.join(dataDisks, ","));
+    }
+    driver.sendStatusUpdate(status.build());
+
+    startHealthCheck(driver, task);
+    startTelemetry(driver, task);
   }
 
   @Override
   public void killTask(ExecutorDriver driver, TaskID taskId) {
     log.info("Killing task : " + taskId.getValue());
     if (task.getProcess() != null && taskId.equals(task.getTaskInfo().getTaskId())) {
-      task.getProcess().destroy();
-      task.setProcess(null);
+      stopProcess(task);
+    } else if (taskId.equals(task.getTaskInfo().getTaskId())) {
+      stopJobs(task);
     }
     driver.sendStatusUpdate(TaskStatusBuilder.newBuilder()
       .setTaskId(taskId)
       .setState(TaskState.TASK_KILLED)
       .build());
+    // The executor only runs this task, so it goes away with it
+    driver.stop();
   }
 
   @Override
@@ -0,0 +1,77 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.mesos.Protos.Labels;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.protobuf.LabelBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of a health check of a node: whether the node is up at all, the metrics read from it and the metrics
+ * which are past their thresholds.
+ */
+public class NodeHealth {
+  private final boolean alive;
+  private final Map<String, String> metrics = new LinkedHashMap<>();
+  private final List<String> problems = new ArrayList<>();
+
+  public NodeHealth(boolean alive) {
+    this.alive = alive;
+  }
+
+  public void addMetric(String name, Object value) {
+    metrics.put(name, String.valueOf(value));
+  }
+
+  public void addProblem(String problem) {
+    problems.add(problem);
+  }
+
+  /**
+   * Returns whether the node answered the health check.  Nodes which don't are killed.
+   */
+  public boolean isAlive() {
+    return alive;
+  }
+
+  /**
+   * Returns whether the node answered the health check and all of its metrics are within their thresholds.
+   */
+  public boolean isHealthy() {
+    return alive && problems.isEmpty();
+  }
+
+  public Map<String, String> getMetrics() {
+    return Collections.unmodifiableMap(metrics);
+  }
+
+  public List<String> getProblems() {
+    return Collections.unmodifiableList(problems);
+  }
+
+  /**
+   * Returns the compact summary sent to the scheduler on TaskStatus labels, e.g. health=unhealthy,
+   * health.failed_volumes=1, health.problems=failed_volumes 1 > 0.
+   */
+  public Labels toLabels() {
+    LabelBuilder labels = new LabelBuilder()
+      .addLabel(HDFSConstants.HEALTH_KEY, isHealthy() ? HDFSConstants.HEALTH_HEALTHY_VAL
+        : HDFSConstants.HEALTH_UNHEALTHY_VAL);
+    for (Map.Entry<String, String> metric : metrics.entrySet()) {
+      labels.addLabel(HDFSConstants.HEALTH_KEY_PREFIX + metric.getKey(), metric.getValue());
+    }
+    // Always sent, so problems reported earlier are cleared on the scheduler
+    labels.addLabel(HDFSConstants.HEALTH_KEY_PREFIX + "problems", StringUtils.join(problems, "; "));
+    return labels.build();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("alive=%s metrics=%s problems=%s", alive, metrics, problems);
+  }
+}
@@ -1,75 +1,179 @@
 package org.apache.mesos.hdfs.executor;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.mesos.ExecutorDriver;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.util.HDFSConstants;
-import org.apache.mesos.stream.StreamUtil;
+import org.apache.mesos.hdfs.util.TaskPorts;
+import org.codehaus.jackson.JsonNode;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
- * The Task class for use within the executor.
+ * Checks the health of nodes by querying the /jmx servlet on their http port.  A node which doesn't answer is dead,
+ * while one which answers is judged against the thresholds in the framework config:
+ * <ul>
+ * <li>NameNode: HA state and safemode, along with the DataNodes being decommissioned for the scheduler</li>
+ * <li>JournalNode: transactions the journals lag behind the writer</li>
+ * <li>DataNode: failed volumes and active xceivers</li>
+ * </ul>
+ * The ZKFC has no http server, so it is only checked for accepting connections on its rpc port.
  */
 public class NodeHealthChecker {
+  private static final String NAME_NODE_STATUS_BEAN = "Hadoop:service=NameNode,name=NameNodeStatus";
+  private static final String NAME_NODE_INFO_BEAN = "Hadoop:service=NameNode,name=NameNodeInfo";
+  private static final String FS_NAMESYSTEM_BEAN = "Hadoop:service=NameNode,name=FSNamesystem";
+  private static final String JOURNAL_BEANS = "Hadoop:service=JournalNode,name=Journal-*";
+  private static final String DATASET_BEANS = "Hadoop:service=DataNode,name=FSDatasetState*";
+  private static final String DATA_NODE_INFO_BEAN = "Hadoop:service=DataNode,name=DataNodeInfo";
 
   private final Log log = LogFactory.getLog(NodeHealthChecker.class);
+  private final HdfsFrameworkConfig config;
 
-  public NodeHealthChecker() {
+  public NodeHealthChecker(HdfsFrameworkConfig config) {
+    this.config = config;
   }
 
-  public boolean runHealthCheckForTask(ExecutorDriver driver, Task task) {
-    String taskIdStr = task.getTaskInfo().getTaskId().getValue();
-    int healthCheckPort = getHealthCheckPort(taskIdStr);
-    boolean taskHealthy = false;
+  public NodeHealth runHealthCheckForTask(Task task) {
+    String portName = task.getType().equals(HDFSConstants.ZKFC_NODE_ID) ? HDFSConstants.RPC_PORT_NAME
+      : HDFSConstants.HTTP_PORT_NAME;
+    int port = TaskPorts.getPort(task.getTaskInfo(), task.getType(), portName);
+    if (port == -1) {
+      log.error("Task unknown: " + task.getTaskInfo().getTaskId().getValue());
+      return new NodeHealth(false);
+    }
 
-    if (healthCheckPort != -1) {
-      String healthCheckErrStr = "Error in node health check: ";
-      String addressInUseStr = "Address already in use";
-      Socket socket = null;
-      try {
-        // TODO (elingg) with better process supervision, check which process is
-        // bound to the port.
-        // Also, possibly do a http check for the name node UI as an additional
-        // health check.
-        String localhostAddress = InetAddress.getLocalHost().getHostAddress();
-        socket = new Socket();
-        socket.bind(new InetSocketAddress(localhostAddress, healthCheckPort));
-      } catch (IOException e) {
-        if (e.getMessage().contains(addressInUseStr)) {
-          taskHealthy = true;
-          log.info("Could not bind to port " + healthCheckPort + ", port is in use as expected.");
-        } else {
-          log.error(healthCheckErrStr, e);
-        }
-      } catch (SecurityException | IllegalArgumentException e) {
-        log.error(healthCheckErrStr, e);
+    try {
+      String host = InetAddress.getLocalHost().getHostAddress();
+      JmxClient jmx = new JmxClient(host, port, config.getHealthCheckTimeout());
+      switch (task.getType()) {
+        case HDFSConstants.NAME_NODE_ID:
+          return checkNameNode(jmx);
+        case HDFSConstants.JOURNAL_NODE_ID:
+          return checkJournalNode(jmx);
+        case HDFSConstants.DATA_NODE_ID:
+          return checkDataNode(jmx);
+        default:
+          return checkConnect(host, port);
       }
-      StreamUtil.closeQuietly(socket);
+    } catch (IOException | RuntimeException e) {
+      log.error("Error in node health check: ", e);
+      return new NodeHealth(false);
     }
+  }
 
-    return taskHealthy;
+  NodeHealth checkNameNode(JmxClient jmx) throws IOException {
+    NodeHealth health = new NodeHealth(true);
+    for (JsonNode bean : jmx.query(NAME_NODE_STATUS_BEAN)) {
+      health.addMetric(HDFSConstants.HA_STATE_METRIC, JmxClient.getText(bean, "State"));
+    }
+    for (JsonNode bean : jmx.query(FS_NAMESYSTEM_BEAN)) {
+      health.addMetric(HDFSConstants.UNDER_REPLICATED_BLOCKS_METRIC,
+        JmxClient.getLong(bean, "UnderReplicatedBlocks"));
+    }
+    for (JsonNode bean : jmx.query(NAME_NODE_INFO_BEAN)) {
+      // The safemode status is empty once the NameNode left safemode
+      boolean safemode = !JmxClient.getText(bean, "Safemode").isEmpty();
+      health.addMetric("safemode", safemode ? "on" : "off");
+      if (safemode) {
+        health.addProblem("in safemode");
+      }
+      addDecommissionMetrics(health, bean);
+    }
+    return health;
   }
 
-  private int getHealthCheckPort(String taskIdStr) {
-    int healthCheckPort = -1;
+  /**
+   * Adds the hosts of the DataNodes being decommissioned and those done.  Both are always added, so hosts reported
+   * earlier are cleared on the scheduler.
+   */
+  private void addDecommissionMetrics(NodeHealth health, JsonNode nameNodeInfo) throws IOException {
+    Set<String> decommissioning = new TreeSet<>();
+    Set<String> decommissioned = new TreeSet<>();
+    // Live nodes are keyed by host:port, or by host on older releases
+    for (Iterator<Map.Entry<String, JsonNode>> nodes = JmxClient.getJson(nameNodeInfo, "LiveNodes").getFields();
+      nodes.hasNext();) {
+      Map.Entry<String, JsonNode> node = nodes.next();
+      String adminState = JmxClient.getText(node.getValue(), "adminState");
+      if ("Decommission In Progress".equals(adminState)) {
+        decommissioning.add(getHost(node.getKey()));
+      } else if ("Decommissioned".equals(adminState)) {
+        decommissioned.add(getHost(node.getKey()));
+      }
+    }
+    for (Iterator<Map.Entry<String, JsonNode>> nodes = JmxClient.getJson(nameNodeInfo, "DeadNodes").getFields();
+      nodes.hasNext();) {
+      Map.Entry<String, JsonNode> node = nodes.next();
+      if ("true".equals(JmxClient.getText(node.getValue(), "decommissioned"))) {
+        decommissioned.add(getHost(node.getKey()));
+      }
+    }
+    health.addMetric(HDFSConstants.DECOMMISSIONING_METRIC, StringUtils.join(decommissioning, ","));
+    health.addMetric(HDFSConstants.DECOMMISSIONED_METRIC, StringUtils.join(decommissioned, ","));
+  }
 
-    if (taskIdStr.contains(HDFSConstants.DATA_NODE_ID)) {
-      healthCheckPort = HDFSConstants.DATA_NODE_PORT;
-    } else if (taskIdStr.contains(HDFSConstants.JOURNAL_NODE_ID)) {
-      healthCheckPort = HDFSConstants.JOURNAL_NODE_PORT;
-    } else if (taskIdStr.contains(HDFSConstants.ZKFC_NODE_ID)) {
-      healthCheckPort = HDFSConstants.ZKFC_NODE_PORT;
-    } else if (taskIdStr.contains(HDFSConstants.NAME_NODE_ID)) {
-      healthCheckPort = HDFSConstants.NAME_NODE_PORT;
-    } else {
-      log.error("Task unknown: " + taskIdStr);
+  private static String getHost(String node) {
+    int colon = node.lastIndexOf(':');
+    return colon == -1 ? node : node.substring(0, colon);
+  }
+
+  NodeHealth checkJournalNode(JmxClient jmx) throws IOException {
+    NodeHealth health = new NodeHealth(true);
+    List<JsonNode> journals = jmx.query(JOURNAL_BEANS);
+    if (journals.isEmpty()) {
+      // No journal is written until the NameNodes are formatted
+      return health;
+    }
+    long lag = 0;
+    for (JsonNode bean : journals) {
+      lag = Math.max(lag, JmxClient.getLong(bean, "CurrentLagTxns"));
+    }
+    health.addMetric("lag_txns", lag);
+    long maxLag = config.getHealthCheckJournalMaxLagTxns();
+    if (lag > maxLag) {
+      health.addProblem(String.format("lag_txns %d > %d", lag, maxLag));
     }
+    return health;
+  }
 
-    return healthCheckPort;
+  NodeHealth checkDataNode(JmxClient jmx) throws IOException {
+    NodeHealth health = new NodeHealth(true);
+    List<JsonNode> datasets = jmx.query(DATASET_BEANS);
+    if (!datasets.isEmpty()) {
+      long failedVolumes = 0;
+      for (JsonNode bean : datasets) {
+        failedVolumes += JmxClient.getLong(bean, "NumFailedVolumes");
+      }
+      health.addMetric("failed_volumes", failedVolumes);
+      int maxFailedVolumes = config.getHealthCheckDataNodeMaxFailedVolumes();
+      if (failedVolumes > maxFailedVolumes) {
+        health.addProblem(String.format("failed_volumes %d > %d", failedVolumes, maxFailedVolumes));
+      }
+    }
+    for (JsonNode bean : jmx.query(DATA_NODE_INFO_BEAN)) {
+      long xceivers = JmxClient.getLong(bean, "XceiverCount");
+      health.addMetric("xceivers", xceivers);
+      int maxXceivers = config.getHealthCheckDataNodeMaxXceivers();
+      if (xceivers > maxXceivers) {
+        health.addProblem(String.format("xceivers %d > %d", xceivers, maxXceivers));
+      }
+    }
+    return health;
   }
 
+  private NodeHealth checkConnect(String host, int port) throws IOException {
+    try (Socket socket = new Socket()) {
+      socket.connect(new InetSocketAddress(host, port), config.getHealthCheckTimeout());
+    }
+    return new NodeHealth(true);
+  }
 }
@@ -2,6 +2,12 @@ package org.apache.mesos.hdfs.executor;
 
 import org.apache.mesos.Protos;
 import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.hdfs.util.LaunchStage;
+import org.apache.mesos.process.ProcessSupervisor;
+import org.apache.mesos.protobuf.LabelBuilder;
+
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * The Task class for use within the executor.
@@ -11,7 +17,10 @@ public class Task {
   private Protos.TaskInfo taskInfo;
   private String cmd;
   private Process process;
+  private ProcessSupervisor supervisor;
   private String type;
+  // When the stages of the launch were reached, sent to the scheduler on status updates
+  private final Map<LaunchStage, Long> launchTrace = new EnumMap<>(LaunchStage.class);
 
   public Task(Protos.TaskInfo taskInfo) {
     this.taskInfo = taskInfo;
@@ -35,6 +44,14 @@ public class Task {
     this.process = process;
   }
 
+  public ProcessSupervisor getSupervisor() {
+    return supervisor;
+  }
+
+  public void setSupervisor(ProcessSupervisor supervisor) {
+    this.supervisor = supervisor;
+  }
+
   public Protos.TaskInfo getTaskInfo() {
     return taskInfo;
   }
@@ -47,6 +64,32 @@ public class Task {
     return type;
   }
 
+  /**
+   * Records when a stage of the launch was reached, unless it was recorded before.  Returns whether it was recorded.
+   */
+  public synchronized boolean markStage(LaunchStage stage, long timeMs) {
+    if (launchTrace.containsKey(stage)) {
+      return false;
+    }
+    launchTrace.put(stage, timeMs);
+    return true;
+  }
+
+  public synchronized boolean hasStage(LaunchStage stage) {
+    return launchTrace.containsKey(stage);
+  }
+
+  /**
+   * Returns the stages of the launch reached so far as TaskStatus labels.
+   */
+  public synchronized Protos.Labels getLaunchTraceLabels() {
+    LabelBuilder labels = new LabelBuilder();
+    for (Map.Entry<LaunchStage, Long> entry : launchTrace.entrySet()) {
+      labels.addLabel(entry.getKey().getLabel(), String.valueOf(entry.getValue()));
+    }
+    return labels.build();
+  }
+
   private void setType(String taskId) {
     type = "";
     if (taskId.contains("task." + HDFSConstants.JOURNAL_NODE_ID)) {
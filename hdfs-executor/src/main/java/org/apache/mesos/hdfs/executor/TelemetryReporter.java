@@ -0,0 +1,152 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.ExecutorDriver;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.telemetry.TelemetryBatch;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.hdfs.util.TaskPorts;
+import org.codehaus.jackson.JsonNode;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples JVM, process and daemon metrics of a node through its /jmx servlet and sends them to the scheduler in
+ * batches of framework messages.  Metrics ending in _total are counters, all others are gauges.  Samples which can't
+ * be taken, e.g. while the node is starting, are skipped.
+ */
+public class TelemetryReporter implements Runnable {
+  static final String JOB_NAME = "telemetry";
+  private static final String JVM_BEANS = "Hadoop:service=*,name=JvmMetrics";
+  private static final String OS_BEAN = "java.lang:type=OperatingSystem";
+  private static final long NANOS_PER_MILLI = 1000000;
+
+  private static final List<Metric> JVM_METRICS = Arrays.asList(
+    new Metric("heap_used_mb", JVM_BEANS, "MemHeapUsedM"),
+    new Metric("heap_committed_mb", JVM_BEANS, "MemHeapCommittedM"),
+    new Metric("heap_max_mb", JVM_BEANS, "MemHeapMaxM"),
+    new Metric("gc_count_total", JVM_BEANS, "GcCount"),
+    new Metric("gc_time_ms_total", JVM_BEANS, "GcTimeMillis"),
+    new Metric("cpu_time_ms_total", OS_BEAN, "ProcessCpuTime", NANOS_PER_MILLI),
+    new Metric("open_fds", OS_BEAN, "OpenFileDescriptorCount"));
+
+  private static final Map<String, List<Metric>> NODE_METRICS = new HashMap<>();
+
+  static {
+    NODE_METRICS.put(HDFSConstants.NAME_NODE_ID, Arrays.asList(
+      new Metric("files", "Hadoop:service=NameNode,name=FSNamesystem", "FilesTotal"),
+      new Metric("blocks", "Hadoop:service=NameNode,name=FSNamesystem", "BlocksTotal"),
+      new Metric("under_replicated_blocks", "Hadoop:service=NameNode,name=FSNamesystem", "UnderReplicatedBlocks")));
+    NODE_METRICS.put(HDFSConstants.JOURNAL_NODE_ID, Arrays.asList(
+      new Metric("txns_written_total", "Hadoop:service=JournalNode,name=Journal-*", "TxnsWritten"),
+      new Metric("lag_txns", "Hadoop:service=JournalNode,name=Journal-*", "CurrentLagTxns")));
+    NODE_METRICS.put(HDFSConstants.DATA_NODE_ID, Arrays.asList(
+      new Metric("bytes_read_total", "Hadoop:service=DataNode,name=DataNodeActivity-*", "BytesRead"),
+      new Metric("bytes_written_total", "Hadoop:service=DataNode,name=DataNodeActivity-*", "BytesWritten"),
+      new Metric("xceivers", "Hadoop:service=DataNode,name=DataNodeInfo", "XceiverCount")));
+  }
+
+  private final Log log = LogFactory.getLog(TelemetryReporter.class);
+  private final HdfsFrameworkConfig config;
+  private final ExecutorDriver driver;
+  private final Task task;
+  private final List<Metric> metrics = new ArrayList<>(JVM_METRICS);
+  private TelemetryBatch batch;
+
+  public TelemetryReporter(HdfsFrameworkConfig config, ExecutorDriver driver, Task task) {
+    this.config = config;
+    this.driver = driver;
+    this.task = task;
+    if (NODE_METRICS.containsKey(task.getType())) {
+      metrics.addAll(NODE_METRICS.get(task.getType()));
+    }
+    this.batch = newBatch();
+  }
+
+  /**
+   * Returns whether telemetry can be collected from the task's node.  The ZKFC has no http server.
+   */
+  public static boolean isSupported(Task task) {
+    return NODE_METRICS.containsKey(task.getType());
+  }
+
+  @Override
+  public void run() {
+    try {
+      long[] values = sample();
+      batch.add(System.currentTimeMillis(), values);
+    } catch (IOException | RuntimeException e) {
+      log.debug("Unable to sample telemetry of task " + task.getTaskInfo().getTaskId().getValue(), e);
+      return;
+    }
+
+    if (batch.size() >= config.getTelemetryBatchSize()) {
+      try {
+        driver.sendFrameworkMessage(batch.toBytes());
+      } catch (IOException | RuntimeException e) {
+        log.warn("Unable to send telemetry of task " + task.getTaskInfo().getTaskId().getValue(), e);
+      }
+      batch = newBatch();
+    }
+  }
+
+  private long[] sample() throws IOException {
+    int port = TaskPorts.getPort(task.getTaskInfo(), task.getType(), HDFSConstants.HTTP_PORT_NAME);
+    if (port == -1) {
+      throw new IOException("No http port for task " + task.getTaskInfo().getTaskId().getValue());
+    }
+    JmxClient jmx = new JmxClient(InetAddress.getLocalHost().getHostAddress(), port, config.getHealthCheckTimeout());
+
+    // Each query is only made once per sample, however many metrics it has
+    Map<String, List<JsonNode>> beans = new HashMap<>();
+    long[] values = new long[metrics.size()];
+    for (int i = 0; i < metrics.size(); i++) {
+      Metric metric = metrics.get(i);
+      List<JsonNode> matches = beans.get(metric.query);
+      if (matches == null) {
+        matches = jmx.query(metric.query);
+        beans.put(metric.query, matches);
+      }
+      for (JsonNode bean : matches) {
+        values[i] += JmxClient.getLong(bean, metric.attribute) / metric.divisor;
+      }
+    }
+    return values;
+  }
+
+  private TelemetryBatch newBatch() {
+    List<String> names = new ArrayList<>(metrics.size());
+    for (Metric metric : metrics) {
+      names.add(metric.name);
+    }
+    return new TelemetryBatch(task.getTaskInfo().getTaskId().getValue(), task.getType(), names);
+  }
+
+  /**
+   * A metric read from an attribute of the beans matching a query, summed over all of them.
+   */
+  private static final class Metric {
+    private final String name;
+    private final String query;
+    private final String attribute;
+    private final long divisor;
+
+    private Metric(String name, String query, String attribute) {
+      this(name, query, attribute, 1);
+    }
+
+    private Metric(String name, String query, String attribute, long divisor) {
+      this.name = name;
+      this.query = query;
+      this.attribute = attribute;
+      this.divisor = divisor;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.ExecutorDriver;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.process.ProcessSupervisor;
+import org.apache.mesos.process.RestartPolicy;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class AbstractNodeExecutorTest {
+  private static final String JOURNAL_NODE_TASK_ID = "task.journalnode.journalnode.NodeExecutor.1";
+  private static final String DATA_NODE_TASK_ID = "task.datanode.datanode.NodeExecutor.2";
+
+  private final ExecutorDriver driver = mock(ExecutorDriver.class);
+  private CountingHealthChecker healthChecker;
+  private TestExecutor executor;
+
+  @Before
+  public void init() {
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hdfs.healthcheck.waitingperiod.ms", "0");
+    conf.set("mesos.hdfs.healthcheck.frequency.ms", "10");
+    conf.set("mesos.hdfs.healthcheck.max.failures", "3");
+    conf.set("mesos.hdfs.telemetry.interval.ms", "10");
+    HdfsFrameworkConfig config = new HdfsFrameworkConfig(conf);
+    healthChecker = new CountingHealthChecker(config);
+    executor = new TestExecutor(config, healthChecker);
+  }
+
+  @Test
+  public void killingTaskStopsOnlyItsJobs() throws Exception {
+    executor.launchTask(driver, createTaskInfo(JOURNAL_NODE_TASK_ID));
+    executor.launchTask(driver, createTaskInfo(DATA_NODE_TASK_ID));
+    List<ScheduledFuture<?>> journalNodeJobs = executor.getJobs(JOURNAL_NODE_TASK_ID);
+    List<ScheduledFuture<?>> dataNodeJobs = executor.getJobs(DATA_NODE_TASK_ID);
+    // A health check and telemetry job for each
+    assertEquals(2, journalNodeJobs.size());
+    assertEquals(2, dataNodeJobs.size());
+    awaitChecks(JOURNAL_NODE_TASK_ID, 1);
+
+    executor.killTask(driver, TaskID.newBuilder().setValue(JOURNAL_NODE_TASK_ID).build());
+
+    for (ScheduledFuture<?> job : journalNodeJobs) {
+      assertTrue(job.isCancelled());
+    }
+    assertTrue(executor.getJobs(JOURNAL_NODE_TASK_ID).isEmpty());
+    // A check which was running when the task was killed may still finish
+    Thread.sleep(50);
+    int journalNodeChecks = healthChecker.getChecks(JOURNAL_NODE_TASK_ID);
+    int dataNodeChecks = healthChecker.getChecks(DATA_NODE_TASK_ID);
+    awaitChecks(DATA_NODE_TASK_ID, dataNodeChecks + 3);
+    assertEquals(journalNodeChecks, healthChecker.getChecks(JOURNAL_NODE_TASK_ID));
+    for (ScheduledFuture<?> job : dataNodeJobs) {
+      assertFalse(job.isCancelled());
+    }
+
+    executor.killTask(driver, TaskID.newBuilder().setValue(DATA_NODE_TASK_ID).build());
+    for (ScheduledFuture<?> job : dataNodeJobs) {
+      assertTrue(job.isCancelled());
+    }
+  }
+
+  @Test
+  public void killsNodeOnlyAfterFailedHealthChecksInARow() throws Exception {
+    Task task = new Task(createTaskInfo(JOURNAL_NODE_TASK_ID));
+    ProcessSupervisor supervisor = new ProcessSupervisor(task.getType(), new Callable<Process>() {
+      @Override
+      public Process call() throws IOException {
+        return new ProcessBuilder("sleep", "30").start();
+      }
+    }, mock(ProcessSupervisor.Listener.class), new RestartPolicy(5, 60000, 0, 0));
+    task.setSupervisor(supervisor);
+    task.setProcess(supervisor.start());
+    Runnable healthCheck = executor.new TimedHealthCheck(driver, task);
+    try {
+      healthChecker.setAlive(false);
+      healthCheck.run();
+      healthCheck.run();
+      // An answer resets the count
+      healthChecker.setAlive(true);
+      healthCheck.run();
+      healthChecker.setAlive(false);
+      healthCheck.run();
+      healthCheck.run();
+      assertEquals(0, supervisor.getRestarts());
+
+      healthCheck.run();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (supervisor.getRestarts() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, supervisor.getRestarts());
+    } finally {
+      supervisor.stop(0);
+    }
+  }
+
+  private void awaitChecks(String taskId, int checks) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (healthChecker.getChecks(taskId) < checks && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(healthChecker.getChecks(taskId) >= checks);
+  }
+
+  private TaskInfo createTaskInfo(String taskId) {
+    return TaskInfo.newBuilder()
+      .setName(taskId)
+      .setTaskId(TaskID.newBuilder().setValue(taskId))
+      .setSlaveId(SlaveID.newBuilder().setValue("slave"))
+      .build();
+  }
+
+  /**
+   * Runs several tasks, like the NameNode executor, without starting their processes.
+   */
+  private static class TestExecutor extends AbstractNodeExecutor {
+    private final Map<String, Task> tasks = new HashMap<>();
+
+    TestExecutor(HdfsFrameworkConfig config, NodeHealthChecker healthChecker) {
+      super(config, healthChecker);
+    }
+
+    @Override
+    public void launchTask(ExecutorDriver driver, TaskInfo taskInfo) {
+      Task task = new Task(taskInfo);
+      tasks.put(taskInfo.getTaskId().getValue(), task);
+      startHealthCheck(driver, task);
+      startTelemetry(driver, task);
+    }
+
+    @Override
+    public void killTask(ExecutorDriver driver, TaskID taskId) {
+      stopProcess(tasks.remove(taskId.getValue()));
+    }
+
+    @Override
+    public void shutdown(ExecutorDriver driver) {
+    }
+  }
+
+  /**
+   * Counts the health checks of each task, which find the node healthy unless told otherwise.
+   */
+  private static class CountingHealthChecker extends NodeHealthChecker {
+    private final Map<String, AtomicInteger> checks = new HashMap<>();
+    private volatile boolean alive = true;
+
+    CountingHealthChecker(HdfsFrameworkConfig config) {
+      super(config);
+      checks.put(JOURNAL_NODE_TASK_ID, new AtomicInteger());
+      checks.put(DATA_NODE_TASK_ID, new AtomicInteger());
+    }
+
+    @Override
+    public NodeHealth runHealthCheckForTask(Task task) {
+      checks.get(task.getTaskInfo().getTaskId().getValue()).incrementAndGet();
+      return new NodeHealth(alive);
+    }
+
+    void setAlive(boolean alive) {
+      this.alive = alive;
+    }
+
+    int getChecks(String taskId) {
+      return checks.get(taskId).get();
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConfigReloaderTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path configPath;
+  private ConfigHandler handler;
+  private Server server;
+  private String configUri;
+  private ConfigReloader reloader;
+
+  @Before
+  public void init() throws Exception {
+    configPath = new File(folder.getRoot(), "hdfs-site.xml").toPath();
+    handler = new ConfigHandler();
+    server = new Server(0);
+    server.setHandler(handler);
+    server.start();
+    int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    configUri = "http://localhost:" + port + "/hdfs-site.xml";
+    reloader = new ConfigReloader(configPath);
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    server.stop();
+  }
+
+  @Test
+  public void reloadWritesConfigAndVersion() throws Exception {
+    handler.setConfig("v1", "<configuration/>");
+
+    assertTrue(reloader.reload(configUri));
+    assertEquals("<configuration/>", read(configPath));
+    assertEquals("v1", reloader.getVersion());
+    // Nothing to compare against yet
+    assertNull(handler.ifNoneMatch);
+  }
+
+  @Test
+  public void reloadIsConditionalOnVersionOnDisk() throws Exception {
+    handler.setConfig("v1", "<configuration/>");
+    assertTrue(reloader.reload(configUri));
+
+    assertFalse(reloader.reload(configUri));
+    assertEquals("\"v1\"", handler.ifNoneMatch);
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, handler.lastStatus);
+    assertEquals("v1", reloader.getVersion());
+
+    handler.setConfig("v2", "<configuration><property/></configuration>");
+    assertTrue(reloader.reload(configUri));
+    assertEquals("\"v1\"", handler.ifNoneMatch);
+    assertEquals("<configuration><property/></configuration>", read(configPath));
+    assertEquals("v2", reloader.getVersion());
+  }
+
+  @Test
+  public void reloadFetchesConfigMissingOnDisk() throws Exception {
+    handler.setConfig("v1", "<configuration/>");
+    assertTrue(reloader.reload(configUri));
+    Files.delete(configPath);
+
+    assertTrue(reloader.reload(configUri));
+    assertNull(handler.ifNoneMatch);
+    assertEquals("<configuration/>", read(configPath));
+  }
+
+  @Test
+  public void reloadRenamesSyncedTempFileOverConfig() throws Exception {
+    handler.setConfig("v1", "<configuration/>");
+    assertTrue(reloader.reload(configUri));
+    Object inode = Files.getAttribute(configPath, "unix:ino");
+    // Left behind by a crash during an earlier write
+    Path tempPath = configPath.resolveSibling("hdfs-site.xml.tmp");
+    Files.write(tempPath, "<configuration><partial".getBytes(UTF_8));
+
+    handler.setConfig("v2", "<configuration><property/></configuration>");
+    assertTrue(reloader.reload(configUri));
+
+    // The config was replaced by another file, not written in place
+    assertNotEquals(inode, Files.getAttribute(configPath, "unix:ino"));
+    assertEquals("<configuration><property/></configuration>", read(configPath));
+    assertFalse(Files.exists(tempPath));
+  }
+
+  @Test
+  public void failedFetchKeepsConfig() throws Exception {
+    handler.setConfig("v1", "<configuration/>");
+    assertTrue(reloader.reload(configUri));
+
+    handler.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    try {
+      reloader.reload(configUri);
+      fail("Expected the failed fetch to throw");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("500"));
+    }
+    assertEquals("<configuration/>", read(configPath));
+    assertEquals("v1", reloader.getVersion());
+  }
+
+  @Test
+  public void truncatedFetchKeepsConfig() throws Exception {
+    handler.setConfig("v1", "<configuration/>");
+    assertTrue(reloader.reload(configUri));
+
+    handler.setConfig("v2", "<configuration><property/></configuration>");
+    handler.truncate = true;
+    try {
+      reloader.reload(configUri);
+      fail("Expected the truncated fetch to throw");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals("<configuration/>", read(configPath));
+    assertEquals("v1", reloader.getVersion());
+    assertFalse(Files.exists(configPath.resolveSibling("hdfs-site.xml.tmp")));
+  }
+
+  @Test
+  public void watchAsksServerToWait() throws Exception {
+    handler.setConfig("v1", "<configuration/>");
+    assertTrue(reloader.reload(configUri));
+
+    assertFalse(reloader.watch(configUri, 5));
+    assertEquals("5", handler.wait);
+    assertEquals("\"v1\"", handler.ifNoneMatch);
+  }
+
+  private String read(Path path) throws IOException {
+    return new String(Files.readAllBytes(path), UTF_8);
+  }
+
+  /**
+   * Serves a config with its version as ETag, like the config server.
+   */
+  private static class ConfigHandler extends AbstractHandler {
+    private volatile String version;
+    private volatile String content;
+    private volatile int status = HttpServletResponse.SC_OK;
+    private volatile boolean truncate;
+    private volatile String ifNoneMatch;
+    private volatile String wait;
+    private volatile int lastStatus;
+
+    void setConfig(String version, String content) {
+      this.version = version;
+      this.content = content;
+    }
+
+    void setStatus(int status) {
+      this.status = status;
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+      baseRequest.setHandled(true);
+      ifNoneMatch = request.getHeader("If-None-Match");
+      wait = request.getParameter(HDFSConstants.WAIT_PARAM);
+      String etag = "\"" + version + "\"";
+      if (status != HttpServletResponse.SC_OK) {
+        lastStatus = status;
+        response.sendError(status);
+        return;
+      }
+      if (etag.equals(ifNoneMatch)) {
+        lastStatus = HttpServletResponse.SC_NOT_MODIFIED;
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+      lastStatus = HttpServletResponse.SC_OK;
+      byte[] body = content.getBytes(UTF_8);
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setHeader("ETag", etag);
+      response.setContentLength(body.length);
+      if (truncate) {
+        // The connection is closed before the promised content length was sent
+        response.getOutputStream().write(body, 0, body.length / 2);
+        response.flushBuffer();
+        baseRequest.getHttpChannel().getEndPoint().close();
+        return;
+      }
+      response.getOutputStream().write(body);
+    }
+  }
+}
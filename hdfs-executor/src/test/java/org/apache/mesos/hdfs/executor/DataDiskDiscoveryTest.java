@@ -0,0 +1,139 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos.Attribute;
+import org.apache.mesos.Protos.SlaveInfo;
+import org.apache.mesos.Protos.Value;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataDiskDiscoveryTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File mnt;
+  private File mountTable;
+
+  @Before
+  public void init() throws Exception {
+    mnt = folder.newFolder("mnt");
+    assertTrue(new File(mnt, "disk1").mkdir());
+    assertTrue(new File(mnt, "disk2").mkdir());
+    assertTrue(new File(mnt, "disk 3").mkdir());
+    assertTrue(new File(mnt, "disk4.img").createNewFile());
+    assertTrue(new File(mnt, "other").mkdir());
+
+    // disk2 is an empty directory on the root filesystem, not a mount point
+    mountTable = folder.newFile("mounts");
+    writeMountTable(
+      "/dev/sda1 / ext4 rw,relatime 0 0",
+      "/dev/sdb1 " + mnt + "/disk1 xfs rw,noatime 0 0",
+      "/dev/sdc1 " + mnt + "/disk\\0403 xfs rw,noatime 0 0",
+      "/dev/sdd1 " + mnt + "/other xfs rw,noatime 0 0",
+      "proc /proc proc rw,nosuid,nodev,noexec,relatime 0 0");
+  }
+
+  @Test
+  public void discoversDisksOfTextAttribute() {
+    DataDiskDiscovery discovery = createDiscovery("disks", mnt + "/disk*", true);
+
+    assertEquals(Arrays.asList("/mnt/a", "/mnt/b"),
+      discovery.discover(createSlaveInfo(textAttribute("disks", " /mnt/b, /mnt/a,,/mnt/b "))));
+  }
+
+  @Test
+  public void discoversDisksOfSetAttribute() {
+    DataDiskDiscovery discovery = createDiscovery("disks", null, true);
+    Attribute attribute = Attribute.newBuilder()
+      .setName("disks")
+      .setType(Value.Type.SET)
+      .setSet(Value.Set.newBuilder().addItem("/mnt/b").addItem("/mnt/a"))
+      .build();
+
+    assertEquals(Arrays.asList("/mnt/a", "/mnt/b"), discovery.discover(createSlaveInfo(attribute)));
+  }
+
+  @Test
+  public void skipsDisksWhichAreNotAbsolutePaths() {
+    DataDiskDiscovery discovery = createDiscovery("disks", null, true);
+
+    assertEquals(Collections.singletonList("/mnt/a"),
+      discovery.discover(createSlaveInfo(textAttribute("disks", "/mnt/a,mnt/b,/mnt/../etc,/mnt/<c>"))));
+  }
+
+  @Test
+  public void fallsBackToGlobWithoutAttribute() {
+    DataDiskDiscovery discovery = createDiscovery("disks", mnt + "/disk*", true);
+
+    assertEquals(Arrays.asList(mnt + "/disk 3", mnt + "/disk1"),
+      discovery.discover(createSlaveInfo(textAttribute("rack", "r1"))));
+    assertEquals(Arrays.asList(mnt + "/disk 3", mnt + "/disk1"), discovery.discover(null));
+  }
+
+  @Test
+  public void globMatchesOnlyMountedDirectories() {
+    assertEquals(Arrays.asList(mnt + "/disk 3", mnt + "/disk1"),
+      createDiscovery(null, mnt + "/disk*", true).discover(null));
+    assertEquals(Arrays.asList(mnt + "/disk 3", mnt + "/disk1", mnt + "/disk2"),
+      createDiscovery(null, mnt + "/disk*", false).discover(null));
+  }
+
+  @Test
+  public void usesEveryMatchWhenMountTableIsUnreadable() {
+    assertTrue(mountTable.delete());
+
+    assertEquals(Arrays.asList(mnt + "/disk 3", mnt + "/disk1", mnt + "/disk2"),
+      createDiscovery(null, mnt + "/disk*", true).discover(null));
+  }
+
+  @Test
+  public void discoversNothingWithoutGlobRoot() {
+    assertEquals(Collections.<String>emptyList(),
+      createDiscovery(null, mnt + "/missing/disk*", true).discover(null));
+    assertEquals(Collections.<String>emptyList(), createDiscovery(null, null, true).discover(null));
+  }
+
+  private DataDiskDiscovery createDiscovery(String attribute, String glob, boolean mountedOnly) {
+    Configuration conf = new Configuration(false);
+    if (attribute != null) {
+      conf.set("mesos.hdfs.datanode.disks.attribute", attribute);
+    }
+    if (glob != null) {
+      conf.set("mesos.hdfs.datanode.disks.glob", glob);
+    }
+    conf.setBoolean("mesos.hdfs.datanode.disks.mounted.only", mountedOnly);
+    return new DataDiskDiscovery(new HdfsFrameworkConfig(conf), mountTable);
+  }
+
+  private void writeMountTable(String... lines) throws Exception {
+    Files.write(mountTable.toPath(), Arrays.asList(lines), Charset.forName("UTF-8"));
+  }
+
+  private SlaveInfo createSlaveInfo(Attribute attribute) {
+    return SlaveInfo.newBuilder()
+      .setHostname("host1")
+      .addAttributes(attribute)
+      .build();
+  }
+
+  private Attribute textAttribute(String name, String value) {
+    return Attribute.newBuilder()
+      .setName(name)
+      .setType(Value.Type.TEXT)
+      .setText(Value.Text.newBuilder().setValue(value))
+      .build();
+  }
+}
@@ -0,0 +1,166 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NodeHealthCheckerTest {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private Configuration conf;
+  private FakeJmxClient jmx;
+
+  @Before
+  public void init() {
+    conf = new Configuration(false);
+    jmx = new FakeJmxClient();
+  }
+
+  @Test
+  public void journalNodeLaggingWithinThresholdIsHealthy() throws Exception {
+    jmx.addBeans("Hadoop:service=JournalNode,name=Journal-*",
+      "{\"name\": \"Hadoop:service=JournalNode,name=Journal-hdfs\", \"CurrentLagTxns\": 120}",
+      "{\"name\": \"Hadoop:service=JournalNode,name=Journal-other\", \"CurrentLagTxns\": 10000}");
+
+    NodeHealth health = createChecker().checkJournalNode(jmx);
+
+    assertTrue(health.isHealthy());
+    assertEquals("10000", health.getMetrics().get("lag_txns"));
+  }
+
+  @Test
+  public void journalNodeLaggingBeyondThresholdIsUnhealthy() throws Exception {
+    conf.set("mesos.hdfs.healthcheck.journalnode.max.lag.txns", "100");
+    jmx.addBeans("Hadoop:service=JournalNode,name=Journal-*", "{\"CurrentLagTxns\": 120}");
+
+    NodeHealth health = createChecker().checkJournalNode(jmx);
+
+    assertTrue(health.isAlive());
+    assertFalse(health.isHealthy());
+    assertEquals(Collections.singletonList("lag_txns 120 > 100"), health.getProblems());
+  }
+
+  @Test
+  public void journalNodeWithoutJournalsIsHealthy() throws Exception {
+    NodeHealth health = createChecker().checkJournalNode(jmx);
+
+    assertTrue(health.isHealthy());
+    assertTrue(health.getMetrics().isEmpty());
+  }
+
+  @Test
+  public void dataNodeWithFailedVolumesIsUnhealthy() throws Exception {
+    jmx.addBeans("Hadoop:service=DataNode,name=FSDatasetState*",
+      "{\"NumFailedVolumes\": 1}",
+      "{\"NumFailedVolumes\": 1}");
+    jmx.addBeans("Hadoop:service=DataNode,name=DataNodeInfo", "{\"XceiverCount\": 12}");
+
+    NodeHealth health = createChecker().checkDataNode(jmx);
+
+    assertFalse(health.isHealthy());
+    assertEquals("2", health.getMetrics().get("failed_volumes"));
+    assertEquals("12", health.getMetrics().get("xceivers"));
+    assertEquals(Collections.singletonList("failed_volumes 2 > 0"), health.getProblems());
+  }
+
+  @Test
+  public void dataNodeWithinThresholdsIsHealthy() throws Exception {
+    conf.set("mesos.hdfs.healthcheck.datanode.max.failed.volumes", "1");
+    jmx.addBeans("Hadoop:service=DataNode,name=FSDatasetState*", "{\"NumFailedVolumes\": 1}");
+    jmx.addBeans("Hadoop:service=DataNode,name=DataNodeInfo", "{\"XceiverCount\": 3500}");
+
+    assertTrue(createChecker().checkDataNode(jmx).isHealthy());
+  }
+
+  @Test
+  public void dataNodeWithTooManyXceiversIsUnhealthy() throws Exception {
+    conf.set("mesos.hdfs.healthcheck.datanode.max.xceivers", "100");
+    jmx.addBeans("Hadoop:service=DataNode,name=DataNodeInfo", "{\"XceiverCount\": 101}");
+
+    NodeHealth health = createChecker().checkDataNode(jmx);
+
+    assertFalse(health.isHealthy());
+    assertFalse(health.getMetrics().containsKey("failed_volumes"));
+    assertEquals(Collections.singletonList("xceivers 101 > 100"), health.getProblems());
+  }
+
+  @Test
+  public void nameNodeReportsHaStateAndDecommissioningDataNodes() throws Exception {
+    jmx.addBeans("Hadoop:service=NameNode,name=NameNodeStatus", "{\"State\": \"active\"}");
+    jmx.addBeans("Hadoop:service=NameNode,name=FSNamesystem", "{\"UnderReplicatedBlocks\": 7}");
+    jmx.addBeans("Hadoop:service=NameNode,name=NameNodeInfo", "{\"Safemode\": \"\", "
+      + "\"LiveNodes\": \"{\\\"dn1:50010\\\": {\\\"adminState\\\": \\\"In Service\\\"}, "
+      + "\\\"dn2:50010\\\": {\\\"adminState\\\": \\\"Decommission In Progress\\\"}, "
+      + "\\\"dn3\\\": {\\\"adminState\\\": \\\"Decommissioned\\\"}}\", "
+      + "\"DeadNodes\": \"{\\\"dn4:50010\\\": {\\\"decommissioned\\\": true}, "
+      + "\\\"dn5:50010\\\": {\\\"decommissioned\\\": false}}\"}");
+
+    NodeHealth health = createChecker().checkNameNode(jmx);
+
+    assertTrue(health.isHealthy());
+    assertEquals("active", health.getMetrics().get(HDFSConstants.HA_STATE_METRIC));
+    assertEquals("7", health.getMetrics().get(HDFSConstants.UNDER_REPLICATED_BLOCKS_METRIC));
+    assertEquals("off", health.getMetrics().get("safemode"));
+    assertEquals("dn2", health.getMetrics().get(HDFSConstants.DECOMMISSIONING_METRIC));
+    assertEquals("dn3,dn4", health.getMetrics().get(HDFSConstants.DECOMMISSIONED_METRIC));
+  }
+
+  @Test
+  public void nameNodeInSafemodeIsUnhealthy() throws Exception {
+    jmx.addBeans("Hadoop:service=NameNode,name=NameNodeInfo",
+      "{\"Safemode\": \"Safe mode is ON. The reported blocks 0 needs additional 10 blocks.\"}");
+
+    NodeHealth health = createChecker().checkNameNode(jmx);
+
+    assertTrue(health.isAlive());
+    assertFalse(health.isHealthy());
+    assertEquals("on", health.getMetrics().get("safemode"));
+    assertEquals(Collections.singletonList("in safemode"), health.getProblems());
+    // Always reported, so decommissions reported earlier are cleared
+    assertEquals("", health.getMetrics().get(HDFSConstants.DECOMMISSIONING_METRIC));
+  }
+
+  private NodeHealthChecker createChecker() {
+    return new NodeHealthChecker(new HdfsFrameworkConfig(conf));
+  }
+
+  /**
+   * Answers queries with canned beans instead of asking a node's /jmx servlet.
+   */
+  private static class FakeJmxClient extends JmxClient {
+    private final Map<String, List<JsonNode>> beans = new HashMap<>();
+
+    FakeJmxClient() {
+      super("localhost", -1, 0);
+    }
+
+    void addBeans(String query, String... jsonBeans) throws IOException {
+      List<JsonNode> nodes = new ArrayList<>();
+      for (String bean : jsonBeans) {
+        nodes.add(MAPPER.readTree(bean));
+      }
+      beans.put(query, nodes);
+    }
+
+    @Override
+    public List<JsonNode> query(String query) {
+      List<JsonNode> result = beans.get(query);
+      return result == null ? Collections.<JsonNode>emptyList() : result;
+    }
+  }
+}
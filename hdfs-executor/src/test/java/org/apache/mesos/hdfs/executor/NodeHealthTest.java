@@ -0,0 +1,63 @@
+package org.apache.mesos.hdfs.executor;
+
+import org.apache.mesos.Protos.Label;
+import org.apache.mesos.Protos.Labels;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NodeHealthTest {
+  @Test
+  public void healthyNodeLabelsClearProblems() {
+    NodeHealth health = new NodeHealth(true);
+    health.addMetric("lag_txns", 12L);
+
+    Map<String, String> labels = toMap(health.toLabels());
+
+    assertTrue(health.isHealthy());
+    assertEquals("healthy", labels.get("health"));
+    assertEquals("12", labels.get("health.lag_txns"));
+    assertEquals("", labels.get("health.problems"));
+    assertEquals(3, labels.size());
+  }
+
+  @Test
+  public void unhealthyNodeLabelsListProblems() {
+    NodeHealth health = new NodeHealth(true);
+    health.addMetric("failed_volumes", 2);
+    health.addMetric("xceivers", 4000);
+    health.addProblem("failed_volumes 2 > 0");
+    health.addProblem("xceivers 4000 > 3500");
+
+    Map<String, String> labels = toMap(health.toLabels());
+
+    assertTrue(health.isAlive());
+    assertFalse(health.isHealthy());
+    assertEquals("unhealthy", labels.get("health"));
+    assertEquals("2", labels.get("health.failed_volumes"));
+    assertEquals("4000", labels.get("health.xceivers"));
+    assertEquals("failed_volumes 2 > 0; xceivers 4000 > 3500", labels.get("health.problems"));
+  }
+
+  @Test
+  public void deadNodeIsUnhealthy() {
+    NodeHealth health = new NodeHealth(false);
+
+    assertFalse(health.isAlive());
+    assertFalse(health.isHealthy());
+    assertEquals("unhealthy", toMap(health.toLabels()).get("health"));
+  }
+
+  private Map<String, String> toMap(Labels labels) {
+    Map<String, String> map = new LinkedHashMap<>();
+    for (Label label : labels.getLabelsList()) {
+      map.put(label.getKey(), label.getValue());
+    }
+    return map;
+  }
+}
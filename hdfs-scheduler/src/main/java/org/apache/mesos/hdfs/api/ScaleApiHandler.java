@@ -0,0 +1,225 @@
+package org.apache.mesos.hdfs.api;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.hdfs.config.ConfigSnapshot;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.config.NodeConfig;
+import org.apache.mesos.hdfs.config.ScaleSettings;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serves /v1/scale, the target number of DataNodes and the cpus and heap of each node type, and lets them be changed
+ * without restarting the scheduler.
+ * <ul>
+ * <li>GET returns the values in effect, how many DataNodes there are, and which values override the
+ * configuration</li>
+ * <li>PUT changes the values given in a JSON body such as
+ * <code>{"datanodes": 20, "resources": {"datanode": {"cpus": 2, "heap_mb": 4096}}}</code>.  A null value returns
+ * to the configured one.</li>
+ * <li>DELETE returns every value to the configured one</li>
+ * </ul>
+ * Changes must carry the mesos.hdfs.api.token in an <code>Authorization: Bearer</code> header, and are refused if no
+ * token is configured.  They are stored in the scheduler's state before taking effect, so they survive a failover, and
+ * apply from the next offers: DataNodes are launched up to the target or the newest ones killed down to it, and new
+ * tasks are launched with the new resources.  Running tasks keep theirs.
+ */
+public class ScaleApiHandler extends AbstractHandler {
+  public static final String PATH = StateApiHandler.PATH + "scale";
+  private static final String DATANODES = "datanodes";
+  private static final String RESOURCES = "resources";
+  private static final String CPUS = "cpus";
+  private static final String HEAP = "heap_mb";
+  private static final List<String> NODE_TYPES = Arrays.asList(HDFSConstants.DATA_NODE_ID,
+    HDFSConstants.NAME_NODE_ID, HDFSConstants.ZKFC_NODE_ID, HDFSConstants.JOURNAL_NODE_ID);
+
+  private final Log log = LogFactory.getLog(ScaleApiHandler.class);
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final HdfsFrameworkConfig config;
+  private final HdfsState state;
+
+  public ScaleApiHandler(HdfsFrameworkConfig config, HdfsState state) {
+    this.config = config;
+    this.state = state;
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+    throws IOException {
+    if (!PATH.equals(target)) {
+      return;
+    }
+    baseRequest.setHandled(true);
+
+    String method = request.getMethod();
+    if ("PUT".equals(method) || "DELETE".equals(method)) {
+      if (!authorize(request, response)) {
+        return;
+      }
+      try {
+        if ("PUT".equals(method)) {
+          update(mapper.readTree(request.getInputStream()));
+        } else {
+          apply(ScaleSettings.NONE);
+        }
+      } catch (JsonProcessingException | IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      } catch (InterruptedException | ExecutionException e) {
+        log.error("Failed to store the scale settings", e);
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Failed to store the settings");
+        return;
+      }
+    } else if (!"GET".equals(method) && !"HEAD".equals(method)) {
+      response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+      return;
+    }
+
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "no-cache");
+    if (!"HEAD".equals(method)) {
+      mapper.writeValue(response.getOutputStream(), getScale(config.getSnapshot()));
+    }
+  }
+
+  private boolean authorize(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String token = config.getApiToken();
+    if (token.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, "Set mesos.hdfs.api.token to allow changes");
+      return false;
+    }
+    String authorization = request.getHeader("Authorization");
+    String expected = "Bearer " + token;
+    Charset utf8 = Charset.forName("UTF-8");
+    // Compared in constant time so the token cannot be guessed from response times
+    if (authorization == null || !MessageDigest.isEqual(authorization.getBytes(utf8), expected.getBytes(utf8))) {
+      log.warn("Refused a scale change from " + request.getRemoteAddr());
+      response.setHeader("WWW-Authenticate", "Bearer");
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Applies the values given in the body to the current settings.  Nothing is applied if any of them is invalid.
+   */
+  private synchronized void update(JsonNode body)
+    throws IOException, InterruptedException, ExecutionException {
+    if (body == null || !body.isObject()) {
+      throw new IllegalArgumentException("Expected a JSON object");
+    }
+    ScaleSettings settings = config.getScaleSettings();
+    for (Iterator<String> names = body.getFieldNames(); names.hasNext();) {
+      String name = names.next();
+      JsonNode value = body.get(name);
+      if (DATANODES.equals(name)) {
+        settings = settings.withDataNodeCount(value.isNull() ? null : getCount(value));
+      } else if (RESOURCES.equals(name) && value.isObject()) {
+        settings = updateResources(settings, value);
+      } else {
+        throw new IllegalArgumentException("Unknown or invalid field " + name);
+      }
+    }
+    apply(settings);
+  }
+
+  private ScaleSettings updateResources(ScaleSettings settings, JsonNode resources) {
+    for (Iterator<String> types = resources.getFieldNames(); types.hasNext();) {
+      String type = types.next();
+      JsonNode resource = resources.get(type);
+      if (!NODE_TYPES.contains(type) || !resource.isObject()) {
+        throw new IllegalArgumentException("Unknown node type " + type);
+      }
+      for (Iterator<String> names = resource.getFieldNames(); names.hasNext();) {
+        String name = names.next();
+        JsonNode value = resource.get(name);
+        if (CPUS.equals(name)) {
+          if (!value.isNull() && (!value.isNumber() || value.getDoubleValue() <= 0)) {
+            throw new IllegalArgumentException("cpus of " + type + " must be a positive number");
+          }
+          settings = settings.withCpus(type, value.isNull() ? null : value.getDoubleValue());
+        } else if (HEAP.equals(name)) {
+          if (!value.isNull() && (!value.isIntegralNumber() || value.getIntValue() <= 0)) {
+            throw new IllegalArgumentException("heap_mb of " + type + " must be a positive integer");
+          }
+          settings = settings.withHeap(type, value.isNull() ? null : value.getIntValue());
+        } else {
+          throw new IllegalArgumentException("Unknown field " + name + " of " + type);
+        }
+      }
+    }
+    return settings;
+  }
+
+  /**
+   * Returns the target number of DataNodes, which must hold every replica of a block.
+   */
+  private int getCount(JsonNode value) {
+    int replication = config.getReplication();
+    if (!value.isIntegralNumber() || value.getIntValue() < replication) {
+      throw new IllegalArgumentException("datanodes must be an integer of at least the replication of "
+        + replication);
+    }
+    return value.getIntValue();
+  }
+
+  private synchronized void apply(ScaleSettings settings)
+    throws IOException, InterruptedException, ExecutionException {
+    state.setScaleSettings(settings);
+    config.setScaleSettings(settings);
+  }
+
+  private Map<String, Object> getScale(ConfigSnapshot snapshot) {
+    int current = 0;
+    for (Task task : state.getTaskView()) {
+      if (HDFSConstants.DATA_NODE_ID.equals(task.getType())) {
+        current++;
+      }
+    }
+    Map<String, Object> dataNodes = new LinkedHashMap<>();
+    dataNodes.put("target", snapshot.getDataNodeCount() == ConfigSnapshot.ALL_HOSTS
+      ? null : snapshot.getDataNodeCount());
+    dataNodes.put("current", current);
+
+    Map<String, Object> resources = new LinkedHashMap<>();
+    for (String type : NODE_TYPES) {
+      NodeConfig nodeConfig = snapshot.getNodeConfig(type);
+      Map<String, Object> resource = new LinkedHashMap<>();
+      resource.put(CPUS, nodeConfig.getCpus());
+      resource.put(HEAP, nodeConfig.getMaxHeap());
+      resources.put(type, resource);
+    }
+
+    ScaleSettings settings = snapshot.getScaleSettings();
+    Map<String, Object> overrides = new LinkedHashMap<>();
+    overrides.put(DATANODES, settings.getDataNodeCount());
+    overrides.put(CPUS, settings.getAllCpus());
+    overrides.put(HEAP, settings.getAllHeaps());
+
+    Map<String, Object> scale = new LinkedHashMap<>();
+    scale.put(DATANODES, dataNodes);
+    scale.put(RESOURCES, resources);
+    scale.put("overrides", overrides);
+    return scale;
+  }
+}
@@ -0,0 +1,284 @@
+package org.apache.mesos.hdfs.api;
+
+import org.apache.mesos.Protos.Label;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.hdfs.scheduler.Reconciler;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.state.StateMachine;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Serves a read-only view of the scheduler's state as JSON under /v1, from the tasks it holds in memory so requests
+ * never read ZooKeeper:
+ * <ul>
+ * <li>/v1/tasks, the tasks sorted by id, paged with offset=&lt;n&gt; and limit=&lt;n&gt;, and reduced to the
+ * comma-separated fields=&lt;names&gt; if given</li>
+ * <li>/v1/tasks/&lt;id&gt;, one task, also reduced to fields</li>
+ * <li>/v1/hosts, the tasks grouped by host, paged like tasks</li>
+ * <li>/v1/phase, the acquisition phase and how many tasks there are of each type</li>
+ * <li>/v1/reconciliation, the progress of the last reconciliation</li>
+ * </ul>
+ * Every response carries an ETag derived from the versions of the task view, the phase and the reconciliation, and
+ * requests sending it back in If-None-Match get a 304 until one of them changes.
+ */
+public class StateApiHandler extends AbstractHandler {
+  public static final String PATH = "/v1/";
+  private static final String TASKS = "tasks";
+  private static final String HOSTS = "hosts";
+  private static final String PHASE = "phase";
+  private static final String RECONCILIATION = "reconciliation";
+  private static final String OFFSET_PARAM = "offset";
+  private static final String LIMIT_PARAM = "limit";
+  private static final String FIELDS_PARAM = "fields";
+  private static final int DEFAULT_LIMIT = 100;
+  private static final int MAX_LIMIT = 1000;
+  private static final List<String> RESOURCES = Arrays.asList(TASKS, HOSTS, PHASE, RECONCILIATION);
+  private static final Set<String> HOST_TASK_FIELDS = new HashSet<>(Arrays.asList("id", "type", "state"));
+
+  private static final Comparator<Task> BY_ID = new Comparator<Task>() {
+    @Override
+    public int compare(Task a, Task b) {
+      return a.getId().getValue().compareTo(b.getId().getValue());
+    }
+  };
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final HdfsState state;
+  private final StateMachine stateMachine;
+  private final Reconciler reconciler;
+
+  public StateApiHandler(HdfsState state, StateMachine stateMachine, Reconciler reconciler) {
+    this.state = state;
+    this.stateMachine = stateMachine;
+    this.reconciler = reconciler;
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+    throws IOException {
+    if (!target.startsWith(PATH)) {
+      return;
+    }
+    baseRequest.setHandled(true);
+    if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+      response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+      return;
+    }
+
+    String resource = target.substring(PATH.length());
+    String taskId = null;
+    if (resource.startsWith(TASKS + "/")) {
+      taskId = resource.substring(TASKS.length() + 1);
+      resource = TASKS;
+    }
+    if (!RESOURCES.contains(resource) || "".equals(taskId)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown resource " + target);
+      return;
+    }
+
+    int offset;
+    int limit;
+    try {
+      offset = getIntParameter(request, OFFSET_PARAM, 0);
+      limit = Math.min(getIntParameter(request, LIMIT_PARAM, DEFAULT_LIMIT), MAX_LIMIT);
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid offset or limit");
+      return;
+    }
+    Set<String> fields = getFields(request);
+
+    // Read before the view, so a change while rendering makes the ETag stale rather than hiding the change
+    String etag = getETag();
+    if (etag.equals(request.getHeader("If-None-Match"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      response.setHeader("ETag", etag);
+      return;
+    }
+
+    Task task = null;
+    if (taskId != null) {
+      task = state.getTaskView(taskId);
+      if (task == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown task " + taskId);
+        return;
+      }
+    }
+
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "no-cache");
+    response.setHeader("ETag", etag);
+    if ("HEAD".equals(request.getMethod())) {
+      return;
+    }
+    JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(response.getOutputStream(),
+      JsonEncoding.UTF8);
+    try {
+      if (task != null) {
+        generator.writeObject(toMap(task, fields));
+      } else if (TASKS.equals(resource)) {
+        writeTasks(generator, offset, limit, fields);
+      } else if (HOSTS.equals(resource)) {
+        writeHosts(generator, offset, limit);
+      } else if (PHASE.equals(resource)) {
+        generator.writeObject(getPhase());
+      } else {
+        generator.writeObject(getReconciliation());
+      }
+    } finally {
+      generator.close();
+    }
+  }
+
+  /**
+   * Writes the tasks one at a time, so a large page is never held as a whole in memory.
+   */
+  private void writeTasks(JsonGenerator generator, int offset, int limit, Set<String> fields) throws IOException {
+    List<Task> tasks = getSortedTasks();
+    List<Task> page = page(tasks, offset, limit);
+    generator.writeStartObject();
+    generator.writeNumberField("total", tasks.size());
+    generator.writeNumberField(OFFSET_PARAM, offset);
+    generator.writeNumberField(LIMIT_PARAM, limit);
+    generator.writeArrayFieldStart(TASKS);
+    for (Task task : page) {
+      generator.writeObject(toMap(task, fields));
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+  }
+
+  private void writeHosts(JsonGenerator generator, int offset, int limit) throws IOException {
+    Map<String, List<Task>> byHost = new TreeMap<>();
+    for (Task task : getSortedTasks()) {
+      String hostname = task.getHostname();
+      List<Task> tasks = byHost.get(hostname);
+      if (tasks == null) {
+        tasks = new ArrayList<>();
+        byHost.put(hostname, tasks);
+      }
+      tasks.add(task);
+    }
+    List<String> hostnames = page(new ArrayList<>(byHost.keySet()), offset, limit);
+    generator.writeStartObject();
+    generator.writeNumberField("total", byHost.size());
+    generator.writeNumberField(OFFSET_PARAM, offset);
+    generator.writeNumberField(LIMIT_PARAM, limit);
+    generator.writeArrayFieldStart(HOSTS);
+    for (String hostname : hostnames) {
+      List<Task> tasks = byHost.get(hostname);
+      generator.writeStartObject();
+      generator.writeStringField("hostname", hostname);
+      generator.writeStringField("slave_id", tasks.get(0).getInfo().getSlaveId().getValue());
+      generator.writeArrayFieldStart(TASKS);
+      for (Task task : tasks) {
+        generator.writeObject(toMap(task, HOST_TASK_FIELDS));
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+  }
+
+  private Map<String, Object> getPhase() {
+    Map<String, Integer> counts = new TreeMap<>();
+    for (Task task : state.getTaskView()) {
+      Integer count = counts.get(task.getType());
+      counts.put(task.getType(), count == null ? 1 : count + 1);
+    }
+    Map<String, Object> phase = new LinkedHashMap<>();
+    phase.put(PHASE, stateMachine.getCurrentPhase().name());
+    phase.put("since_ms", stateMachine.getPhaseStartMs());
+    phase.put(TASKS, counts);
+    return phase;
+  }
+
+  private Map<String, Object> getReconciliation() {
+    List<String> pending = new ArrayList<>(reconciler.getPendingTasks());
+    Collections.sort(pending);
+    Map<String, Object> reconciliation = new LinkedHashMap<>();
+    reconciliation.put("complete", pending.isEmpty());
+    reconciliation.put("rounds", reconciler.getRounds());
+    reconciliation.put("started_ms", reconciler.getStartedMs());
+    reconciliation.put("pending_tasks", pending);
+    return reconciliation;
+  }
+
+  private String getETag() {
+    return String.format("\"%d-%s-%d-%d-%d-%d\"", state.getViewVersion(), stateMachine.getCurrentPhase().ordinal(),
+      stateMachine.getPhaseStartMs(), reconciler.getStartedMs(), reconciler.getRounds(),
+      reconciler.getPendingTasks().size());
+  }
+
+  private List<Task> getSortedTasks() {
+    List<Task> tasks = new ArrayList<>(state.getTaskView());
+    Collections.sort(tasks, BY_ID);
+    return tasks;
+  }
+
+  private static <T> List<T> page(List<T> items, int offset, int limit) {
+    int from = Math.min(Math.max(0, offset), items.size());
+    return items.subList(from, Math.min(items.size(), from + Math.max(0, limit)));
+  }
+
+  private static Map<String, Object> toMap(Task task, Set<String> fields) {
+    Map<String, Object> map = new LinkedHashMap<>();
+    TaskStatus status = task.getStatus();
+    map.put("id", task.getId().getValue());
+    map.put("name", task.getName());
+    map.put("type", task.getType());
+    map.put("hostname", task.getHostname());
+    map.put("slave_id", task.getInfo().getSlaveId().getValue());
+    map.put("executor_id", task.getInfo().getExecutor().getExecutorId().getValue());
+    map.put("state", status == null ? null : status.getState().name());
+    map.put("message", status == null || !status.hasMessage() ? null : status.getMessage());
+    map.put("ports", task.getPorts());
+    Map<String, String> labels = new LinkedHashMap<>();
+    if (status != null) {
+      for (Label label : status.getLabels().getLabelsList()) {
+        labels.put(label.getKey(), label.getValue());
+      }
+    }
+    map.put("labels", labels);
+    if (fields != null) {
+      map.keySet().retainAll(fields);
+    }
+    return map;
+  }
+
+  private static Set<String> getFields(HttpServletRequest request) {
+    String fields = request.getParameter(FIELDS_PARAM);
+    if (fields == null || fields.trim().isEmpty()) {
+      return null;
+    }
+    Set<String> names = new HashSet<>();
+    for (String field : fields.split(",")) {
+      names.add(field.trim());
+    }
+    return names;
+  }
+
+  private static int getIntParameter(HttpServletRequest request, String name, int defaultValue) {
+    String value = request.getParameter(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+}
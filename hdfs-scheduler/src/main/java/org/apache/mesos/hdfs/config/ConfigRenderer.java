@@ -0,0 +1,416 @@
+package org.apache.mesos.hdfs.config;
+
+import com.floreysoft.jmte.Engine;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.Label;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.state.HdfsState.Topology;
+import org.apache.mesos.hdfs.util.DataDisks;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.hdfs.util.TaskPorts;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Renders the hdfs-site.xml template for the executors of a host.  Rendered configs are cached per host, NameNode
+ * number and data dirs until the task topology recorded in HdfsState, the framework config or the template itself
+ * changes, so a burst of executors fetching their config only renders each distinct config once.  Only parameters
+ * matching the topology are cached, so requests can't grow the cache without bound.  Safe for concurrent use without
+ * locking.
+ */
+@Singleton
+public class ConfigRenderer {
+  private final Log log = LogFactory.getLog(ConfigRenderer.class);
+
+  private final HdfsFrameworkConfig hdfsFrameworkConfig;
+  private final HdfsState state;
+  private final Engine engine = new Engine();
+
+  private volatile Template template;
+  private volatile Generation generation;
+
+  @Inject
+  public ConfigRenderer(HdfsFrameworkConfig hdfsFrameworkConfig, HdfsState state) {
+    this.hdfsFrameworkConfig = hdfsFrameworkConfig;
+    this.state = state;
+  }
+
+  /**
+   * Returns the config for the executors on the given host.  All parameters are optional.
+   */
+  public RenderedConfig render(String hostname, String nnNum, String dataDirs) throws IOException {
+    ConfigSnapshot snapshot = hdfsFrameworkConfig.getSnapshot();
+    Template currTemplate = getTemplate(snapshot);
+
+    Generation currGeneration = generation;
+    if (currGeneration == null || currGeneration.topology.getVersion() != state.getTopologyVersion()
+      || currGeneration.template != currTemplate || currGeneration.snapshot != snapshot) {
+      // Racing renderers may each start a new generation; the loser's entries are simply re-rendered.
+      currGeneration = new Generation(state.getTopology(), currTemplate, snapshot);
+      generation = currGeneration;
+    }
+
+    List<String> dataDisks = getDataDisks(snapshot, currGeneration.topology.getTasks(), hostname, dataDirs);
+    String key = getCacheKey(currGeneration, hostname, nnNum, dataDisks);
+    if (key == null) {
+      return doRender(currGeneration, hostname, nnNum, dataDisks);
+    }
+    RenderedConfig config = currGeneration.configs.get(key);
+    if (config == null) {
+      config = doRender(currGeneration, hostname, nnNum, dataDisks);
+      RenderedConfig previous = currGeneration.configs.putIfAbsent(key, config);
+      if (previous != null) {
+        config = previous;
+      }
+    }
+    return config;
+  }
+
+  private Template getTemplate(ConfigSnapshot snapshot) throws IOException {
+    File confFile = new File(snapshot.getConfigPath());
+    if (!confFile.exists()) {
+      throw new FileNotFoundException("Couldn't file config file: " + confFile.getPath()
+        + ". Please make sure it exists.");
+    }
+
+    Template currTemplate = template;
+    if (currTemplate == null || !currTemplate.matches(confFile)) {
+      log.info("Loading config template " + confFile.getPath());
+      currTemplate = new Template(confFile);
+      template = currTemplate;
+    }
+    return currTemplate;
+  }
+
+  /**
+   * Returns the key a config is cached under, or null if the parameters don't match the topology and the config is
+   * rendered without caching.  Parameters which don't change the config are left out of the key: hosts without
+   * tasks all get the same config, and the NameNode number only matters with a backup dir.  Data disks are only
+   * cached once they are the ones the host's DataNode reported.
+   */
+  private String getCacheKey(Generation currGeneration, String hostname, String nnNum, List<String> dataDisks) {
+    boolean knownHost = false;
+    boolean knownNameNode = false;
+    List<String> reportedDisks = Collections.emptyList();
+    for (Task task : currGeneration.topology.getTasks()) {
+      if (task.getHostname().equals(hostname)) {
+        knownHost = true;
+        if (task.getType().equals(HDFSConstants.DATA_NODE_ID)) {
+          reportedDisks = getReportedDataDisks(task);
+        }
+      }
+      if (task.getType().equals(HDFSConstants.NAME_NODE_ID) && task.getName().equals(nnNum)) {
+        knownNameNode = true;
+      }
+    }
+
+    String nnKey = null;
+    if (currGeneration.snapshot.getBackupDir() != null && nnNum != null) {
+      if (!knownNameNode) {
+        return null;
+      }
+      nnKey = nnNum;
+    }
+    if (!dataDisks.isEmpty() && !dataDisks.equals(reportedDisks)) {
+      return null;
+    }
+    return (knownHost ? hostname : "") + "|" + nnKey + "|" + dataDisks;
+  }
+
+  private RenderedConfig doRender(Generation currGeneration, String hostname, String nnNum, List<String> dataDisks) {
+    List<Task> tasks = currGeneration.topology.getTasks();
+    ConfigSnapshot snapshot = currGeneration.snapshot;
+    Map<String, Object> model = new HashMap<>();
+    putNameNodes(model, getTasksOfType(tasks, HDFSConstants.NAME_NODE_ID));
+    model.put("journalnodes", getJournalNodes(getTasksOfType(tasks, HDFSConstants.JOURNAL_NODE_ID)));
+    putHostPorts(model, tasks, hostname);
+    model.put("frameworkName", snapshot.getFrameworkName());
+    model.put("dataDir", snapshot.getDataDir());
+    model.put("secondaryDataDir", snapshot.getSecondaryDataDir());
+    model.put("dataNodeDataDirs", getDataNodeDataDirs(snapshot, dataDisks));
+    model.put("haZookeeperQuorum", snapshot.getHaZookeeperQuorum());
+    model.put("domainSocketDir", snapshot.getDomainSocketDir());
+    model.put("replication", snapshot.getReplication());
+
+    if (snapshot.getBackupDir() != null && nnNum != null) {
+      model.put("backupDir", snapshot.getBackupDir() + "/" + nnNum);
+    }
+
+    String content = engine.transform(currGeneration.template.content, model);
+    return new RenderedConfig(content.getBytes(Charset.forName("UTF-8")));
+  }
+
+  /**
+   * Returns the tasks of the given type ordered by name, so namenode1 is always rendered as nn1.
+   */
+  private List<Task> getTasksOfType(List<Task> tasks, String type) {
+    List<Task> tasksOfType = new ArrayList<Task>();
+
+    for (Task task : tasks) {
+      if (task.getType().equals(type)) {
+        tasksOfType.add(task);
+      }
+    }
+    Collections.sort(tasksOfType, new Comparator<Task>() {
+      @Override
+      public int compare(Task left, Task right) {
+        return left.getName().compareTo(right.getName());
+      }
+    });
+
+    return tasksOfType;
+  }
+
+  private void putNameNodes(Map<String, Object> model, List<Task> nameNodes) {
+    for (int i = 0; i < nameNodes.size() && i < HDFSConstants.TOTAL_NAME_NODES; i++) {
+      Task nameNode = nameNodes.get(i);
+      Map<String, Integer> ports = nameNode.getPorts();
+      String prefix = "nn" + (i + 1);
+      model.put(prefix + "Hostname", nameNode.getHostname());
+      model.put(prefix + "RpcPort", ports.get(HDFSConstants.RPC_PORT_NAME));
+      model.put(prefix + "HttpPort", ports.get(HDFSConstants.HTTP_PORT_NAME));
+    }
+  }
+
+  /**
+   * Adds the ports the nodes of the requesting host listen on.  Node types which do not run on the host get their
+   * well known ports.
+   */
+  private void putHostPorts(Map<String, Object> model, List<Task> tasks, String hostname) {
+    Map<String, Map<String, Integer>> hostPorts = new HashMap<>();
+    for (String type : new String[]{HDFSConstants.DATA_NODE_ID, HDFSConstants.JOURNAL_NODE_ID,
+      HDFSConstants.ZKFC_NODE_ID}) {
+      hostPorts.put(type, TaskPorts.getDefaultPorts(type));
+    }
+    for (Task task : tasks) {
+      if (task.getHostname().equals(hostname) && hostPorts.containsKey(task.getType())) {
+        hostPorts.put(task.getType(), task.getPorts());
+      }
+    }
+
+    Map<String, Integer> dataNodePorts = hostPorts.get(HDFSConstants.DATA_NODE_ID);
+    model.put("dataNodeDataPort", dataNodePorts.get(HDFSConstants.DATA_PORT_NAME));
+    model.put("dataNodeHttpPort", dataNodePorts.get(HDFSConstants.HTTP_PORT_NAME));
+    model.put("dataNodeIpcPort", dataNodePorts.get(HDFSConstants.IPC_PORT_NAME));
+    Map<String, Integer> journalNodePorts = hostPorts.get(HDFSConstants.JOURNAL_NODE_ID);
+    model.put("journalNodeRpcPort", journalNodePorts.get(HDFSConstants.RPC_PORT_NAME));
+    model.put("journalNodeHttpPort", journalNodePorts.get(HDFSConstants.HTTP_PORT_NAME));
+    model.put("zkfcPort", hostPorts.get(HDFSConstants.ZKFC_NODE_ID).get(HDFSConstants.RPC_PORT_NAME));
+  }
+
+  /**
+   * Returns the data disks of the host's DataNode.  These are the disks its executor reported in the data_dirs label
+   * of the task status, or until it has, the requested ones if the host's disk attribute lists them or they match the
+   * disk glob.  The request comes from whoever fetches the config, so anything else is ignored.
+   */
+  private List<String> getDataDisks(ConfigSnapshot snapshot, List<Task> tasks, String hostname, String dataDirsParam) {
+    List<String> requested = DataDisks.parse(dataDirsParam);
+    Task dataNode = null;
+    for (Task task : tasks) {
+      if (task.getType().equals(HDFSConstants.DATA_NODE_ID) && task.getHostname().equals(hostname)) {
+        dataNode = task;
+      }
+    }
+    if (dataNode == null) {
+      if (!requested.isEmpty()) {
+        log.warn("Ignoring data disks requested for " + hostname + ", which runs no DataNode: " + requested);
+      }
+      return Collections.emptyList();
+    }
+
+    List<String> reported = getReportedDataDisks(dataNode);
+    if (!reported.isEmpty()) {
+      if (!requested.isEmpty() && !requested.equals(reported)) {
+        log.warn("Ignoring data disks requested for " + hostname + " in favor of those reported by its DataNode: "
+          + requested);
+      }
+      return reported;
+    }
+
+    List<String> attributeDisks = DataDisks.fromAttributes(dataNode.getOffer().getAttributesList(),
+      snapshot.getDataNodeDiskAttribute());
+    for (String disk : requested) {
+      boolean allowed = attributeDisks.isEmpty()
+        ? DataDisks.matchesGlob(disk, snapshot.getDataNodeDiskGlob())
+        : attributeDisks.contains(disk) && DataDisks.isValid(disk);
+      if (!allowed) {
+        log.warn("Ignoring data disks requested for " + hostname + ", " + disk + " is not one of its disks");
+        return Collections.emptyList();
+      }
+    }
+    return requested;
+  }
+
+  private List<String> getReportedDataDisks(Task dataNode) {
+    TaskStatus status = dataNode.getStatus();
+    if (status != null && status.hasLabels()) {
+      for (Label label : status.getLabels().getLabelsList()) {
+        if (label.getKey().equals(HDFSConstants.DATA_DIRS_KEY)) {
+          List<String> disks = new ArrayList<>();
+          for (String disk : DataDisks.parse(label.getValue())) {
+            if (DataDisks.isValid(disk)) {
+              disks.add(disk);
+            }
+          }
+          return disks;
+        }
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Returns the value of dfs.datanode.data.dir, spanning every data disk of the requesting host or the configured
+   * data dirs if it has none.
+   */
+  private String getDataNodeDataDirs(ConfigSnapshot snapshot, List<String> disks) {
+    List<String> dataDirs = new ArrayList<>(disks);
+    if (dataDirs.isEmpty()) {
+      dataDirs.add(snapshot.getDataDir());
+      if (snapshot.getSecondaryDataDir() != null) {
+        dataDirs.add(snapshot.getSecondaryDataDir());
+      }
+    }
+
+    StringBuilder dataDirsBuilder = new StringBuilder();
+    for (String dataDir : dataDirs) {
+      if (dataDirsBuilder.length() > 0) {
+        dataDirsBuilder.append(',');
+      }
+      dataDirsBuilder.append("file://").append(dataDir).append("/data");
+    }
+    return dataDirsBuilder.toString();
+  }
+
+  private String getJournalNodes(List<Task> journalNodes) {
+    StringBuilder journalNodeStringBuilder = new StringBuilder("");
+    for (Task jn : journalNodes) {
+      journalNodeStringBuilder.append(jn.getHostname()).append(':')
+        .append(jn.getPorts().get(HDFSConstants.RPC_PORT_NAME)).append(';');
+    }
+    String journalNodeString = journalNodeStringBuilder.toString();
+
+    if (!journalNodeString.isEmpty()) {
+      // Chop the trailing ;
+      journalNodeString = journalNodeString.substring(0, journalNodeString.length() - 1);
+    }
+    return journalNodeString;
+  }
+
+  /**
+   * A rendered config along with its strong ETag, which is derived from the content only.
+   */
+  public static class RenderedConfig {
+    private final byte[] content;
+    private final String etag;
+
+    RenderedConfig(byte[] content) {
+      this.content = content;
+      this.etag = "\"" + sha1Hex(content) + "\"";
+    }
+
+    public byte[] getContent() {
+      return content.clone();
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+      out.write(content);
+    }
+
+    public int getLength() {
+      return content.length;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    /**
+     * Returns the version of the config, which is its ETag without the quotes.
+     */
+    public String getVersion() {
+      return etag.substring(1, etag.length() - 1);
+    }
+
+    /**
+     * Returns true if the value of an If-None-Match header matches this config.
+     */
+    public boolean matches(String ifNoneMatch) {
+      if (ifNoneMatch == null) {
+        return false;
+      }
+      for (String tag : ifNoneMatch.split(",")) {
+        String trimmed = tag.trim();
+        if (trimmed.equals("*") || trimmed.equals(etag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static String sha1Hex(byte[] content) {
+      try {
+        return Hex.encodeHexString(MessageDigest.getInstance("SHA-1").digest(content));
+      } catch (NoSuchAlgorithmException e) {
+        throw new ConfigServerException(e);
+      }
+    }
+  }
+
+  /**
+   * The template as last read from disk.
+   */
+  private static class Template {
+    private final String content;
+    private final long lastModified;
+    private final long length;
+
+    Template(File file) throws IOException {
+      this.lastModified = file.lastModified();
+      this.length = file.length();
+      this.content = new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset());
+    }
+
+    boolean matches(File file) {
+      return file.lastModified() == lastModified && file.length() == length;
+    }
+  }
+
+  /**
+   * Configs rendered against one version of the task topology, template and framework config.  The tasks of that
+   * version are read once from the task view, so rendering never reads the persisted state.
+   */
+  private static class Generation {
+    private final Topology topology;
+    private final Template template;
+    private final ConfigSnapshot snapshot;
+    private final ConcurrentMap<String, RenderedConfig> configs = new ConcurrentHashMap<>();
+
+    Generation(Topology topology, Template template, ConfigSnapshot snapshot) {
+      this.topology = topology;
+      this.template = template;
+      this.snapshot = snapshot;
+    }
+  }
+}
@@ -1,12 +1,22 @@
 package org.apache.mesos.hdfs.config;
 
-import com.floreysoft.jmte.Engine;
 import com.google.inject.Inject;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.api.ScaleApiHandler;
+import org.apache.mesos.hdfs.api.StateApiHandler;
+import org.apache.mesos.concurrent.SharedScheduler;
+import org.apache.mesos.hdfs.config.ConfigRenderer.RenderedConfig;
 import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.state.StateMachine;
+import org.apache.mesos.hdfs.telemetry.TelemetryHandler;
+import org.apache.mesos.hdfs.telemetry.TelemetryStore;
+import org.apache.mesos.hdfs.trace.LaunchTraceHandler;
+import org.apache.mesos.hdfs.trace.LaunchTracer;
 import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.metrics.Counter;
+import org.apache.mesos.metrics.Histogram;
+import org.apache.mesos.metrics.MetricRegistry;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
@@ -14,43 +24,63 @@ import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.ResourceHandler;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This is the HTTP service which allows executors to fetch the configuration for hdfs-site.xml.
+ * This is the HTTP service which allows executors to fetch the configuration for hdfs-site.xml.  It also serves the
+ * executor tarball, telemetry, metrics, launch traces and the state and scale APIs under /v1.
  */
-public class ConfigServer {
+public class ConfigServer implements Observer {
+  private static final int MAX_WAIT_SEC = 300;
+  private static final String DEADLINE_ATTRIBUTE = ConfigServer.class.getName() + ".deadline";
+  // Changes arriving within this long of each other, such as a rolling launch, wake the watchers once
+  private static final long COALESCE_MS = 200;
+
   private final Log log = LogFactory.getLog(ConfigServer.class);
 
   private Server server;
-  private Engine engine;
   private HdfsFrameworkConfig hdfsFrameworkConfig;
   private HdfsState state;
+  private ConfigRenderer configRenderer;
+  private final MetricRegistry metrics = MetricRegistry.getDefault();
+  private final Histogram renderTime = metrics.histogram("hdfs_config_render_seconds",
+    "Time to render hdfs-site.xml for an executor");
+  private final Counter watchersWoken = metrics.counter("hdfs_config_watchers_woken_total",
+    "Parked config requests woken because their config changed");
+  private final ConcurrentMap<AsyncContext, Watch> watchers = new ConcurrentHashMap<>();
+  private final AtomicBoolean wakePending = new AtomicBoolean();
 
   @Inject
-  public ConfigServer(HdfsFrameworkConfig hdfsFrameworkConfig, HdfsState state) {
+  public ConfigServer(HdfsFrameworkConfig hdfsFrameworkConfig, HdfsState state, ConfigRenderer configRenderer,
+    TelemetryStore telemetryStore, LaunchTracer launchTracer, StateMachine stateMachine) {
     this.hdfsFrameworkConfig = hdfsFrameworkConfig;
     this.state = state;
-    engine = new Engine();
+    this.configRenderer = configRenderer;
     server = new Server(hdfsFrameworkConfig.getConfigServerPort());
     ResourceHandler resourceHandler = new ResourceHandler();
     resourceHandler.setResourceBase(hdfsFrameworkConfig.getExecutorPath());
     HandlerList handlers = new HandlerList();
     handlers.setHandlers(new Handler[]{
+      new ExecutorTarballHandler(hdfsFrameworkConfig), new TelemetryHandler(telemetryStore),
+      new SchedulingHandler(SharedScheduler.getInstance()), new MetricsHandler(metrics),
+      new LaunchTraceHandler(launchTracer), new ScaleApiHandler(hdfsFrameworkConfig, state),
+      new StateApiHandler(state, stateMachine, stateMachine.getReconciler()),
       resourceHandler, new ServeHdfsConfigHandler()});
     server.setHandler(handlers);
+    state.addObserver(this);
+    hdfsFrameworkConfig.addObserver(this);
 
     try {
       server.start();
@@ -63,6 +93,8 @@ public class ConfigServer {
   }
 
   public void stop() throws ConfigServerException {
+    state.deleteObserver(this);
+    hdfsFrameworkConfig.deleteObserver(this);
     try {
       server.stop();
     } catch (Exception e) {
@@ -72,90 +104,174 @@ public class ConfigServer {
     }
   }
 
-  private List<String> getHostNames(List<Task> tasks) {
-    List<String> names = new ArrayList<String>();
+  /**
+   * Wakes the watchers whose config changed when the task topology changes or the framework config is reloaded or
+   * scaled.  Changes are coalesced, and the configs are rendered again once all of them are in, so each distinct
+   * config is rendered once per burst.
+   */
+  @Override
+  public void update(Observable observable, Object obj) {
+    if (wakePending.compareAndSet(false, true)) {
+      SharedScheduler.getInstance().schedule("config-watchers", new Runnable() {
+        @Override
+        public void run() {
+          wakeChangedWatchers();
+        }
+      }, COALESCE_MS);
+    }
+  }
 
-    for (Task task : tasks) {
-      names.add(task.getHostname());
+  private void wakeChangedWatchers() {
+    // Changes arriving from here on schedule another run
+    wakePending.set(false);
+    for (Map.Entry<AsyncContext, Watch> entry : watchers.entrySet()) {
+      Watch watch = entry.getValue();
+      try {
+        if (!configRenderer.render(watch.hostname, watch.nnNum, watch.dataDirs).matches(watch.etag)) {
+          watchersWoken.inc();
+          wake(entry.getKey());
+        }
+      } catch (IOException e) {
+        // Woken to be answered with the error
+        log.warn("Failed to render the config of a watcher for " + watch.hostname, e);
+        wake(entry.getKey());
+      }
     }
+  }
 
-    return names;
+  private void wake(AsyncContext watcher) {
+    if (watchers.remove(watcher) != null) {
+      try {
+        watcher.dispatch();
+      } catch (IllegalStateException e) {
+        log.debug("Config watcher went away", e);
+      }
+    }
   }
 
   private class ServeHdfsConfigHandler extends AbstractHandler {
-    public synchronized void handle(
+    /**
+     * Serves the config of the requesting node.  A request holding the current version in If-None-Match and a wait
+     * parameter is parked until the rendered config differs or the wait, of at most five minutes, expires; without
+     * a wait it is answered with 304 right away.
+     */
+    public void handle(
       String target,
       Request baseRequest,
       HttpServletRequest request,
       HttpServletResponse response)
       throws IOException {
 
-      File confFile = new File(hdfsFrameworkConfig.getConfigPath());
-
-      if (!confFile.exists()) {
-        throw new FileNotFoundException("Couldn't file config file: " + confFile.getPath()
-          + ". Please make sure it exists.");
-      }
-
-      String content = new String(Files.readAllBytes(Paths.get(confFile.getPath())), Charset.defaultCharset());
-
-      List<String> nameNodes = null;
-      List<String> journalNodes = null;
-      try {
-        nameNodes = getHostNames(state.getNameNodeTasks());
-        journalNodes = getHostNames(state.getJournalNodeTasks());
-      } catch (Exception ex) {
-        throw new IOException(ex);
-      }
-
-      Map<String, Object> model = new HashMap<>();
-      Iterator<String> iter = nameNodes.iterator();
-      if (iter.hasNext()) {
-        model.put("nn1Hostname", iter.next());
-      }
-      if (iter.hasNext()) {
-        model.put("nn2Hostname", iter.next());
+      long topologyVersion = state.getTopologyVersion();
+      ConfigSnapshot snapshot = hdfsFrameworkConfig.getSnapshot();
+      RenderedConfig config;
+      try (Histogram.Timer timer = renderTime.startTimer()) {
+        config = configRenderer.render(
+          request.getParameter(HDFSConstants.HOSTNAME_PARAM),
+          request.getParameter(HDFSConstants.NAMENODE_NUM_PARAM),
+          request.getParameter(HDFSConstants.DATA_DIRS_PARAM));
       }
 
-      String journalNodeString = getJournalNodes(journalNodes);
-
-      model.put("journalnodes", journalNodeString);
-      model.put("frameworkName", hdfsFrameworkConfig.getFrameworkName());
-      model.put("dataDir", hdfsFrameworkConfig.getDataDir());
-      model.put("secondaryDataDir", hdfsFrameworkConfig.getSecondaryDataDir());
-      model.put("haZookeeperQuorum", hdfsFrameworkConfig.getHaZookeeperQuorum());
-      model.put("domainSocketDir", hdfsFrameworkConfig.getDomainSocketDir());
-
-      String nnNum = request.getParameter(HDFSConstants.NAMENODE_NUM_PARAM);
-      if (hdfsFrameworkConfig.getBackupDir() != null && nnNum != null) {
-        model.put("backupDir", hdfsFrameworkConfig.getBackupDir() + "/" + nnNum);
+      baseRequest.setHandled(true);
+      response.setHeader("ETag", config.getEtag());
+      if (config.matches(request.getHeader("If-None-Match"))) {
+        long remainingMs = getRemainingWaitMs(request);
+        if (remainingMs > 0) {
+          watch(request, remainingMs, topologyVersion, snapshot, config.getEtag());
+        } else {
+          countRequest(HttpServletResponse.SC_NOT_MODIFIED);
+          response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return;
       }
 
-      content = engine.transform(content, model);
-
       response.setContentType("application/octet-stream;charset=utf-8");
       response.setHeader("Content-Disposition", "attachment; filename=\"" +
         HDFSConstants.HDFS_CONFIG_FILE_NAME + "\" ");
       response.setHeader("Content-Transfer-Encoding", "binary");
-      response.setHeader("Content-Length", Integer.toString(content.length()));
+      response.setContentLength(config.getLength());
 
+      countRequest(HttpServletResponse.SC_OK);
       response.setStatus(HttpServletResponse.SC_OK);
-      baseRequest.setHandled(true);
-      response.getWriter().println(content);
+      config.writeTo(response.getOutputStream());
+    }
+
+    private void countRequest(int status) {
+      metrics.counter("hdfs_config_requests_total", "Config requests served, by status", "status",
+        String.valueOf(status)).inc();
     }
 
-    private String getJournalNodes(List<String> journalNodes) {
-      StringBuilder journalNodeStringBuilder = new StringBuilder("");
-      for (String jn : journalNodes) {
-        journalNodeStringBuilder.append(jn).append(":8485;");
+    private void watch(HttpServletRequest request, long remainingMs, long topologyVersion, ConfigSnapshot snapshot,
+      String etag) {
+      final AsyncContext watcher = request.startAsync();
+      watcher.setTimeout(remainingMs);
+      watcher.addListener(new AsyncListener() {
+        @Override
+        public void onTimeout(AsyncEvent event) {
+          // The config is rendered once more, which also picks up template changes
+          wake(watcher);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+          watchers.remove(watcher);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+          watchers.remove(watcher);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+      });
+      watchers.put(watcher, new Watch(request.getParameter(HDFSConstants.HOSTNAME_PARAM),
+        request.getParameter(HDFSConstants.NAMENODE_NUM_PARAM), request.getParameter(HDFSConstants.DATA_DIRS_PARAM),
+        etag));
+
+      // The topology or config may have changed after the config was rendered but before the watcher was added
+      if (state.getTopologyVersion() != topologyVersion || hdfsFrameworkConfig.getSnapshot() != snapshot) {
+        wake(watcher);
       }
-      String journalNodeString = journalNodeStringBuilder.toString();
+    }
 
-      if (!journalNodeString.isEmpty()) {
-        // Chop the trailing ,
-        journalNodeString = journalNodeString.substring(0, journalNodeString.length() - 1);
+    /**
+     * Returns how much longer a watching request may wait, counting from its first arrival.
+     */
+    private long getRemainingWaitMs(HttpServletRequest request) {
+      Long deadline = (Long) request.getAttribute(DEADLINE_ATTRIBUTE);
+      if (deadline == null) {
+        String wait = request.getParameter(HDFSConstants.WAIT_PARAM);
+        if (wait == null) {
+          return 0;
+        }
+        try {
+          int waitSec = Math.min(Integer.parseInt(wait), MAX_WAIT_SEC);
+          deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(waitSec);
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+        request.setAttribute(DEADLINE_ATTRIBUTE, deadline);
       }
-      return journalNodeString;
+      return deadline - System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * The config a parked request watches and the version of it the requester holds.
+   */
+  private static class Watch {
+    private final String hostname;
+    private final String nnNum;
+    private final String dataDirs;
+    private final String etag;
+
+    Watch(String hostname, String nnNum, String dataDirs, String etag) {
+      this.hostname = hostname;
+      this.nnNum = nnNum;
+      this.dataDirs = dataDirs;
+      this.etag = etag;
     }
   }
 }
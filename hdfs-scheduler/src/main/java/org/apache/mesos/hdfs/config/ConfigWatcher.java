@@ -0,0 +1,72 @@
+package org.apache.mesos.hdfs.config;
+
+import com.google.inject.Inject;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.concurrent.SharedScheduler;
+
+import java.io.File;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Reloads the framework configuration when mesos-site.xml changes, so tuning values such as the resources of each
+ * node type apply to later offers without restarting the scheduler.  The file is polled every
+ * mesos.hdfs.config.reload.interval.ms and counts as changed when its modification time or length does.
+ */
+public class ConfigWatcher {
+  private final Log log = LogFactory.getLog(ConfigWatcher.class);
+
+  private final HdfsFrameworkConfig config;
+  private ScheduledFuture<?> future;
+  private long lastModified;
+  private long length;
+
+  @Inject
+  public ConfigWatcher(HdfsFrameworkConfig config) {
+    this.config = config;
+  }
+
+  public synchronized void start() {
+    File file = config.getConfigFile();
+    long intervalMs = config.getConfigReloadInterval();
+    if (file == null || intervalMs <= 0 || future != null) {
+      return;
+    }
+    lastModified = file.lastModified();
+    length = file.length();
+    future = SharedScheduler.getInstance().scheduleAtFixedRate("config-reload", new Runnable() {
+      @Override
+      public void run() {
+        reloadIfChanged();
+      }
+    }, intervalMs, intervalMs);
+    log.info("Watching " + file + " for changes every " + intervalMs + "ms");
+  }
+
+  public synchronized void stop() {
+    if (future != null) {
+      future.cancel(false);
+      future = null;
+    }
+  }
+
+  /**
+   * Reloads the configuration if its file changed since the last check, returning whether it did.  A file which
+   * cannot be parsed is logged and retried once it changes again.
+   */
+  synchronized boolean reloadIfChanged() {
+    File file = config.getConfigFile();
+    if (file.lastModified() == lastModified && file.length() == length) {
+      return false;
+    }
+    lastModified = file.lastModified();
+    length = file.length();
+    try {
+      config.reload();
+      return true;
+    } catch (ConfigurationException e) {
+      log.error("Unable to reload " + file, e);
+      return false;
+    }
+  }
+}
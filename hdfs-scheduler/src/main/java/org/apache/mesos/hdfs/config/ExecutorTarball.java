@@ -0,0 +1,129 @@
+package org.apache.mesos.hdfs.config;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The memory-mapped executor tarball along with its precomputed SHA-256 checksum.  The tarball is expected to be
+ * replaced by renaming a new file over it, rather than rewritten in place, while the scheduler is running.
+ */
+public final class ExecutorTarball {
+  private static final Log LOG = LogFactory.getLog(ExecutorTarball.class);
+  private static final int CONTENT_ADDRESS_LENGTH = 16;
+  private static final ConcurrentMap<String, ExecutorTarball> TARBALLS = new ConcurrentHashMap<>();
+
+  private final MappedByteBuffer content;
+  private final long lastModified;
+  private final long length;
+  private final String sha256;
+  private final String digest;
+  private final String contentAddressedName;
+
+  private ExecutorTarball(File file) throws IOException {
+    this.lastModified = file.lastModified();
+    this.length = file.length();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel()) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Executor tarball is too large to be mapped: " + file.getPath());
+      }
+      this.content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    byte[] hash;
+    try {
+      MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+      messageDigest.update(content.duplicate());
+      hash = messageDigest.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new ConfigServerException(e);
+    }
+    this.sha256 = Hex.encodeHexString(hash);
+    this.digest = "SHA-256=" + new String(Base64.encodeBase64(hash), Charset.forName("US-ASCII"));
+
+    String name = file.getName();
+    int extension = name.endsWith(".tar.gz") ? name.length() - ".tar.gz".length() : name.lastIndexOf('.');
+    extension = extension < 0 ? name.length() : extension;
+    this.contentAddressedName = name.substring(0, extension) + "-" + sha256.substring(0, CONTENT_ADDRESS_LENGTH)
+      + name.substring(extension);
+  }
+
+  /**
+   * Returns the tarball at the given path, mapping it again if the file changed on disk, or null if there is none.
+   * Mappings are shared by everyone asking for the same path.
+   */
+  public static ExecutorTarball get(File file) throws IOException {
+    String path = file.getAbsolutePath();
+    ExecutorTarball tarball = TARBALLS.get(path);
+    if (tarball != null && tarball.matches(file)) {
+      return tarball;
+    }
+
+    synchronized (TARBALLS) {
+      tarball = TARBALLS.get(path);
+      if (tarball == null || !tarball.matches(file)) {
+        if (!file.isFile()) {
+          TARBALLS.remove(path);
+          return null;
+        }
+        LOG.info("Mapping executor tarball " + path);
+        tarball = new ExecutorTarball(file);
+        TARBALLS.put(path, tarball);
+      }
+      return tarball;
+    }
+  }
+
+  /**
+   * Returns a read-only view of the whole tarball.
+   */
+  public ByteBuffer getContent() {
+    return content.duplicate();
+  }
+
+  public long getLength() {
+    return content.capacity();
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public String getSha256() {
+    return sha256;
+  }
+
+  public String getEtag() {
+    return "\"" + sha256 + "\"";
+  }
+
+  public String getDigest() {
+    return digest;
+  }
+
+  /**
+   * Returns the name of the tarball with its checksum inserted before the extension, e.g.
+   * hdfs-mesos-executor-0.1.5-0123456789abcdef.tgz, so caches keyed by URI never mix up two builds.
+   */
+  public String getContentAddressedName() {
+    return contentAddressedName;
+  }
+
+  private boolean matches(File file) {
+    return file.lastModified() == lastModified && file.length() == length;
+  }
+}
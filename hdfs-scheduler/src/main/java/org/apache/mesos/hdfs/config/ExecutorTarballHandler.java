@@ -0,0 +1,298 @@
+package org.apache.mesos.hdfs.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.Callback;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the executor tarball to launching executors, both under its own name and under its content-addressed name.
+ * The tarball is written straight from its memory mapping to the socket, with its precomputed SHA-256 checksum in
+ * the ETag and Digest headers.  Single byte ranges are supported so interrupted fetches can resume.
+ * <p/>
+ * At most mesos.hdfs.executor.fetch.max.concurrent transfers run at once.  Further fetches wait, without holding a
+ * thread, in a FIFO queue of mesos.hdfs.executor.fetch.queue.size entries and are rejected with 503 and Retry-After
+ * when the queue is full or they waited longer than mesos.hdfs.executor.fetch.queue.timeout.ms.
+ */
+public class ExecutorTarballHandler extends AbstractHandler {
+  private static final String PERMIT_ATTRIBUTE = ExecutorTarballHandler.class.getName() + ".permit";
+  private static final int RETRY_AFTER_SEC = 5;
+
+  private final Log log = LogFactory.getLog(ExecutorTarballHandler.class);
+
+  private final File file;
+  private final int queueSize;
+  private final long queueTimeoutMs;
+  private final Semaphore permits;
+  private final Queue<AsyncContext> waiting = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger waitingCount = new AtomicInteger();
+
+  public ExecutorTarballHandler(HdfsFrameworkConfig hdfsFrameworkConfig) {
+    this(new File(hdfsFrameworkConfig.getExecutorPath(), HDFSConstants.HDFS_BINARY_FILE_NAME),
+      hdfsFrameworkConfig.getExecutorFetchMaxConcurrent(),
+      hdfsFrameworkConfig.getExecutorFetchQueueSize(),
+      hdfsFrameworkConfig.getExecutorFetchQueueTimeout());
+  }
+
+  ExecutorTarballHandler(File file, int maxConcurrent, int queueSize, long queueTimeoutMs) {
+    this.file = file;
+    this.queueSize = queueSize;
+    this.queueTimeoutMs = queueTimeoutMs;
+    this.permits = new Semaphore(maxConcurrent, true);
+  }
+
+  @Override
+  public void handle(
+    String target,
+    Request baseRequest,
+    HttpServletRequest request,
+    HttpServletResponse response)
+    throws IOException {
+
+    if (!target.startsWith("/") || !(request.getMethod().equals("GET") || request.getMethod().equals("HEAD"))) {
+      return;
+    }
+
+    ExecutorTarball currTarball = ExecutorTarball.get(file);
+    String name = target.substring(1);
+    boolean contentAddressed = currTarball != null && name.equals(currTarball.getContentAddressedName());
+    if (currTarball == null || !(contentAddressed || name.equals(file.getName()))) {
+      releaseHeldPermit(request);
+      return;
+    }
+    baseRequest.setHandled(true);
+
+    response.setHeader("ETag", currTarball.getEtag());
+    response.setDateHeader("Last-Modified", currTarball.getLastModified());
+    response.setHeader("Digest", currTarball.getDigest());
+    // The content behind a content-addressed name never changes.
+    response.setHeader("Cache-Control",
+      contentAddressed ? "public, max-age=31536000, immutable" : "public, max-age=0, must-revalidate");
+    response.setHeader("Accept-Ranges", "bytes");
+
+    if (notModified(request, currTarball)) {
+      releaseHeldPermit(request);
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    long length = currTarball.getLength();
+    long[] range = getRange(request, currTarball);
+    if (range != null && range[0] >= length) {
+      releaseHeldPermit(request);
+      response.setHeader("Content-Range", "bytes */" + length);
+      response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      return;
+    }
+
+    response.setContentType("application/x-gzip");
+    if (range != null) {
+      range[1] = Math.min(range[1], length - 1);
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setHeader("Content-Range", String.format("bytes %d-%d/%d", range[0], range[1], length));
+    } else {
+      range = new long[]{0, length - 1};
+      response.setStatus(HttpServletResponse.SC_OK);
+    }
+    response.setContentLengthLong(range[1] - range[0] + 1);
+
+    if (request.getMethod().equals("HEAD")) {
+      releaseHeldPermit(request);
+      return;
+    }
+
+    if (request.getAttribute(PERMIT_ATTRIBUTE) == null && !permits.tryAcquire()) {
+      enqueue(request, response);
+      return;
+    }
+    request.removeAttribute(PERMIT_ATTRIBUTE);
+    send(baseRequest, request, currTarball, range);
+  }
+
+  private void send(Request baseRequest, HttpServletRequest request, ExecutorTarball currTarball, long[] range) {
+    final AsyncContext asyncContext = request.startAsync();
+    // Stalled clients are cut off by the connector's idle timeout, which fails the write.
+    asyncContext.setTimeout(0);
+
+    ByteBuffer content = currTarball.getContent();
+    content.limit((int) range[1] + 1);
+    content.position((int) range[0]);
+
+    baseRequest.getResponse().getHttpOutput().sendContent(content, new Callback() {
+      @Override
+      public void succeeded() {
+        releasePermit();
+        asyncContext.complete();
+      }
+
+      @Override
+      public void failed(Throwable x) {
+        log.debug("Failed to send executor tarball", x);
+        releasePermit();
+        asyncContext.complete();
+      }
+    });
+  }
+
+  private void enqueue(HttpServletRequest request, HttpServletResponse response) {
+    if (waitingCount.incrementAndGet() > queueSize) {
+      waitingCount.decrementAndGet();
+      reject(response);
+      return;
+    }
+
+    final AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(queueTimeoutMs);
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        if (waiting.remove(asyncContext)) {
+          waitingCount.decrementAndGet();
+          reject((HttpServletResponse) asyncContext.getResponse());
+          asyncContext.complete();
+        }
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) {
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+      }
+    });
+    waiting.add(asyncContext);
+
+    // A transfer may have finished between the failed tryAcquire and joining the queue.
+    if (permits.tryAcquire()) {
+      releasePermit();
+    }
+  }
+
+  /**
+   * Hands the permit of a finished transfer to the longest waiting fetch, or returns it if nobody is waiting.
+   */
+  private void releasePermit() {
+    while (true) {
+      AsyncContext next = waiting.poll();
+      if (next != null) {
+        waitingCount.decrementAndGet();
+        try {
+          next.getRequest().setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+          next.dispatch();
+          return;
+        } catch (IllegalStateException e) {
+          log.debug("Queued executor fetch went away", e);
+          continue;
+        }
+      }
+
+      permits.release();
+      // A fetch may have queued after the poll above, while the permit was still held.
+      if (waiting.isEmpty() || !permits.tryAcquire()) {
+        return;
+      }
+    }
+  }
+
+  private void releaseHeldPermit(HttpServletRequest request) {
+    if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+      request.removeAttribute(PERMIT_ATTRIBUTE);
+      releasePermit();
+    }
+  }
+
+  private void reject(HttpServletResponse response) {
+    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    response.setIntHeader("Retry-After", RETRY_AFTER_SEC);
+  }
+
+  private boolean notModified(HttpServletRequest request, ExecutorTarball currTarball) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String tag : ifNoneMatch.split(",")) {
+        String trimmed = tag.trim();
+        if (trimmed.equals("*") || trimmed.equals(currTarball.getEtag())) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+    return ifModifiedSince != -1 && currTarball.getLastModified() / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /**
+   * Returns the first and last byte of a single requested range, or null if the whole tarball should be sent.
+   * Multiple ranges, malformed ranges and ranges whose If-Range does not match are answered with the whole tarball.
+   */
+  private long[] getRange(HttpServletRequest request, ExecutorTarball currTarball) {
+    String rangeHeader = request.getHeader("Range");
+    if (rangeHeader == null || !rangeHeader.startsWith("bytes=") || rangeHeader.contains(",")) {
+      return null;
+    }
+
+    String ifRange = request.getHeader("If-Range");
+    if (ifRange != null) {
+      if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+        if (!ifRange.equals(currTarball.getEtag())) {
+          return null;
+        }
+      } else if (getDateHeader(request, "If-Range") / 1000 != currTarball.getLastModified() / 1000) {
+        return null;
+      }
+    }
+
+    String spec = rangeHeader.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    long length = currTarball.getLength();
+    try {
+      if (dash == 0) {
+        long suffix = Long.parseLong(spec.substring(1));
+        if (suffix <= 0) {
+          return null;
+        }
+        return new long[]{Math.max(0, length - suffix), length - 1};
+      }
+      long first = Long.parseLong(spec.substring(0, dash));
+      long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+      if (first < 0 || last < first) {
+        return null;
+      }
+      return new long[]{first, last};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private long getDateHeader(HttpServletRequest request, String name) {
+    try {
+      return request.getDateHeader(name);
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package org.apache.mesos.hdfs.config;
+
+import org.apache.mesos.metrics.MetricRegistry;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Serves the scheduler's metrics in the Prometheus text format, or as JSON with format=json or when JSON is accepted.
+ */
+public class MetricsHandler extends AbstractHandler {
+  public static final String PATH = "/metrics";
+  private static final String FORMAT_PARAM = "format";
+  private static final String JSON = "json";
+  private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final MetricRegistry registry;
+
+  public MetricsHandler(MetricRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+    throws IOException {
+    if (!PATH.equals(target)) {
+      return;
+    }
+    baseRequest.setHandled(true);
+    response.setHeader("Cache-Control", "no-cache");
+
+    if (wantsJson(request)) {
+      response.setContentType("application/json");
+      mapper.writeValue(response.getOutputStream(), registry.toMap());
+    } else {
+      response.setContentType(PROMETHEUS_CONTENT_TYPE);
+      Writer writer = new OutputStreamWriter(response.getOutputStream(), Charset.forName("UTF-8"));
+      registry.writePrometheus(writer);
+      writer.flush();
+    }
+  }
+
+  private boolean wantsJson(HttpServletRequest request) {
+    String format = request.getParameter(FORMAT_PARAM);
+    if (format != null) {
+      return JSON.equals(format);
+    }
+    String accept = request.getHeader("Accept");
+    return accept != null && accept.contains("application/json");
+  }
+}
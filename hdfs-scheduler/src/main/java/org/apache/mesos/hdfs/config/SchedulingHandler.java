@@ -0,0 +1,58 @@
+package org.apache.mesos.hdfs.config;
+
+import org.apache.mesos.concurrent.SharedScheduler;
+import org.apache.mesos.concurrent.SharedScheduler.JobStats;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Serves the threads of the scheduler's shared scheduler, and the runs, run times and start lag of its jobs as JSON.
+ */
+public class SchedulingHandler extends AbstractHandler {
+  public static final String PATH = "/scheduling";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final SharedScheduler scheduler;
+
+  public SchedulingHandler(SharedScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+    throws IOException {
+    if (!PATH.equals(target)) {
+      return;
+    }
+    baseRequest.setHandled(true);
+
+    Map<String, Object> jobs = new TreeMap<>();
+    for (JobStats stats : scheduler.getJobStats()) {
+      Map<String, Long> job = new LinkedHashMap<>();
+      job.put("runs", stats.getRuns());
+      job.put("failures", stats.getFailures());
+      job.put("last_run_ms", stats.getLastRunMs());
+      job.put("max_run_ms", stats.getMaxRunMs());
+      job.put("last_lag_ms", stats.getLastLagMs());
+      job.put("max_lag_ms", stats.getMaxLagMs());
+      jobs.put(stats.getName(), job);
+    }
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("threads", scheduler.getThreadCount());
+    body.put("active", scheduler.getActiveCount());
+    body.put("queued", scheduler.getQueueSize());
+    body.put("jobs", jobs);
+
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "no-cache");
+    mapper.writeValue(response.getOutputStream(), body);
+  }
+}
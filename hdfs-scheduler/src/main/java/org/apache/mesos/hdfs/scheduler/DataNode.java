@@ -3,6 +3,8 @@ package org.apache.mesos.hdfs.scheduler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.hdfs.config.ConfigRenderer;
+import org.apache.mesos.hdfs.config.ConfigSnapshot;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.config.NodeConfig;
 import org.apache.mesos.hdfs.state.HdfsState;
@@ -19,15 +21,19 @@ public class DataNode extends HdfsNode {
 
   public DataNode(
     HdfsState state,
-    HdfsFrameworkConfig config) {
-    super(state, config, HDFSConstants.DATA_NODE_ID);
+    HdfsFrameworkConfig config,
+    ConfigRenderer configRenderer) {
+    super(state, config, configRenderer, HDFSConstants.DATA_NODE_ID);
   }
 
   public boolean evaluate(Offer offer) {
     boolean accept = false;
     NodeConfig dataNodeConfig = config.getNodeConfig(HDFSConstants.DATA_NODE_ID);
+    int targetCount = config.getDataNodeCount();
 
-    if (!enoughResources(offer, dataNodeConfig.getCpus(), dataNodeConfig.getMaxHeap())) {
+    if (targetCount != ConfigSnapshot.ALL_HOSTS && countDataNodes(state) >= targetCount) {
+      log.info(String.format("Already running the target of %d DataNodes", targetCount));
+    } else if (!enoughResources(offer, dataNodeConfig.getCpus(), dataNodeConfig.getMaxHeap())) {
       log.info("Offer does not have enough resources");
     } else if (state.hostOccupied(offer.getHostname(), HDFSConstants.DATA_NODE_ID)) {
       log.info(String.format("Already running DataNode on %s", offer.getHostname()));
@@ -40,6 +46,19 @@ public class DataNode extends HdfsNode {
     return accept;
   }
 
+  /**
+   * Returns the number of DataNodes in the task view, including those being launched or killed.
+   */
+  static int countDataNodes(HdfsState state) {
+    int count = 0;
+    for (Task task : state.getTaskView()) {
+      if (HDFSConstants.DATA_NODE_ID.equals(task.getType())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   protected String getExecutorName() {
     return HDFSConstants.NODE_EXECUTOR_ID;
   }
@@ -1,23 +1,34 @@
 package org.apache.mesos.hdfs.scheduler;
 
+import com.google.protobuf.ByteString;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos.*;
 import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hdfs.config.ConfigRenderer;
+import org.apache.mesos.hdfs.config.ConfigRenderer.RenderedConfig;
+import org.apache.mesos.hdfs.config.ConfigSnapshot;
+import org.apache.mesos.hdfs.config.EmbeddedConfig;
+import org.apache.mesos.hdfs.config.ExecutorTarball;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.config.NodeConfig;
 import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.trace.LaunchTracer;
 import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.hdfs.util.TaskPorts;
 import org.apache.mesos.protobuf.CommandInfoBuilder;
 import org.apache.mesos.protobuf.EnvironmentBuilder;
 import org.apache.mesos.protobuf.ExecutorInfoBuilder;
 import org.apache.mesos.protobuf.ResourceBuilder;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -30,10 +41,12 @@ public abstract class HdfsNode implements IOfferEvaluator, ILauncher {
   protected final HdfsFrameworkConfig config;
   protected final HdfsState state;
   protected final String name;
+  private final ConfigRenderer configRenderer;
 
-  public HdfsNode(HdfsState state, HdfsFrameworkConfig config, String name) {
+  public HdfsNode(HdfsState state, HdfsFrameworkConfig config, ConfigRenderer configRenderer, String name) {
     this.state = state;
     this.config = config;
+    this.configRenderer = configRenderer;
     this.name = name;
     this.resourceBuilder = new ResourceBuilder(config.getHdfsRole());
   }
@@ -46,15 +59,68 @@ public abstract class HdfsNode implements IOfferEvaluator, ILauncher {
 
   protected abstract List<String> getTaskTypes();
 
-  public void launch(SchedulerDriver driver, Offer offer)
+  public void launch(SchedulerDriver driver, Offer offer, LaunchTracer tracer)
     throws ClassNotFoundException, IOException, InterruptedException, ExecutionException {
-    List<Task> tasks = createTasks(offer);
+    String nnNum = getTaskTypes().contains(HDFSConstants.NAME_NODE_ID)
+      ? getNextTaskName(HDFSConstants.NAME_NODE_ID)
+      : null;
+    List<Task> tasks = createTasks(offer, nnNum);
     List<TaskInfo> taskInfos = getTaskInfos(tasks);
 
     // The recording of Tasks is what can potentially throw the exceptions noted above.  This is good news
     // because we are guaranteed that we do not actually launch Tasks unless we have recorded them.
     recordTasks(tasks);
-    driver.launchTasks(Arrays.asList(offer.getId()), taskInfos);
+    tracer.tasksRecorded(offer, tasks);
+
+    // The config is rendered after recording so it includes the tasks being launched.
+    driver.launchTasks(Arrays.asList(offer.getId()), embedConfig(taskInfos, offer.getHostname(), nnNum));
+    tracer.launchIssued(tasks);
+  }
+
+  /**
+   * Embeds the rendered hdfs-site.xml in the ExecutorInfo data so the executor does not have to fetch it from the
+   * config server before starting its nodes.  The config URI is dropped from the fetcher URIs and kept in the
+   * embedded config for later reloads.  If the config cannot be rendered the executor fetches it as before.
+   */
+  private List<TaskInfo> embedConfig(List<TaskInfo> taskInfos, String hostname, String nnNum) {
+    if (!config.isConfigEmbedded() || config.usingNativeHadoopBinaries() || taskInfos.isEmpty()) {
+      return taskInfos;
+    }
+
+    ExecutorInfo executorInfo = taskInfos.get(0).getExecutor();
+    CommandInfo.Builder command = executorInfo.getCommand().toBuilder().clearUris();
+    String configUrl = null;
+    for (CommandInfo.URI uri : executorInfo.getCommand().getUrisList()) {
+      if (uri.getValue().contains(HDFSConstants.HDFS_CONFIG_FILE_NAME)) {
+        configUrl = uri.getValue();
+      } else {
+        command.addUris(uri);
+      }
+    }
+    if (configUrl == null) {
+      return taskInfos;
+    }
+
+    ByteString data;
+    try {
+      RenderedConfig renderedConfig = configRenderer.render(hostname, nnNum, null);
+      data = ByteString.copyFrom(
+        new EmbeddedConfig(renderedConfig.getVersion(), configUrl, renderedConfig.getContent()).toBytes());
+    } catch (IOException ex) {
+      log.warn("Failed to embed hdfs-site.xml, the executor will fetch it from the config server: " + ex);
+      return taskInfos;
+    }
+
+    // All tasks of a launch share the executor, whose ExecutorInfo must be identical for each of them.
+    ExecutorInfo embeddedExecutorInfo = executorInfo.toBuilder()
+      .setCommand(command)
+      .setData(data)
+      .build();
+    List<TaskInfo> embeddedTaskInfos = new ArrayList<>();
+    for (TaskInfo taskInfo : taskInfos) {
+      embeddedTaskInfos.add(taskInfo.toBuilder().setExecutor(embeddedExecutorInfo).build());
+    }
+    return embeddedTaskInfos;
   }
 
   private List<TaskInfo> getTaskInfos(List<Task> tasks) {
@@ -74,7 +140,8 @@ public abstract class HdfsNode implements IOfferEvaluator, ILauncher {
     }
   }
 
-  private ExecutorInfo createExecutor(String taskIdName, String nodeName, String nnNum, String executorName) {
+  private ExecutorInfo createExecutor(String taskIdName, String nodeName, String nnNum, String executorName,
+    String hostname) {
 
     String cmd = "export JAVA_HOME=$MESOS_DIRECTORY/" + config.getJreVersion()
       + " && env ; cd hdfs-mesos-* && "
@@ -88,32 +155,87 @@ public abstract class HdfsNode implements IOfferEvaluator, ILauncher {
       .setName(nodeName + " executor")
       .setExecutorId(ExecutorInfoBuilder.createExecutorId("executor." + taskIdName))
       .addAllResources(getExecutorResources())
-      .setCommand(CommandInfoBuilder.createCmdInfo(cmd, getCmdUriList(nnNum), getExecutorEnvironment()))
+      .setCommand(CommandInfoBuilder.createCmdInfo(cmd, getCmdUriList(nnNum, hostname), getExecutorEnvironment()))
       .build();
   }
 
-  private List<CommandInfo.URI> getCmdUriList(String nnNum) {
+  private List<CommandInfo.URI> getCmdUriList(String nnNum, String hostname) {
     int confServerPort = config.getConfigServerPort();
 
-    String url = String.format("http://%s:%d/%s", config.getFrameworkHostAddress(),
-      confServerPort, HDFSConstants.HDFS_CONFIG_FILE_NAME);
+    String url = String.format("http://%s:%d/%s?%s=%s", config.getFrameworkHostAddress(),
+      confServerPort, HDFSConstants.HDFS_CONFIG_FILE_NAME, HDFSConstants.HOSTNAME_PARAM, hostname);
     if (nnNum != null) {
-      url += "?" + HDFSConstants.NAMENODE_NUM_PARAM + "=" + nnNum;
+      url += "&" + HDFSConstants.NAMENODE_NUM_PARAM + "=" + nnNum;
     }
 
+    // The config changes with the topology and must never be served from the fetcher cache.
     return Arrays.asList(
-      CommandInfoBuilder.createCmdInfoUri(String.format("http://%s:%d/%s", config.getFrameworkHostAddress(),
-        confServerPort,
-        HDFSConstants.HDFS_BINARY_FILE_NAME)),
+      getExecutorTarballUri(),
       CommandInfoBuilder.createCmdInfoUri(url),
-      CommandInfoBuilder.createCmdInfoUri(config.getJreUrl()));
+      CommandInfoBuilder.createCmdInfoUri(config.getJreUrl(), config.isFetcherCacheEnabled()));
+  }
+
+  /**
+   * Returns the URI of the executor tarball.  With the fetcher cache enabled it points at the content-addressed name
+   * of the tarball, so agents keep using their cached copy until the scheduler ships a different build.
+   */
+  private CommandInfo.URI getExecutorTarballUri() {
+    String tarballName = HDFSConstants.HDFS_BINARY_FILE_NAME;
+    boolean cache = false;
+
+    if (config.isFetcherCacheEnabled()) {
+      try {
+        ExecutorTarball tarball = ExecutorTarball.get(new File(config.getExecutorPath(), tarballName));
+        if (tarball != null) {
+          tarballName = tarball.getContentAddressedName();
+          cache = true;
+        } else {
+          log.warn("Executor tarball not found, it will not be cached by the fetcher");
+        }
+      } catch (IOException ex) {
+        log.warn("Failed to checksum the executor tarball, it will not be cached by the fetcher: " + ex);
+      }
+    }
+
+    return CommandInfoBuilder.createCmdInfoUri(String.format("http://%s:%d/%s", config.getFrameworkHostAddress(),
+      config.getConfigServerPort(), tarballName), cache);
   }
 
   private List<Environment.Variable> getExecutorEnvironment() {
     return Arrays.asList(
       EnvironmentBuilder.createEnvironment("LD_LIBRARY_PATH", config.getLdLibraryPath()),
       EnvironmentBuilder.createEnvironment("EXECUTOR_OPTS", "-Xmx" + config.getExecutorHeap() + "m -Xms" +
-        config.getExecutorHeap() + "m"));
+        config.getExecutorHeap() + "m" + getHeapProperties()),
+      EnvironmentBuilder.createEnvironment(HDFSConstants.EXECUTOR_LAUNCH_TIME_ENV,
+        String.valueOf(System.currentTimeMillis())));
+  }
+
+  /**
+   * Returns system properties giving the executor the heap of each node it runs.  The executor reads its settings
+   * from the mesos-site.xml in its tarball, which misses changes made since, e.g. through the scale API, and the
+   * MESOS_ properties override it.
+   */
+  private String getHeapProperties() {
+    StringBuilder properties = new StringBuilder();
+    for (String type : getTaskTypes()) {
+      String property;
+      switch (type) {
+        case HDFSConstants.NAME_NODE_ID:
+          property = "MESOS_HDFS_NAMENODE_HEAP_SIZE";
+          break;
+        case HDFSConstants.DATA_NODE_ID:
+          property = "MESOS_HDFS_DATANODE_HEAP_SIZE";
+          break;
+        case HDFSConstants.JOURNAL_NODE_ID:
+          property = "MESOS_HDFS_JOURNALNODE_HEAP_SIZE";
+          break;
+        default:
+          property = "MESOS_HDFS_ZKFC_HEAP_SIZE";
+          break;
+      }
+      properties.append(" -D").append(property).append('=').append(config.getNodeConfig(type).getMaxHeap());
+    }
+    return properties.toString();
   }
 
   private List<String> getTaskNames(String taskType) {
@@ -145,9 +267,10 @@ public abstract class HdfsNode implements IOfferEvaluator, ILauncher {
   }
 
   private List<Resource> getTaskResources(String taskType) {
-    NodeConfig nodeConfig = config.getNodeConfig(taskType);
+    ConfigSnapshot snapshot = config.getSnapshot();
+    NodeConfig nodeConfig = snapshot.getNodeConfig(taskType);
     double cpu = nodeConfig.getCpus();
-    double mem = nodeConfig.getMaxHeap() * config.getJvmOverhead();
+    double mem = nodeConfig.getMaxHeap() * snapshot.getJvmOverhead();
 
     List<Resource> resources = new ArrayList<Resource>();
     resources.add(resourceBuilder.createCpuResource(cpu));
@@ -180,8 +303,9 @@ public abstract class HdfsNode implements IOfferEvaluator, ILauncher {
   }
 
   private List<Resource> getExecutorResources() {
-    double cpu = config.getExecutorCpus();
-    double mem = config.getExecutorHeap() * config.getJvmOverhead();
+    ConfigSnapshot snapshot = config.getSnapshot();
+    double cpu = snapshot.getExecutorCpus();
+    double mem = snapshot.getExecutorHeap() * snapshot.getJvmOverhead();
 
     return Arrays.asList(
       resourceBuilder.createCpuResource(cpu),
@@ -189,39 +313,79 @@ public abstract class HdfsNode implements IOfferEvaluator, ILauncher {
   }
 
   protected boolean enoughResources(Offer offer, double cpus, int mem) {
+    ConfigSnapshot snapshot = config.getSnapshot();
+    double requiredCpus = cpus + snapshot.getExecutorCpus();
+    double requiredMem = mem * snapshot.getJvmOverhead() + snapshot.getExecutorHeap() * snapshot.getJvmOverhead();
     for (Resource offerResource : offer.getResourcesList()) {
       if (offerResource.getName().equals("cpus") &&
-        cpus + config.getExecutorCpus() > offerResource.getScalar().getValue()) {
+        requiredCpus > offerResource.getScalar().getValue()) {
         return false;
       }
 
       if (offerResource.getName().equals("mem") &&
-        (mem * config.getJvmOverhead())
-          + (config.getExecutorHeap() * config.getJvmOverhead())
-          > offerResource.getScalar().getValue()) {
+        requiredMem > offerResource.getScalar().getValue()) {
         return false;
       }
     }
 
+    if (snapshot.usingDynamicPorts() && getOfferedPorts(offer).size() < getRequiredPortCount()) {
+      log.info("Offer does not have enough ports");
+      return false;
+    }
+
     return true;
   }
 
-  private List<Task> createTasks(Offer offer) {
+  private int getRequiredPortCount() {
+    int count = 0;
+    for (String type : getTaskTypes()) {
+      count += TaskPorts.getPortNames(type).size();
+    }
+    return count;
+  }
+
+  /**
+   * Returns single port resources taken from the offer, up to the number of ports the tasks of this node need.
+   */
+  private List<Resource> getOfferedPorts(Offer offer) {
+    int requiredCount = getRequiredPortCount();
+    List<Resource> ports = new ArrayList<>();
+
+    for (Resource offerResource : offer.getResourcesList()) {
+      if (!offerResource.getName().equals("ports") || !offerResource.hasRanges()) {
+        continue;
+      }
+      for (Value.Range range : offerResource.getRanges().getRangeList()) {
+        for (long port = range.getBegin(); port <= range.getEnd() && ports.size() < requiredCount; port++) {
+          ports.add(ResourceBuilder.ports(port, port, offerResource.getRole()));
+        }
+      }
+    }
+
+    return ports;
+  }
+
+  private List<Task> createTasks(Offer offer, String nnNum) {
     String executorName = getExecutorName();
     String taskIdName = String.format("%s.%s.%d", name, executorName, System.currentTimeMillis());
     List<Task> tasks = new ArrayList<>();
 
-    String nnNum = getTaskTypes().contains(HDFSConstants.NAME_NODE_ID)
-      ? getNextTaskName(HDFSConstants.NAME_NODE_ID)
-      : null;
-
+    Iterator<Resource> offeredPorts = getOfferedPorts(offer).iterator();
     for (String type : getTaskTypes()) {
       String taskName = getNextTaskName(type);
 
       List<Resource> resources = getTaskResources(type);
-      ExecutorInfo execInfo = createExecutor(taskIdName, name, nnNum, executorName);
+      Map<String, Integer> ports = TaskPorts.getDefaultPorts(type);
+      if (config.usingDynamicPorts()) {
+        for (String portName : ports.keySet()) {
+          Resource port = offeredPorts.next();
+          ports.put(portName, (int) port.getRanges().getRange(0).getBegin());
+          resources.add(port);
+        }
+      }
+      ExecutorInfo execInfo = createExecutor(taskIdName, name, nnNum, executorName, offer.getHostname());
 
-      tasks.add(new Task(resources, execInfo, offer, taskName, type, taskIdName));
+      tasks.add(new Task(resources, execInfo, offer, taskName, type, taskIdName, ports));
     }
 
     return tasks;
@@ -2,61 +2,127 @@ package org.apache.mesos.hdfs.scheduler;
 
 import com.google.inject.Inject;
 import com.google.protobuf.ByteString;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.MesosSchedulerDriver;
+import org.apache.mesos.Protos.CommandInfo;
 import org.apache.mesos.Protos.Credential;
 import org.apache.mesos.Protos.ExecutorID;
 import org.apache.mesos.Protos.FrameworkID;
 import org.apache.mesos.Protos.FrameworkInfo;
+import org.apache.mesos.Protos.Label;
 import org.apache.mesos.Protos.MasterInfo;
 import org.apache.mesos.Protos.Offer;
 import org.apache.mesos.Protos.OfferID;
 import org.apache.mesos.Protos.SlaveID;
 import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskState;
 import org.apache.mesos.Protos.TaskStatus;
 import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.concurrent.SharedScheduler;
+import org.apache.mesos.hdfs.config.ConfigRenderer;
+import org.apache.mesos.hdfs.config.ConfigSnapshot;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.state.AcquisitionPhase;
 import org.apache.mesos.hdfs.state.HdfsState;
 import org.apache.mesos.hdfs.state.StateMachine;
+import org.apache.mesos.hdfs.telemetry.TelemetryBatch;
+import org.apache.mesos.hdfs.telemetry.TelemetryStore;
+import org.apache.mesos.hdfs.trace.LaunchTracer;
 import org.apache.mesos.hdfs.util.DnsResolver;
+import org.apache.mesos.metrics.Counter;
+import org.apache.mesos.metrics.Histogram;
+import org.apache.mesos.metrics.MetricRegistry;
 import org.apache.mesos.process.FailureUtils;
 import org.apache.mesos.hdfs.util.HDFSConstants;
 import org.apache.mesos.protobuf.ExecutorInfoBuilder;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
 
 /**
  * HDFS Mesos Framework Scheduler class implementation.
  */
-public class HdfsScheduler extends Observable implements org.apache.mesos.Scheduler, Runnable {
+public class HdfsScheduler extends Observable implements org.apache.mesos.Scheduler, Runnable, Observer {
   private final Log log = LogFactory.getLog(HdfsScheduler.class);
   private final HdfsFrameworkConfig config;
   private HdfsMesosConstraints hdfsMesosConstraints;
   private final HdfsState state;
   private final StateMachine stateMachine;
   private final DnsResolver dnsResolver;
+  private final ConfigRenderer configRenderer;
+  private final TelemetryStore telemetryStore;
+  private final LaunchTracer launchTracer;
   private NodeLauncher launcher;
+  // The driver of the current registration, for work not triggered by a driver callback
+  private volatile SchedulerDriver driver;
+  // DataNodes being decommissioned to shrink to the target count, until they are killed
+  private final Set<String> decommissioningDataNodes = new HashSet<>();
+  // DataNodes killed to shrink to the target count, until their terminal status removes them from the state
+  private final Set<String> killedDataNodes = new HashSet<>();
+  // The hosts last sent to each NameNode to exclude, by task id
+  private final Map<String, String> excludedHosts = new HashMap<>();
+
+  private final MetricRegistry metrics = MetricRegistry.getDefault();
+  private final Counter offersReceived = metrics.counter("hdfs_offers_received_total", "Offers received");
+  private final Counter offersAccepted = metrics.counter("hdfs_offers_accepted_total", "Offers accepted");
+  private final Counter dataNodesKilled = metrics.counter("hdfs_datanodes_killed_total",
+    "DataNodes killed to shrink to the target count");
+
+  private static final Comparator<Task> NEWEST_FIRST = new Comparator<Task>() {
+    @Override
+    public int compare(Task a, Task b) {
+      int order = Long.compare(b.getLaunchTime(), a.getLaunchTime());
+      return order != 0 ? order : b.getId().getValue().compareTo(a.getId().getValue());
+    }
+  };
 
-  @Inject
   public HdfsScheduler(HdfsFrameworkConfig config, HdfsState state, StateMachine stateMachine) {
+    this(config, state, stateMachine, new ConfigRenderer(config, state), new TelemetryStore(config),
+      new LaunchTracer(config));
+  }
+
+  /**
+   * The renderer is the one the config server uses, so the config embedded in an ExecutorInfo is the one executors
+   * are later served and each config is only rendered once.
+   */
+  @Inject
+  public HdfsScheduler(HdfsFrameworkConfig config, HdfsState state, StateMachine stateMachine,
+    ConfigRenderer configRenderer, TelemetryStore telemetryStore, LaunchTracer launchTracer) {
     this.config = config;
     this.hdfsMesosConstraints = new HdfsMesosConstraints(this.config);
     this.dnsResolver = new DnsResolver(this, config);
+    this.configRenderer = configRenderer;
     this.state = state;
     this.stateMachine = stateMachine;
-    launcher = new NodeLauncher();
+    this.telemetryStore = telemetryStore;
+    this.launchTracer = launchTracer;
+    launcher = new NodeLauncher(launchTracer);
 
     addObserver(stateMachine.getReconciler());
     addObserver(state);
+    addObserver(telemetryStore);
+    addObserver(launchTracer);
+    config.addObserver(this);
   }
 
   @Override
@@ -106,8 +172,19 @@ public class HdfsScheduler extends Observable implements org.apache.mesos.Schedu
   @Override
   public void frameworkMessage(SchedulerDriver driver, ExecutorID executorID, SlaveID slaveID,
     byte[] data) {
-    log.info("Framework message: executorId=" + executorID.getValue() + " slaveId="
-      + slaveID.getValue() + " data='" + Arrays.toString(data) + "'");
+    try (Histogram.Timer timer = timeCallback("frameworkMessage")) {
+      if (TelemetryBatch.isTelemetry(data)) {
+        try {
+          telemetryStore.record(slaveID.getValue(), TelemetryBatch.fromBytes(data));
+        } catch (IOException e) {
+          log.warn("Invalid telemetry from executorId=" + executorID.getValue() + " slaveId=" + slaveID.getValue(),
+            e);
+        }
+        return;
+      }
+      log.info("Framework message: executorId=" + executorID.getValue() + " slaveId="
+        + slaveID.getValue() + " data='" + Arrays.toString(data) + "'");
+    }
   }
 
   @Override
@@ -117,38 +194,94 @@ public class HdfsScheduler extends Observable implements org.apache.mesos.Schedu
 
   @Override
   public void registered(SchedulerDriver driver, FrameworkID frameworkId, MasterInfo masterInfo) {
+    try (Histogram.Timer timer = timeCallback("registered")) {
+      try {
+        state.setFrameworkId(frameworkId);
+      } catch (IOException | InterruptedException | ExecutionException e) {
+        // these are zk exceptions... we are unable to maintain state.
+        final String msg = "Error setting framework id in persistent state";
+        log.error(msg, e);
+        throw new SchedulerException(msg, e);
+      }
+      log.info("Registered framework frameworkId=" + frameworkId.getValue());
+      this.driver = driver;
+      applyScaleSettings();
+      stateMachine.reconcile(driver);
+    }
+  }
+
+  /**
+   * Applies the settings stored through the scale API, which a previous scheduler may have changed.
+   */
+  private void applyScaleSettings() {
     try {
-      state.setFrameworkId(frameworkId);
-    } catch (IOException | InterruptedException | ExecutionException e) {
-      // these are zk exceptions... we are unable to maintain state.
-      final String msg = "Error setting framework id in persistent state";
-      log.error(msg, e);
-      throw new SchedulerException(msg, e);
+      config.setScaleSettings(state.getScaleSettings());
+    } catch (ClassNotFoundException | IOException | InterruptedException | ExecutionException e) {
+      log.error("Failed to read the scale settings, running with the configured ones", e);
     }
-    log.info("Registered framework frameworkId=" + frameworkId.getValue());
-    stateMachine.reconcile(driver);
   }
 
   @Override
   public void reregistered(SchedulerDriver driver, MasterInfo masterInfo) {
-    log.info("Reregistered framework: starting task reconciliation");
-    stateMachine.reconcile(driver);
+    try (Histogram.Timer timer = timeCallback("reregistered")) {
+      log.info("Reregistered framework: starting task reconciliation");
+      this.driver = driver;
+      stateMachine.reconcile(driver);
+    }
   }
 
   @Override
   public void statusUpdate(SchedulerDriver driver, TaskStatus status) {
-    log.info(String.format(
-      "Received status update for taskId=%s state=%s message='%s'",
-      status.getTaskId().getValue(),
-      status.getState().toString(),
-      status.getMessage()));
+    try (Histogram.Timer timer = timeCallback("statusUpdate")) {
+      log.info(String.format(
+        "Received status update for taskId=%s state=%s message='%s'",
+        status.getTaskId().getValue(),
+        status.getState().toString(),
+        status.getMessage()));
+
+      log.info("Notifying observers of TaskStatus: " + status);
+      setChanged();
+      notifyObservers(status);
+
+      reloadConfigsOnAllRunningTasks(driver);
+      // The NameNodes report the progress of decommissions on their status
+      if (stateMachine.correctPhase() == AcquisitionPhase.DATA_NODES) {
+        decommissionExcessDataNodes(driver);
+      }
+    }
+  }
 
-    log.info("Notifying observers of TaskStatus: " + status);
-    setChanged();
-    notifyObservers(status);
+  /**
+   * Starts shrinking to a lowered DataNode count right away, rather than once the next offer comes in.
+   */
+  @Override
+  public void update(Observable observable, Object obj) {
+    final SchedulerDriver currDriver = driver;
+    if (currDriver == null) {
+      return;
+    }
+    SharedScheduler.getInstance().execute("decommission", new Runnable() {
+      @Override
+      public void run() {
+        if (stateMachine.getCurrentPhase() == AcquisitionPhase.DATA_NODES) {
+          decommissionExcessDataNodes(currDriver);
+        }
+      }
+    });
+  }
 
-    reloadConfigsOnAllRunningTasks(driver);
-    stateMachine.correctPhase();
+  private Histogram.Timer timeCallback(String callback) {
+    return metrics.histogram("hdfs_scheduler_callback_seconds", "Duration of scheduler callbacks",
+      "callback", callback).startTimer();
+  }
+
+  private void declineOffer(SchedulerDriver driver, OfferID offerId, String reason) {
+    countDecline(reason);
+    driver.declineOffer(offerId);
+  }
+
+  private void countDecline(String reason) {
+    metrics.counter("hdfs_offers_declined_total", "Offers declined, by reason", "reason", reason).inc();
   }
 
   private void logOffers(List<Offer> offers) {
@@ -162,7 +295,7 @@ public class HdfsScheduler extends Observable implements org.apache.mesos.Schedu
     }
   }
 
-  private void declineOffer(SchedulerDriver driver, Offer offer) {
+  private void declineOffer(SchedulerDriver driver, Offer offer, String reason) {
     OfferID offerId = offer.getId();
 
     log.info(
@@ -171,52 +304,195 @@ public class HdfsScheduler extends Observable implements org.apache.mesos.Schedu
         stateMachine.getCurrentPhase(),
         offerId));
 
-    driver.declineOffer(offerId);
+    declineOffer(driver, offerId, reason);
   }
 
   @Override
   public void resourceOffers(SchedulerDriver driver, List<Offer> offers) {
+    try (Histogram.Timer timer = timeCallback("resourceOffers")) {
+      evaluateOffers(driver, offers);
+    }
+  }
+
+  private void evaluateOffers(SchedulerDriver driver, List<Offer> offers) {
     logOffers(offers);
+    offersReceived.inc(offers.size());
+    launchTracer.offersReceived(offers);
 
-    if (stateMachine.getCurrentPhase() == AcquisitionPhase.RECONCILING_TASKS) {
-      stateMachine.correctPhase();
+    AcquisitionPhase phase = stateMachine.getCurrentPhase();
+    if (phase == AcquisitionPhase.RECONCILING_TASKS) {
+      phase = stateMachine.correctPhase();
+    }
+    if (phase == AcquisitionPhase.DATA_NODES) {
+      decommissionExcessDataNodes(driver);
     }
 
     boolean acceptedOffer = false;
     for (Offer offer : offers) {
       if (acceptedOffer) {
-        driver.declineOffer(offer.getId());
+        declineOffer(driver, offer.getId(), "already_accepted");
       } else if (!hdfsMesosConstraints.constraintsAllow(offer)) {
-        driver.declineOffer(offer.getId());
+        declineOffer(driver, offer.getId(), "constraints");
       } else {
         try {
           HdfsNode node = null;
 
           switch (stateMachine.getCurrentPhase()) {
             case RECONCILING_TASKS:
-              declineOffer(driver, offer);
+              declineOffer(driver, offer, "reconciling");
               break;
             case JOURNAL_NODES:
-              node = new JournalNode(state, config);
+              node = new JournalNode(state, config, configRenderer);
               break;
             case NAME_NODES:
-              node = new NameNode(state, dnsResolver, config);
+              node = new NameNode(state, dnsResolver, config, configRenderer);
               break;
             case DATA_NODES:
-              node = new DataNode(state, config);
+              node = new DataNode(state, config, configRenderer);
               break;
           }
 
           if (node != null) {
             acceptedOffer = launcher.tryLaunch(driver, offer, node);
+            if (acceptedOffer) {
+              offersAccepted.inc();
+            } else {
+              // The launcher declined it
+              countDecline("evaluation");
+            }
           }
         } catch (Exception ex) {
           log.error("Declining offer with exception: " + ex.getMessage()
             + " and stack: " + ExceptionUtils.getStackTrace(ex));
-          declineOffer(driver, offer);
+          declineOffer(driver, offer, "error");
+        }
+      }
+    }
+  }
+
+  /**
+   * Shrinks to the target count by decommissioning the newest DataNodes beyond it.  At most dfs.replication - 1 of them
+   * are decommissioned at a time, so every block keeps a replica on a DataNode in service.  Their hosts are excluded on
+   * the NameNodes, and each is killed once the active NameNode reports it decommissioned, or decommissioning with no
+   * block left under-replicated.  Its terminal status removes it from the state, and no DataNode is launched in its
+   * place while the count is at the target.  Runs when offers come in, on status updates and on scale changes.
+   */
+  private synchronized void decommissionExcessDataNodes(SchedulerDriver driver) {
+    List<Task> dataNodes = new ArrayList<>();
+    List<Task> nameNodes = new ArrayList<>();
+    Set<String> ids = new HashSet<>();
+    for (Task task : state.getTaskView()) {
+      if (HDFSConstants.DATA_NODE_ID.equals(task.getType())) {
+        dataNodes.add(task);
+        ids.add(task.getId().getValue());
+      } else if (HDFSConstants.NAME_NODE_ID.equals(task.getType())) {
+        nameNodes.add(task);
+      }
+    }
+    killedDataNodes.retainAll(ids);
+
+    List<Task> liveDataNodes = new ArrayList<>();
+    for (Task task : dataNodes) {
+      if (!killedDataNodes.contains(task.getId().getValue())) {
+        liveDataNodes.add(task);
+      }
+    }
+    Collections.sort(liveDataNodes, NEWEST_FIRST);
+    int targetCount = config.getDataNodeCount();
+    int excess = targetCount == ConfigSnapshot.ALL_HOSTS ? 0 : Math.max(0, liveDataNodes.size() - targetCount);
+    List<Task> excessDataNodes = liveDataNodes.subList(0, excess);
+
+    // DataNodes no longer beyond the target, e.g. once it is raised again, are put back in service
+    Set<String> excessIds = new HashSet<>();
+    for (Task task : excessDataNodes) {
+      excessIds.add(task.getId().getValue());
+    }
+    decommissioningDataNodes.retainAll(excessIds);
+
+    // Decommissioned DataNodes are killed before more are decommissioned in their place
+    Set<String> decommissioned = getDecommissionedHosts(nameNodes);
+    int maxDecommissioning = Math.max(1, config.getReplication() - 1);
+    for (Task task : excessDataNodes) {
+      String id = task.getId().getValue();
+      if (decommissioningDataNodes.contains(id)) {
+        if (decommissioned.contains(task.getHostname())) {
+          log.info(String.format("Killing decommissioned DataNode %s on %s", id, task.getHostname()));
+          decommissioningDataNodes.remove(id);
+          killedDataNodes.add(id);
+          driver.killTask(task.getId());
+          dataNodesKilled.inc();
+        }
+      } else if (decommissioningDataNodes.size() < maxDecommissioning) {
+        log.info(String.format("Decommissioning DataNode %s on %s to shrink to %d DataNodes", id, task.getHostname(),
+          targetCount));
+        decommissioningDataNodes.add(id);
+      }
+    }
+
+    Set<String> hosts = new TreeSet<>();
+    for (Task task : dataNodes) {
+      String id = task.getId().getValue();
+      if (decommissioningDataNodes.contains(id) || killedDataNodes.contains(id)) {
+        hosts.add(task.getHostname());
+      }
+    }
+    excludeHosts(driver, nameNodes, StringUtils.join(hosts, ","));
+  }
+
+  /**
+   * Sends the hosts to exclude to every running NameNode which was not sent them yet.  A NameNode is sent them at least
+   * once, so hosts excluded under a previous scheduler are put back in service.
+   */
+  private void excludeHosts(SchedulerDriver driver, List<Task> nameNodes, String hosts) {
+    Set<String> ids = new HashSet<>();
+    for (Task task : nameNodes) {
+      String id = task.getId().getValue();
+      ids.add(id);
+      TaskStatus status = task.getStatus();
+      if (status != null && status.getState() == TaskState.TASK_RUNNING && !hosts.equals(excludedHosts.get(id))) {
+        sendMessageTo(driver, status.getTaskId(), status.getSlaveId(), HDFSConstants.EXCLUDE_HOSTS + " " + hosts);
+        excludedHosts.put(id, hosts);
+      }
+    }
+    excludedHosts.keySet().retainAll(ids);
+  }
+
+  /**
+   * Returns the hosts the active NameNode reports decommissioned, along with those it reports decommissioning once no
+   * block is under-replicated.
+   */
+  private Set<String> getDecommissionedHosts(List<Task> nameNodes) {
+    Set<String> hosts = new HashSet<>();
+    for (Task task : nameNodes) {
+      Map<String, String> health = getHealthMetrics(task.getStatus());
+      if (!HDFSConstants.HA_STATE_ACTIVE_VAL.equals(health.get(HDFSConstants.HA_STATE_METRIC))) {
+        continue;
+      }
+      hosts.addAll(splitHosts(health.get(HDFSConstants.DECOMMISSIONED_METRIC)));
+      if ("0".equals(health.get(HDFSConstants.UNDER_REPLICATED_BLOCKS_METRIC))) {
+        hosts.addAll(splitHosts(health.get(HDFSConstants.DECOMMISSIONING_METRIC)));
+      }
+    }
+    return hosts;
+  }
+
+  /**
+   * Returns the health metrics on the labels of a status by name.
+   */
+  private Map<String, String> getHealthMetrics(TaskStatus status) {
+    Map<String, String> metrics = new HashMap<>();
+    if (status != null && status.hasLabels()) {
+      for (Label label : status.getLabels().getLabelsList()) {
+        if (label.getKey().startsWith(HDFSConstants.HEALTH_KEY_PREFIX)) {
+          metrics.put(label.getKey().substring(HDFSConstants.HEALTH_KEY_PREFIX.length()), label.getValue());
         }
       }
     }
+    return metrics;
+  }
+
+  private List<String> splitHosts(String hosts) {
+    return hosts == null || hosts.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(hosts.split(","));
   }
 
   @Override
@@ -290,7 +566,8 @@ public class HdfsScheduler extends Observable implements org.apache.mesos.Schedu
   }
 
   private void reloadConfigsOnAllRunningTasks(SchedulerDriver driver) {
-    if (config.usingNativeHadoopBinaries()) {
+    // Executors watching their config pick up changes from the config server on their own
+    if (config.usingNativeHadoopBinaries() || config.isConfigWatchEnabled()) {
       return;
     }
 
@@ -304,9 +581,38 @@ public class HdfsScheduler extends Observable implements org.apache.mesos.Schedu
     for (Task task : tasks) {
       TaskStatus status = task.getStatus();
       if (status != null) {
+        String version = getConfigVersion(task);
         sendMessageTo(driver, status.getTaskId(), status.getSlaveId(),
-          HDFSConstants.RELOAD_CONFIG);
+          version == null ? HDFSConstants.RELOAD_CONFIG : HDFSConstants.RELOAD_CONFIG + " " + version);
       }
     }
   }
+
+  /**
+   * Returns the version of the config the executor of the task would fetch, so executors already holding it can skip
+   * the reload, or null if it cannot be determined.
+   */
+  private String getConfigVersion(Task task) {
+    for (CommandInfo.URI uri : task.getInfo().getExecutor().getCommand().getUrisList()) {
+      if (!uri.getValue().contains(HDFSConstants.HDFS_CONFIG_FILE_NAME)) {
+        continue;
+      }
+      try {
+        Map<String, String> params = new HashMap<>();
+        String query = new URI(uri.getValue()).getRawQuery();
+        if (query != null) {
+          for (String param : query.split("&")) {
+            String[] keyValue = param.split("=", 2);
+            params.put(URLDecoder.decode(keyValue[0], "UTF-8"),
+              keyValue.length == 2 ? URLDecoder.decode(keyValue[1], "UTF-8") : "");
+          }
+        }
+        return configRenderer.render(params.get(HDFSConstants.HOSTNAME_PARAM),
+          params.get(HDFSConstants.NAMENODE_NUM_PARAM), params.get(HDFSConstants.DATA_DIRS_PARAM)).getVersion();
+      } catch (URISyntaxException | IOException ex) {
+        log.warn("Failed to render the config of task " + task.getName() + ": " + ex);
+      }
+    }
+    return null;
+  }
 }
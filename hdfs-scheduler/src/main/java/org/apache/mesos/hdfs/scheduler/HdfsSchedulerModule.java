@@ -1,6 +1,7 @@
 package org.apache.mesos.hdfs.scheduler;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
 
 /**
  * Guice Module for initializing interfaces to implementations for the HDFS Scheduler.
@@ -9,6 +10,8 @@ public class HdfsSchedulerModule extends AbstractModule {
 
   @Override
   protected void configure() {
-    bind(StateFactory.class).to(ZKStateFactory.class);
+    // The persisted state is kept in ZooKeeper, with its operations instrumented
+    bind(StateFactory.class).annotatedWith(Names.named(InstrumentedStateFactory.BACKEND)).to(ZKStateFactory.class);
+    bind(StateFactory.class).to(InstrumentedStateFactory.class);
   }
 }
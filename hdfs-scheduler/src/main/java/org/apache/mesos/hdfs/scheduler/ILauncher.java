@@ -2,6 +2,7 @@ package org.apache.mesos.hdfs.scheduler;
 
 import org.apache.mesos.Protos.Offer;
 import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hdfs.trace.LaunchTracer;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
@@ -10,6 +11,6 @@ import java.util.concurrent.ExecutionException;
  * ILauncher interface.
  */
 public interface ILauncher {
-  public void launch(SchedulerDriver driver, Offer offer)
+  public void launch(SchedulerDriver driver, Offer offer, LaunchTracer tracer)
     throws ClassNotFoundException, IOException, InterruptedException, ExecutionException;
 }
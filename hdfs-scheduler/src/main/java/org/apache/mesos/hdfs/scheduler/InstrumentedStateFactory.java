@@ -0,0 +1,179 @@
+package org.apache.mesos.hdfs.scheduler;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.metrics.Histogram;
+import org.apache.mesos.metrics.MetricRegistry;
+import org.apache.mesos.state.State;
+import org.apache.mesos.state.Variable;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decorates the States created by another StateFactory, the backend, to time every fetch, store, expunge and names
+ * until its result is taken, and to record the sizes of the values fetched and stored.  Operations are attributed to
+ * the method which issued them, e.g. HdfsState.recordTask, so the callers hammering ZooKeeper and the records which
+ * grew large stand out at /metrics.  When mesos.hdfs.state.instrumented is false the backend's States are returned as
+ * they are.
+ */
+public class InstrumentedStateFactory implements StateFactory {
+  public static final String BACKEND = "backend";
+
+  private static final String LATENCY_METRIC = "hdfs_zk_operation_seconds";
+  private static final String LATENCY_HELP = "Latency of operations on the persisted state, by caller";
+  private static final String FAILURES_METRIC = "hdfs_zk_operation_failures_total";
+  private static final String FAILURES_HELP = "Failed operations on the persisted state, by caller";
+  private static final String PAYLOAD_METRIC = "hdfs_zk_payload_bytes";
+  private static final String PAYLOAD_HELP = "Sizes of the values fetched from and stored in the persisted state";
+
+  private final StateFactory backend;
+  private final MetricRegistry metrics;
+
+  @Inject
+  public InstrumentedStateFactory(@Named(BACKEND) StateFactory backend) {
+    this(backend, MetricRegistry.getDefault());
+  }
+
+  public InstrumentedStateFactory(StateFactory backend, MetricRegistry metrics) {
+    this.backend = backend;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public State create(String path, HdfsFrameworkConfig config) {
+    State state = backend.create(path, config);
+    return config.isStateInstrumented() ? new InstrumentedState(state) : state;
+  }
+
+  /**
+   * Returns the class and method which called into the State, skipping this decorator.
+   */
+  private static String getCaller() {
+    for (StackTraceElement frame : new Throwable().getStackTrace()) {
+      String className = frame.getClassName();
+      if (!className.startsWith(InstrumentedStateFactory.class.getName())) {
+        return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+      }
+    }
+    return "unknown";
+  }
+
+  private final class InstrumentedState implements State {
+    private final State state;
+
+    private InstrumentedState(State state) {
+      this.state = state;
+    }
+
+    @Override
+    public Future<Variable> fetch(String name) {
+      return new TimedFuture<>("fetch", getCaller(), state.fetch(name));
+    }
+
+    @Override
+    public Future<Variable> store(Variable variable) {
+      String caller = getCaller();
+      recordPayload("store", caller, variable);
+      return new TimedFuture<>("store", caller, state.store(variable));
+    }
+
+    @Override
+    public Future<Boolean> expunge(Variable variable) {
+      return new TimedFuture<>("expunge", getCaller(), state.expunge(variable));
+    }
+
+    @Override
+    public Future<Iterator<String>> names() {
+      return new TimedFuture<>("names", getCaller(), state.names());
+    }
+  }
+
+  private void recordPayload(String operation, String caller, Variable variable) {
+    byte[] value = variable == null ? null : variable.value();
+    if (value != null) {
+      metrics.histogram(PAYLOAD_METRIC, PAYLOAD_HELP, Histogram.SIZE_BUCKETS_BYTES, "operation", operation,
+        "caller", caller).record(value.length);
+    }
+  }
+
+  /**
+   * Records the latency of an operation when its result is first taken, which is when the caller waited for it.
+   */
+  private final class TimedFuture<T> implements Future<T> {
+    private final String operation;
+    private final String caller;
+    private final Future<T> future;
+    private final long startNanos = System.nanoTime();
+    private final AtomicBoolean recorded = new AtomicBoolean();
+
+    private TimedFuture(String operation, String caller, Future<T> future) {
+      this.operation = operation;
+      this.caller = caller;
+      this.future = future;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+      try {
+        return completed(future.get());
+      } catch (ExecutionException e) {
+        failed();
+        throw e;
+      }
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      try {
+        return completed(future.get(timeout, unit));
+      } catch (ExecutionException e) {
+        failed();
+        throw e;
+      }
+    }
+
+    private T completed(T result) {
+      if (recorded.compareAndSet(false, true)) {
+        recordLatency();
+        // Stored values are recorded when stored, since a conflicting store returns none
+        if (operation.equals("fetch") && result instanceof Variable) {
+          recordPayload(operation, caller, (Variable) result);
+        }
+      }
+      return result;
+    }
+
+    private void failed() {
+      if (recorded.compareAndSet(false, true)) {
+        recordLatency();
+        metrics.counter(FAILURES_METRIC, FAILURES_HELP, "operation", operation, "caller", caller).inc();
+      }
+    }
+
+    private void recordLatency() {
+      metrics.histogram(LATENCY_METRIC, LATENCY_HELP, "operation", operation, "caller", caller)
+        .observeNanos(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return future.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return future.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return future.isDone();
+    }
+  }
+}
@@ -3,6 +3,7 @@ package org.apache.mesos.hdfs.scheduler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.hdfs.config.ConfigRenderer;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.config.NodeConfig;
 import org.apache.mesos.hdfs.state.HdfsState;
@@ -19,8 +20,9 @@ public class JournalNode extends HdfsNode {
 
   public JournalNode(
     HdfsState state,
-    HdfsFrameworkConfig config) {
-    super(state, config, HDFSConstants.JOURNAL_NODE_ID);
+    HdfsFrameworkConfig config,
+    ConfigRenderer configRenderer) {
+    super(state, config, configRenderer, HDFSConstants.JOURNAL_NODE_ID);
   }
 
   public boolean evaluate(Offer offer) {
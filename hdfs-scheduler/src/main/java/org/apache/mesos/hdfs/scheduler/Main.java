@@ -5,6 +5,7 @@ import com.google.inject.Injector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.hdfs.config.ConfigServer;
+import org.apache.mesos.hdfs.config.ConfigWatcher;
 import org.apache.mesos.process.FailureUtils;
 
 /**
@@ -22,6 +23,7 @@ public final class Main {
     Injector injector = Guice.createInjector(new HdfsSchedulerModule());
     getSchedulerThread(injector).start();
     injector.getInstance(ConfigServer.class);
+    injector.getInstance(ConfigWatcher.class).start();
   }
 
   private Thread getSchedulerThread(Injector injector) {
@@ -3,6 +3,7 @@ package org.apache.mesos.hdfs.scheduler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.hdfs.config.ConfigRenderer;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.config.NodeConfig;
 import org.apache.mesos.hdfs.state.HdfsState;
@@ -23,8 +24,9 @@ public class NameNode extends HdfsNode {
   public NameNode(
     HdfsState state,
     DnsResolver dnsResolver,
-    HdfsFrameworkConfig config) {
-    super(state, config, HDFSConstants.NAME_NODE_ID);
+    HdfsFrameworkConfig config,
+    ConfigRenderer configRenderer) {
+    super(state, config, configRenderer, HDFSConstants.NAME_NODE_ID);
     this.dnsResolver = dnsResolver;
   }
 
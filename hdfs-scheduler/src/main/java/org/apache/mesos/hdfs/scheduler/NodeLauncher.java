@@ -5,6 +5,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos.Offer;
 import org.apache.mesos.Protos.OfferID;
 import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hdfs.trace.LaunchTracer;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
@@ -15,6 +16,12 @@ import java.util.concurrent.ExecutionException;
 public class NodeLauncher {
   private static final Log log = LogFactory.getLog(NodeLauncher.class);
 
+  private final LaunchTracer tracer;
+
+  public NodeLauncher(LaunchTracer tracer) {
+    this.tracer = tracer;
+  }
+
   public boolean tryLaunch(SchedulerDriver driver, Offer offer, HdfsNode node)
     throws ClassNotFoundException, IOException, InterruptedException, ExecutionException {
 
@@ -26,7 +33,8 @@ public class NodeLauncher {
 
     if (acceptOffer) {
       log.info(String.format("Node: %s, accepting offer: %s", nodeName, offerId));
-      node.launch(driver, offer);
+      tracer.offerEvaluated(offerId);
+      node.launch(driver, offer, tracer);
     } else {
       log.info(String.format("Node: %s, declining offer: %s", nodeName, offerId));
       driver.declineOffer(offerId);
@@ -1,6 +1,7 @@
 package org.apache.mesos.hdfs.scheduler;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos;
@@ -10,40 +11,78 @@ import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.state.HdfsState;
 import org.apache.mesos.hdfs.util.HDFSConstants;
 import org.apache.mesos.hdfs.util.TaskStatusFactory;
+import org.apache.mesos.metrics.Counter;
+import org.apache.mesos.metrics.Gauge;
+import org.apache.mesos.metrics.MetricRegistry;
 import org.apache.mesos.protobuf.TaskUtil;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 
 /**
  * HDFS Mesos Framework Reconciler class implementation.
  */
+@Singleton
 public class Reconciler implements Observer {
   private final Log log = LogFactory.getLog(HdfsScheduler.class);
 
   private HdfsFrameworkConfig config;
   private HdfsState state;
-  private Set<String> pendingTasks;
+  // Replaced by each reconciliation, and read by the config server while status updates remove from it
+  private volatile Set<String> pendingTasks;
+  private volatile long startedMs;
+  private final Counter rounds = MetricRegistry.getDefault().counter("hdfs_reconciliation_rounds_total",
+    "Rounds of explicit and implicit task reconciliation");
 
   @Inject
   public Reconciler(HdfsFrameworkConfig config, HdfsState state) {
     this.config = config;
     this.state = state;
-    this.pendingTasks = new HashSet<String>();
+    this.pendingTasks = newPendingTasks(Collections.<String>emptySet());
+    MetricRegistry.getDefault().gauge("hdfs_reconciliation_pending_tasks", "Tasks waiting to be reconciled",
+      new Gauge() {
+        @Override
+        public double getValue() {
+          return pendingTasks.size();
+        }
+      });
   }
 
   public void reconcile(SchedulerDriver driver) throws InterruptedException, ExecutionException {
-    pendingTasks = state.getTaskIds();
+    pendingTasks = newPendingTasks(state.getTaskIds());
+    startedMs = System.currentTimeMillis();
     (new ReconcileThread(this, driver)).start();
   }
 
+  private static Set<String> newPendingTasks(Set<String> taskIds) {
+    Set<String> tasks = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    tasks.addAll(taskIds);
+    return tasks;
+  }
+
+  public Set<String> getPendingTasks() {
+    return Collections.unmodifiableSet(pendingTasks);
+  }
+
+  /**
+   * Returns when the last reconciliation started, or 0 if none did.
+   */
+  public long getStartedMs() {
+    return startedMs;
+  }
+
+  public long getRounds() {
+    return rounds.get();
+  }
+
   private void reconcileInternal(SchedulerDriver driver) {
+    rounds.inc();
     if (pendingTasks != null) {
       logPendingTasks();
       explicitlyReconcileTasks(driver);
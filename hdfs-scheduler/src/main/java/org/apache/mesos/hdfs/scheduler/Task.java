@@ -6,12 +6,14 @@ import org.apache.mesos.Protos.Resource;
 import org.apache.mesos.Protos.TaskID;
 import org.apache.mesos.Protos.TaskInfo;
 import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.hdfs.util.TaskPorts;
 import org.apache.mesos.protobuf.TaskInfoBuilder;
 
 import java.io.IOException;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Task class encapsulates TaskInfo and metadata necessary for recording State when appropriate.
@@ -30,11 +32,23 @@ public class Task implements Serializable {
     String name,
     String type,
     String idName) {
+    this(resources, execInfo, offer, name, type, idName, TaskPorts.getDefaultPorts(type));
+  }
+
+  public Task(
+    List<Resource> resources,
+    ExecutorInfo execInfo,
+    Offer offer,
+    String name,
+    String type,
+    String idName,
+    Map<String, Integer> ports) {
 
     this.info = new TaskInfoBuilder(String.format("task.%s.%s", type, idName), name)
       .setExecutorInfo(execInfo)
       .setSlaveId(offer.getSlaveId().getValue())
       .addAllResources(resources)
+      .setDiscoveryInfo(TaskPorts.createDiscoveryInfo(name, ports))
       .setData(String.format("bin/hdfs-mesos-%s", type))
       .build();
 
@@ -72,6 +86,26 @@ public class Task implements Serializable {
     return offer.getHostname();
   }
 
+  /**
+   * Returns when the task was launched, in ms since the epoch, as recorded at the end of its id, or 0 for ids which
+   * don't end in a launch time.
+   */
+  public long getLaunchTime() {
+    String id = getId().getValue();
+    try {
+      return Long.parseLong(id.substring(id.lastIndexOf('.') + 1));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the ports the task listens on by name.
+   */
+  public Map<String, Integer> getPorts() {
+    return TaskPorts.getPorts(getInfo(), getType());
+  }
+
   public void setStatus(TaskStatus status) {
     this.status = status;
   }
@@ -1,6 +1,7 @@
 package org.apache.mesos.hdfs.state;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos.FrameworkID;
@@ -8,32 +9,50 @@ import org.apache.mesos.Protos.Label;
 import org.apache.mesos.Protos.TaskState;
 import org.apache.mesos.Protos.TaskStatus;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.config.ScaleSettings;
 import org.apache.mesos.hdfs.scheduler.StateFactory;
 import org.apache.mesos.hdfs.scheduler.Task;
 import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.protobuf.LabelBuilder;
 import org.apache.mesos.protobuf.TaskStatusBuilder;
 import org.apache.mesos.state.State;
 import org.apache.mesos.state.Variable;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Reads and Writes the persisted state of the HDFS Framework.
+ * Reads and Writes the persisted state of the HDFS Framework.  Observers are notified whenever the topology version
+ * changes.
  */
-public class HdfsState implements Observer {
+@Singleton
+public class HdfsState extends Observable implements Observer {
+  // Stored and expunged again to create the tasks path, never a task
+  private static final String INIT_KEY = "init";
+
   private final State taskState;
   private final State schedulerState;
   private final Log log = LogFactory.getLog(HdfsState.class);
   private final String zkTaskPath;
   private final String zkSchedulerPath;
+  private final AtomicLong topologyVersion = new AtomicLong();
+  // The tasks as last stored, so they can be served without reading the persisted state, see getTaskView
+  private final ConcurrentMap<String, Task> taskView = new ConcurrentHashMap<>();
+  private final AtomicLong viewVersion = new AtomicLong();
 
   @Inject
   public HdfsState(HdfsFrameworkConfig config, StateFactory stateFactory) {
@@ -48,6 +67,66 @@ public class HdfsState implements Observer {
     // around returning an empty list of elements when querying the 
     // persisted tasks.
     initializeTaskState();
+    loadTaskView();
+  }
+
+  private void loadTaskView() {
+    try {
+      for (Task task : getTasks()) {
+        taskView.put(task.getId().getValue(), task);
+      }
+    } catch (Exception ex) {
+      log.error("Failed to load the tasks with exception: " + ex);
+    }
+  }
+
+  /**
+   * Returns the tasks as last stored by this scheduler, without reading the persisted state.
+   */
+  public Collection<Task> getTaskView() {
+    return Collections.unmodifiableCollection(taskView.values());
+  }
+
+  public Task getTaskView(String taskId) {
+    return taskView.get(taskId);
+  }
+
+  /**
+   * Returns a counter which changes whenever a task or its status changes in the task view.
+   */
+  public long getViewVersion() {
+    return viewVersion.get();
+  }
+
+  /**
+   * Returns the tasks of the task view along with the topology version they belong to, read together so the tasks
+   * are exactly those of that version.
+   */
+  public Topology getTopology() {
+    synchronized (taskView) {
+      return new Topology(topologyVersion.get(), new ArrayList<>(taskView.values()));
+    }
+  }
+
+  /**
+   * Applies a change to the task view, moving the topology version along with it if tasks were added or removed.
+   */
+  private void taskViewChanged(String taskId, Task task, boolean topologyChanged) {
+    long version;
+    synchronized (taskView) {
+      if (task == null) {
+        taskView.remove(taskId);
+      } else {
+        taskView.put(taskId, task);
+      }
+      viewVersion.incrementAndGet();
+      if (!topologyChanged) {
+        return;
+      }
+      version = topologyVersion.incrementAndGet();
+    }
+    setChanged();
+    notifyObservers(version);
   }
 
   private boolean taskStateInitialized() {
@@ -63,19 +142,36 @@ public class HdfsState implements Observer {
 
   private void initializeTaskState() {
     if (taskStateInitialized()) {
+      expungeInitVariable();
       return;
     }
 
     try {
       // Put something in to initialize the path.
-      Variable var = taskState.fetch("init").get();
+      Variable var = taskState.fetch(INIT_KEY).get();
       var = var.mutate(new byte[1]);
       taskState.store(var).get();
-
-      // Now remove it.
-      taskState.expunge(var).get();
     } catch (Exception ex) {
       log.error("Failed to initialize taskState with exception: " + ex);
+      return;
+    }
+
+    // Now remove it.
+    expungeInitVariable();
+  }
+
+  /**
+   * Removes the variable which initialized the tasks path, which is left behind if removing it failed before.  It is
+   * never read as a task either way, see getTaskIds.
+   */
+  private void expungeInitVariable() {
+    try {
+      Variable var = taskState.fetch(INIT_KEY).get();
+      if (var.value().length > 0) {
+        taskState.expunge(var).get();
+      }
+    } catch (Exception ex) {
+      log.warn("Failed to remove the " + INIT_KEY + " variable of taskState with exception: " + ex);
     }
   }
 
@@ -103,6 +199,26 @@ public class HdfsState implements Observer {
     schedulerState.expunge(var).get();
   }
 
+  public void setScaleSettings(ScaleSettings settings) throws IOException, InterruptedException, ExecutionException {
+    Variable var = schedulerState.fetch(HDFSConstants.ZK_SCALE_SETTINGS_KEY).get();
+    var = var.mutate(Serializer.serialize(settings));
+    schedulerState.store(var).get();
+  }
+
+  /**
+   * Returns the settings last stored, or ScaleSettings.NONE if there are none.
+   */
+  public ScaleSettings getScaleSettings()
+    throws ClassNotFoundException, ExecutionException, InterruptedException, IOException {
+    Variable var = schedulerState.fetch(HDFSConstants.ZK_SCALE_SETTINGS_KEY).get();
+
+    if (var == null || var.value() == null || var.value().length == 0) {
+      return ScaleSettings.NONE;
+    } else {
+      return (ScaleSettings) Serializer.deserialize(var.value());
+    }
+  }
+
   public void recordTask(Task task)
     throws ClassNotFoundException, IOException, InterruptedException, ExecutionException {
     Variable var = taskState.fetch(task.getId().getValue()).get();
@@ -123,22 +239,39 @@ public class HdfsState implements Observer {
     byte[] taskBytes = Serializer.serialize(task);
     var = var.mutate(taskBytes);
     taskState.store(var).get();
+    taskViewChanged(task.getId().getValue(), task, true);
+  }
+
+  /**
+   * Returns a counter which changes whenever a task is recorded or removed.  It only moves after the change has been
+   * stored, so anything derived from the tasks after reading the version is at least as new as that version.
+   */
+  public long getTopologyVersion() {
+    return topologyVersion.get();
   }
 
   private TaskStatus mergeStatuses(TaskStatus curr, TaskStatus next) throws ClassNotFoundException {
-    if (curr == null || next == null || next.hasLabels()) {
+    if (curr == null || next == null || !curr.hasLabels()) {
       return next;
     }
 
-    // If the old status has labels, but the new status doesn't,
-    // update the new status with the old labels.  We don't want labels
-    // being overwritten to empty.  This would break determinging when
-    // NameNodes are initialized since that computation relies on labels.
-    if (curr.hasLabels()) {
-      return new TaskStatusBuilder(next).setLabels(curr.getLabels()).build();
+    // Merge the labels of the old status into the new status key by key, with the new values winning.  Executors
+    // only send the labels they are updating, e.g. health checks don't repeat whether a NameNode is initialized,
+    // and we don't want labels being overwritten to empty.  This would break determinging when NameNodes are
+    // initialized since that computation relies on labels.
+    Map<String, String> labels = new LinkedHashMap<String, String>();
+    for (Label label : curr.getLabels().getLabelsList()) {
+      labels.put(label.getKey(), label.getValue());
+    }
+    for (Label label : next.getLabels().getLabelsList()) {
+      labels.put(label.getKey(), label.getValue());
     }
 
-    return next;
+    LabelBuilder labelBuilder = new LabelBuilder();
+    for (Map.Entry<String, String> label : labels.entrySet()) {
+      labelBuilder.addLabel(label.getKey(), label.getValue());
+    }
+    return new TaskStatusBuilder(next).setLabels(labelBuilder.build()).build();
   }
 
   public Set<String> getTaskIds() throws InterruptedException, ExecutionException {
@@ -146,7 +279,10 @@ public class HdfsState implements Observer {
 
     Iterator<String> iter = taskState.names().get();
     while (iter.hasNext()) {
-      ids.add(iter.next());
+      String id = iter.next();
+      if (!INIT_KEY.equals(id)) {
+        ids.add(id);
+      }
     }
 
     return ids;
@@ -187,6 +323,7 @@ public class HdfsState implements Observer {
 
       if (isTerminalState(newStatus)) {
         taskState.expunge(var).get();
+        taskViewChanged(taskId, null, true);
       } else {
         Task task = (Task) Serializer.deserialize(var.value());
         TaskStatus oldStatus = task.getStatus();
@@ -196,6 +333,7 @@ public class HdfsState implements Observer {
         byte[] taskBytes = Serializer.serialize(task);
         var = var.mutate(taskBytes);
         taskState.store(var).get();
+        taskViewChanged(taskId, task, false);
       }
     } catch (ClassNotFoundException | IOException | InterruptedException | ExecutionException ex) {
       log.error("Failed to update TaskStatus with ID: " + taskId + "with exception: " + ex.getMessage());
@@ -226,7 +364,7 @@ public class HdfsState implements Observer {
     return (Task) Serializer.deserialize(var.value());
   }
 
-  private boolean isTerminalState(TaskStatus taskStatus) {
+  public static boolean isTerminalState(TaskStatus taskStatus) {
     return taskStatus.getState().equals(TaskState.TASK_FAILED)
       || taskStatus.getState().equals(TaskState.TASK_FINISHED)
       || taskStatus.getState().equals(TaskState.TASK_KILLED)
@@ -281,4 +419,25 @@ public class HdfsState implements Observer {
     log.info(String.format("%s/%s NameNodes initialized.", initCount, HDFSConstants.TOTAL_NAME_NODES));
     return initCount == HDFSConstants.TOTAL_NAME_NODES;
   }
+
+  /**
+   * The tasks of one topology version.
+   */
+  public static class Topology {
+    private final long version;
+    private final List<Task> tasks;
+
+    public Topology(long version, List<Task> tasks) {
+      this.version = version;
+      this.tasks = Collections.unmodifiableList(tasks);
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    public List<Task> getTasks() {
+      return tasks;
+    }
+  }
 }
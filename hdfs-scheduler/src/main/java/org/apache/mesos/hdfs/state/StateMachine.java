@@ -1,23 +1,29 @@
 package org.apache.mesos.hdfs.state;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.SchedulerDriver;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.scheduler.Reconciler;
+import org.apache.mesos.metrics.Gauge;
+import org.apache.mesos.metrics.MetricRegistry;
 import org.apache.mesos.process.FailureUtils;
 import org.apache.mesos.hdfs.util.HDFSConstants;
 
 /**
  * The Scheduler state machine.
  */
+@Singleton
 public class StateMachine {
   private final HdfsState state;
   private final HdfsFrameworkConfig config;
   private final Log log = LogFactory.getLog(StateMachine.class);
   private final Reconciler reconciler;
-  private AcquisitionPhase currPhase;
+  private volatile AcquisitionPhase currPhase;
+  private long phaseStartNanos = System.nanoTime();
+  private volatile long phaseStartMs = System.currentTimeMillis();
 
   @Inject
   public StateMachine(
@@ -28,6 +34,18 @@ public class StateMachine {
     this.config = config;
     this.currPhase = AcquisitionPhase.RECONCILING_TASKS;
     this.reconciler = reconciler;
+    registerPhaseGauges();
+  }
+
+  private void registerPhaseGauges() {
+    for (final AcquisitionPhase phase : AcquisitionPhase.values()) {
+      MetricRegistry.getDefault().gauge("hdfs_acquisition_phase", "1 for the current acquisition phase", new Gauge() {
+        @Override
+        public double getValue() {
+          return currPhase == phase ? 1 : 0;
+        }
+      }, "phase", phase.name());
+    }
   }
 
   public Reconciler getReconciler() {
@@ -38,6 +56,13 @@ public class StateMachine {
     return currPhase;
   }
 
+  /**
+   * Returns when the current phase was entered.
+   */
+  public long getPhaseStartMs() {
+    return phaseStartMs;
+  }
+
   public AcquisitionPhase correctPhase() {
     int currJournalCount = 0;
     int currNameCount = 0;
@@ -79,6 +104,11 @@ public class StateMachine {
       log.info(String.format("Acquisition phase is already '%s'", currPhase));
     } else {
       log.info(String.format("Transitioning from acquisition phase '%s' to '%s'", currPhase, nextPhase));
+      long nowNanos = System.nanoTime();
+      MetricRegistry.getDefault().histogram("hdfs_acquisition_phase_seconds", "Time spent in acquisition phases",
+        "phase", currPhase.name()).observeNanos(nowNanos - phaseStartNanos);
+      phaseStartNanos = nowNanos;
+      phaseStartMs = System.currentTimeMillis();
       currPhase = nextPhase;
     }
   }
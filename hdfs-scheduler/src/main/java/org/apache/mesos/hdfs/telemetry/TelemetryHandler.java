@@ -0,0 +1,121 @@
+package org.apache.mesos.hdfs.telemetry;
+
+import org.apache.mesos.hdfs.telemetry.TelemetryStore.Series;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Serves the telemetry of the cluster as JSON.  /telemetry returns the latest values and rates of every task along
+ * with their sums per node type, e.g. the write throughput of all DataNodes.  /telemetry?task=&lt;id&gt; returns all
+ * samples kept for one task.
+ */
+public class TelemetryHandler extends AbstractHandler {
+  public static final String PATH = "/telemetry";
+  private static final String TASK_PARAM = "task";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final TelemetryStore store;
+
+  public TelemetryHandler(TelemetryStore store) {
+    this.store = store;
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+    throws IOException {
+    if (!PATH.equals(target)) {
+      return;
+    }
+    baseRequest.setHandled(true);
+
+    Object body;
+    String taskId = request.getParameter(TASK_PARAM);
+    if (taskId == null) {
+      body = getSummary();
+    } else {
+      Series series = store.getSeries(taskId);
+      if (series == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No telemetry for task " + taskId);
+        return;
+      }
+      body = getHistory(series);
+    }
+
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "no-cache");
+    mapper.writeValue(response.getOutputStream(), body);
+  }
+
+  private Map<String, Object> getSummary() {
+    Map<String, Map<String, Map<String, Number>>> cluster = new TreeMap<>();
+    List<Map<String, Object>> tasks = new ArrayList<>();
+    for (Series series : store.getSeries()) {
+      long[] latest = series.getLatest();
+      if (latest == null) {
+        continue;
+      }
+      double[] rates = series.getRates();
+      Map<String, Map<String, Number>> typeTotals = cluster.get(series.getTaskType());
+      if (typeTotals == null) {
+        typeTotals = new TreeMap<>();
+        cluster.put(series.getTaskType(), typeTotals);
+      }
+
+      Map<String, Long> values = new LinkedHashMap<>();
+      Map<String, Double> taskRates = new LinkedHashMap<>();
+      for (int i = 0; i < series.getMetrics().size(); i++) {
+        String metric = series.getMetrics().get(i);
+        values.put(metric, latest[i + 1]);
+        Map<String, Number> total = typeTotals.get(metric);
+        if (total == null) {
+          total = new LinkedHashMap<>();
+          total.put("sum", 0L);
+          typeTotals.put(metric, total);
+        }
+        total.put("sum", total.get("sum").longValue() + latest[i + 1]);
+        if (TelemetryStore.isCounter(metric) && rates != null) {
+          taskRates.put(metric, rates[i]);
+          Number rate = total.get("rate");
+          total.put("rate", (rate == null ? 0 : rate.doubleValue()) + rates[i]);
+        }
+      }
+
+      Map<String, Object> task = new LinkedHashMap<>();
+      task.put("task", series.getTaskId());
+      task.put("type", series.getTaskType());
+      task.put("slave", series.getSlaveId());
+      task.put("timestamp", latest[0]);
+      task.put("values", values);
+      task.put("rates", taskRates);
+      tasks.add(task);
+    }
+
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("cluster", cluster);
+    summary.put("tasks", tasks);
+    return summary;
+  }
+
+  private Map<String, Object> getHistory(Series series) {
+    Map<String, Object> history = new LinkedHashMap<>();
+    history.put("task", series.getTaskId());
+    history.put("type", series.getTaskType());
+    history.put("slave", series.getSlaveId());
+    List<String> columns = new ArrayList<>();
+    columns.add("timestamp");
+    columns.addAll(series.getMetrics());
+    history.put("columns", columns);
+    history.put("samples", series.getSamples());
+    return history;
+  }
+}
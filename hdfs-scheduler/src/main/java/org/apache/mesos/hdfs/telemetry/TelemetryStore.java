@@ -0,0 +1,181 @@
+package org.apache.mesos.hdfs.telemetry;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.state.HdfsState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the most recent telemetry samples sent by executors in a fixed size ring buffer per task.  Series are
+ * dropped when their task reaches a terminal state.
+ */
+@Singleton
+public class TelemetryStore implements Observer {
+  private static final String COUNTER_SUFFIX = "_total";
+
+  private final Log log = LogFactory.getLog(TelemetryStore.class);
+  private final int capacity;
+  private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+  @Inject
+  public TelemetryStore(HdfsFrameworkConfig config) {
+    this(config.getTelemetryHistorySize());
+  }
+
+  public TelemetryStore(int capacity) {
+    this.capacity = Math.max(2, capacity);
+  }
+
+  public void record(String slaveId, TelemetryBatch batch) {
+    Series curr = series.get(batch.getTaskId());
+    if (curr == null || !curr.getMetrics().equals(batch.getMetrics())) {
+      // A new task, or one whose executor now samples different metrics
+      curr = new Series(batch.getTaskId(), batch.getTaskType(), slaveId, batch.getMetrics(), capacity);
+      series.put(batch.getTaskId(), curr);
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      curr.add(batch.getTimestamp(i), batch.getValues(i));
+    }
+  }
+
+  public Series getSeries(String taskId) {
+    return series.get(taskId);
+  }
+
+  public Collection<Series> getSeries() {
+    return Collections.unmodifiableCollection(series.values());
+  }
+
+  @Override
+  public void update(Observable observable, Object obj) {
+    if (obj instanceof TaskStatus && HdfsState.isTerminalState((TaskStatus) obj)) {
+      String taskId = ((TaskStatus) obj).getTaskId().getValue();
+      if (series.remove(taskId) != null) {
+        log.info("Dropped telemetry of task " + taskId);
+      }
+    }
+  }
+
+  /**
+   * Returns whether a metric is a counter, whose rate is more interesting than its value.
+   */
+  public static boolean isCounter(String metric) {
+    return metric.endsWith(COUNTER_SUFFIX);
+  }
+
+  /**
+   * The samples of one task, oldest first.
+   */
+  public static final class Series {
+    private final String taskId;
+    private final String taskType;
+    private final String slaveId;
+    private final List<String> metrics;
+    private final long[] timestamps;
+    private final long[][] values;
+    private int next;
+    private int size;
+
+    private Series(String taskId, String taskType, String slaveId, List<String> metrics, int capacity) {
+      this.taskId = taskId;
+      this.taskType = taskType;
+      this.slaveId = slaveId;
+      this.metrics = metrics;
+      this.timestamps = new long[capacity];
+      this.values = new long[capacity][];
+    }
+
+    private synchronized void add(long timestamp, long[] sample) {
+      if (size > 0 && timestamp <= timestamps[index(size - 1)]) {
+        // Batches may be delivered twice or out of order
+        return;
+      }
+      timestamps[next] = timestamp;
+      values[next] = sample;
+      next = (next + 1) % timestamps.length;
+      size = Math.min(size + 1, timestamps.length);
+    }
+
+    public String getTaskId() {
+      return taskId;
+    }
+
+    public String getTaskType() {
+      return taskType;
+    }
+
+    public String getSlaveId() {
+      return slaveId;
+    }
+
+    public List<String> getMetrics() {
+      return metrics;
+    }
+
+    public synchronized int size() {
+      return size;
+    }
+
+    /**
+     * Returns the samples as arrays of the timestamp followed by the value of each metric.
+     */
+    public synchronized List<long[]> getSamples() {
+      List<long[]> samples = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        samples.add(getSample(index(i)));
+      }
+      return samples;
+    }
+
+    /**
+     * Returns the latest sample in the same layout as getSamples, or null if there is none.
+     */
+    public synchronized long[] getLatest() {
+      if (size == 0) {
+        return null;
+      }
+      return getSample(index(size - 1));
+    }
+
+    /**
+     * Returns the per second rate of each metric between the two latest samples, or null if there aren't two.
+     * Counters which went backwards, e.g. because the node restarted, have a rate of 0.
+     */
+    public synchronized double[] getRates() {
+      if (size < 2) {
+        return null;
+      }
+      int last = index(size - 1);
+      int prev = index(size - 2);
+      double elapsedSec = (timestamps[last] - timestamps[prev]) / 1000.0;
+      double[] rates = new double[metrics.size()];
+      for (int i = 0; i < rates.length; i++) {
+        rates[i] = Math.max(0, values[last][i] - values[prev][i]) / elapsedSec;
+      }
+      return rates;
+    }
+
+    private long[] getSample(int index) {
+      long[] sample = new long[metrics.size() + 1];
+      sample[0] = timestamps[index];
+      System.arraycopy(values[index], 0, sample, 1, metrics.size());
+      return sample;
+    }
+
+    private int index(int i) {
+      return (next - size + i + timestamps.length) % timestamps.length;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package org.apache.mesos.hdfs.trace;
+
+import org.apache.mesos.hdfs.util.LaunchStage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * When the stages of one task's launch were reached.  Stages reached on the executor are timed by the slave's clock,
+ * so durations across the scheduler and the executor are only as accurate as the clocks are in sync.
+ */
+public final class LaunchTrace {
+  private final String taskId;
+  private final String taskType;
+  private final String hostname;
+  private final Map<LaunchStage, Long> stages = new EnumMap<>(LaunchStage.class);
+  private String outcome;
+
+  LaunchTrace(String taskId, String taskType, String hostname) {
+    this.taskId = taskId;
+    this.taskType = taskType;
+    this.hostname = hostname;
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public String getTaskType() {
+    return taskType;
+  }
+
+  public String getHostname() {
+    return hostname;
+  }
+
+  /**
+   * Records when a stage was reached, unless it was recorded before.
+   */
+  synchronized void mark(LaunchStage stage, long timeMs) {
+    if (!stages.containsKey(stage)) {
+      stages.put(stage, timeMs);
+    }
+  }
+
+  synchronized boolean hasStage(LaunchStage stage) {
+    return stages.containsKey(stage);
+  }
+
+  synchronized void complete(String outcome) {
+    this.outcome = outcome;
+  }
+
+  /**
+   * Returns how the launch ended, e.g. running or task_failed, or null while it is in flight.
+   */
+  public synchronized String getOutcome() {
+    return outcome;
+  }
+
+  /**
+   * Returns the time from the first stage to the last one reached.
+   */
+  public synchronized long getTotalMs() {
+    if (stages.isEmpty()) {
+      return 0;
+    }
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    for (long timeMs : stages.values()) {
+      first = Math.min(first, timeMs);
+      last = Math.max(last, timeMs);
+    }
+    return last - first;
+  }
+
+  /**
+   * Returns the time each stage took, measured from the stage reached before it, in the order they were reached.
+   * The first stage took no time.
+   */
+  public synchronized Map<LaunchStage, Long> getStageDurations() {
+    List<Map.Entry<LaunchStage, Long>> reached = new ArrayList<>(stages.entrySet());
+    Collections.sort(reached, new Comparator<Map.Entry<LaunchStage, Long>>() {
+      @Override
+      public int compare(Map.Entry<LaunchStage, Long> a, Map.Entry<LaunchStage, Long> b) {
+        int byTime = Long.compare(a.getValue(), b.getValue());
+        return byTime != 0 ? byTime : a.getKey().compareTo(b.getKey());
+      }
+    });
+    Map<LaunchStage, Long> durations = new LinkedHashMap<>();
+    Long previousMs = null;
+    for (Map.Entry<LaunchStage, Long> entry : reached) {
+      durations.put(entry.getKey(), previousMs == null ? 0 : entry.getValue() - previousMs);
+      previousMs = entry.getValue();
+    }
+    return durations;
+  }
+
+  /**
+   * Returns the trace as a map for a JSON serializer.
+   */
+  public synchronized Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("task_id", taskId);
+    map.put("type", taskType);
+    map.put("hostname", hostname);
+    map.put("outcome", outcome);
+    map.put("total_ms", getTotalMs());
+    List<Map<String, Object>> reached = new ArrayList<>();
+    for (Map.Entry<LaunchStage, Long> entry : getStageDurations().entrySet()) {
+      Map<String, Object> stage = new LinkedHashMap<>();
+      stage.put("stage", entry.getKey().getName());
+      stage.put("time_ms", stages.get(entry.getKey()));
+      stage.put("duration_ms", entry.getValue());
+      reached.add(stage);
+    }
+    map.put("stages", reached);
+    return map;
+  }
+}
@@ -0,0 +1,88 @@
+package org.apache.mesos.hdfs.trace;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves task launch traces as JSON.  /traces returns the launches in flight and the slowest of the recently
+ * completed ones, slowest first, at most limit=&lt;n&gt; of each.  /traces?task=&lt;id&gt; returns the trace of one task.
+ */
+public class LaunchTraceHandler extends AbstractHandler {
+  public static final String PATH = "/traces";
+  private static final String TASK_PARAM = "task";
+  private static final String LIMIT_PARAM = "limit";
+  private static final int DEFAULT_LIMIT = 20;
+
+  private static final Comparator<LaunchTrace> SLOWEST_FIRST = new Comparator<LaunchTrace>() {
+    @Override
+    public int compare(LaunchTrace a, LaunchTrace b) {
+      return Long.compare(b.getTotalMs(), a.getTotalMs());
+    }
+  };
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final LaunchTracer tracer;
+
+  public LaunchTraceHandler(LaunchTracer tracer) {
+    this.tracer = tracer;
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+    throws IOException {
+    if (!PATH.equals(target)) {
+      return;
+    }
+    baseRequest.setHandled(true);
+
+    Object body;
+    String taskId = request.getParameter(TASK_PARAM);
+    if (taskId == null) {
+      int limit;
+      try {
+        String limitParam = request.getParameter(LIMIT_PARAM);
+        limit = limitParam == null ? DEFAULT_LIMIT : Integer.parseInt(limitParam);
+      } catch (NumberFormatException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid limit");
+        return;
+      }
+      Map<String, Object> traces = new LinkedHashMap<>();
+      traces.put("in_flight", getSlowest(tracer.getInFlight(), limit));
+      traces.put("completed", getSlowest(tracer.getCompleted(), limit));
+      body = traces;
+    } else {
+      LaunchTrace trace = tracer.getTrace(taskId);
+      if (trace == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No launch trace for task " + taskId);
+        return;
+      }
+      body = trace.toMap();
+    }
+
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "no-cache");
+    mapper.writeValue(response.getOutputStream(), body);
+  }
+
+  private List<Map<String, Object>> getSlowest(Collection<LaunchTrace> traces, int limit) {
+    List<LaunchTrace> sorted = new ArrayList<>(traces);
+    Collections.sort(sorted, SLOWEST_FIRST);
+    List<Map<String, Object>> slowest = new ArrayList<>();
+    for (LaunchTrace trace : sorted.subList(0, Math.max(0, Math.min(limit, sorted.size())))) {
+      slowest.add(trace.toMap());
+    }
+    return slowest;
+  }
+}
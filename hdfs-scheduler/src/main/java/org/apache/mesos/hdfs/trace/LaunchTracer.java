@@ -0,0 +1,194 @@
+package org.apache.mesos.hdfs.trace;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.Label;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.util.LaunchStage;
+import org.apache.mesos.metrics.MetricRegistry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traces the launch of every task from the offer it is launched on until its node passes a health check.  The
+ * scheduler marks the stages up to issuing the launch, the executor reports the stages it reaches on status updates,
+ * see LaunchStage.  Once a launch completes, the time taken by each stage is added to the hdfs_launch_stage_seconds
+ * histograms, and the trace is kept among the most recent ones for finding slow launches.
+ */
+@Singleton
+public class LaunchTracer implements Observer {
+  public static final String RUNNING_OUTCOME = "running";
+
+  private final Log log = LogFactory.getLog(LaunchTracer.class);
+  private final MetricRegistry metrics = MetricRegistry.getDefault();
+  private final int historySize;
+  private final ConcurrentMap<String, LaunchTrace> inFlight = new ConcurrentHashMap<>();
+  private final Deque<LaunchTrace> completed = new ArrayDeque<>();
+
+  // When the offers being evaluated were received and accepted, only touched by scheduler callbacks
+  private Map<String, Long> offersReceivedMs = new HashMap<>();
+  private final Map<String, Long> offersEvaluatedMs = new HashMap<>();
+
+  @Inject
+  public LaunchTracer(HdfsFrameworkConfig config) {
+    this(config.getLaunchTraceHistorySize());
+  }
+
+  public LaunchTracer(int historySize) {
+    this.historySize = Math.max(1, historySize);
+  }
+
+  /**
+   * Marks a batch of offers as received.  Offers are accepted or declined before the next batch is received, so
+   * earlier ones are forgotten.
+   */
+  public void offersReceived(List<Offer> offers) {
+    long nowMs = System.currentTimeMillis();
+    offersReceivedMs = new HashMap<>();
+    offersEvaluatedMs.clear();
+    for (Offer offer : offers) {
+      offersReceivedMs.put(offer.getId().getValue(), nowMs);
+    }
+  }
+
+  public void offerEvaluated(OfferID offerId) {
+    offersEvaluatedMs.put(offerId.getValue(), System.currentTimeMillis());
+  }
+
+  /**
+   * Starts tracing tasks once they are recorded in the state, as launched on the given offer.
+   */
+  public void tasksRecorded(Offer offer, Collection<Task> tasks) {
+    long nowMs = System.currentTimeMillis();
+    Long receivedMs = offersReceivedMs.get(offer.getId().getValue());
+    Long evaluatedMs = offersEvaluatedMs.get(offer.getId().getValue());
+    for (Task task : tasks) {
+      LaunchTrace trace = new LaunchTrace(task.getId().getValue(), task.getType(), offer.getHostname());
+      if (receivedMs != null) {
+        trace.mark(LaunchStage.OFFER_RECEIVED, receivedMs);
+      }
+      if (evaluatedMs != null) {
+        trace.mark(LaunchStage.OFFER_EVALUATED, evaluatedMs);
+      }
+      trace.mark(LaunchStage.STATE_RECORDED, nowMs);
+      inFlight.put(trace.getTaskId(), trace);
+    }
+  }
+
+  public void launchIssued(Collection<Task> tasks) {
+    long nowMs = System.currentTimeMillis();
+    for (Task task : tasks) {
+      LaunchTrace trace = inFlight.get(task.getId().getValue());
+      if (trace != null) {
+        trace.mark(LaunchStage.LAUNCH_ISSUED, nowMs);
+      }
+    }
+  }
+
+  @Override
+  public void update(Observable observable, Object obj) {
+    if (!(obj instanceof TaskStatus)) {
+      return;
+    }
+    TaskStatus status = (TaskStatus) obj;
+    LaunchTrace trace = inFlight.get(status.getTaskId().getValue());
+    if (trace == null) {
+      return;
+    }
+
+    for (Label label : status.getLabels().getLabelsList()) {
+      LaunchStage stage = LaunchStage.fromLabel(label.getKey());
+      if (stage != null) {
+        try {
+          trace.mark(stage, Long.parseLong(label.getValue()));
+        } catch (NumberFormatException e) {
+          log.warn("Invalid launch trace label " + label.getKey() + "=" + label.getValue());
+        }
+      }
+    }
+    if (status.getState() == TaskState.TASK_RUNNING) {
+      trace.mark(LaunchStage.TASK_RUNNING, System.currentTimeMillis());
+    }
+
+    if (trace.hasStage(LaunchStage.TASK_RUNNING) && trace.hasStage(LaunchStage.HEALTH_CHECK_PASSED)) {
+      complete(trace, RUNNING_OUTCOME);
+    } else if (HdfsState.isTerminalState(status)) {
+      complete(trace, status.getState().name().toLowerCase());
+    }
+  }
+
+  private void complete(LaunchTrace trace, String outcome) {
+    trace.complete(outcome);
+    inFlight.remove(trace.getTaskId());
+    synchronized (completed) {
+      completed.addFirst(trace);
+      while (completed.size() > historySize) {
+        completed.removeLast();
+      }
+    }
+
+    if (RUNNING_OUTCOME.equals(outcome)) {
+      for (Map.Entry<LaunchStage, Long> stage : trace.getStageDurations().entrySet()) {
+        // Stages timed by different clocks may appear to go back in time
+        observe("hdfs_launch_stage_seconds", "Time taken by the stages of task launches", Math.max(0,
+          stage.getValue()), "stage", stage.getKey().getName());
+      }
+      observe("hdfs_launch_seconds", "Time from receiving an offer to a task passing its health check",
+        trace.getTotalMs(), "type", trace.getTaskType());
+    }
+    log.info(String.format("Launch of task %s ended %s after %d ms", trace.getTaskId(), outcome,
+      trace.getTotalMs()));
+  }
+
+  private void observe(String name, String help, long durationMs, String... labels) {
+    metrics.histogram(name, help, labels).observe(durationMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the trace of a task's launch, whether in flight or recently completed, or null if it isn't known.
+   */
+  public LaunchTrace getTrace(String taskId) {
+    LaunchTrace trace = inFlight.get(taskId);
+    if (trace != null) {
+      return trace;
+    }
+    for (LaunchTrace recent : getCompleted()) {
+      if (recent.getTaskId().equals(taskId)) {
+        return recent;
+      }
+    }
+    return null;
+  }
+
+  public Collection<LaunchTrace> getInFlight() {
+    return new ArrayList<>(inFlight.values());
+  }
+
+  /**
+   * Returns the most recently completed launches, latest first.
+   */
+  public List<LaunchTrace> getCompleted() {
+    synchronized (completed) {
+      return new ArrayList<>(completed);
+    }
+  }
+}
@@ -1,80 +1,47 @@
 package org.apache.mesos.hdfs.util;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos;
 import org.apache.mesos.SchedulerDriver;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
 import org.apache.mesos.hdfs.scheduler.HdfsScheduler;
+import org.apache.mesos.net.CachingResolver;
 
-import java.io.IOException;
-import java.net.InetAddress;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Timer;
 
 /**
- * Provides DNS resolving specific to HDFS.
+ * Provides DNS resolving specific to HDFS.  Names are resolved in parallel and cached, so checking whether nodes
+ * resolve never blocks offer evaluation.
  */
 public class DnsResolver {
-  private final Log log = LogFactory.getLog(DnsResolver.class);
-
-  static final int NN_TIMER_PERIOD = 10000;
-
   private final HdfsScheduler scheduler;
   private final HdfsFrameworkConfig hdfsFrameworkConfig;
+  private final CachingResolver resolver;
 
   public DnsResolver(HdfsScheduler scheduler, HdfsFrameworkConfig hdfsFrameworkConfig) {
     this.scheduler = scheduler;
     this.hdfsFrameworkConfig = hdfsFrameworkConfig;
+    this.resolver = new CachingResolver(hdfsFrameworkConfig.getDnsCacheTtl(),
+      hdfsFrameworkConfig.getDnsNegativeCacheTtl());
   }
 
+  /**
+   * Returns whether all JournalNodes are known to resolve.  Names which aren't known yet are looked up in the
+   * background, so this returns false until a later offer.
+   */
   public boolean journalNodesResolvable() {
     if (!hdfsFrameworkConfig.usingMesosDns()) {
       return true;
     } //short circuit since Mesos handles this otherwise
-    Set<String> hosts = new HashSet<>();
-    for (int i = 1; i <= hdfsFrameworkConfig.getJournalNodeCount(); i++) {
-      hosts.add(HDFSConstants.JOURNAL_NODE_ID + i + "." + hdfsFrameworkConfig.getFrameworkName() +
-        "." + hdfsFrameworkConfig.getMesosDnsDomain());
-    }
-    boolean success = true;
-    for (String host : hosts) {
-      log.info("Resolving DNS for " + host);
-      try {
-        InetAddress.getByName(host);
-        log.info("Successfully found " + host);
-      } catch (SecurityException | IOException e) {
-        log.warn("Couldn't resolve host " + host);
-        success = false;
-        break;
-      }
-    }
-    return success;
+    return resolver.allResolvable(getHosts(HDFSConstants.JOURNAL_NODE_ID,
+      hdfsFrameworkConfig.getJournalNodeCount()));
   }
 
   public boolean nameNodesResolvable() {
     if (!hdfsFrameworkConfig.usingMesosDns()) {
       return true;
     } //short circuit since Mesos handles this otherwise
-    Set<String> hosts = new HashSet<>();
-    for (int i = 1; i <= HDFSConstants.TOTAL_NAME_NODES; i++) {
-      hosts.add(HDFSConstants.NAME_NODE_ID + i + "." + hdfsFrameworkConfig.getFrameworkName() +
-        "." + hdfsFrameworkConfig.getMesosDnsDomain());
-    }
-    boolean success = true;
-    for (String host : hosts) {
-      log.info("Resolving DNS for " + host);
-      try {
-        InetAddress.getByName(host);
-        log.info("Successfully found " + host);
-      } catch (SecurityException | IOException e) {
-        log.warn("Couldn't resolve host " + host);
-        success = false;
-        break;
-      }
-    }
-    return success;
+    return resolver.allResolvable(getHosts(HDFSConstants.NAME_NODE_ID, HDFSConstants.TOTAL_NAME_NODES));
   }
 
   public void sendMessageAfterNNResolvable(final SchedulerDriver driver,
@@ -84,8 +51,20 @@ public class DnsResolver {
       scheduler.sendMessageTo(driver, taskId, slaveID, message);
       return;
     }
-    Timer timer = new Timer();
-    PreNNInitTask task = new PreNNInitTask(this, scheduler, driver, taskId, slaveID, message);
-    timer.scheduleAtFixedRate(task, 0, NN_TIMER_PERIOD);
+    resolver.whenResolvable(getHosts(HDFSConstants.NAME_NODE_ID, HDFSConstants.TOTAL_NAME_NODES), new Runnable() {
+      @Override
+      public void run() {
+        scheduler.sendMessageTo(driver, taskId, slaveID, message);
+      }
+    });
+  }
+
+  private Set<String> getHosts(String nodeId, int count) {
+    Set<String> hosts = new HashSet<>();
+    for (int i = 1; i <= count; i++) {
+      hosts.add(nodeId + i + "." + hdfsFrameworkConfig.getFrameworkName() +
+        "." + hdfsFrameworkConfig.getMesosDnsDomain());
+    }
+    return hosts;
   }
 }
@@ -1,7 +1,9 @@
 package org.apache.mesos.hdfs;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
 import org.apache.mesos.hdfs.scheduler.InMemoryStateFactory;
+import org.apache.mesos.hdfs.scheduler.InstrumentedStateFactory;
 import org.apache.mesos.hdfs.scheduler.StateFactory;
 
 /**
@@ -11,6 +13,8 @@ public class SchedulerModuleTest extends AbstractModule {
 
   @Override
   protected void configure() {
-    bind(StateFactory.class).to(InMemoryStateFactory.class);
+    bind(StateFactory.class).annotatedWith(Names.named(InstrumentedStateFactory.BACKEND))
+      .to(InMemoryStateFactory.class);
+    bind(StateFactory.class).to(InstrumentedStateFactory.class);
   }
 }
@@ -0,0 +1,256 @@
+package org.apache.mesos.hdfs.config;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos.Attribute;
+import org.apache.mesos.Protos.ExecutorInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.Value;
+import org.apache.mesos.hdfs.config.ConfigRenderer.RenderedConfig;
+import org.apache.mesos.hdfs.scheduler.InMemoryStateFactory;
+import org.apache.mesos.hdfs.scheduler.InstrumentedStateFactory;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.metrics.MetricRegistry;
+import org.apache.mesos.protobuf.CommandInfoBuilder;
+import org.apache.mesos.protobuf.ExecutorInfoBuilder;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.apache.mesos.protobuf.TaskStatusBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConfigRendererTest {
+  private static final String TEMPLATE = "nn1=${nn1Hostname}:${nn1RpcPort} jn=${journalnodes} "
+    + "dn=${dataNodeHttpPort} dirs=${dataNodeDataDirs}";
+
+  private File template;
+  private Configuration conf;
+  private HdfsFrameworkConfig config;
+  private HdfsState state;
+  private ConfigRenderer renderer;
+
+  @Before
+  public void init() throws Exception {
+    template = File.createTempFile("hdfs-site", ".xml");
+    Files.write(template.toPath(), TEMPLATE.getBytes(Charset.forName("UTF-8")));
+
+    conf = new Configuration(false);
+    conf.set("mesos.hdfs.config.path", template.getPath());
+    conf.set("mesos.hdfs.data.dir", "/var/lib/hdfs/data");
+    conf.set("mesos.hdfs.datanode.disks.glob", "/data*");
+    conf.set("mesos.hdfs.datanode.disks.attribute", "disks");
+    config = new HdfsFrameworkConfig(conf);
+    state = new HdfsState(config, new InMemoryStateFactory());
+    renderer = new ConfigRenderer(config, state);
+  }
+
+  @After
+  public void cleanup() {
+    assertTrue(template.delete());
+  }
+
+  @Test
+  public void rendersRecordedTopology() throws Exception {
+    Map<String, Integer> nameNodePorts = new HashMap<>();
+    nameNodePorts.put(HDFSConstants.RPC_PORT_NAME, 31001);
+    nameNodePorts.put(HDFSConstants.HTTP_PORT_NAME, 31002);
+    state.recordTask(createTask("host1", "namenode1", HDFSConstants.NAME_NODE_ID, nameNodePorts));
+    state.recordTask(createTask("host1", "journalnode1", HDFSConstants.JOURNAL_NODE_ID,
+      Collections.singletonMap(HDFSConstants.RPC_PORT_NAME, 31003)));
+    state.recordTask(createTask("host2", "datanode", HDFSConstants.DATA_NODE_ID,
+      Collections.singletonMap(HDFSConstants.HTTP_PORT_NAME, 31004)));
+
+    assertEquals("nn1=host1:31001 jn=host1:31003 dn=31004 dirs=file:///data1/data,file:///data2/data",
+      render(renderer.render("host2", null, "/data1,/data2")));
+    assertEquals("nn1=host1:31001 jn=host1:31003 dn=50075 dirs=file:///var/lib/hdfs/data/data",
+      render(renderer.render("host1", null, null)));
+  }
+
+  @Test
+  public void ignoresDataDisksTheHostDoesNotHave() throws Exception {
+    state.recordTask(createTask("host1", "datanode", HDFSConstants.DATA_NODE_ID, new HashMap<String, Integer>()));
+
+    assertEquals("dirs=file:///data1/data", renderDataDirs("host1", "/data1"));
+    assertEquals("dirs=file:///var/lib/hdfs/data/data", renderDataDirs("host1", "/data1,/etc"));
+    assertEquals("dirs=file:///var/lib/hdfs/data/data", renderDataDirs("host1", "/data1/../etc"));
+    assertEquals("dirs=file:///var/lib/hdfs/data/data", renderDataDirs("host1", "/data1</value>"));
+    // Only DataNode hosts have data disks
+    assertEquals("dirs=file:///var/lib/hdfs/data/data", renderDataDirs("host2", "/data1"));
+  }
+
+  @Test
+  public void rendersDataDisksOfTheHostAttribute() throws Exception {
+    Offer offer = new OfferBuilder("offer1", "framework1", "slave1", "host1")
+      .addAttribute(Attribute.newBuilder()
+        .setName("disks")
+        .setType(Value.Type.TEXT)
+        .setText(Value.Text.newBuilder().setValue("/mnt/disk1,/mnt/disk2"))
+        .build())
+      .build();
+    state.recordTask(createTask(offer, "datanode", HDFSConstants.DATA_NODE_ID, new HashMap<String, Integer>()));
+
+    assertEquals("dirs=file:///mnt/disk1/data,file:///mnt/disk2/data",
+      renderDataDirs("host1", "/mnt/disk1,/mnt/disk2"));
+    // The attribute takes precedence over the glob
+    assertEquals("dirs=file:///var/lib/hdfs/data/data", renderDataDirs("host1", "/data1"));
+  }
+
+  @Test
+  public void prefersDataDisksReportedByTheDataNode() throws Exception {
+    Task dataNode = createTask("host1", "datanode", HDFSConstants.DATA_NODE_ID, new HashMap<String, Integer>());
+    dataNode.setStatus(TaskStatusBuilder.newBuilder()
+      .setTaskId(dataNode.getId())
+      .setState(TaskState.TASK_RUNNING)
+      .addLabel(HDFSConstants.DATA_DIRS_KEY, "/data1,/data2")
+      .build());
+    state.recordTask(dataNode);
+
+    assertEquals("dirs=file:///data1/data,file:///data2/data", renderDataDirs("host1", "/data3"));
+    assertEquals("dirs=file:///data1/data,file:///data2/data", renderDataDirs("host1", null));
+  }
+
+  @Test
+  public void cachesUntilTopologyChanges() throws Exception {
+    RenderedConfig first = renderer.render("host1", "namenode1", null);
+    assertSame(first, renderer.render("host1", "namenode1", null));
+    // Without a backup dir the NameNode number doesn't change the config
+    assertSame(first, renderer.render("host1", "namenode2", null));
+
+    Task journalNode = createTask("host1", "journalnode1", HDFSConstants.JOURNAL_NODE_ID,
+      new HashMap<String, Integer>());
+    state.recordTask(journalNode);
+    RenderedConfig second = renderer.render("host1", "namenode1", null);
+    assertNotSame(first, second);
+    assertNotEquals(first.getEtag(), second.getEtag());
+    assertSame(second, renderer.render("host1", "namenode1", null));
+
+    // Status updates which do not remove a task leave the topology untouched
+    state.update(null, TaskStatusBuilder.createTaskStatus(journalNode.getId(), TaskState.TASK_RUNNING));
+    assertSame(second, renderer.render("host1", "namenode1", null));
+
+    state.update(null, TaskStatusBuilder.createTaskStatus(journalNode.getId(), TaskState.TASK_LOST));
+    RenderedConfig third = renderer.render("host1", "namenode1", null);
+    assertNotSame(second, third);
+    assertEquals(first.getEtag(), third.getEtag());
+  }
+
+  @Test
+  public void cachesOnlyRequestsMatchingTopology() throws Exception {
+    conf.set("mesos.hdfs.backup.dir", "/backup");
+    config.reload();
+    state.recordTask(createTask("host1", "namenode1", HDFSConstants.NAME_NODE_ID, new HashMap<String, Integer>()));
+    Task dataNode = createTask("host2", "datanode", HDFSConstants.DATA_NODE_ID, new HashMap<String, Integer>());
+    state.recordTask(dataNode);
+
+    // Hosts without tasks all share one config
+    RenderedConfig unknownHost = renderer.render("host8", null, null);
+    assertSame(unknownHost, renderer.render("host9", null, null));
+    assertSame(unknownHost, renderer.render(null, null, null));
+    assertSame(renderer.render("host1", "namenode1", null), renderer.render("host1", "namenode1", null));
+    assertNotSame(renderer.render("host1", "namenode7", null), renderer.render("host1", "namenode7", null));
+
+    // Disks are only cached once reported by the DataNode
+    assertNotSame(renderer.render("host2", null, "/data1"), renderer.render("host2", null, "/data1"));
+    assertEquals("dirs=file:///data1/data", renderDataDirs("host2", "/data1"));
+    dataNode.setStatus(TaskStatusBuilder.newBuilder()
+      .setTaskId(dataNode.getId())
+      .setState(TaskState.TASK_RUNNING)
+      .addLabel(HDFSConstants.DATA_DIRS_KEY, "/data1")
+      .build());
+    state.recordTask(dataNode);
+    RenderedConfig reported = renderer.render("host2", null, "/data1");
+    assertSame(reported, renderer.render("host2", null, "/data1"));
+    assertSame(reported, renderer.render("host2", null, "/data2"));
+    assertEquals("dirs=file:///data1/data", renderDataDirs("host2", "/data2"));
+  }
+
+  @Test
+  public void rendersAgainOnceConfigChanges() throws Exception {
+    RenderedConfig first = renderer.render("host1", null, null);
+    conf.set("mesos.hdfs.data.dir", "/srv/hdfs");
+    assertSame(first, renderer.render("host1", null, null));
+
+    config.reload();
+    assertEquals("dirs=file:///srv/hdfs/data", renderDataDirs("host1", null));
+
+    RenderedConfig reloaded = renderer.render("host1", null, null);
+    config.setScaleSettings(config.getScaleSettings());
+    assertNotSame(reloaded, renderer.render("host1", null, null));
+    assertEquals(reloaded.getEtag(), renderer.render("host1", null, null).getEtag());
+  }
+
+  @Test
+  public void rendersWithoutReadingPersistedState() throws Exception {
+    MetricRegistry metrics = new MetricRegistry();
+    HdfsState instrumentedState = new HdfsState(config, new InstrumentedStateFactory(new InMemoryStateFactory(),
+      metrics));
+    ConfigRenderer instrumentedRenderer = new ConfigRenderer(config, instrumentedState);
+    instrumentedState.recordTask(createTask("host1", "journalnode1", HDFSConstants.JOURNAL_NODE_ID,
+      Collections.singletonMap(HDFSConstants.RPC_PORT_NAME, 31003)));
+
+    for (String hostname : new String[]{"host1", "host2", "host3"}) {
+      assertTrue(render(instrumentedRenderer.render(hostname, null, null)).contains("jn=host1:31003"));
+    }
+    // Only read when the task view was loaded
+    assertEquals(1, metrics.histogram("hdfs_zk_operation_seconds", "", "operation", "names",
+      "caller", "HdfsState.getTaskIds").getCount());
+  }
+
+  @Test
+  public void reloadsChangedTemplate() throws Exception {
+    RenderedConfig first = renderer.render("host1", null, null);
+    Files.write(template.toPath(), "changed ${frameworkName}".getBytes(Charset.forName("UTF-8")));
+
+    assertEquals("changed hdfs", render(renderer.render("host1", null, null)));
+    assertNotEquals(first.getEtag(), renderer.render("host1", null, null).getEtag());
+  }
+
+  @Test
+  public void matchesStrongEtags() throws Exception {
+    RenderedConfig config = renderer.render("host1", null, null);
+
+    assertTrue(config.getEtag().startsWith("\"") && config.getEtag().endsWith("\""));
+    assertTrue(config.matches(config.getEtag()));
+    assertTrue(config.matches("\"other\", " + config.getEtag()));
+    assertTrue(config.matches("*"));
+    assertFalse(config.matches(null));
+    assertFalse(config.matches("W/" + config.getEtag()));
+    assertFalse(config.matches("\"other\""));
+  }
+
+  private String renderDataDirs(String hostname, String dataDirs) throws Exception {
+    String content = render(renderer.render(hostname, null, dataDirs));
+    return content.substring(content.indexOf("dirs="));
+  }
+
+  private String render(RenderedConfig config) {
+    return new String(config.getContent(), Charset.forName("UTF-8"));
+  }
+
+  private Task createTask(String hostname, String name, String type, Map<String, Integer> ports) {
+    return createTask(new OfferBuilder("offer1", "framework1", "slave1", hostname).build(), name, type, ports);
+  }
+
+  private Task createTask(Offer offer, String name, String type, Map<String, Integer> ports) {
+    ExecutorInfo execInfo = ExecutorInfoBuilder.createExecutorInfoBuilder()
+      .setName("executor")
+      .setExecutorId(ExecutorInfoBuilder.createExecutorId("executor"))
+      .setCommand(CommandInfoBuilder.createCmdInfo("ls", new ArrayList<org.apache.mesos.Protos.CommandInfo.URI>(),
+        new ArrayList<org.apache.mesos.Protos.Environment.Variable>()))
+      .build();
+    return new Task(new ArrayList<Resource>(), execInfo, offer, name, type, name + ".executor", ports);
+  }
+}
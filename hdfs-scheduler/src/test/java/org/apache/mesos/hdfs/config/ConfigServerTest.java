@@ -0,0 +1,381 @@
+package org.apache.mesos.hdfs.config;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos.ExecutorInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.concurrent.SharedScheduler;
+import org.apache.mesos.hdfs.api.ScaleApiHandler;
+import org.apache.mesos.hdfs.api.StateApiHandler;
+import org.apache.mesos.hdfs.scheduler.InMemoryStateFactory;
+import org.apache.mesos.hdfs.scheduler.Reconciler;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.state.StateMachine;
+import org.apache.mesos.hdfs.telemetry.TelemetryBatch;
+import org.apache.mesos.hdfs.telemetry.TelemetryHandler;
+import org.apache.mesos.hdfs.telemetry.TelemetryStore;
+import org.apache.mesos.hdfs.trace.LaunchTracer;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.metrics.Counter;
+import org.apache.mesos.metrics.MetricRegistry;
+import org.apache.mesos.protobuf.CommandInfoBuilder;
+import org.apache.mesos.protobuf.ExecutorInfoBuilder;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConfigServerTest {
+  private File template;
+  private Configuration conf;
+  private HdfsFrameworkConfig config;
+  private HdfsState state;
+  private TelemetryStore telemetryStore;
+  private ConfigServer configServer;
+  private int port;
+
+  @Before
+  public void init() throws Exception {
+    template = File.createTempFile("hdfs-site", ".xml");
+    Files.write(template.toPath(), "journalnodes=${journalnodes}".getBytes(Charset.forName("UTF-8")));
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+
+    conf = new Configuration(false);
+    conf.set("mesos.hdfs.config.path", template.getPath());
+    conf.set("mesos.hdfs.config.server.port", String.valueOf(port));
+    conf.set("mesos.hdfs.executor.path", template.getParent());
+    conf.set("mesos.hdfs.api.token", "secret");
+    config = new HdfsFrameworkConfig(conf);
+    state = new HdfsState(config, new InMemoryStateFactory());
+    telemetryStore = new TelemetryStore(config);
+    configServer = new ConfigServer(config, state, new ConfigRenderer(config, state), telemetryStore,
+      new LaunchTracer(config), new StateMachine(state, config, new Reconciler(config, state)));
+  }
+
+  @After
+  public void cleanup() {
+    configServer.stop();
+    assertTrue(template.delete());
+  }
+
+  @Test
+  public void servesConfigWithEtag() throws Exception {
+    HttpURLConnection connection = open(null, null);
+    assertEquals(200, connection.getResponseCode());
+    assertNotNull(connection.getHeaderField("ETag"));
+
+    assertEquals(304, open(connection.getHeaderField("ETag"), null).getResponseCode());
+    assertEquals(200, open("\"stale\"", 30).getResponseCode());
+  }
+
+  @Test
+  public void watchExpiresWhenConfigIsUnchanged() throws Exception {
+    String etag = open(null, null).getHeaderField("ETag");
+
+    long start = System.nanoTime();
+    HttpURLConnection connection = open(etag, 1);
+    assertEquals(304, connection.getResponseCode());
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+  }
+
+  @Test
+  public void watchReturnsChangedConfig() throws Exception {
+    final String etag = open(null, null).getHeaderField("ETag");
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<HttpURLConnection> watch = executor.submit(new Callable<HttpURLConnection>() {
+      @Override
+      public HttpURLConnection call() throws Exception {
+        HttpURLConnection connection = open(etag, 30);
+        connection.getResponseCode();
+        return connection;
+      }
+    });
+
+    Thread.sleep(500);
+    assertFalse(watch.isDone());
+    state.recordTask(createJournalNode("host1"));
+
+    HttpURLConnection connection = watch.get(10, TimeUnit.SECONDS);
+    executor.shutdown();
+    assertEquals(200, connection.getResponseCode());
+    assertNotEquals(etag, connection.getHeaderField("ETag"));
+  }
+
+  @Test
+  public void wakesWatchersOnlyWhenTheirConfigChanges() throws Exception {
+    final String etag = open(null, null).getHeaderField("ETag");
+    Counter woken = MetricRegistry.getDefault().counter("hdfs_config_watchers_woken_total", "");
+    long wokenBefore = woken.get();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<HttpURLConnection> watch = executor.submit(new Callable<HttpURLConnection>() {
+      @Override
+      public HttpURLConnection call() throws Exception {
+        HttpURLConnection connection = open(etag, 30);
+        connection.getResponseCode();
+        return connection;
+      }
+    });
+    Thread.sleep(500);
+
+    // The config of host1 only lists the JournalNodes
+    state.recordTask(createTask("host2", "datanode", HDFSConstants.DATA_NODE_ID));
+    Thread.sleep(500);
+    assertFalse(watch.isDone());
+    assertEquals(wokenBefore, woken.get());
+
+    long runsBefore = getWakeRuns();
+    for (int i = 1; i <= 3; i++) {
+      state.recordTask(createTask("host" + i, "journalnode" + i, HDFSConstants.JOURNAL_NODE_ID));
+    }
+    HttpURLConnection connection = watch.get(10, TimeUnit.SECONDS);
+    executor.shutdown();
+    assertEquals(200, connection.getResponseCode());
+    assertEquals(wokenBefore + 1, woken.get());
+    assertEquals(runsBefore + 1, getWakeRuns());
+  }
+
+  @Test
+  public void wakesWatchersOnConfigReload() throws Exception {
+    Files.write(template.toPath(), "socket=${domainSocketDir}".getBytes(Charset.forName("UTF-8")));
+    final String etag = open(null, null).getHeaderField("ETag");
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<HttpURLConnection> watch = executor.submit(new Callable<HttpURLConnection>() {
+      @Override
+      public HttpURLConnection call() throws Exception {
+        HttpURLConnection connection = open(etag, 30);
+        connection.getResponseCode();
+        return connection;
+      }
+    });
+    Thread.sleep(500);
+    assertFalse(watch.isDone());
+
+    conf.set("mesos.hdfs.domain.socket.dir", "/run/hdfs-sockets");
+    config.reload();
+    HttpURLConnection connection = watch.get(10, TimeUnit.SECONDS);
+    executor.shutdown();
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("socket=/run/hdfs-sockets", IOUtils.toString(connection.getInputStream(), "UTF-8"));
+  }
+
+  @Test
+  public void servesTelemetry() throws Exception {
+    TelemetryBatch batch = new TelemetryBatch("datanode1", HDFSConstants.DATA_NODE_ID,
+      Arrays.asList("bytes_written_total"));
+    batch.add(0, new long[]{0});
+    batch.add(10000, new long[]{1000});
+    telemetryStore.record("slave1", batch);
+
+    URL url = new URL(String.format("http://localhost:%d%s", port, TelemetryHandler.PATH));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    assertEquals(200, connection.getResponseCode());
+    JsonNode summary = new ObjectMapper().readTree(connection.getInputStream());
+    assertEquals(100.0, summary.get("cluster").get("datanode").get("bytes_written_total").get("rate")
+      .getDoubleValue(), 0.001);
+
+    connection = (HttpURLConnection) new URL(url + "?task=datanode1").openConnection();
+    assertEquals(200, connection.getResponseCode());
+    assertEquals(2, new ObjectMapper().readTree(connection.getInputStream()).get("samples").size());
+    assertEquals(404, ((HttpURLConnection) new URL(url + "?task=none").openConnection()).getResponseCode());
+  }
+
+  @Test
+  public void servesSchedulingStats() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(1);
+    SharedScheduler.getInstance().execute("test-job", new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    });
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+    URL url = new URL(String.format("http://localhost:%d%s", port, SchedulingHandler.PATH));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    assertEquals(200, connection.getResponseCode());
+    JsonNode stats = new ObjectMapper().readTree(connection.getInputStream());
+    assertTrue(stats.get("threads").getIntValue() > 0);
+    assertNotNull(stats.get("jobs").get("test-job"));
+  }
+
+  @Test
+  public void servesMetrics() throws Exception {
+    assertEquals(200, open(null, null).getResponseCode());
+
+    URL url = new URL(String.format("http://localhost:%d%s", port, MetricsHandler.PATH));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    assertEquals(200, connection.getResponseCode());
+    String text = new Scanner(connection.getInputStream(), "UTF-8").useDelimiter("\\A").next();
+    assertTrue(text.contains("# TYPE hdfs_config_render_seconds histogram"));
+    assertTrue(text.contains("hdfs_config_requests_total{status=\"200\"}"));
+
+    url = new URL(String.format("http://localhost:%d%s?format=json", port, MetricsHandler.PATH));
+    connection = (HttpURLConnection) url.openConnection();
+    assertEquals(200, connection.getResponseCode());
+    JsonNode metrics = new ObjectMapper().readTree(connection.getInputStream());
+    JsonNode renderTime = metrics.get("hdfs_config_render_seconds");
+    assertEquals("histogram", renderTime.get("type").getTextValue());
+    assertTrue(renderTime.get("metrics").get(0).get("count").getLongValue() > 0);
+  }
+
+  @Test
+  public void servesStateApi() throws Exception {
+    state.recordTask(createJournalNode("host1"));
+
+    HttpURLConnection connection = openApi("tasks?fields=id,hostname", null);
+    assertEquals(200, connection.getResponseCode());
+    String etag = connection.getHeaderField("ETag");
+    JsonNode tasks = new ObjectMapper().readTree(connection.getInputStream());
+    assertEquals(1, tasks.get("total").getIntValue());
+    JsonNode task = tasks.get("tasks").get(0);
+    assertEquals("host1", task.get("hostname").getTextValue());
+    assertNull(task.get("type"));
+
+    assertEquals(304, openApi("tasks?fields=id,hostname", etag).getResponseCode());
+    assertEquals(0, new ObjectMapper().readTree(openApi("tasks?offset=1", null).getInputStream()).get("tasks")
+      .size());
+
+    String taskId = task.get("id").getTextValue();
+    connection = openApi("tasks/" + taskId, null);
+    assertEquals(200, connection.getResponseCode());
+    assertEquals(HDFSConstants.JOURNAL_NODE_ID, new ObjectMapper().readTree(connection.getInputStream()).get("type")
+      .getTextValue());
+    assertEquals(404, openApi("tasks/none", null).getResponseCode());
+
+    JsonNode hosts = new ObjectMapper().readTree(openApi("hosts", null).getInputStream());
+    assertEquals("slave1", hosts.get("hosts").get(0).get("slave_id").getTextValue());
+    JsonNode phase = new ObjectMapper().readTree(openApi("phase", null).getInputStream());
+    assertEquals("RECONCILING_TASKS", phase.get("phase").getTextValue());
+    assertEquals(1, phase.get("tasks").get(HDFSConstants.JOURNAL_NODE_ID).getIntValue());
+    assertTrue(new ObjectMapper().readTree(openApi("reconciliation", null).getInputStream()).get("complete")
+      .getBooleanValue());
+
+    state.update(null, TaskStatus.newBuilder().setTaskId(TaskID.newBuilder().setValue(taskId))
+      .setState(TaskState.TASK_RUNNING).build());
+    assertEquals(200, openApi("tasks?fields=id,hostname", etag).getResponseCode());
+  }
+
+  @Test
+  public void changesScaleWithToken() throws Exception {
+    String body = "{\"datanodes\": 5, \"resources\": {\"datanode\": {\"cpus\": 2, \"heap_mb\": 4096}}}";
+    assertEquals(401, putScale(body, null).getResponseCode());
+    assertEquals(401, putScale(body, "wrong").getResponseCode());
+    assertEquals(400, putScale("{\"datanodes\": -1}", "secret").getResponseCode());
+    // Fewer DataNodes than the replication of 3 cannot hold every replica
+    assertEquals(400, putScale("{\"datanodes\": 2}", "secret").getResponseCode());
+    assertEquals(400, putScale("{\"resources\": {\"tasktracker\": {\"cpus\": 1}}}", "secret").getResponseCode());
+    assertEquals(-1, config.getDataNodeCount());
+
+    HttpURLConnection connection = putScale(body, "secret");
+    assertEquals(200, connection.getResponseCode());
+    JsonNode scale = new ObjectMapper().readTree(connection.getInputStream());
+    assertEquals(5, scale.get("datanodes").get("target").getIntValue());
+    assertEquals(4096, scale.get("resources").get(HDFSConstants.DATA_NODE_ID).get("heap_mb").getIntValue());
+    assertEquals(2, config.getNodeConfig(HDFSConstants.DATA_NODE_ID).getCpus(), 0);
+    assertEquals(5, state.getScaleSettings().getDataNodeCount().intValue());
+
+    connection = putScale("{\"datanodes\": null}", "secret");
+    assertEquals(200, connection.getResponseCode());
+    assertTrue(new ObjectMapper().readTree(connection.getInputStream()).get("datanodes").get("target").isNull());
+    assertEquals(4096, config.getNodeConfig(HDFSConstants.DATA_NODE_ID).getMaxHeap());
+
+    connection = (HttpURLConnection) new URL(String.format("http://localhost:%d%s", port, ScaleApiHandler.PATH))
+      .openConnection();
+    connection.setRequestMethod("DELETE");
+    connection.setRequestProperty("Authorization", "Bearer secret");
+    assertEquals(200, connection.getResponseCode());
+    assertEquals(ScaleSettings.NONE, state.getScaleSettings());
+    assertEquals(1024, config.getNodeConfig(HDFSConstants.DATA_NODE_ID).getMaxHeap());
+  }
+
+  private HttpURLConnection putScale(String body, String token) throws IOException {
+    URL url = new URL(String.format("http://localhost:%d%s", port, ScaleApiHandler.PATH));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("PUT");
+    connection.setDoOutput(true);
+    if (token != null) {
+      connection.setRequestProperty("Authorization", "Bearer " + token);
+    }
+    connection.getOutputStream().write(body.getBytes(Charset.forName("UTF-8")));
+    return connection;
+  }
+
+  private HttpURLConnection openApi(String resource, String etag) throws IOException {
+    URL url = new URL(String.format("http://localhost:%d%s%s", port, StateApiHandler.PATH, resource));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    if (etag != null) {
+      connection.setRequestProperty("If-None-Match", etag);
+    }
+    return connection;
+  }
+
+  private HttpURLConnection open(String etag, Integer waitSec) throws IOException {
+    String url = String.format("http://localhost:%d/%s?%s=host1", port, HDFSConstants.HDFS_CONFIG_FILE_NAME,
+      HDFSConstants.HOSTNAME_PARAM);
+    if (waitSec != null) {
+      url += "&" + HDFSConstants.WAIT_PARAM + "=" + waitSec;
+    }
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    if (etag != null) {
+      connection.setRequestProperty("If-None-Match", etag);
+    }
+    return connection;
+  }
+
+  private long getWakeRuns() {
+    for (SharedScheduler.JobStats stats : SharedScheduler.getInstance().getJobStats()) {
+      if (stats.getName().equals("config-watchers")) {
+        return stats.getRuns();
+      }
+    }
+    return 0;
+  }
+
+  private Task createJournalNode(String hostname) {
+    return createTask(hostname, "journalnode1", HDFSConstants.JOURNAL_NODE_ID);
+  }
+
+  private Task createTask(String hostname, String name, String type) {
+    ExecutorInfo execInfo = ExecutorInfoBuilder.createExecutorInfoBuilder()
+      .setName("executor")
+      .setExecutorId(ExecutorInfoBuilder.createExecutorId("executor"))
+      .setCommand(CommandInfoBuilder.createCmdInfo("ls", new ArrayList<org.apache.mesos.Protos.CommandInfo.URI>(),
+        new ArrayList<org.apache.mesos.Protos.Environment.Variable>()))
+      .build();
+    Offer offer = new OfferBuilder("offer1", "framework1", "slave1", hostname).build();
+    return new Task(new ArrayList<Resource>(), execInfo, offer, name, type, name + ".executor",
+      new HashMap<String, Integer>());
+  }
+}
@@ -0,0 +1,201 @@
+package org.apache.mesos.hdfs.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ExecutorTarballHandlerTest {
+  private static final int TARBALL_SIZE = 1024 * 1024;
+  private static final int LOAD_TEST_CLIENTS = 500;
+
+  private final Log log = LogFactory.getLog(ExecutorTarballHandlerTest.class);
+
+  private File dir;
+  private byte[] tarball;
+  private Server server;
+
+  @Before
+  public void init() throws Exception {
+    dir = Files.createTempDirectory("executor").toFile();
+    tarball = new byte[TARBALL_SIZE];
+    new Random(0).nextBytes(tarball);
+    Files.write(getTarballFile().toPath(), tarball);
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    if (server != null) {
+      server.stop();
+    }
+    assertTrue(getTarballFile().delete());
+    assertTrue(dir.delete());
+  }
+
+  @Test
+  public void servesTarballWithChecksumHeaders() throws Exception {
+    startServer(4, 16, 1000);
+
+    HttpURLConnection connection = open();
+    assertEquals(200, connection.getResponseCode());
+    assertArrayEquals(tarball, read(connection));
+    assertTrue(connection.getHeaderField("ETag").matches("\"[0-9a-f]{64}\""));
+    assertTrue(connection.getHeaderField("Digest").startsWith("SHA-256="));
+    assertEquals("bytes", connection.getHeaderField("Accept-Ranges"));
+    assertNotNull(connection.getHeaderField("Last-Modified"));
+
+    HttpURLConnection revalidation = open();
+    revalidation.setRequestProperty("If-None-Match", connection.getHeaderField("ETag"));
+    assertEquals(304, revalidation.getResponseCode());
+  }
+
+  @Test
+  public void servesContentAddressedName() throws Exception {
+    startServer(4, 16, 1000);
+    ExecutorTarball executorTarball = ExecutorTarball.get(getTarballFile());
+    assertTrue(executorTarball.getContentAddressedName()
+      .matches("hdfs-mesos-executor-0\\.1\\.5-[0-9a-f]{16}\\.tgz"));
+
+    HttpURLConnection connection = open(executorTarball.getContentAddressedName());
+    assertEquals(200, connection.getResponseCode());
+    assertArrayEquals(tarball, read(connection));
+    assertTrue(connection.getHeaderField("Cache-Control").contains("immutable"));
+
+    assertEquals(404, open("hdfs-mesos-executor-0.1.5-0123456789abcdef.tgz").getResponseCode());
+  }
+
+  @Test
+  public void servesSingleRanges() throws Exception {
+    startServer(4, 16, 1000);
+    String etag = open().getHeaderField("ETag");
+
+    HttpURLConnection connection = open();
+    connection.setRequestProperty("Range", "bytes=100-199");
+    connection.setRequestProperty("If-Range", etag);
+    assertEquals(206, connection.getResponseCode());
+    assertEquals("bytes 100-199/" + TARBALL_SIZE, connection.getHeaderField("Content-Range"));
+    assertArrayEquals(Arrays.copyOfRange(tarball, 100, 200), read(connection));
+
+    connection = open();
+    connection.setRequestProperty("Range", "bytes=-10");
+    assertEquals(206, connection.getResponseCode());
+    assertArrayEquals(Arrays.copyOfRange(tarball, TARBALL_SIZE - 10, TARBALL_SIZE), read(connection));
+
+    connection = open();
+    connection.setRequestProperty("Range", "bytes=100-199");
+    connection.setRequestProperty("If-Range", "\"stale\"");
+    assertEquals(200, connection.getResponseCode());
+    assertArrayEquals(tarball, read(connection));
+
+    connection = open();
+    connection.setRequestProperty("Range", "bytes=" + TARBALL_SIZE + "-");
+    assertEquals(416, connection.getResponseCode());
+    assertEquals("bytes */" + TARBALL_SIZE, connection.getHeaderField("Content-Range"));
+  }
+
+  @Test
+  public void rejectsFetchesWhenQueueIsFull() throws Exception {
+    startServer(0, 0, 1000);
+
+    HttpURLConnection connection = open();
+    assertEquals(503, connection.getResponseCode());
+    assertEquals("5", connection.getHeaderField("Retry-After"));
+  }
+
+  @Test
+  public void rejectsFetchesWaitingTooLong() throws Exception {
+    startServer(0, 1, 200);
+
+    HttpURLConnection connection = open();
+    assertEquals(503, connection.getResponseCode());
+    assertEquals("5", connection.getHeaderField("Retry-After"));
+  }
+
+  @Test
+  public void servesConcurrentClients() throws Exception {
+    startServer(32, 1024, 60000);
+
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService clients = Executors.newFixedThreadPool(LOAD_TEST_CLIENTS);
+    List<Future<Integer>> fetches = new ArrayList<>();
+    for (int i = 0; i < LOAD_TEST_CLIENTS; i++) {
+      fetches.add(clients.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          start.await();
+          HttpURLConnection connection = open();
+          assertEquals(200, connection.getResponseCode());
+          return read(connection).length;
+        }
+      }));
+    }
+
+    long startTime = System.nanoTime();
+    start.countDown();
+    long bytes = 0;
+    for (Future<Integer> fetch : fetches) {
+      bytes += fetch.get();
+    }
+    long elapsedMs = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+    clients.shutdown();
+
+    assertEquals((long) TARBALL_SIZE * LOAD_TEST_CLIENTS, bytes);
+    log.info(String.format("Served %d clients %d MB in %d ms (%d MB/s)", LOAD_TEST_CLIENTS, bytes >> 20, elapsedMs,
+      (bytes >> 20) * 1000 / elapsedMs));
+  }
+
+  private void startServer(int maxConcurrent, int queueSize, long queueTimeoutMs) throws Exception {
+    server = new Server(0);
+    server.setHandler(new ExecutorTarballHandler(getTarballFile(), maxConcurrent, queueSize, queueTimeoutMs));
+    server.start();
+  }
+
+  private File getTarballFile() {
+    return new File(dir, HDFSConstants.HDFS_BINARY_FILE_NAME);
+  }
+
+  private HttpURLConnection open() throws IOException {
+    return open(HDFSConstants.HDFS_BINARY_FILE_NAME);
+  }
+
+  private HttpURLConnection open(String name) throws IOException {
+    int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    URL url = new URL(String.format("http://localhost:%d/%s", port, name));
+    return (HttpURLConnection) url.openConnection();
+  }
+
+  private byte[] read(HttpURLConnection connection) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = connection.getInputStream()) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+}
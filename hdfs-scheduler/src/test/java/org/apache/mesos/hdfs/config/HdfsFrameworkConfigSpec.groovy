@@ -42,6 +42,88 @@ class HdfsFrameworkConfigSpec extends Specification {
 
   }
 
+  @RestoreSystemProperties
+  def "reload swaps in changed values"() {
+    given:
+    writeXML(["mesos.hdfs.datanode.cpus": "1", "mesos.hdfs.framework.name": "hdfs"])
+    def config = new HdfsFrameworkConfig()
+    def snapshot = config.snapshot
+
+    when:
+    writeXML(["mesos.hdfs.datanode.cpus": "2.5", "mesos.hdfs.framework.name": "renamed",
+              "mesos.hdfs.constraints": "zone:west"])
+    config.reload()
+
+    then:
+    config.getNodeConfig("datanode").cpus == 2.5
+    config.mesosSlaveConstraints == [zone: "west"]
+    config.frameworkName == "hdfs"
+    snapshot.getNodeConfig("datanode").cpus == 1
+  }
+
+  @RestoreSystemProperties
+  def "reload notifies observers of the new snapshot"() {
+    given:
+    writeXML(["mesos.hdfs.datanode.cpus": "1"])
+    def config = new HdfsFrameworkConfig()
+    def notified = []
+    config.addObserver({ observable, snapshot -> notified << snapshot } as Observer)
+
+    when:
+    writeXML(["mesos.hdfs.datanode.cpus": "2", "mesos.hdfs.framework.hostaddress": "10.0.0.1"])
+    config.reload()
+
+    then:
+    notified == [config.snapshot]
+    config.getNodeConfig("datanode").cpus == 2
+    // Unset when the scheduler started, so it stays unset
+    config.frameworkHostAddress != "10.0.0.1"
+  }
+
+  @RestoreSystemProperties
+  def "invalid reload keeps the current snapshot"() {
+    given:
+    writeXML(["mesos.hdfs.datanode.cpus": "2"])
+    def config = new HdfsFrameworkConfig()
+
+    when:
+    writeXML(["mesos.hdfs.datanode.cpus": "two"])
+    config.reload()
+
+    then:
+    thrown(ConfigurationException)
+    config.getNodeConfig("datanode").cpus == 2
+  }
+
+  @RestoreSystemProperties
+  def "watcher reloads only when the file changes"() {
+    given:
+    writeXML(["mesos.hdfs.executor.heap.size": "256"])
+    def config = new HdfsFrameworkConfig()
+    def watcher = new ConfigWatcher(config)
+    watcher.start()
+
+    expect:
+    !watcher.reloadIfChanged()
+
+    when:
+    writeXML(["mesos.hdfs.executor.heap.size": "1024"])
+
+    then:
+    watcher.reloadIfChanged()
+    config.executorHeap == 1024
+    !watcher.reloadIfChanged()
+
+    cleanup:
+    watcher.stop()
+  }
+
+  def writeXML(Map<String, String> properties) {
+    xmlFile.text = "<configuration>" + properties.collect { name, value ->
+      "<property><name>$name</name><value>$value</value></property>"
+    }.join("") + "</configuration>"
+  }
+
   def createXML() {
     xmlFile << """
       <configuration>
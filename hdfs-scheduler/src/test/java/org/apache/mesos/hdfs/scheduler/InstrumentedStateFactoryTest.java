@@ -0,0 +1,73 @@
+package org.apache.mesos.hdfs.scheduler;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos.CommandInfo;
+import org.apache.mesos.Protos.Environment;
+import org.apache.mesos.Protos.ExecutorInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.state.HdfsState;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.metrics.Histogram;
+import org.apache.mesos.metrics.MetricRegistry;
+import org.apache.mesos.protobuf.CommandInfoBuilder;
+import org.apache.mesos.protobuf.ExecutorInfoBuilder;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.apache.mesos.state.InMemoryState;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedStateFactoryTest {
+
+  @Test
+  public void attributesOperationsToCallers() throws Exception {
+    MetricRegistry metrics = new MetricRegistry();
+    HdfsState state = new HdfsState(new HdfsFrameworkConfig(new Configuration(false)),
+      new InstrumentedStateFactory(new InMemoryStateFactory(), metrics));
+    state.recordTask(createTask());
+    assertEquals(1, state.getTasks().size());
+
+    assertEquals(1, getLatency(metrics, "store", "HdfsState.recordTask").getCount());
+    assertEquals(1, getLatency(metrics, "fetch", "HdfsState.recordTask").getCount());
+    // Once when the task view is loaded, and once for getTasks
+    assertEquals(2, getLatency(metrics, "names", "HdfsState.getTaskIds").getCount());
+    Histogram stored = metrics.histogram("hdfs_zk_payload_bytes", "", Histogram.SIZE_BUCKETS_BYTES,
+      "operation", "store", "caller", "HdfsState.recordTask");
+    assertEquals(1, stored.getCount());
+    assertTrue(stored.getSum() > 0);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> payloads = (Map<String, Object>) metrics.toMap().get("hdfs_zk_payload_bytes");
+    assertFalse(((List<?>) payloads.get("metrics")).isEmpty());
+  }
+
+  @Test
+  public void returnsBackendStateWhenDisabled() {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean("mesos.hdfs.state.instrumented", false);
+    StateFactory factory = new InstrumentedStateFactory(new InMemoryStateFactory(), new MetricRegistry());
+    assertTrue(factory.create("/tasks", new HdfsFrameworkConfig(conf)) instanceof InMemoryState);
+  }
+
+  private Histogram getLatency(MetricRegistry metrics, String operation, String caller) {
+    return metrics.histogram("hdfs_zk_operation_seconds", "", "operation", operation, "caller", caller);
+  }
+
+  private Task createTask() {
+    ExecutorInfo execInfo = ExecutorInfoBuilder.createExecutorInfoBuilder()
+      .setName("executor")
+      .setExecutorId(ExecutorInfoBuilder.createExecutorId("executor"))
+      .setCommand(CommandInfoBuilder.createCmdInfo("ls", new ArrayList<CommandInfo.URI>(),
+        new ArrayList<Environment.Variable>()))
+      .build();
+    Offer offer = new OfferBuilder("offer1", "framework1", "slave1", "host1").build();
+    return new Task(new ArrayList<Resource>(), execInfo, offer, "journalnode1", HDFSConstants.JOURNAL_NODE_ID,
+      "journalnode1.executor");
+  }
+}
@@ -127,6 +127,8 @@ public class SchedulerConstraintsTest {
   private HdfsScheduler createDefaultScheduler() {
     Reconciler reconciler = mock(Reconciler.class);
     when(stateMachine.getReconciler()).thenReturn(reconciler);
+    // Pick up the constraints set by the test
+    hdfsConfig.reload();
     return new HdfsScheduler(hdfsConfig, state, stateMachine);
   }
 
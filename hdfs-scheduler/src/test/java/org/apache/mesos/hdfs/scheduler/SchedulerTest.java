@@ -3,17 +3,34 @@ package org.apache.mesos.hdfs.scheduler;
 import com.google.common.collect.Lists;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos.CommandInfo;
+import org.apache.mesos.Protos.Environment;
+import org.apache.mesos.Protos.ExecutorID;
+import org.apache.mesos.Protos.ExecutorInfo;
+import org.apache.mesos.Protos.FrameworkID;
 import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Port;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.Protos.TaskID;
 import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
 import org.apache.mesos.SchedulerDriver;
 import org.apache.mesos.hdfs.SchedulerModuleTest;
+import org.apache.mesos.hdfs.config.EmbeddedConfig;
 import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.config.ScaleSettings;
 import org.apache.mesos.hdfs.state.AcquisitionPhase;
 import org.apache.mesos.hdfs.state.HdfsState;
 import org.apache.mesos.hdfs.state.StateMachine;
 import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.protobuf.CommandInfoBuilder;
+import org.apache.mesos.protobuf.ExecutorInfoBuilder;
 import org.apache.mesos.protobuf.OfferBuilder;
 import org.apache.mesos.protobuf.ResourceBuilder;
+import org.apache.mesos.protobuf.TaskStatusBuilder;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -21,12 +38,21 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 @SuppressWarnings("unchecked")
@@ -91,10 +117,245 @@ public class SchedulerTest {
     verify(driver, times(1)).declineOffer(offer.getId());
   }
 
+  @Test
+  public void launchesNamenodesOnOfferedPorts() {
+    StateMachine stateMachine = createMockStateMachine(AcquisitionPhase.NAME_NODES);
+    HdfsState state = mock(HdfsState.class);
+    when(state.hostOccupied(any(String.class), matches(HDFSConstants.JOURNAL_NODE_ID))).thenReturn(true);
+
+    HdfsScheduler scheduler = new HdfsScheduler(createDynamicPortsConfig(), state, stateMachine);
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOfferWithPorts(0, 31000, 31010)));
+
+    verify(driver, times(1)).launchTasks(anyList(), taskInfosCapture.capture());
+    Set<Integer> assignedPorts = new HashSet<>();
+    for (TaskInfo taskInfo : taskInfosCapture.getValue()) {
+      for (Port port : taskInfo.getDiscovery().getPorts().getPortsList()) {
+        assertTrue(port.getNumber() >= 31000 && port.getNumber() <= 31010);
+        assertTrue(assignedPorts.add(port.getNumber()));
+        assertTrue(hasPortResource(taskInfo, port.getNumber()));
+      }
+    }
+    // NameNode rpc and http ports plus the ZKFC port
+    assertEquals(3, assignedPorts.size());
+  }
+
+  @Test
+  public void declinesOffersWithNotEnoughPorts() {
+    StateMachine stateMachine = createMockStateMachine(AcquisitionPhase.NAME_NODES);
+    HdfsState state = mock(HdfsState.class);
+    when(state.hostOccupied(any(String.class), matches(HDFSConstants.JOURNAL_NODE_ID))).thenReturn(true);
+
+    HdfsScheduler scheduler = new HdfsScheduler(createDynamicPortsConfig(), state, stateMachine);
+    Offer offer = createTestOfferWithPorts(0, 31000, 31001);
+    scheduler.resourceOffers(driver, Lists.newArrayList(offer));
+
+    verify(driver, never()).launchTasks(anyList(), anyList());
+    verify(driver, times(1)).declineOffer(offer.getId());
+  }
+
+  @Test
+  public void embedsRenderedConfigInExecutorInfo() throws Exception {
+    StateMachine stateMachine = createMockStateMachine(AcquisitionPhase.NAME_NODES);
+    HdfsState state = mock(HdfsState.class);
+    when(state.hostOccupied(any(String.class), matches(HDFSConstants.JOURNAL_NODE_ID))).thenReturn(true);
+    when(state.getTopology()).thenReturn(new HdfsState.Topology(0, new ArrayList<Task>()));
+
+    File template = File.createTempFile("hdfs-site", ".xml");
+    try {
+      Files.write(template.toPath(), "framework=${frameworkName}".getBytes(Charset.forName("UTF-8")));
+      Configuration conf = new Configuration(false);
+      conf.set("mesos.hdfs.config.path", template.getPath());
+      conf.set("mesos.hdfs.framework.hostaddress", "localhost");
+
+      HdfsScheduler scheduler = new HdfsScheduler(new HdfsFrameworkConfig(conf), state, stateMachine);
+      scheduler.resourceOffers(driver, Lists.newArrayList(createTestOffer(0)));
+    } finally {
+      assertTrue(template.delete());
+    }
+
+    verify(driver, times(1)).launchTasks(anyList(), taskInfosCapture.capture());
+    ExecutorInfo executorInfo = taskInfosCapture.getValue().iterator().next().getExecutor();
+    for (TaskInfo taskInfo : taskInfosCapture.getValue()) {
+      assertEquals(executorInfo, taskInfo.getExecutor());
+    }
+    for (CommandInfo.URI uri : executorInfo.getCommand().getUrisList()) {
+      assertFalse(uri.getValue().contains(HDFSConstants.HDFS_CONFIG_FILE_NAME));
+    }
+
+    EmbeddedConfig embeddedConfig = EmbeddedConfig.fromBytes(executorInfo.getData().toByteArray());
+    assertEquals("framework=hdfs", new String(embeddedConfig.getContent(), Charset.forName("UTF-8")));
+    assertEquals("http://localhost:8765/hdfs-site.xml?host=host0&nn=namenode1", embeddedConfig.getUrl());
+    assertEquals(40, embeddedConfig.getVersion().length());
+  }
+
+  @Test
+  public void scalesDataNodesToTarget() {
+    StateMachine stateMachine = createMockStateMachine(AcquisitionPhase.DATA_NODES);
+    HdfsState state = injector.getInstance(HdfsState.class);
+    HdfsScheduler scheduler = new HdfsScheduler(config, state, stateMachine);
+    config.setScaleSettings(ScaleSettings.NONE.withDataNodeCount(1).withHeap(HDFSConstants.DATA_NODE_ID, 2048));
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOfferWithResources(0, 8, 16384)));
+    verify(driver, times(1)).launchTasks(anyList(), taskInfosCapture.capture());
+    TaskInfo taskInfo = taskInfosCapture.getValue().iterator().next();
+    boolean heapPassed = false;
+    for (Environment.Variable variable : taskInfo.getExecutor().getCommand().getEnvironment().getVariablesList()) {
+      heapPassed |= variable.getValue().contains("-DMESOS_HDFS_DATANODE_HEAP_SIZE=2048");
+    }
+    assertTrue(heapPassed);
+
+    Offer offer = createTestOfferWithResources(1, 8, 16384);
+    scheduler.resourceOffers(driver, Lists.newArrayList(offer));
+    verify(driver, times(1)).declineOffer(offer.getId());
+  }
+
+  @Test
+  public void passesZkfcHeapSeparately() {
+    StateMachine stateMachine = createMockStateMachine(AcquisitionPhase.NAME_NODES);
+    HdfsState state = mock(HdfsState.class);
+    when(state.hostOccupied(any(String.class), matches(HDFSConstants.JOURNAL_NODE_ID))).thenReturn(true);
+    HdfsScheduler scheduler = new HdfsScheduler(config, state, stateMachine);
+    config.setScaleSettings(ScaleSettings.NONE.withHeap(HDFSConstants.ZKFC_NODE_ID, 768)
+      .withHeap(HDFSConstants.JOURNAL_NODE_ID, 1536));
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOffer(0)));
+    verify(driver, times(1)).launchTasks(anyList(), taskInfosCapture.capture());
+    String executorOpts = "";
+    for (Environment.Variable variable : taskInfosCapture.getValue().iterator().next().getExecutor().getCommand()
+      .getEnvironment().getVariablesList()) {
+      if (variable.getName().equals("EXECUTOR_OPTS")) {
+        executorOpts = variable.getValue();
+      }
+    }
+    assertTrue(executorOpts.contains("-DMESOS_HDFS_ZKFC_HEAP_SIZE=768"));
+    // The JournalNode heap is not the NameNode executor's to set
+    assertFalse(executorOpts.contains("1536"));
+    assertFalse(executorOpts.contains("MESOS_HDFS_HADOOP_HEAP_SIZE"));
+  }
+
+  @Test
+  public void killsExcessDataNodesOnlyOnceDecommissioned() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt("mesos.hdfs.replication", 2);
+    conf.setInt("mesos.hdfs.datanode.count", 1);
+    HdfsState state = injector.getInstance(HdfsState.class);
+    HdfsScheduler scheduler = new HdfsScheduler(new HdfsFrameworkConfig(conf), state,
+      createMockStateMachine(AcquisitionPhase.DATA_NODES));
+    Task nameNode = createTask("host0", HDFSConstants.NAME_NODE_ID, "namenode.NameNodeExecutor.1");
+    state.recordTask(nameNode);
+    Task[] dataNodes = new Task[4];
+    // Launched at 900, 1000 and 1100 ms, so the oldest has the greatest id
+    for (int i = 1; i <= 3; i++) {
+      dataNodes[i] = createTask("host" + i, HDFSConstants.DATA_NODE_ID, "datanode.NodeExecutor." + (800 + 100 * i));
+      state.recordTask(dataNodes[i]);
+    }
+    scheduler.statusUpdate(driver, createNameNodeStatus(nameNode, "", "", 0));
+
+    // With a replication of 2 only the newest DataNode is decommissioned at first
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOffer(4)));
+    verify(driver, times(1)).sendFrameworkMessage(any(ExecutorID.class), any(SlaveID.class),
+      aryEq(excludeHosts("host3")));
+    scheduler.statusUpdate(driver, createNameNodeStatus(nameNode, "host3", "", 12));
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOffer(5)));
+    verify(driver, never()).killTask(any(TaskID.class));
+
+    scheduler.statusUpdate(driver, createNameNodeStatus(nameNode, "", "host3", 0));
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOffer(6)));
+    verify(driver, times(1)).killTask(dataNodes[3].getId());
+    verify(driver, times(1)).sendFrameworkMessage(any(ExecutorID.class), any(SlaveID.class),
+      aryEq(excludeHosts("host2,host3")));
+    verify(driver, never()).killTask(dataNodes[2].getId());
+
+    // Decommissioning is done once no block is under-replicated
+    scheduler.statusUpdate(driver, createNameNodeStatus(nameNode, "host2", "host3", 0));
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOffer(7)));
+    verify(driver, times(1)).killTask(dataNodes[2].getId());
+    verify(driver, times(2)).killTask(any(TaskID.class));
+    verify(driver, never()).launchTasks(anyList(), anyList());
+  }
+
+  @Test
+  public void decommissionsOnceDataNodeCountIsLoweredWithoutOffers() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt("mesos.hdfs.replication", 2);
+    HdfsFrameworkConfig scaledConfig = new HdfsFrameworkConfig(conf);
+    HdfsState state = injector.getInstance(HdfsState.class);
+    HdfsScheduler scheduler = new HdfsScheduler(scaledConfig, state,
+      createMockStateMachine(AcquisitionPhase.DATA_NODES));
+    Task nameNode = createTask("host0", HDFSConstants.NAME_NODE_ID, "namenode.NameNodeExecutor.1");
+    state.recordTask(nameNode);
+    Task[] dataNodes = new Task[4];
+    for (int i = 1; i <= 3; i++) {
+      dataNodes[i] = createTask("host" + i, HDFSConstants.DATA_NODE_ID, "datanode.NodeExecutor." + i);
+      state.recordTask(dataNodes[i]);
+    }
+    scheduler.registered(driver, FrameworkID.newBuilder().setValue("framework1").build(), null);
+    scheduler.statusUpdate(driver, createNameNodeStatus(nameNode, "", "", 0));
+    verify(driver, times(1)).sendFrameworkMessage(any(ExecutorID.class), any(SlaveID.class),
+      aryEq(excludeHosts("")));
+
+    scaledConfig.setScaleSettings(scaledConfig.getScaleSettings().withDataNodeCount(2));
+    verify(driver, timeout(5000)).sendFrameworkMessage(any(ExecutorID.class), any(SlaveID.class),
+      aryEq(excludeHosts("host3")));
+
+    // The NameNode reporting the decommission is enough to kill the DataNode
+    scheduler.statusUpdate(driver, createNameNodeStatus(nameNode, "", "host3", 0));
+    verify(driver, times(1)).killTask(dataNodes[3].getId());
+    verify(driver, times(1)).killTask(any(TaskID.class));
+  }
+
+  private Task createTask(String hostname, String type, String idName) {
+    ExecutorInfo execInfo = ExecutorInfoBuilder.createExecutorInfoBuilder()
+      .setName("executor")
+      .setExecutorId(ExecutorInfoBuilder.createExecutorId("executor"))
+      .setCommand(CommandInfoBuilder.createCmdInfo("ls", new ArrayList<CommandInfo.URI>(),
+        new ArrayList<Environment.Variable>()))
+      .build();
+    Offer offer = new OfferBuilder("offer1", "framework1", "slave1", hostname).build();
+    return new Task(new ArrayList<Resource>(), execInfo, offer, type, type, idName);
+  }
+
+  private TaskStatus createNameNodeStatus(Task nameNode, String decommissioning, String decommissioned,
+    long underReplicatedBlocks) {
+    return new TaskStatusBuilder()
+      .setTaskId(nameNode.getId())
+      .setSlaveId("slave1")
+      .setState(TaskState.TASK_RUNNING)
+      .addLabel(HDFSConstants.HEALTH_KEY_PREFIX + HDFSConstants.HA_STATE_METRIC, HDFSConstants.HA_STATE_ACTIVE_VAL)
+      .addLabel(HDFSConstants.HEALTH_KEY_PREFIX + HDFSConstants.DECOMMISSIONING_METRIC, decommissioning)
+      .addLabel(HDFSConstants.HEALTH_KEY_PREFIX + HDFSConstants.DECOMMISSIONED_METRIC, decommissioned)
+      .addLabel(HDFSConstants.HEALTH_KEY_PREFIX + HDFSConstants.UNDER_REPLICATED_BLOCKS_METRIC,
+        String.valueOf(underReplicatedBlocks))
+      .build();
+  }
+
+  private byte[] excludeHosts(String hosts) {
+    return (HDFSConstants.EXCLUDE_HOSTS + " " + hosts).getBytes(Charset.defaultCharset());
+  }
+
+  private HdfsFrameworkConfig createDynamicPortsConfig() {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean("mesos.hdfs.dynamic.ports", true);
+    conf.set("mesos.hdfs.framework.hostaddress", "localhost");
+    return new HdfsFrameworkConfig(conf);
+  }
+
+  private boolean hasPortResource(TaskInfo taskInfo, int port) {
+    for (Resource resource : taskInfo.getResourcesList()) {
+      if (resource.getName().equals("ports")
+        && resource.getRanges().getRange(0).getBegin() == port
+        && resource.getRanges().getRange(0).getEnd() == port) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private StateMachine createMockStateMachine(AcquisitionPhase phase) {
     Reconciler reconciler = mock(Reconciler.class);
     StateMachine stateMachine = mock(StateMachine.class);
     when(stateMachine.getCurrentPhase()).thenReturn(phase);
+    when(stateMachine.correctPhase()).thenReturn(phase);
     when(stateMachine.getReconciler()).thenReturn(reconciler);
     return stateMachine;
   }
@@ -107,6 +368,15 @@ public class SchedulerTest {
       .build();
   }
 
+  private Offer createTestOfferWithPorts(int instanceNumber, long portsBegin, long portsEnd) {
+    ResourceBuilder resourceBuilder = new ResourceBuilder("*");
+    return new OfferBuilder("offer" + instanceNumber, "framework1", "slave" + instanceNumber, "host" + instanceNumber)
+      .addResource(resourceBuilder.createCpuResource(8))
+      .addResource(resourceBuilder.createMemResource(16384))
+      .addResource(resourceBuilder.createPortResource(portsBegin, portsEnd))
+      .build();
+  }
+
   private Offer createTestOffer(int instanceNumber) {
     return new OfferBuilder("offer" + instanceNumber, "framework1", "slave" + instanceNumber, "host" + instanceNumber).build();
   }
@@ -5,9 +5,13 @@ import com.google.inject.Injector;
 import org.apache.mesos.Protos.ExecutorInfo;
 import org.apache.mesos.Protos.Offer;
 import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.TaskID;
 import org.apache.mesos.Protos.TaskState;
 import org.apache.mesos.Protos.TaskStatus;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.mesos.hdfs.SchedulerModuleTest;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.scheduler.StateFactory;
 import org.apache.mesos.hdfs.scheduler.Task;
 import org.apache.mesos.hdfs.util.HDFSConstants;
 import org.apache.mesos.hdfs.util.TaskStatusFactory;
@@ -16,14 +20,23 @@ import org.apache.mesos.protobuf.ExecutorInfoBuilder;
 import org.apache.mesos.protobuf.OfferBuilder;
 import org.apache.mesos.protobuf.ResourceBuilder;
 import org.apache.mesos.protobuf.TaskStatusBuilder;
+import org.apache.mesos.state.InMemoryState;
+import org.apache.mesos.state.State;
+import org.apache.mesos.state.Variable;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static org.junit.Assert.*;
 
@@ -65,6 +78,26 @@ public class HdfsStateTest {
     assertEquals(status, outTask.getStatus());
   }
 
+  @Test
+  public void testTaskViewFollowsUpdates()
+    throws ClassNotFoundException, IOException, InterruptedException, ExecutionException {
+    HdfsState state = injector.getInstance(HdfsState.class);
+    Task inTask = createTask();
+    String taskId = inTask.getId().getValue();
+    long version = state.getViewVersion();
+    state.recordTask(inTask);
+    assertEquals(1, state.getTaskView().size());
+    assertTrue(state.getViewVersion() > version);
+
+    TaskStatus status = createTaskStatus(taskId, TaskState.TASK_RUNNING);
+    state.update(null, status);
+    assertEquals(status, state.getTaskView(taskId).getStatus());
+
+    state.update(null, createTaskStatus(taskId, TaskState.TASK_FAILED));
+    assertNull(state.getTaskView(taskId));
+    assertTrue(state.getTaskView().isEmpty());
+  }
+
   @Test
   public void testHostOccupied()
     throws ClassNotFoundException, IOException, InterruptedException, ExecutionException {
@@ -124,6 +157,115 @@ public class HdfsStateTest {
     assertTrue(state.nameNodesInitialized());
   }
 
+  @Test
+  public void testHealthLabelsMergeWithNameNodeStatus()
+    throws ClassNotFoundException, IOException, InterruptedException, ExecutionException {
+    HdfsState state = injector.getInstance(HdfsState.class);
+
+    Task namenode1Task = createNameNodeTask();
+    Task namenode2Task = createNameNodeTask();
+    state.recordTask(namenode1Task);
+    state.recordTask(namenode2Task);
+    state.update(null, TaskStatusFactory.createNameNodeStatus(namenode1Task.getId(), true));
+    state.update(null, TaskStatusFactory.createNameNodeStatus(namenode2Task.getId(), true));
+
+    state.update(null, createHealthStatus(namenode1Task.getId(), HDFSConstants.HEALTH_UNHEALTHY_VAL));
+    state.update(null, createHealthStatus(namenode1Task.getId(), HDFSConstants.HEALTH_HEALTHY_VAL));
+    assertTrue(state.nameNodesInitialized());
+
+    for (Task task : state.getNameNodeTasks()) {
+      if (task.getId().equals(namenode1Task.getId())) {
+        assertEquals(2, task.getStatus().getLabels().getLabelsCount());
+        assertEquals(HDFSConstants.HEALTH_HEALTHY_VAL, task.getStatus().getLabels().getLabels(1).getValue());
+      }
+    }
+  }
+
+  @Test
+  public void testTasksIgnoreLeftoverInitVariable()
+    throws ClassNotFoundException, IOException, InterruptedException, ExecutionException {
+    FlakyState taskState = new FlakyState();
+    taskState.failExpunge = true;
+    HdfsState state = new HdfsState(new HdfsFrameworkConfig(new Configuration(false)), createFactory(taskState));
+    assertTrue(getNames(taskState).contains("init"));
+    assertEquals(0, state.getTasks().size());
+    assertFalse(state.nameNodesInitialized());
+
+    Task inTask = createNameNodeTask();
+    state.recordTask(inTask);
+    assertEquals(1, state.getTasks().size());
+    assertEquals(1, state.getNameNodeTasks().size());
+
+    // Removed once expunging works again, e.g. after a failover
+    taskState.failExpunge = false;
+    state = new HdfsState(new HdfsFrameworkConfig(new Configuration(false)), createFactory(taskState));
+    assertFalse(getNames(taskState).contains("init"));
+    assertEquals(1, state.getTasks().size());
+  }
+
+  private StateFactory createFactory(final State taskState) {
+    return new StateFactory() {
+      @Override
+      public State create(String path, HdfsFrameworkConfig config) {
+        return path.endsWith("/tasks") ? taskState : new InMemoryState();
+      }
+    };
+  }
+
+  private Set<String> getNames(State state) throws InterruptedException, ExecutionException {
+    Set<String> names = new HashSet<>();
+    Iterator<String> iter = state.names().get();
+    while (iter.hasNext()) {
+      names.add(iter.next());
+    }
+    return names;
+  }
+
+  /**
+   * Like the ZooKeeper state, has no names until something is stored, and can be made to fail expunging.
+   */
+  private static class FlakyState extends InMemoryState {
+    private volatile boolean stored;
+    private volatile boolean failExpunge;
+
+    @Override
+    public Future<Variable> store(Variable variable) {
+      stored = true;
+      return super.store(variable);
+    }
+
+    @Override
+    public Future<Boolean> expunge(Variable variable) {
+      if (failExpunge) {
+        FutureTask<Boolean> failed = new FutureTask<>(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            throw new IOException("Connection loss");
+          }
+        });
+        failed.run();
+        return failed;
+      }
+      return super.expunge(variable);
+    }
+
+    @Override
+    public Future<Iterator<String>> names() {
+      if (!stored) {
+        throw new IllegalStateException("No such node");
+      }
+      return super.names();
+    }
+  }
+
+  private TaskStatus createHealthStatus(TaskID taskId, String health) {
+    return new TaskStatusBuilder()
+      .setTaskId(taskId)
+      .setState(TaskState.TASK_RUNNING)
+      .addLabel(HDFSConstants.HEALTH_KEY, health)
+      .build();
+  }
+
   private HdfsState createDefaultState()
     throws ClassNotFoundException, IOException, InterruptedException, ExecutionException {
     HdfsState state = injector.getInstance(HdfsState.class);
@@ -0,0 +1,80 @@
+package org.apache.mesos.hdfs.telemetry;
+
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.hdfs.telemetry.TelemetryStore.Series;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.protobuf.TaskStatusBuilder;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TelemetryStoreTest {
+  private static final String TASK_ID = "task.datanode.datanode.executor.1";
+  private static final List<String> METRICS = Arrays.asList("heap_used_mb", "bytes_written_total");
+
+  @Test
+  public void batchRoundTrips() throws Exception {
+    TelemetryBatch batch = new TelemetryBatch(TASK_ID, HDFSConstants.DATA_NODE_ID, METRICS);
+    batch.add(1445000000000L, new long[]{512, 0});
+    batch.add(1445000010000L, new long[]{498, 1L << 40});
+    batch.add(1445000020000L, new long[]{-1, Long.MAX_VALUE});
+
+    byte[] bytes = batch.toBytes();
+    assertTrue(TelemetryBatch.isTelemetry(bytes));
+    assertFalse(TelemetryBatch.isTelemetry("reload config".getBytes("UTF-8")));
+
+    TelemetryBatch decoded = TelemetryBatch.fromBytes(bytes);
+    assertEquals(TASK_ID, decoded.getTaskId());
+    assertEquals(HDFSConstants.DATA_NODE_ID, decoded.getTaskType());
+    assertEquals(METRICS, decoded.getMetrics());
+    assertEquals(3, decoded.size());
+    for (int i = 0; i < batch.size(); i++) {
+      assertEquals(batch.getTimestamp(i), decoded.getTimestamp(i));
+      assertArrayEquals(batch.getValues(i), decoded.getValues(i));
+    }
+  }
+
+  @Test
+  public void deltaEncodingIsCompact() throws Exception {
+    TelemetryBatch batch = new TelemetryBatch(TASK_ID, HDFSConstants.DATA_NODE_ID, METRICS);
+    for (int i = 0; i < 100; i++) {
+      batch.add(1445000000000L + i * 10000L, new long[]{512 + i % 3, 1000000L * i});
+    }
+    // Each later sample takes two bytes for its timestamp, one for the heap and three for the counter
+    assertTrue(batch.toBytes().length < 100 * 8);
+  }
+
+  @Test
+  public void keepsLatestSamplesAndRates() {
+    TelemetryStore store = new TelemetryStore(3);
+    TelemetryBatch batch = new TelemetryBatch(TASK_ID, HDFSConstants.DATA_NODE_ID, METRICS);
+    for (int i = 0; i < 5; i++) {
+      batch.add(10000L * i, new long[]{100 + i, 1000L * i});
+    }
+    store.record("slave1", batch);
+    // Delivered twice
+    store.record("slave1", batch);
+
+    Series series = store.getSeries(TASK_ID);
+    assertEquals(3, series.size());
+    assertArrayEquals(new long[]{20000, 102, 2000}, series.getSamples().get(0));
+    assertArrayEquals(new long[]{40000, 104, 4000}, series.getLatest());
+    assertEquals(100.0, series.getRates()[1], 0.001);
+  }
+
+  @Test
+  public void dropsSeriesOfTerminatedTasks() {
+    TelemetryStore store = new TelemetryStore(3);
+    TelemetryBatch batch = new TelemetryBatch(TASK_ID, HDFSConstants.DATA_NODE_ID, METRICS);
+    batch.add(0, new long[]{1, 1});
+    store.record("slave1", batch);
+
+    store.update(null, new TaskStatusBuilder().setTaskId(TASK_ID).setState(TaskState.TASK_RUNNING).build());
+    assertNotNull(store.getSeries(TASK_ID));
+    store.update(null, new TaskStatusBuilder().setTaskId(TASK_ID).setState(TaskState.TASK_LOST).build());
+    assertNull(store.getSeries(TASK_ID));
+  }
+}
@@ -0,0 +1,96 @@
+package org.apache.mesos.hdfs.trace;
+
+import org.apache.mesos.Protos.CommandInfo;
+import org.apache.mesos.Protos.Environment;
+import org.apache.mesos.Protos.ExecutorInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.hdfs.scheduler.Task;
+import org.apache.mesos.hdfs.util.HDFSConstants;
+import org.apache.mesos.hdfs.util.LaunchStage;
+import org.apache.mesos.protobuf.CommandInfoBuilder;
+import org.apache.mesos.protobuf.ExecutorInfoBuilder;
+import org.apache.mesos.protobuf.OfferBuilder;
+import org.apache.mesos.protobuf.TaskStatusBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LaunchTracerTest {
+  private final Offer offer = new OfferBuilder("offer1", "framework1", "slave1", "host1").build();
+
+  @Test
+  public void completesOnceHealthCheckPassed() {
+    LaunchTracer tracer = new LaunchTracer(10);
+    Task task = createDataNode();
+    launch(tracer, task);
+
+    long launchedMs = System.currentTimeMillis();
+    tracer.update(null, new TaskStatusBuilder()
+      .setTaskId(task.getId())
+      .setState(TaskState.TASK_RUNNING)
+      .addLabel(LaunchStage.EXECUTOR_REGISTERED.getLabel(), String.valueOf(launchedMs + 100))
+      .addLabel(LaunchStage.CONFIG_FETCHED.getLabel(), String.valueOf(launchedMs + 150))
+      .addLabel(LaunchStage.PROCESS_STARTED.getLabel(), String.valueOf(launchedMs + 400))
+      .build());
+    assertNull(tracer.getTrace(task.getId().getValue()).getOutcome());
+    assertEquals(1, tracer.getInFlight().size());
+
+    tracer.update(null, new TaskStatusBuilder()
+      .setTaskId(task.getId())
+      .setState(TaskState.TASK_RUNNING)
+      .addLabel(HDFSConstants.HEALTH_KEY, HDFSConstants.HEALTH_HEALTHY_VAL)
+      .addLabel(LaunchStage.HEALTH_CHECK_PASSED.getLabel(), String.valueOf(launchedMs + 5000))
+      .build());
+
+    assertTrue(tracer.getInFlight().isEmpty());
+    LaunchTrace trace = tracer.getCompleted().get(0);
+    assertEquals(LaunchTracer.RUNNING_OUTCOME, trace.getOutcome());
+    assertEquals("host1", trace.getHostname());
+    Map<LaunchStage, Long> durations = trace.getStageDurations();
+    assertEquals(LaunchStage.values().length, durations.size());
+    assertEquals(0, (long) durations.get(LaunchStage.OFFER_RECEIVED));
+    assertEquals(250, (long) durations.get(LaunchStage.PROCESS_STARTED));
+    assertTrue(trace.getTotalMs() >= 5000);
+  }
+
+  @Test
+  public void keepsRecentCompletedLaunches() {
+    LaunchTracer tracer = new LaunchTracer(2);
+    for (int i = 0; i < 3; i++) {
+      Task task = createDataNode();
+      launch(tracer, task);
+      tracer.update(null, TaskStatusBuilder.createTaskStatus(task.getId(), TaskState.TASK_FAILED));
+    }
+
+    List<LaunchTrace> completed = tracer.getCompleted();
+    assertEquals(2, completed.size());
+    assertEquals("task_failed", completed.get(0).getOutcome());
+    assertFalse(completed.get(0).getStageDurations().containsKey(LaunchStage.TASK_RUNNING));
+  }
+
+  private void launch(LaunchTracer tracer, Task task) {
+    tracer.offersReceived(Collections.singletonList(offer));
+    tracer.offerEvaluated(offer.getId());
+    tracer.tasksRecorded(offer, Collections.singletonList(task));
+    tracer.launchIssued(Collections.singletonList(task));
+  }
+
+  private Task createDataNode() {
+    ExecutorInfo execInfo = ExecutorInfoBuilder.createExecutorInfoBuilder()
+      .setName("executor")
+      .setExecutorId(ExecutorInfoBuilder.createExecutorId("executor"))
+      .setCommand(CommandInfoBuilder.createCmdInfo("ls", new ArrayList<CommandInfo.URI>(),
+        new ArrayList<Environment.Variable>()))
+      .build();
+    return new Task(new ArrayList<Resource>(), execInfo, offer, "datanode", HDFSConstants.DATA_NODE_ID,
+      "datanode.executor", new HashMap<String, Integer>());
+  }
+}
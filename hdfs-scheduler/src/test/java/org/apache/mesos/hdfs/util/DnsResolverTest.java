@@ -0,0 +1,38 @@
+package org.apache.mesos.hdfs.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.hdfs.config.HdfsFrameworkConfig;
+import org.apache.mesos.hdfs.scheduler.HdfsScheduler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class DnsResolverTest {
+
+  @Test
+  public void resolvesWithoutMesosDns() {
+    DnsResolver resolver = new DnsResolver(mock(HdfsScheduler.class), createConfig(false));
+    assertTrue(resolver.journalNodesResolvable());
+    assertTrue(resolver.nameNodesResolvable());
+  }
+
+  @Test
+  public void neverBlocksOnUnresolvableNames() {
+    DnsResolver resolver = new DnsResolver(mock(HdfsScheduler.class), createConfig(true));
+    long startMs = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) {
+      assertFalse(resolver.journalNodesResolvable());
+    }
+    assertTrue(System.currentTimeMillis() - startMs < 1000);
+  }
+
+  private HdfsFrameworkConfig createConfig(boolean usingMesosDns) {
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hdfs.mesosdns", String.valueOf(usingMesosDns));
+    // Reserved, so it never resolves
+    conf.set("mesos.hdfs.mesosdns.domain", "invalid");
+    return new HdfsFrameworkConfig(conf);
+  }
+}
@@ -0,0 +1,200 @@
+package org.apache.mesos.concurrent;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One bounded pool of named daemon threads which runs all timed and periodic work of a JVM, instead of a Timer or
+ * thread per job.  Jobs are grouped by name, and the runs, failures, run times and start lag of every group are kept
+ * so a slow or late job shows up.  A periodic job which throws is logged and keeps running.
+ * <p/>
+ * Jobs must not block for long, since they share a few threads.  The size of the pool is taken from the
+ * mesos.shared.scheduler.threads system property.
+ */
+public final class SharedScheduler {
+  public static final String THREADS_PROPERTY = "mesos.shared.scheduler.threads";
+  private static final int DEFAULT_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+  private static final long LATE_WARN_MS = 1000;
+
+  private static final SharedScheduler INSTANCE = new SharedScheduler(Integer.getInteger(THREADS_PROPERTY,
+    DEFAULT_THREADS));
+
+  private final Log log = LogFactory.getLog(SharedScheduler.class);
+  private final ScheduledThreadPoolExecutor executor;
+  private final ConcurrentMap<String, JobStats> stats = new ConcurrentHashMap<>();
+
+  SharedScheduler(int threads) {
+    executor = new ScheduledThreadPoolExecutor(threads, new NamedThreadFactory("SharedScheduler"));
+    executor.setRemoveOnCancelPolicy(true);
+  }
+
+  public static SharedScheduler getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Runs a job once as soon as a thread is free.
+   */
+  public ScheduledFuture<?> execute(String name, Runnable runnable) {
+    return schedule(name, runnable, 0);
+  }
+
+  /**
+   * Runs a job once after the given delay.
+   */
+  public ScheduledFuture<?> schedule(String name, Runnable runnable, long delayMs) {
+    return executor.schedule(new Job(name, runnable, delayMs, 0), delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Runs a job every period after the initial delay until its future is cancelled.  Runs of the same job never
+   * overlap; a run taking longer than the period delays the next one.
+   */
+  public ScheduledFuture<?> scheduleAtFixedRate(String name, Runnable runnable, long initialDelayMs, long periodMs) {
+    return executor.scheduleAtFixedRate(new Job(name, runnable, initialDelayMs, periodMs), initialDelayMs, periodMs,
+      TimeUnit.MILLISECONDS);
+  }
+
+  public int getThreadCount() {
+    return executor.getPoolSize();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  /**
+   * Returns the number of jobs waiting for their time or a thread.
+   */
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Returns the statistics of every group of jobs run so far.
+   */
+  public List<JobStats> getJobStats() {
+    return new ArrayList<>(stats.values());
+  }
+
+  private JobStats getStats(String name) {
+    JobStats jobStats = stats.get(name);
+    if (jobStats == null) {
+      jobStats = new JobStats(name);
+      JobStats existing = stats.putIfAbsent(name, jobStats);
+      if (existing != null) {
+        jobStats = existing;
+      }
+    }
+    return jobStats;
+  }
+
+  /**
+   * Wraps a job to time it and to keep a periodic job running after it throws.
+   */
+  private final class Job implements Runnable {
+    private final Runnable runnable;
+    private final JobStats jobStats;
+    private final long periodMs;
+    private long dueMs;
+
+    private Job(String name, Runnable runnable, long delayMs, long periodMs) {
+      this.runnable = runnable;
+      this.jobStats = getStats(name);
+      this.periodMs = periodMs;
+      this.dueMs = System.currentTimeMillis() + delayMs;
+    }
+
+    @Override
+    public void run() {
+      long startMs = System.currentTimeMillis();
+      long lagMs = Math.max(0, startMs - dueMs);
+      if (lagMs > LATE_WARN_MS) {
+        log.warn(String.format("Job %s started %d ms late", jobStats.getName(), lagMs));
+      }
+      boolean failed = false;
+      try {
+        runnable.run();
+      } catch (Throwable t) {
+        failed = true;
+        log.error("Job " + jobStats.getName() + " failed", t);
+      } finally {
+        jobStats.record(System.currentTimeMillis() - startMs, lagMs, failed);
+        // Fixed rate runs are due a period after the previous one was due, not after it started
+        dueMs += periodMs;
+      }
+    }
+  }
+
+  /**
+   * The runs, failures, run times and start lag of the jobs with the same name.
+   */
+  public static final class JobStats {
+    private final String name;
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong lastRunMs = new AtomicLong();
+    private final AtomicLong maxRunMs = new AtomicLong();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    private JobStats(String name) {
+      this.name = name;
+    }
+
+    private void record(long runMs, long lagMs, boolean failed) {
+      runs.incrementAndGet();
+      if (failed) {
+        failures.incrementAndGet();
+      }
+      lastRunMs.set(runMs);
+      lastLagMs.set(lagMs);
+      raise(maxRunMs, runMs);
+      raise(maxLagMs, lagMs);
+    }
+
+    private static void raise(AtomicLong max, long value) {
+      long current = max.get();
+      while (value > current && !max.compareAndSet(current, value)) {
+        current = max.get();
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getRuns() {
+      return runs.get();
+    }
+
+    public long getFailures() {
+      return failures.get();
+    }
+
+    public long getLastRunMs() {
+      return lastRunMs.get();
+    }
+
+    public long getMaxRunMs() {
+      return maxRunMs.get();
+    }
+
+    public long getLastLagMs() {
+      return lastLagMs.get();
+    }
+
+    public long getMaxLagMs() {
+      return maxLagMs.get();
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package org.apache.mesos.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count which only goes up, e.g. of offers received.
+ */
+public class Counter {
+  private final AtomicLong count = new AtomicLong();
+
+  public void inc() {
+    count.incrementAndGet();
+  }
+
+  public void inc(long n) {
+    count.addAndGet(n);
+  }
+
+  public long get() {
+    return count.get();
+  }
+}
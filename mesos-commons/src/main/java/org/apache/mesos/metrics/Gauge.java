@@ -0,0 +1,8 @@
+package org.apache.mesos.metrics;
+
+/**
+ * A value read whenever the metrics are served, e.g. the number of tasks pending reconciliation.
+ */
+public interface Gauge {
+  double getValue();
+}
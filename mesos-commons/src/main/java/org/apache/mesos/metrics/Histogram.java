@@ -0,0 +1,136 @@
+package org.apache.mesos.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts values into fixed buckets, along with their count and sum.  Latency histograms, the default, have buckets
+ * from a millisecond to a minute and record nanoseconds which are served in seconds; other histograms, e.g. of payload
+ * sizes in bytes, serve their values as recorded.
+ */
+public class Histogram {
+  static final double[] LATENCY_BUCKETS_SEC = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10,
+    30, 60};
+  public static final double[] SIZE_BUCKETS_BYTES = {64, 256, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304,
+    16777216};
+
+  private final double[] bounds;
+  // The bounds in recorded units
+  private final long[] recordedBounds;
+  private final double recordedPerUnit;
+
+  // The last bucket counts values above all bounds
+  private final AtomicLongArray buckets;
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+
+  public Histogram() {
+    this(LATENCY_BUCKETS_SEC, TimeUnit.SECONDS.toNanos(1));
+  }
+
+  public Histogram(double[] bounds) {
+    this(bounds, 1);
+  }
+
+  private Histogram(double[] bounds, double recordedPerUnit) {
+    this.bounds = bounds.clone();
+    this.recordedPerUnit = recordedPerUnit;
+    recordedBounds = new long[bounds.length];
+    for (int i = 0; i < bounds.length; i++) {
+      recordedBounds[i] = (long) (bounds[i] * recordedPerUnit);
+    }
+    buckets = new AtomicLongArray(bounds.length + 1);
+  }
+
+  /**
+   * Records a value, in nanoseconds for latency histograms.
+   */
+  public void record(long value) {
+    int i = 0;
+    while (i < recordedBounds.length && value > recordedBounds[i]) {
+      i++;
+    }
+    buckets.incrementAndGet(i);
+    count.incrementAndGet();
+    sum.addAndGet(value);
+  }
+
+  public void observeNanos(long nanos) {
+    record(nanos);
+  }
+
+  public void observe(long duration, TimeUnit unit) {
+    observeNanos(unit.toNanos(duration));
+  }
+
+  /**
+   * Starts timing something, which is observed once the returned timer is closed.
+   */
+  public Timer startTimer() {
+    return new Timer(this);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the sum of all values, in seconds for latency histograms.
+   */
+  public double getSum() {
+    return sum.get() / recordedPerUnit;
+  }
+
+  double[] getBounds() {
+    return bounds;
+  }
+
+  /**
+   * Returns the number of values at or below each bound, the last one counting all of them.
+   */
+  long[] getCumulativeCounts() {
+    long[] cumulative = new long[buckets.length()];
+    long total = 0;
+    for (int i = 0; i < cumulative.length; i++) {
+      total += buckets.get(i);
+      cumulative[i] = total;
+    }
+    return cumulative;
+  }
+
+  /**
+   * Returns the upper bound of the bucket holding the given quantile, which is accurate to the buckets.
+   */
+  public double getQuantile(double quantile) {
+    long[] cumulative = getCumulativeCounts();
+    long total = cumulative[cumulative.length - 1];
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(quantile * total);
+    for (int i = 0; i < bounds.length; i++) {
+      if (cumulative[i] >= rank) {
+        return bounds[i];
+      }
+    }
+    return Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Times something with try-with-resources.
+   */
+  public static final class Timer implements AutoCloseable {
+    private final Histogram histogram;
+    private final long startNanos = System.nanoTime();
+
+    private Timer(Histogram histogram) {
+      this.histogram = histogram;
+    }
+
+    @Override
+    public void close() {
+      histogram.observeNanos(System.nanoTime() - startNanos);
+    }
+  }
+}
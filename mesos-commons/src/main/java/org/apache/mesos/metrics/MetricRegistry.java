@@ -0,0 +1,221 @@
+package org.apache.mesos.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Holds the counters, gauges and latency histograms of a JVM, and writes them in the Prometheus text format or as a
+ * map for JSON.  Metrics are identified by name and label pairs, and looking one up again returns the same instance,
+ * so callers may either keep a metric in a field or look it up where it is updated.
+ */
+public final class MetricRegistry {
+  private static final MetricRegistry DEFAULT = new MetricRegistry();
+
+  private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+  public static MetricRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Returns the counter of the given name and label pairs, e.g. counter("offers_declined_total", "...", "reason",
+   * "constraints").
+   */
+  public Counter counter(String name, String help, String... labels) {
+    return (Counter) getFamily(name, help, Type.COUNTER).get(labels, new Counter());
+  }
+
+  /**
+   * Returns the latency histogram of the given name and labels.
+   */
+  public Histogram histogram(String name, String help, String... labels) {
+    return (Histogram) getFamily(name, help, Type.HISTOGRAM).get(labels, new Histogram());
+  }
+
+  /**
+   * Returns the histogram of the given name and labels with the given buckets, e.g. Histogram.SIZE_BUCKETS_BYTES.
+   */
+  public Histogram histogram(String name, String help, double[] buckets, String... labels) {
+    return (Histogram) getFamily(name, help, Type.HISTOGRAM).get(labels, new Histogram(buckets));
+  }
+
+  /**
+   * Registers a gauge, replacing any registered before under the same name and labels.
+   */
+  public void gauge(String name, String help, Gauge gauge, String... labels) {
+    getFamily(name, help, Type.GAUGE).put(labels, gauge);
+  }
+
+  private Family getFamily(String name, String help, Type type) {
+    Family family = families.get(name);
+    if (family == null) {
+      family = new Family(help, type);
+      Family existing = families.putIfAbsent(name, family);
+      if (existing != null) {
+        family = existing;
+      }
+    }
+    if (family.type != type) {
+      throw new IllegalArgumentException(String.format("Metric %s is a %s, not a %s", name, family.type, type));
+    }
+    return family;
+  }
+
+  /**
+   * Writes all metrics in the Prometheus text exposition format.
+   */
+  public void writePrometheus(Writer out) throws IOException {
+    for (Map.Entry<String, Family> entry : families.entrySet()) {
+      String name = entry.getKey();
+      Family family = entry.getValue();
+      out.write("# HELP " + name + " " + family.help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+      out.write("# TYPE " + name + " " + family.type.name().toLowerCase() + "\n");
+      for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+        String labels = metric.getKey();
+        Object value = metric.getValue();
+        if (value instanceof Counter) {
+          writeSample(out, name, labels, ((Counter) value).get());
+        } else if (value instanceof Gauge) {
+          writeSample(out, name, labels, ((Gauge) value).getValue());
+        } else {
+          Histogram histogram = (Histogram) value;
+          long[] cumulative = histogram.getCumulativeCounts();
+          double[] bounds = histogram.getBounds();
+          for (int i = 0; i < cumulative.length; i++) {
+            String le = i < bounds.length ? String.valueOf(bounds[i]) : "+Inf";
+            writeSample(out, name + "_bucket", appendLabel(labels, "le", le), cumulative[i]);
+          }
+          writeSample(out, name + "_sum", labels, histogram.getSum());
+          writeSample(out, name + "_count", labels, histogram.getCount());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns all metrics as nested maps for a JSON serializer.  Histograms are summarized by their count, sum and
+   * quantiles accurate to their buckets.
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    for (Map.Entry<String, Family> entry : families.entrySet()) {
+      Family family = entry.getValue();
+      List<Map<String, Object>> metrics = new ArrayList<>();
+      for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+        Map<String, Object> sample = new LinkedHashMap<>();
+        sample.put("labels", family.labels.get(metric.getKey()));
+        Object value = metric.getValue();
+        if (value instanceof Counter) {
+          sample.put("value", ((Counter) value).get());
+        } else if (value instanceof Gauge) {
+          sample.put("value", ((Gauge) value).getValue());
+        } else {
+          Histogram histogram = (Histogram) value;
+          sample.put("count", histogram.getCount());
+          sample.put("sum", histogram.getSum());
+          sample.put("p50", histogram.getQuantile(0.5));
+          sample.put("p99", histogram.getQuantile(0.99));
+        }
+        metrics.add(sample);
+      }
+      Map<String, Object> familyMap = new LinkedHashMap<>();
+      familyMap.put("type", family.type.name().toLowerCase());
+      familyMap.put("help", family.help);
+      familyMap.put("metrics", metrics);
+      map.put(entry.getKey(), familyMap);
+    }
+    return map;
+  }
+
+  private static void writeSample(Writer out, String name, String labels, Number value) throws IOException {
+    out.write(name);
+    if (!labels.isEmpty()) {
+      out.write("{" + labels + "}");
+    }
+    out.write(" " + format(value) + "\n");
+  }
+
+  private static String format(Number value) {
+    if (value instanceof Double) {
+      double d = value.doubleValue();
+      if (Double.isInfinite(d)) {
+        return d > 0 ? "+Inf" : "-Inf";
+      }
+      return Double.isNaN(d) ? "NaN" : String.valueOf(d);
+    }
+    return String.valueOf(value);
+  }
+
+  private static String appendLabel(String labels, String key, String value) {
+    String label = key + "=\"" + value + "\"";
+    return labels.isEmpty() ? label : labels + "," + label;
+  }
+
+  private static String formatLabels(String... labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels must be given as name and value pairs");
+    }
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < labels.length; i += 2) {
+      if (builder.length() > 0) {
+        builder.append(',');
+      }
+      builder.append(labels[i]).append("=\"")
+        .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+        .append('"');
+    }
+    return builder.toString();
+  }
+
+  private enum Type {
+    COUNTER, GAUGE, HISTOGRAM
+  }
+
+  /**
+   * The metrics of one name, keyed by their formatted labels.
+   */
+  private static final class Family {
+    private final String help;
+    private final Type type;
+    private final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Map<String, String>> labels = new ConcurrentHashMap<>();
+
+    private Family(String help, Type type) {
+      this.help = help;
+      this.type = type;
+    }
+
+    private Object get(String[] labelPairs, Object created) {
+      String key = formatLabels(labelPairs);
+      Object metric = metrics.get(key);
+      if (metric == null) {
+        labels.putIfAbsent(key, toMap(labelPairs));
+        Object existing = metrics.putIfAbsent(key, created);
+        metric = existing == null ? created : existing;
+      }
+      return metric;
+    }
+
+    private void put(String[] labelPairs, Object metric) {
+      String key = formatLabels(labelPairs);
+      labels.putIfAbsent(key, toMap(labelPairs));
+      metrics.put(key, metric);
+    }
+
+    private static Map<String, String> toMap(String[] labelPairs) {
+      Map<String, String> map = new LinkedHashMap<>();
+      for (int i = 0; i < labelPairs.length; i += 2) {
+        map.put(labelPairs[i], labelPairs[i + 1]);
+      }
+      return Collections.unmodifiableMap(map);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package org.apache.mesos.net;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.concurrent.NamedThreadFactory;
+import org.apache.mesos.concurrent.SharedScheduler;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves host names in parallel and caches the results for a TTL, and failed lookups for a shorter negative TTL, so
+ * names which appear in DNS, e.g. once Mesos-DNS picks up a task, are seen soon.  Lookups run on a small pool of their
+ * own, since they block; callers either check the cache without blocking, wait for a set of names, or are called back
+ * once all of them resolve.
+ */
+public class CachingResolver {
+  private static final int LOOKUP_THREADS = 4;
+  private static final long MIN_POLL_MS = 100;
+
+  static {
+    // The JVM caches failed lookups for 10 seconds by default, longer than our own negative TTL
+    Security.setProperty("networkaddress.cache.negative.ttl", "0");
+  }
+
+  private final Log log = LogFactory.getLog(CachingResolver.class);
+  private final long ttlMs;
+  private final long negativeTtlMs;
+  private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, FutureTask<Entry>> lookups = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor executor;
+
+  public CachingResolver(long ttlMs, long negativeTtlMs) {
+    this.ttlMs = ttlMs;
+    this.negativeTtlMs = negativeTtlMs;
+    executor = new ThreadPoolExecutor(LOOKUP_THREADS, LOOKUP_THREADS, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("CachingResolver"));
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Returns whether all hosts are known to resolve, without blocking.  Hosts which aren't cached, or whose entries
+   * expired, are looked up in the background, so a later call sees them.
+   */
+  public boolean allResolvable(Collection<String> hosts) {
+    boolean resolvable = true;
+    for (String host : hosts) {
+      Entry entry = getFresh(host);
+      if (entry == null) {
+        lookup(host);
+        resolvable = false;
+      } else if (!entry.isResolvable()) {
+        resolvable = false;
+      }
+    }
+    return resolvable;
+  }
+
+  /**
+   * Looks up all hosts which aren't cached in parallel and returns whether all of them resolve, waiting at most the
+   * given time.
+   */
+  public boolean resolveAll(Collection<String> hosts, long timeoutMs) throws InterruptedException {
+    long deadlineMs = System.currentTimeMillis() + timeoutMs;
+    List<Future<Entry>> pending = new ArrayList<>();
+    boolean resolvable = true;
+    for (String host : hosts) {
+      Entry entry = getFresh(host);
+      if (entry == null) {
+        pending.add(lookup(host));
+      } else if (!entry.isResolvable()) {
+        resolvable = false;
+      }
+    }
+    for (Future<Entry> lookup : pending) {
+      try {
+        long remainingMs = Math.max(0, deadlineMs - System.currentTimeMillis());
+        resolvable &= lookup.get(remainingMs, TimeUnit.MILLISECONDS).isResolvable();
+      } catch (ExecutionException | TimeoutException e) {
+        resolvable = false;
+      }
+    }
+    return resolvable;
+  }
+
+  /**
+   * Calls back on the shared scheduler once all hosts resolve.  Hosts are looked up again every negative TTL until
+   * then.
+   */
+  public void whenResolvable(final Collection<String> hosts, final Runnable callback) {
+    SharedScheduler.getInstance().execute("dns-readiness", new Runnable() {
+      @Override
+      public void run() {
+        if (allResolvable(hosts)) {
+          callback.run();
+        } else {
+          SharedScheduler.getInstance().schedule("dns-readiness", this, Math.max(MIN_POLL_MS, negativeTtlMs));
+        }
+      }
+    });
+  }
+
+  /**
+   * Blocks until all hosts resolve.
+   */
+  public void awaitResolvable(Collection<String> hosts) throws InterruptedException {
+    final CountDownLatch resolved = new CountDownLatch(1);
+    whenResolvable(hosts, new Runnable() {
+      @Override
+      public void run() {
+        resolved.countDown();
+      }
+    });
+    resolved.await();
+  }
+
+  /**
+   * Returns the cached addresses of a host, or null if it isn't known to resolve.
+   */
+  public InetAddress[] getCached(String host) {
+    Entry entry = getFresh(host);
+    return entry == null ? null : entry.addresses;
+  }
+
+  private Entry getFresh(String host) {
+    Entry entry = cache.get(host);
+    return entry != null && entry.expiresAtMs > System.currentTimeMillis() ? entry : null;
+  }
+
+  /**
+   * Starts looking up a host unless a lookup of it is running already.
+   */
+  private Future<Entry> lookup(final String host) {
+    FutureTask<Entry> task = new FutureTask<>(new Callable<Entry>() {
+      @Override
+      public Entry call() {
+        try {
+          return resolve(host);
+        } finally {
+          lookups.remove(host);
+        }
+      }
+    });
+    FutureTask<Entry> running = lookups.putIfAbsent(host, task);
+    if (running != null) {
+      return running;
+    }
+    executor.execute(task);
+    return task;
+  }
+
+  private Entry resolve(String host) {
+    Entry entry;
+    try {
+      entry = new Entry(getAllByName(host), System.currentTimeMillis() + ttlMs);
+      log.debug("Resolved " + host);
+    } catch (UnknownHostException | SecurityException e) {
+      entry = new Entry(null, System.currentTimeMillis() + negativeTtlMs);
+      log.info("Couldn't resolve host " + host);
+    }
+    cache.put(host, entry);
+    return entry;
+  }
+
+  /**
+   * Looks up the addresses of a host, blocking.  Overridden by tests.
+   */
+  InetAddress[] getAllByName(String host) throws UnknownHostException {
+    return InetAddress.getAllByName(host);
+  }
+
+  /**
+   * The addresses of a host, or null if it didn't resolve, and when they expire.
+   */
+  private static final class Entry {
+    private final InetAddress[] addresses;
+    private final long expiresAtMs;
+
+    private Entry(InetAddress[] addresses, long expiresAtMs) {
+      this.addresses = addresses;
+      this.expiresAtMs = expiresAtMs;
+    }
+
+    private boolean isResolvable() {
+      return addresses != null;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package org.apache.mesos.net;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the TCP ports listened on by any process of the host through /proc/net/tcp and /proc/net/tcp6, e.g. to
+ * confirm that a killed process released its ports before another one binds them.
+ */
+public final class ListeningPorts {
+  private static final Log LOG = LogFactory.getLog(ListeningPorts.class);
+  private static final Path[] TABLES = {Paths.get("/proc/net/tcp"), Paths.get("/proc/net/tcp6")};
+  private static final Charset CHARSET = Charset.forName("US-ASCII");
+  private static final String LISTEN_STATE = "0A";
+  private static final long POLL_MS = 100;
+
+  private ListeningPorts() {
+  }
+
+  /**
+   * Returns the ports listened on, or null if they can't be read.
+   */
+  public static Set<Integer> get() {
+    Set<Integer> ports = new HashSet<>();
+    boolean read = false;
+    for (Path table : TABLES) {
+      if (!Files.isReadable(table)) {
+        continue;
+      }
+      try {
+        parse(Files.readAllLines(table, CHARSET), ports);
+        read = true;
+      } catch (IOException e) {
+        LOG.warn("Unable to read " + table, e);
+      }
+    }
+    return read ? ports : null;
+  }
+
+  /**
+   * Waits until none of the given ports is listened on anymore.  Returns whether they were released in time, which
+   * is assumed if the listening ports can't be read.
+   */
+  public static boolean awaitReleased(Collection<Integer> ports, long timeoutMs) {
+    long deadlineMs = System.currentTimeMillis() + timeoutMs;
+    while (true) {
+      Set<Integer> listening = get();
+      if (listening == null) {
+        return true;
+      }
+      listening.retainAll(ports);
+      if (listening.isEmpty()) {
+        return true;
+      }
+      if (System.currentTimeMillis() >= deadlineMs) {
+        LOG.warn("Ports " + listening + " are still listened on");
+        return false;
+      }
+      try {
+        TimeUnit.MILLISECONDS.sleep(POLL_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+
+  // Lines look like "0: 00000000:1F90 00000000:0000 0A ...", with the local port in hex after the address
+  static void parse(List<String> lines, Set<Integer> ports) {
+    for (int i = 1; i < lines.size(); i++) {
+      String[] fields = lines.get(i).trim().split("\\s+");
+      if (fields.length < 4 || !LISTEN_STATE.equals(fields[3])) {
+        continue;
+      }
+      String local = fields[1];
+      ports.add(Integer.parseInt(local.substring(local.lastIndexOf(':') + 1), 16));
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package org.apache.mesos.process;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.concurrent.SharedScheduler;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Keeps a process running by restarting it in place whenever it exits, with the backoff and crash loop limit of a
+ * RestartPolicy.  A process stopped through the supervisor is not restarted.  Descendants of the process are tracked
+ * while it runs, and those left behind when it exits are terminated, since they would otherwise hold on to its ports
+ * and write to pipes the JVM already closed.
+ */
+public class ProcessSupervisor {
+  /**
+   * Notified of the life cycle of a supervised process, from a thread of the shared scheduler.
+   */
+  public interface Listener {
+    /**
+     * The process exited and was started again.  Restarts are counted since the supervisor started it.
+     */
+    void restarted(int restarts, Process process);
+
+    /**
+     * The process exited and the restart policy gave up on it.
+     */
+    void failed(int restarts, int exitCode);
+
+    /**
+     * The process exited after it was stopped.
+     */
+    void stopped(int exitCode);
+  }
+
+  private static final long POLL_MS = 500;
+  private static final long ORPHAN_GRACE_MS = 5000;
+
+  private final Log log = LogFactory.getLog(ProcessSupervisor.class);
+  private final String name;
+  private final Callable<Process> starter;
+  private final Listener listener;
+  private final RestartPolicy policy;
+
+  private Process process;
+  private long startTimeMs;
+  private int restarts;
+  private boolean stopped;
+  // When the process is due to be restarted after a backoff, or 0 while it runs
+  private long restartAtMs;
+  private ScheduledFuture<?> poller;
+  // Descendants of the process seen by the polls and still alive
+  private Set<Integer> descendants = Collections.emptySet();
+
+  public ProcessSupervisor(String name, Callable<Process> starter, Listener listener, RestartPolicy policy) {
+    this.name = name;
+    this.starter = starter;
+    this.listener = listener;
+    this.policy = policy;
+  }
+
+  /**
+   * Starts the process and begins supervising it.  The process is polled for its exit on the shared scheduler, so
+   * supervising takes no thread of its own.
+   */
+  public synchronized Process start() throws Exception {
+    if (poller != null) {
+      throw new IllegalStateException("Process " + name + " is already supervised");
+    }
+    stopped = false;
+    process = launch();
+    poller = SharedScheduler.getInstance().scheduleAtFixedRate("process-supervisor", new Runnable() {
+      @Override
+      public void run() {
+        poll();
+      }
+    }, POLL_MS, POLL_MS);
+    return process;
+  }
+
+  /**
+   * Terminates the process tree, which is then restarted like a crashed process.  Survivors of SIGTERM are killed
+   * after the grace period without waiting for them.
+   */
+  public void kill(long graceMs) {
+    Process current = getProcess();
+    if (current != null) {
+      log.warn("Killing process " + name + " to restart it");
+      ProcessTree.terminateLater(current, graceMs);
+    }
+  }
+
+  /**
+   * Stops the process for good, terminating its tree.  Returns whether all of the tree exited within the grace period
+   * and a little longer for SIGKILL.
+   */
+  public boolean stop(long graceMs) {
+    Process current;
+    synchronized (this) {
+      stopped = true;
+      current = process;
+    }
+    return current == null || ProcessTree.terminate(current, graceMs);
+  }
+
+  public synchronized Process getProcess() {
+    return process;
+  }
+
+  public synchronized int getRestarts() {
+    return restarts;
+  }
+
+  /**
+   * Returns how long the current process has been running, or 0 if there is none.
+   */
+  public synchronized long getUptimeMs() {
+    return process == null ? 0 : System.currentTimeMillis() - startTimeMs;
+  }
+
+  private Process launch() throws Exception {
+    Process started = starter.call();
+    startTimeMs = System.currentTimeMillis();
+    return started;
+  }
+
+  /**
+   * Checks whether the process exited, or is due to be restarted.  The listener is notified without holding the lock.
+   */
+  private void poll() {
+    Runnable notification = null;
+    synchronized (this) {
+      long nowMs = System.currentTimeMillis();
+      if (restartAtMs > 0) {
+        if (stopped) {
+          notification = finish(-1, true);
+        } else if (nowMs >= restartAtMs) {
+          notification = restart();
+        }
+      } else if (process != null) {
+        Integer exitCode = getExitCode(process);
+        if (exitCode != null) {
+          terminateOrphans();
+          notification = exited(exitCode, nowMs);
+        } else {
+          trackDescendants();
+        }
+      }
+    }
+    if (notification != null) {
+      notification.run();
+    }
+  }
+
+  private void trackDescendants() {
+    int pid = ProcessTree.getPid(process);
+    if (pid >= 0) {
+      // Descendants seen before are kept while they live, since they are reparented as soon as the process exits,
+      // which may be a while before the JVM reaps it
+      Set<Integer> tree = ProcessTree.getTree(pid);
+      tree.remove(pid);
+      tree.addAll(ProcessTree.getAlive(descendants));
+      descendants = tree;
+    }
+  }
+
+  private void terminateOrphans() {
+    Set<Integer> orphans = ProcessTree.getAlive(descendants);
+    descendants = Collections.emptySet();
+    if (!orphans.isEmpty()) {
+      log.warn(String.format("Process %s exited leaving %s behind", name, orphans));
+      ProcessTree.terminateLater(orphans, ORPHAN_GRACE_MS);
+    }
+  }
+
+  private Runnable exited(final int exitCode, long nowMs) {
+    if (stopped) {
+      return finish(exitCode, true);
+    }
+    long backoffMs = policy.nextRestart(nowMs);
+    if (backoffMs < 0) {
+      log.error(String.format("Process %s exited with %d after %d restarts, giving up", name, exitCode, restarts));
+      return finish(exitCode, false);
+    }
+    ++restarts;
+    log.warn(String.format("Process %s exited with %d, restart %d in %d ms", name, exitCode, restarts, backoffMs));
+    process = null;
+    restartAtMs = nowMs + backoffMs;
+    return null;
+  }
+
+  private Runnable restart() {
+    restartAtMs = 0;
+    try {
+      process = launch();
+    } catch (Exception e) {
+      log.error("Unable to restart process " + name, e);
+      // Counted as an exit, so a process which can't be launched at all doesn't retry forever
+      return exited(-1, System.currentTimeMillis());
+    }
+    final int restartCount = restarts;
+    final Process restarted = process;
+    return new Runnable() {
+      @Override
+      public void run() {
+        listener.restarted(restartCount, restarted);
+      }
+    };
+  }
+
+  private Runnable finish(final int exitCode, final boolean wasStopped) {
+    process = null;
+    restartAtMs = 0;
+    poller.cancel(false);
+    final int restartCount = restarts;
+    return new Runnable() {
+      @Override
+      public void run() {
+        if (wasStopped) {
+          listener.stopped(exitCode);
+        } else {
+          listener.failed(restartCount, exitCode);
+        }
+      }
+    };
+  }
+
+  private static Integer getExitCode(Process supervised) {
+    try {
+      return supervised.exitValue();
+    } catch (IllegalThreadStateException e) {
+      return null;
+    }
+  }
+}
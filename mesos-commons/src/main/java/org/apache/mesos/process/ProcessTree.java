@@ -0,0 +1,271 @@
+package org.apache.mesos.process;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.concurrent.SharedScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Terminates a process along with all its descendants, which are discovered through /proc.  The tree is sent
+ * SIGTERM, given a grace period to exit and then sent SIGKILL.  Descendants are tracked by pid from the start, so
+ * children orphaned by the death of their parent are killed too.  Without /proc, e.g. on OS X, only the process
+ * itself is destroyed.
+ */
+public final class ProcessTree {
+  public static final String SIGTERM = "TERM";
+  public static final String SIGKILL = "KILL";
+
+  private static final Log LOG = LogFactory.getLog(ProcessTree.class);
+  private static final File PROC = new File("/proc");
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+  private static final long POLL_MS = 100;
+  private static final long KILL_WAIT_MS = 2000;
+
+  private ProcessTree() {
+  }
+
+  /**
+   * Terminates the process and its descendants, waiting at most the grace period and a little longer for SIGKILL to
+   * take effect.  Returns whether all of them exited.
+   */
+  public static boolean terminate(Process process, long graceMs) {
+    int pid = getPid(process);
+    if (pid < 0 || !PROC.isDirectory()) {
+      process.destroy();
+      return waitFor(process, graceMs);
+    }
+
+    Set<Integer> tree = getTree(pid);
+    LOG.info(String.format("Terminating process tree %s", tree));
+    signal(tree, SIGTERM);
+    if (!awaitExit(process, tree, graceMs)) {
+      Set<Integer> alive = getAlive(tree);
+      LOG.warn(String.format("Processes %s still running after %d ms, killing them", alive, graceMs));
+      signal(alive, SIGKILL);
+      if (!awaitExit(process, tree, KILL_WAIT_MS)) {
+        LOG.error(String.format("Processes %s survived SIGKILL", getAlive(tree)));
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sends SIGTERM to the process and its descendants, and SIGKILL to the survivors after the grace period, without
+   * waiting for either.
+   */
+  public static void terminateLater(final Process process, final long graceMs) {
+    int pid = getPid(process);
+    if (pid < 0 || !PROC.isDirectory()) {
+      process.destroy();
+      return;
+    }
+
+    terminateLater(getTree(pid), graceMs);
+  }
+
+  /**
+   * Sends SIGTERM to the given pids, and SIGKILL to the survivors after the grace period, without waiting for either.
+   */
+  public static void terminateLater(final Set<Integer> pids, final long graceMs) {
+    LOG.info(String.format("Terminating process tree %s", pids));
+    signal(pids, SIGTERM);
+    SharedScheduler.getInstance().schedule("process-tree-kill", new Runnable() {
+      @Override
+      public void run() {
+        Set<Integer> alive = getAlive(pids);
+        if (!alive.isEmpty()) {
+          LOG.warn(String.format("Processes %s still running after %d ms, killing them", alive, graceMs));
+          signal(alive, SIGKILL);
+        }
+      }
+    }, graceMs);
+  }
+
+  /**
+   * Returns the pid of a process, or -1 if the JVM doesn't tell.
+   */
+  public static int getPid(Process process) {
+    try {
+      Field field = process.getClass().getDeclaredField("pid");
+      field.setAccessible(true);
+      return field.getInt(process);
+    } catch (NoSuchFieldException | IllegalAccessException | SecurityException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the pid along with the pids of all its descendants, parents first.
+   */
+  public static Set<Integer> getTree(int pid) {
+    Map<Integer, List<Integer>> children = getChildren();
+    Set<Integer> tree = new LinkedHashSet<>();
+    Deque<Integer> pending = new ArrayDeque<>();
+    pending.add(pid);
+    while (!pending.isEmpty()) {
+      Integer next = pending.removeFirst();
+      if (tree.add(next) && children.containsKey(next)) {
+        pending.addAll(children.get(next));
+      }
+    }
+    return tree;
+  }
+
+  /**
+   * Returns those of the given pids which are still running.  Zombies count as exited.
+   */
+  public static Set<Integer> getAlive(Collection<Integer> pids) {
+    Set<Integer> alive = new LinkedHashSet<>();
+    for (Integer pid : pids) {
+      String stat = readStat(pid);
+      if (stat != null && getState(stat) != 'Z') {
+        alive.add(pid);
+      }
+    }
+    return alive;
+  }
+
+  /**
+   * Sends a signal to the given pids through kill, since the JVM can't.
+   */
+  public static void signal(Collection<Integer> pids, String signal) {
+    if (pids.isEmpty()) {
+      return;
+    }
+    List<String> cmd = new ArrayList<>();
+    cmd.add("kill");
+    cmd.add("-" + signal);
+    for (Integer pid : pids) {
+      cmd.add(String.valueOf(pid));
+    }
+    try {
+      // Fails for pids which exited meanwhile, which is fine
+      new ProcessBuilder(cmd).redirectErrorStream(true).start().waitFor();
+    } catch (IOException e) {
+      LOG.error("Unable to send SIG" + signal + " to " + pids, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits until the process and all pids of its tree exited.  New descendants of pids still alive are added to the
+   * tree meanwhile.
+   */
+  private static boolean awaitExit(Process process, Set<Integer> tree, long timeoutMs) {
+    long deadlineMs = System.currentTimeMillis() + timeoutMs;
+    while (true) {
+      Set<Integer> alive = getAlive(tree);
+      if (alive.isEmpty()) {
+        return waitFor(process, Math.max(0, deadlineMs - System.currentTimeMillis()));
+      }
+      if (System.currentTimeMillis() >= deadlineMs) {
+        return false;
+      }
+      for (Integer pid : alive) {
+        Set<Integer> forked = getTree(pid);
+        forked.removeAll(tree);
+        if (!forked.isEmpty()) {
+          signal(forked, SIGTERM);
+          tree.addAll(forked);
+        }
+      }
+      sleep(POLL_MS);
+    }
+  }
+
+  private static boolean waitFor(Process process, long timeoutMs) {
+    long deadlineMs = System.currentTimeMillis() + timeoutMs;
+    while (true) {
+      try {
+        process.exitValue();
+        return true;
+      } catch (IllegalThreadStateException e) {
+        if (System.currentTimeMillis() >= deadlineMs) {
+          return false;
+        }
+        sleep(POLL_MS);
+      }
+    }
+  }
+
+  private static Map<Integer, List<Integer>> getChildren() {
+    Map<Integer, List<Integer>> children = new HashMap<>();
+    String[] names = PROC.list();
+    if (names == null) {
+      return children;
+    }
+    for (String name : names) {
+      if (!isPid(name)) {
+        continue;
+      }
+      int pid = Integer.parseInt(name);
+      String stat = readStat(pid);
+      if (stat == null) {
+        continue;
+      }
+      int ppid = getParent(stat);
+      List<Integer> siblings = children.get(ppid);
+      if (siblings == null) {
+        siblings = new ArrayList<>();
+        children.put(ppid, siblings);
+      }
+      siblings.add(pid);
+    }
+    return children;
+  }
+
+  private static boolean isPid(String name) {
+    for (int i = 0; i < name.length(); i++) {
+      if (!Character.isDigit(name.charAt(i))) {
+        return false;
+      }
+    }
+    return !name.isEmpty();
+  }
+
+  /**
+   * Returns the contents of /proc/&lt;pid&gt;/stat, or null if the process is gone.
+   */
+  private static String readStat(int pid) {
+    try {
+      return new String(Files.readAllBytes(new File(PROC, pid + "/stat").toPath()), CHARSET);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  // The command in the second field may contain spaces and parentheses, so fields are counted from its closing one
+  private static char getState(String stat) {
+    return stat.charAt(stat.lastIndexOf(')') + 2);
+  }
+
+  private static int getParent(String stat) {
+    String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+    return Integer.parseInt(fields[1]);
+  }
+
+  private static void sleep(long ms) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package org.apache.mesos.process;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.mesos.stream.LogSink;
+import org.apache.mesos.stream.PrintStreamSink;
 import org.apache.mesos.stream.StreamUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,11 +29,19 @@ public class ProcessUtil {
   }
 
   public static Process startCmd(Map<String, String> envMap, String... cmd) throws IOException {
+    return startCmd(envMap, new PrintStreamSink(System.out), new PrintStreamSink(System.err), cmd);
+  }
+
+  /**
+   * Starts a process whose STDOUT and STDERR go to the given sinks, e.g. rotated log files.
+   */
+  public static Process startCmd(Map<String, String> envMap, LogSink out, LogSink err, String... cmd)
+    throws IOException {
     LOG.info(String.format("Starting process: %s", Arrays.asList(cmd)));
     ProcessBuilder processBuilder = new ProcessBuilder(cmd);
     setEnvironment(envMap, processBuilder);
     Process process = processBuilder.start();
-    StreamUtil.redirectProcess(process);
+    StreamUtil.redirectProcess(process, out, err);
     return process;
   }
 
@@ -2,11 +2,18 @@ package org.apache.mesos.process;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.concurrent.SharedScheduler;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Invokes the specified handler on process exit.
+ * Invokes the specified handler on process exit.  Processes are polled on the shared scheduler rather than waited
+ * for by a thread each.
  */
 public class ProcessWatcher {
+  private static final long POLL_MS = 500;
+
   private final Log log = LogFactory.getLog(ProcessWatcher.class);
   private ProcessFailureHandler handler;
 
@@ -17,19 +24,21 @@ public class ProcessWatcher {
   public void watch(final Process proc) {
     log.info("Watching process: " + proc);
 
+    final AtomicReference<ScheduledFuture<?>> future = new AtomicReference<>();
     Runnable r = new Runnable() {
       public void run() {
         try {
-          proc.waitFor();
-        } catch (Exception ex) {
-          log.error("Process excited with exception: " + ex);
+          proc.exitValue();
+        } catch (IllegalThreadStateException e) {
+          return;
         }
+        future.get().cancel(false);
 
         log.error("Handling failure of process: " + proc);
         handler.handle();
       }
     };
 
-    new Thread(r).start();
+    future.set(SharedScheduler.getInstance().scheduleAtFixedRate("process-watcher", r, POLL_MS, POLL_MS));
   }
 }
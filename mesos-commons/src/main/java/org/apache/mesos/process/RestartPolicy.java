@@ -0,0 +1,41 @@
+package org.apache.mesos.process;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Decides whether and when a crashed process is restarted.  The backoff before a restart doubles with every restart
+ * in the window, from the initial up to the maximum backoff, and once the given number of restarts fell into the
+ * window the process is crash looping and not restarted anymore.  A process which stays up longer than the window
+ * starts over at the initial backoff.
+ */
+public class RestartPolicy {
+  private final int maxRestarts;
+  private final long windowMs;
+  private final long initialBackoffMs;
+  private final long maxBackoffMs;
+  private final Deque<Long> restarts = new ArrayDeque<>();
+
+  public RestartPolicy(int maxRestarts, long windowMs, long initialBackoffMs, long maxBackoffMs) {
+    this.maxRestarts = maxRestarts;
+    this.windowMs = windowMs;
+    this.initialBackoffMs = initialBackoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+  }
+
+  /**
+   * Records a restart at the given time and returns how long to wait before it, or -1 if the process must not be
+   * restarted anymore.
+   */
+  public synchronized long nextRestart(long nowMs) {
+    while (!restarts.isEmpty() && nowMs - restarts.peekFirst() > windowMs) {
+      restarts.removeFirst();
+    }
+    if (restarts.size() >= maxRestarts) {
+      return -1;
+    }
+    long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(restarts.size(), 30));
+    restarts.addLast(nowMs);
+    return backoffMs;
+  }
+}
@@ -72,4 +72,8 @@ public class CommandInfoBuilder {
   public static Protos.CommandInfo.URI createCmdInfoUri(String uri) {
     return Protos.CommandInfo.URI.newBuilder().setValue(uri).build();
   }
+
+  public static Protos.CommandInfo.URI createCmdInfoUri(String uri, boolean cache) {
+    return Protos.CommandInfo.URI.newBuilder().setValue(uri).setCache(cache).build();
+  }
 }
@@ -57,6 +57,7 @@ public class ResourceBuilder {
       .setName(name)
       .setType(Value.Type.RANGES)
       .setRanges(Value.Ranges.newBuilder().addRange(range))
+      .setRole(role)
       .build();
   }
 
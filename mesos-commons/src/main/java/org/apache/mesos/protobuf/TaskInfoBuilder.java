@@ -57,6 +57,11 @@ public class TaskInfoBuilder {
     return this;
   }
 
+  public TaskInfoBuilder setDiscoveryInfo(Protos.DiscoveryInfo discoveryInfo) {
+    builder.setDiscovery(discoveryInfo);
+    return this;
+  }
+
   public TaskInfoBuilder setData(String data) {
     builder.setData(ByteString.copyFromUtf8(data));
     return this;
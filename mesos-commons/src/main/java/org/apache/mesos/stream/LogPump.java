@@ -0,0 +1,376 @@
+package org.apache.mesos.stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies the output of all child processes to their sinks with two threads, however many processes there are.
+ * <p/>
+ * The pump thread polls every pipe for available bytes, so it never blocks on a quiet process, splits them into
+ * lines and copies them into a pre-allocated ring buffer.  The writer thread drains the ring into the sinks.  When
+ * the sinks fall behind and the ring is full, lines are dropped and counted instead of blocking the pump, so a slow
+ * disk never stalls a process writing to a full pipe.  The sink notes how many lines were dropped once it catches up.
+ * <p/>
+ * Pipes of child processes can't be registered with a selector, so the pump polls them with available() and backs
+ * off while all of them are quiet.
+ */
+public final class LogPump {
+  private static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+  private static final int MAX_LINE_LENGTH = 16 * 1024;
+  private static final int HEADER_LENGTH = 8;
+  private static final int CLOSE_RECORD = -1;
+  private static final long MAX_IDLE_SLEEP_MS = 50;
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  private static final LogPump INSTANCE = new LogPump(DEFAULT_BUFFER_SIZE);
+
+  private final Log log = LogFactory.getLog(LogPump.class);
+  private final List<Source> sources = new CopyOnWriteArrayList<>();
+  private final Map<Integer, Sink> sinks = new ConcurrentHashMap<>();
+  private final AtomicInteger nextSinkId = new AtomicInteger();
+  private final AtomicLong droppedLines = new AtomicLong();
+
+  // The ring buffer; head and tail only ever grow and are taken modulo its length
+  private final byte[] ring;
+  private long head;
+  private long tail;
+  private boolean started;
+
+  LogPump(int bufferSize) {
+    this.ring = new byte[bufferSize];
+  }
+
+  public static LogPump getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Pumps the STDOUT and STDERR of a process to the given sinks until the process exits.  The sinks are closed
+   * afterwards.
+   */
+  public void pump(Process process, LogSink out, LogSink err) {
+    start();
+    sources.add(new Source(process, process.getInputStream(), register(out)));
+    sources.add(new Source(process, process.getErrorStream(), register(err)));
+  }
+
+  /**
+   * Returns the number of lines dropped because the sinks fell behind, since the JVM started.
+   */
+  public long getDroppedLines() {
+    return droppedLines.get();
+  }
+
+  private Sink register(LogSink logSink) {
+    Sink sink = new Sink(nextSinkId.incrementAndGet(), logSink);
+    sinks.put(sink.id, sink);
+    return sink;
+  }
+
+  private synchronized void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+    startDaemon(new Runnable() {
+      @Override
+      public void run() {
+        pumpLoop();
+      }
+    }, "LogPump");
+    startDaemon(new Runnable() {
+      @Override
+      public void run() {
+        writeLoop();
+      }
+    }, "LogPumpWriter");
+  }
+
+  private void startDaemon(Runnable runnable, String name) {
+    Thread thread = new Thread(runnable, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void pumpLoop() {
+    long sleepMs = 1;
+    while (true) {
+      boolean idle = true;
+      for (Source source : sources) {
+        if (source.poll()) {
+          idle = false;
+        }
+      }
+      if (idle) {
+        sleep(sleepMs);
+        sleepMs = Math.min(sleepMs * 2, MAX_IDLE_SLEEP_MS);
+      } else {
+        sleepMs = 1;
+      }
+    }
+  }
+
+  private void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Copies a record into the ring, or drops it if there is no room.  Only called by the pump thread.
+   */
+  private synchronized boolean offer(int sinkId, byte[] buffer, int offset, int length) {
+    int recordLength = HEADER_LENGTH + Math.max(0, length);
+    if (ring.length - (tail - head) < recordLength) {
+      return false;
+    }
+    putInt(sinkId);
+    putInt(length);
+    if (length > 0) {
+      int pos = (int) (tail % ring.length);
+      int first = Math.min(length, ring.length - pos);
+      System.arraycopy(buffer, offset, ring, pos, first);
+      System.arraycopy(buffer, offset + first, ring, 0, length - first);
+      tail += length;
+    }
+    notifyAll();
+    return true;
+  }
+
+  private void putInt(int value) {
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      ring[(int) (tail++ % ring.length)] = (byte) (value >>> shift);
+    }
+  }
+
+  private int getInt() {
+    int value = 0;
+    for (int i = 0; i < 4; i++) {
+      value = (value << 8) | (ring[(int) (head++ % ring.length)] & 0xFF);
+    }
+    return value;
+  }
+
+  private void writeLoop() {
+    byte[] line = new byte[MAX_LINE_LENGTH];
+    boolean unflushed = false;
+    while (true) {
+      int sinkId = 0;
+      int length = 0;
+      boolean empty;
+      synchronized (this) {
+        empty = head == tail;
+        if (empty && !unflushed) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          continue;
+        }
+        if (!empty) {
+          sinkId = getInt();
+          length = getInt();
+          if (length > 0) {
+            int pos = (int) (head % ring.length);
+            int first = Math.min(length, ring.length - pos);
+            System.arraycopy(ring, pos, line, 0, first);
+            System.arraycopy(ring, 0, line, first, length - first);
+            head += length;
+          }
+        }
+      }
+
+      // Sinks are written and flushed without holding the lock, so a slow sink never blocks the pump
+      if (empty) {
+        flushSinks();
+        unflushed = false;
+        continue;
+      }
+      unflushed = true;
+      Sink sink = sinks.get(sinkId);
+      if (sink != null) {
+        if (length == CLOSE_RECORD) {
+          sinks.remove(sinkId);
+          sink.close();
+        } else {
+          sink.write(line, length);
+        }
+      }
+    }
+  }
+
+  private void flushSinks() {
+    for (Sink sink : sinks.values()) {
+      sink.flush();
+    }
+  }
+
+  /**
+   * A pipe of a process, read by the pump thread into its own line buffer.
+   */
+  private final class Source {
+    private final Process process;
+    private final InputStream in;
+    private final Sink sink;
+    private final byte[] buffer = new byte[MAX_LINE_LENGTH];
+    private int fill;
+    private boolean closing;
+
+    private Source(Process process, InputStream in, Sink sink) {
+      this.process = process;
+      this.in = in;
+      this.sink = sink;
+    }
+
+    /**
+     * Reads whatever the pipe has without blocking.  Returns whether there was anything to read.
+     */
+    private boolean poll() {
+      if (closing) {
+        close();
+        return false;
+      }
+      try {
+        int available = in.available();
+        if (available <= 0) {
+          // The JVM closes the pipes once the process exits, keeping what was left in them, so children left behind by
+          // the process can't write to them anymore.  ProcessSupervisor kills such children.
+          if (!isAlive()) {
+            emit(0, fill);
+            fill = 0;
+            close();
+          }
+          return false;
+        }
+        int read = in.read(buffer, fill, Math.min(available, buffer.length - fill));
+        if (read < 0) {
+          emit(0, fill);
+          fill = 0;
+          close();
+          return false;
+        }
+        fill += read;
+        emitLines();
+        return true;
+      } catch (IOException e) {
+        log.debug("Pipe of process closed", e);
+        close();
+        return false;
+      }
+    }
+
+    private void emitLines() {
+      int start = 0;
+      for (int i = 0; i < fill; i++) {
+        if (buffer[i] == '\n') {
+          emit(start, i + 1 - start);
+          start = i + 1;
+        }
+      }
+      if (start == 0 && fill == buffer.length) {
+        // A line longer than the buffer is split
+        emit(0, fill);
+        start = fill;
+      }
+      System.arraycopy(buffer, start, buffer, 0, fill - start);
+      fill -= start;
+    }
+
+    private void emit(int offset, int length) {
+      if (length == 0) {
+        return;
+      }
+      noteDropped();
+      if (!offer(sink.id, buffer, offset, length)) {
+        sink.dropped.incrementAndGet();
+        droppedLines.incrementAndGet();
+      }
+    }
+
+    /**
+     * Notes the lines dropped since the last line which made it into the ring.  Returns false if there is no room for
+     * the note yet.
+     */
+    private boolean noteDropped() {
+      long dropped = sink.dropped.get();
+      if (dropped > 0) {
+        byte[] note = String.format("[%d lines dropped by the log pump]%n", dropped).getBytes(CHARSET);
+        if (!offer(sink.id, note, 0, note.length)) {
+          return false;
+        }
+        sink.dropped.addAndGet(-dropped);
+      }
+      return true;
+    }
+
+    private void close() {
+      closing = true;
+      // Lines dropped at the end are noted before the sink is closed
+      if (noteDropped() && offer(sink.id, null, 0, CLOSE_RECORD)) {
+        sources.remove(this);
+        StreamUtil.closeQuietly(in);
+      }
+    }
+
+    private boolean isAlive() {
+      try {
+        process.exitValue();
+        return false;
+      } catch (IllegalThreadStateException e) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * A sink along with the lines dropped since the last line which made it into the ring.
+   */
+  private final class Sink {
+    private final int id;
+    private final LogSink logSink;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Sink(int id, LogSink logSink) {
+      this.id = id;
+      this.logSink = logSink;
+    }
+
+    private void write(byte[] line, int length) {
+      try {
+        logSink.write(line, 0, length);
+      } catch (IOException e) {
+        log.error("Unable to write process output to " + logSink, e);
+      }
+    }
+
+    private void flush() {
+      try {
+        logSink.flush();
+      } catch (IOException e) {
+        log.error("Unable to flush process output to " + logSink, e);
+      }
+    }
+
+    private void close() {
+      try {
+        logSink.close();
+      } catch (IOException e) {
+        log.error("Unable to close " + logSink, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package org.apache.mesos.stream;
+
+import java.io.IOException;
+
+/**
+ * A destination for the output of a process pumped by the LogPump.  Sinks are only called from the pump's writer
+ * thread.
+ */
+public interface LogSink {
+  void write(byte[] buffer, int offset, int length) throws IOException;
+
+  void flush() throws IOException;
+
+  void close() throws IOException;
+}
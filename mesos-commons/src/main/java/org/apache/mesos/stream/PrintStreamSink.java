@@ -0,0 +1,29 @@
+package org.apache.mesos.stream;
+
+import java.io.PrintStream;
+
+/**
+ * Writes process output to a print stream such as STDOUT, which is left open when the process ends.
+ */
+public class PrintStreamSink implements LogSink {
+  private final PrintStream out;
+
+  public PrintStreamSink(PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void write(byte[] buffer, int offset, int length) {
+    out.write(buffer, offset, length);
+  }
+
+  @Override
+  public void flush() {
+    out.flush();
+  }
+
+  @Override
+  public void close() {
+    out.flush();
+  }
+}
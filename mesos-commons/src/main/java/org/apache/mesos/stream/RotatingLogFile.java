@@ -0,0 +1,118 @@
+package org.apache.mesos.stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A log file which is rotated once it reaches a maximum size.  Old segments are gzipped to file.1.gz, file.2.gz and
+ * so on, newest first, and only the given number of them is kept.
+ */
+public class RotatingLogFile implements LogSink {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Log log = LogFactory.getLog(RotatingLogFile.class);
+  private final File file;
+  private final long maxBytes;
+  private final int maxSegments;
+  private OutputStream out;
+  private long size;
+
+  public RotatingLogFile(File file, long maxBytes, int maxSegments) {
+    this.file = file;
+    this.maxBytes = maxBytes;
+    this.maxSegments = maxSegments;
+  }
+
+  @Override
+  public synchronized void write(byte[] buffer, int offset, int length) throws IOException {
+    if (out == null) {
+      open();
+    }
+    if (size > 0 && size + length > maxBytes) {
+      rotate();
+    }
+    out.write(buffer, offset, length);
+    size += length;
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+  }
+
+  private void open() throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Unable to create log directory " + dir);
+    }
+    out = new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE);
+    size = file.length();
+  }
+
+  private void rotate() throws IOException {
+    close();
+    for (int i = maxSegments; i >= 1; i--) {
+      File segment = getSegment(i);
+      if (i == maxSegments) {
+        delete(segment);
+      } else if (segment.exists() && !segment.renameTo(getSegment(i + 1))) {
+        log.warn("Unable to rename log segment " + segment);
+      }
+    }
+    if (maxSegments > 0) {
+      gzip(file, getSegment(1));
+    }
+    delete(file);
+    open();
+  }
+
+  private File getSegment(int i) {
+    return new File(file.getPath() + "." + i + ".gz");
+  }
+
+  private void gzip(File source, File target) throws IOException {
+    File temp = new File(target.getPath() + ".tmp");
+    try (InputStream in = new FileInputStream(source);
+         OutputStream gzip = new GZIPOutputStream(new FileOutputStream(temp), BUFFER_SIZE)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        gzip.write(buffer, 0, read);
+      }
+    }
+    if (!temp.renameTo(target)) {
+      delete(temp);
+      throw new IOException("Unable to rename " + temp + " to " + target);
+    }
+  }
+
+  private void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      log.warn("Unable to delete " + file);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return file.getPath();
+  }
+}
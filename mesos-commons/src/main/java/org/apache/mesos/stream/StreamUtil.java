@@ -16,10 +16,14 @@ public class StreamUtil {
    * Redirects a process to STDERR and STDOUT for logging and debugging purposes.
    */
   public static void redirectProcess(Process process, PrintStream out, PrintStream err) {
-    StreamRedirect stdoutRedirect = new StreamRedirect(process.getInputStream(), out);
-    new Thread(stdoutRedirect).start();
-    StreamRedirect stderrRedirect = new StreamRedirect(process.getErrorStream(), err);
-    new Thread(stderrRedirect).start();
+    redirectProcess(process, new PrintStreamSink(out), new PrintStreamSink(err));
+  }
+
+  /**
+   * Redirects the STDOUT and STDERR of a process to the given sinks through the shared LogPump.
+   */
+  public static void redirectProcess(Process process, LogSink out, LogSink err) {
+    LogPump.getInstance().pump(process, out, err);
   }
 
   public static void redirectProcess(Process process) {
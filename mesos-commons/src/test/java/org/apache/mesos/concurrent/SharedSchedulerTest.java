@@ -0,0 +1,100 @@
+package org.apache.mesos.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SharedSchedulerTest {
+  private SharedScheduler scheduler;
+
+  @Before
+  public void init() {
+    scheduler = new SharedScheduler(2);
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    // Cancelled jobs must not stay queued until they would have been due
+    assertEquals(0, scheduler.getQueueSize());
+  }
+
+  @Test
+  public void cancelledPeriodicJobStopsRunning() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(3);
+    final AtomicInteger runs = new AtomicInteger();
+    ScheduledFuture<?> future = scheduler.scheduleAtFixedRate("periodic", new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+        ran.countDown();
+      }
+    }, 0, 10);
+
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    assertTrue(future.cancel(false));
+    // A run in progress while cancelling still completes
+    Thread.sleep(20);
+    int cancelledRuns = runs.get();
+    Thread.sleep(100);
+
+    assertEquals(cancelledRuns, runs.get());
+    assertEquals(cancelledRuns, getStats("periodic").getRuns());
+    assertTrue(future.isCancelled());
+  }
+
+  @Test
+  public void cancelledDelayedJobNeverRuns() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    ScheduledFuture<?> future = scheduler.schedule("delayed", new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    }, 100);
+    assertEquals(1, scheduler.getQueueSize());
+
+    assertTrue(future.cancel(false));
+    // Removed from the queue right away rather than when it would have been due
+    assertEquals(0, scheduler.getQueueSize());
+    Thread.sleep(200);
+
+    assertEquals(0, runs.get());
+    assertEquals(0, getStats("delayed").getRuns());
+  }
+
+  @Test
+  public void periodicJobKeepsRunningAfterThrowing() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(3);
+    ScheduledFuture<?> future = scheduler.scheduleAtFixedRate("throwing", new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+        throw new IllegalStateException("failing run " + ran.getCount());
+      }
+    }, 0, 10);
+
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    future.cancel(false);
+    Thread.sleep(20);
+    SharedScheduler.JobStats stats = getStats("throwing");
+    assertTrue(stats.getRuns() >= 3);
+    assertEquals(stats.getRuns(), stats.getFailures());
+  }
+
+  private SharedScheduler.JobStats getStats(String name) {
+    for (SharedScheduler.JobStats stats : scheduler.getJobStats()) {
+      if (stats.getName().equals(name)) {
+        return stats;
+      }
+    }
+    throw new AssertionError("No stats of job " + name);
+  }
+}
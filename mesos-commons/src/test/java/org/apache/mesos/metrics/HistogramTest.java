@@ -0,0 +1,94 @@
+package org.apache.mesos.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+  @Test
+  public void countsValueAtBoundIntoItsBucket() {
+    Histogram histogram = new Histogram(new double[]{10, 100});
+
+    histogram.record(0);
+    histogram.record(10);
+    histogram.record(11);
+    histogram.record(100);
+    histogram.record(101);
+
+    assertArrayEquals(new long[]{2, 4, 5}, histogram.getCumulativeCounts());
+    assertEquals(5, histogram.getCount());
+    assertEquals(222, histogram.getSum(), 0);
+  }
+
+  @Test
+  public void countsLatencyAtEveryBoundIntoItsBucket() {
+    Histogram histogram = new Histogram();
+    double[] bounds = histogram.getBounds();
+
+    for (double bound : bounds) {
+      long nanos = (long) (bound * TimeUnit.SECONDS.toNanos(1));
+      histogram.observeNanos(nanos);
+      histogram.observeNanos(nanos + 1);
+    }
+
+    long[] cumulative = histogram.getCumulativeCounts();
+    assertEquals(bounds.length + 1, cumulative.length);
+    // Each bucket holds its bound and the value just above the previous bound
+    assertEquals(1, cumulative[0]);
+    for (int i = 1; i < bounds.length; i++) {
+      assertEquals(2 * i + 1, cumulative[i]);
+    }
+    assertEquals(2 * bounds.length, cumulative[bounds.length]);
+  }
+
+  @Test
+  public void servesLatencyInSeconds() {
+    Histogram histogram = new Histogram();
+
+    histogram.observe(1500, TimeUnit.MILLISECONDS);
+    histogram.observe(2, TimeUnit.MILLISECONDS);
+
+    assertEquals(1.502, histogram.getSum(), 1e-9);
+    assertEquals(0.0025, histogram.getQuantile(0.5), 0);
+    assertEquals(2.5, histogram.getQuantile(0.99), 0);
+  }
+
+  @Test
+  public void returnsUpperBoundOfQuantileBucket() {
+    Histogram histogram = new Histogram(new double[]{1, 2, 4});
+    assertEquals(0, histogram.getQuantile(0.5), 0);
+
+    for (int i = 0; i < 9; i++) {
+      histogram.record(1);
+    }
+    histogram.record(5);
+
+    assertEquals(1, histogram.getQuantile(0.5), 0);
+    assertEquals(1, histogram.getQuantile(0.9), 0);
+    assertEquals(Double.POSITIVE_INFINITY, histogram.getQuantile(0.99), 0);
+  }
+
+  @Test
+  public void writesCumulativeBucketsUpToInfinity() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    Histogram histogram = registry.histogram("payload_bytes", "Payload sizes", new double[]{64, 256}, "op", "put");
+    histogram.record(64);
+    histogram.record(65);
+    histogram.record(1000);
+
+    StringWriter out = new StringWriter();
+    registry.writePrometheus(out);
+
+    String text = out.toString();
+    assertTrue(text, text.contains("payload_bytes_bucket{op=\"put\",le=\"64.0\"} 1\n"));
+    assertTrue(text, text.contains("payload_bytes_bucket{op=\"put\",le=\"256.0\"} 2\n"));
+    assertTrue(text, text.contains("payload_bytes_bucket{op=\"put\",le=\"+Inf\"} 3\n"));
+    assertTrue(text, text.contains("payload_bytes_sum{op=\"put\"} 1129.0\n"));
+    assertTrue(text, text.contains("payload_bytes_count{op=\"put\"} 3\n"));
+  }
+}
@@ -0,0 +1,107 @@
+package org.apache.mesos.net;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachingResolverTest {
+  private static final List<String> HOST = Collections.singletonList("namenode1.hdfs.mesos");
+
+  @Test
+  public void cachesAddressesForTtl() throws Exception {
+    FakeResolver resolver = new FakeResolver(200, 10);
+    resolver.add("namenode1.hdfs.mesos");
+
+    assertTrue(resolver.resolveAll(HOST, 1000));
+    assertTrue(resolver.resolveAll(HOST, 1000));
+    assertTrue(resolver.allResolvable(HOST));
+    assertNotNull(resolver.getCached("namenode1.hdfs.mesos"));
+    assertEquals(1, resolver.getLookups());
+
+    // Still cached after the host left DNS, until the entry expires
+    resolver.remove("namenode1.hdfs.mesos");
+    assertTrue(resolver.resolveAll(HOST, 1000));
+    Thread.sleep(250);
+    assertNull(resolver.getCached("namenode1.hdfs.mesos"));
+    assertFalse(resolver.resolveAll(HOST, 1000));
+    assertEquals(2, resolver.getLookups());
+  }
+
+  @Test
+  public void cachesFailuresForNegativeTtl() throws Exception {
+    FakeResolver resolver = new FakeResolver(60000, 200);
+
+    assertFalse(resolver.resolveAll(HOST, 1000));
+    assertEquals(1, resolver.getLookups());
+
+    // A host which appears in DNS is only seen once the failure expires
+    resolver.add("namenode1.hdfs.mesos");
+    assertFalse(resolver.resolveAll(HOST, 1000));
+    assertFalse(resolver.allResolvable(HOST));
+    assertNull(resolver.getCached("namenode1.hdfs.mesos"));
+    assertEquals(1, resolver.getLookups());
+
+    Thread.sleep(250);
+    assertTrue(resolver.resolveAll(HOST, 1000));
+    assertNotNull(resolver.getCached("namenode1.hdfs.mesos"));
+    assertEquals(2, resolver.getLookups());
+  }
+
+  @Test
+  public void resolvesOnlyIfAllHostsResolve() throws Exception {
+    FakeResolver resolver = new FakeResolver(60000, 60000);
+    resolver.add("namenode1.hdfs.mesos");
+    List<String> hosts = Arrays.asList("namenode1.hdfs.mesos", "namenode2.hdfs.mesos");
+
+    assertFalse(resolver.resolveAll(hosts, 1000));
+    assertFalse(resolver.allResolvable(hosts));
+    assertTrue(resolver.allResolvable(HOST));
+    assertEquals(2, resolver.getLookups());
+  }
+
+  /**
+   * A resolver of the hosts added to it, which counts its lookups.
+   */
+  private static class FakeResolver extends CachingResolver {
+    private final Set<String> hosts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    FakeResolver(long ttlMs, long negativeTtlMs) {
+      super(ttlMs, negativeTtlMs);
+    }
+
+    void add(String host) {
+      hosts.add(host);
+    }
+
+    void remove(String host) {
+      hosts.remove(host);
+    }
+
+    int getLookups() {
+      return lookups.get();
+    }
+
+    @Override
+    InetAddress[] getAllByName(String host) throws UnknownHostException {
+      lookups.incrementAndGet();
+      if (!hosts.contains(host)) {
+        throw new UnknownHostException(host);
+      }
+      return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, 1})};
+    }
+  }
+}
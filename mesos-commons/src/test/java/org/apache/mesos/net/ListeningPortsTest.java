@@ -0,0 +1,85 @@
+package org.apache.mesos.net;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ListeningPortsTest {
+  private static final String HEADER =
+    "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode";
+
+  @Test
+  public void parsesListeningPortsOfTcpTable() {
+    Set<Integer> ports = new HashSet<>();
+    ListeningPorts.parse(Arrays.asList(HEADER,
+      "   0: 00000000:1F90 00000000:0000 0A 00000000:00000000 00:00000000 00000000     0        0 10761 1 0 100 0 0",
+      "   1: 0100007F:C350 00000000:0000 0A 00000000:00000000 00:00000000 00000000  1000        0 10762 1 0 100 0 0",
+      // Connections, even those from and to a listened port, are not listening
+      "   2: 0100007F:9C40 0100007F:1F90 01 00000000:00000000 00:00000000 00000000  1000        0 10763 1 0 20 4 30",
+      "   3: 0100007F:1F90 0100007F:9C40 06 00000000:00000000 03:00001691 00000000     0        0 0 3"), ports);
+
+    assertEquals(new HashSet<>(Arrays.asList(8080, 50000)), ports);
+  }
+
+  @Test
+  public void parsesListeningPortsOfTcp6Table() {
+    Set<Integer> ports = new HashSet<>();
+    ListeningPorts.parse(Arrays.asList(HEADER,
+      "   0: 00000000000000000000000000000000:C396 00000000000000000000000000000000:0000 0A 00000000:00000000 "
+        + "00:00000000 00000000     0        0 20761 1 0 100 0 0 10 0",
+      "   1: 0000000000000000FFFF00000100007F:1F92 0000000000000000FFFF00000100007F:D2B4 01 00000000:00000000 "
+        + "00:00000000 00000000  1000        0 20762 1 0 20 4 30 10 -1"), ports);
+
+    assertEquals(Collections.singleton(50070), ports);
+  }
+
+  @Test
+  public void ignoresHeaderAndMalformedLines() {
+    Set<Integer> ports = new HashSet<>();
+    ListeningPorts.parse(Arrays.asList(HEADER, "", "   0: 00000000:1F90"), ports);
+
+    assertTrue(ports.isEmpty());
+  }
+
+  @Test
+  public void awaitsReleaseOfPort() throws Exception {
+    Assume.assumeTrue(ListeningPorts.get() != null);
+    final ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    int port = socket.getLocalPort();
+    try {
+      assertTrue(ListeningPorts.get().contains(port));
+      assertFalse(ListeningPorts.awaitReleased(Collections.singleton(port), 200));
+    } catch (AssertionError e) {
+      socket.close();
+      throw e;
+    }
+
+    Thread closer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(300);
+          socket.close();
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    long start = System.currentTimeMillis();
+    closer.start();
+    assertTrue(ListeningPorts.awaitReleased(Collections.singleton(port), 5000));
+    assertTrue(System.currentTimeMillis() - start >= 300);
+    assertFalse(ListeningPorts.get().contains(port));
+    closer.join();
+  }
+}
@@ -0,0 +1,202 @@
+package org.apache.mesos.process;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessSupervisorTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void restartsExitedProcessUntilPolicyGivesUp() throws Exception {
+    final AtomicInteger starts = new AtomicInteger();
+    RecordingListener listener = new RecordingListener();
+    ProcessSupervisor supervisor = new ProcessSupervisor("crashing", new Callable<Process>() {
+      @Override
+      public Process call() {
+        starts.incrementAndGet();
+        return new FakeProcess(false, 1);
+      }
+    }, listener, new RestartPolicy(2, 60000, 10, 10));
+
+    supervisor.start();
+    assertTrue(listener.awaitFailed());
+    assertEquals(3, starts.get());
+    assertEquals(2, listener.restarted.get());
+    assertEquals(2, listener.restarts);
+    assertEquals(1, listener.exitCode);
+    assertEquals(2, supervisor.getRestarts());
+    assertEquals(null, supervisor.getProcess());
+  }
+
+  @Test
+  public void countsFailedLaunchAsExit() throws Exception {
+    final AtomicInteger starts = new AtomicInteger();
+    RecordingListener listener = new RecordingListener();
+    ProcessSupervisor supervisor = new ProcessSupervisor("unlaunchable", new Callable<Process>() {
+      @Override
+      public Process call() throws Exception {
+        if (starts.incrementAndGet() > 1) {
+          throw new IllegalStateException("no such binary");
+        }
+        return new FakeProcess(false, 1);
+      }
+    }, listener, new RestartPolicy(3, 60000, 10, 10));
+
+    supervisor.start();
+    assertTrue(listener.awaitFailed());
+    assertEquals(4, starts.get());
+    assertEquals(0, listener.restarted.get());
+    assertEquals(-1, listener.exitCode);
+  }
+
+  @Test
+  public void doesNotRestartStoppedProcess() throws Exception {
+    final AtomicInteger starts = new AtomicInteger();
+    RecordingListener listener = new RecordingListener();
+    ProcessSupervisor supervisor = new ProcessSupervisor("stopped", new Callable<Process>() {
+      @Override
+      public Process call() {
+        starts.incrementAndGet();
+        return new FakeProcess(true, 143);
+      }
+    }, listener, new RestartPolicy(5, 60000, 10, 10));
+
+    Process process = supervisor.start();
+    assertTrue(supervisor.stop(1000));
+    assertTrue(listener.awaitStopped());
+    assertEquals(143, listener.exitCode);
+    assertEquals(143, process.exitValue());
+    assertEquals(1, starts.get());
+    assertEquals(0, listener.restarted.get());
+    assertFalse(listener.awaitFailed(0));
+  }
+
+  @Test
+  public void terminatesDescendantsLeftBehindByExitedProcess() throws Exception {
+    final File pidFile = new File(folder.getRoot(), "child.pid");
+    RecordingListener listener = new RecordingListener();
+    ProcessSupervisor supervisor = new ProcessSupervisor("orphans", new Callable<Process>() {
+      @Override
+      public Process call() throws Exception {
+        return new ProcessBuilder("sh", "-c", "sleep 30 & echo $! > " + pidFile + "; sleep 3; exit 3").start();
+      }
+    }, listener, new RestartPolicy(0, 60000, 10, 10));
+
+    supervisor.start();
+    assertTrue(listener.awaitFailed());
+    assertEquals(3, listener.exitCode);
+
+    int child = Integer.parseInt(new String(Files.readAllBytes(pidFile.toPath()), Charset.forName("UTF-8")).trim());
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!ProcessTree.getAlive(Collections.singleton(child)).isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertEquals(Collections.<Integer>emptySet(), ProcessTree.getAlive(Collections.singleton(child)));
+  }
+
+  /**
+   * Records what the supervisor notifies.
+   */
+  private static class RecordingListener implements ProcessSupervisor.Listener {
+    private final CountDownLatch failed = new CountDownLatch(1);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicInteger restarted = new AtomicInteger();
+    private volatile int restarts = -1;
+    private volatile int exitCode;
+
+    boolean awaitFailed() throws InterruptedException {
+      return awaitFailed(10000);
+    }
+
+    boolean awaitFailed(long timeoutMs) throws InterruptedException {
+      return failed.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    boolean awaitStopped() throws InterruptedException {
+      return stopped.await(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void restarted(int restarts, Process process) {
+      restarted.incrementAndGet();
+    }
+
+    @Override
+    public void failed(int restarts, int exitCode) {
+      this.restarts = restarts;
+      this.exitCode = exitCode;
+      failed.countDown();
+    }
+
+    @Override
+    public void stopped(int exitCode) {
+      this.exitCode = exitCode;
+      stopped.countDown();
+    }
+  }
+
+  /**
+   * A process without a pid, which either exited right away or runs until destroyed.
+   */
+  private static class FakeProcess extends Process {
+    private final int exitCode;
+    private volatile boolean alive;
+
+    FakeProcess(boolean alive, int exitCode) {
+      this.alive = alive;
+      this.exitCode = exitCode;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return new ByteArrayOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override
+    public int waitFor() {
+      return exitCode;
+    }
+
+    @Override
+    public int exitValue() {
+      if (alive) {
+        throw new IllegalThreadStateException();
+      }
+      return exitCode;
+    }
+
+    @Override
+    public void destroy() {
+      alive = false;
+    }
+  }
+}
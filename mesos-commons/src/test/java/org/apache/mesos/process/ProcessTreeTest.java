@@ -0,0 +1,101 @@
+package org.apache.mesos.process;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessTreeTest {
+  private Process process;
+
+  @Before
+  public void init() {
+    Assume.assumeTrue(new File("/proc").isDirectory());
+  }
+
+  @After
+  public void cleanup() {
+    if (process != null) {
+      process.destroy();
+    }
+  }
+
+  @Test
+  public void findsDescendants() throws Exception {
+    process = start("sleep 30 & (sleep 30 & wait) & wait");
+    int pid = ProcessTree.getPid(process);
+
+    // The shell, its two children and its grandchild
+    Set<Integer> tree = awaitTree(pid, 4);
+    assertEquals(pid, (int) tree.iterator().next());
+    assertEquals(tree, ProcessTree.getAlive(tree));
+  }
+
+  @Test
+  public void terminatesTree() throws Exception {
+    process = start("sleep 30 & sleep 30 & wait");
+    Set<Integer> tree = awaitTree(ProcessTree.getPid(process), 3);
+
+    long start = System.currentTimeMillis();
+    assertTrue(ProcessTree.terminate(process, 5000));
+    // SIGTERM is enough, no need to wait for the grace period
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    assertTrue(ProcessTree.getAlive(tree).isEmpty());
+  }
+
+  @Test
+  public void killsTreeIgnoringSigtermAfterGracePeriod() throws Exception {
+    // Ignored signals stay ignored in the children
+    process = start("trap '' TERM; sleep 30 & sleep 30 & wait");
+    Set<Integer> tree = awaitTree(ProcessTree.getPid(process), 3);
+
+    long start = System.currentTimeMillis();
+    assertTrue(ProcessTree.terminate(process, 500));
+    assertTrue(System.currentTimeMillis() - start >= 500);
+    assertTrue(ProcessTree.getAlive(tree).isEmpty());
+    assertEquals(128 + 9, process.exitValue());
+  }
+
+  @Test
+  public void killsLaterTreeIgnoringSigterm() throws Exception {
+    process = start("trap '' TERM; sleep 30 & sleep 30 & wait");
+    Set<Integer> tree = awaitTree(ProcessTree.getPid(process), 3);
+
+    ProcessTree.terminateLater(process, 300);
+    Thread.sleep(200);
+    assertEquals(tree, ProcessTree.getAlive(tree));
+    assertTrue(awaitExit(tree, 5000));
+  }
+
+  private Process start(String script) throws Exception {
+    return new ProcessBuilder("sh", "-c", script).start();
+  }
+
+  private Set<Integer> awaitTree(int pid, int size) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    Set<Integer> tree = ProcessTree.getTree(pid);
+    while (tree.size() < size && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      tree = ProcessTree.getTree(pid);
+    }
+    assertEquals(size, tree.size());
+    return tree;
+  }
+
+  private boolean awaitExit(Set<Integer> pids, long timeoutMs) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (!ProcessTree.getAlive(pids).isEmpty()) {
+      if (System.currentTimeMillis() >= deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,46 @@
+package org.apache.mesos.process;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RestartPolicyTest {
+  @Test
+  public void doublesBackoffUpToMaximum() {
+    RestartPolicy policy = new RestartPolicy(10, 60000, 100, 1000);
+
+    assertEquals(100, policy.nextRestart(0));
+    assertEquals(200, policy.nextRestart(1));
+    assertEquals(400, policy.nextRestart(2));
+    assertEquals(800, policy.nextRestart(3));
+    assertEquals(1000, policy.nextRestart(4));
+    assertEquals(1000, policy.nextRestart(5));
+  }
+
+  @Test
+  public void givesUpOnceRestartsFillWindow() {
+    RestartPolicy policy = new RestartPolicy(3, 1000, 10, 1000);
+
+    assertEquals(10, policy.nextRestart(0));
+    assertEquals(20, policy.nextRestart(500));
+    assertEquals(40, policy.nextRestart(1000));
+    assertEquals(-1, policy.nextRestart(1000));
+    // The first restart left the window, which makes room for one more
+    assertEquals(40, policy.nextRestart(1001));
+    assertEquals(-1, policy.nextRestart(1400));
+  }
+
+  @Test
+  public void startsOverAtInitialBackoffAfterQuietWindow() {
+    RestartPolicy policy = new RestartPolicy(3, 1000, 10, 1000);
+
+    assertEquals(10, policy.nextRestart(0));
+    assertEquals(20, policy.nextRestart(100));
+    assertEquals(10, policy.nextRestart(1200));
+  }
+
+  @Test
+  public void neverRestartsWithoutRestarts() {
+    assertEquals(-1, new RestartPolicy(0, 1000, 10, 1000).nextRestart(0));
+  }
+}
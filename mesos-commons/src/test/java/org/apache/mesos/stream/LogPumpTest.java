@@ -0,0 +1,160 @@
+package org.apache.mesos.stream;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogPumpTest {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @Test
+  public void copiesLinesUntilPipesClose() throws Exception {
+    LogPump pump = new LogPump(1024);
+    CollectingSink out = new CollectingSink();
+    CollectingSink err = new CollectingSink();
+
+    pump.pump(new FakeProcess("first\nsecond\npartial", "error\n"), out, err);
+
+    assertTrue(out.awaitClose());
+    assertTrue(err.awaitClose());
+    assertEquals("first\nsecond\npartial", out.getContent());
+    assertEquals("error\n", err.getContent());
+    assertEquals(0, pump.getDroppedLines());
+  }
+
+  @Test
+  public void dropsAndCountsLinesWhileSinkFallsBehind() throws Exception {
+    // Room for four records of "line-NN\n" and their headers
+    LogPump pump = new LogPump(64);
+    CollectingSink out = new CollectingSink();
+    out.block();
+    StringBuilder lines = new StringBuilder();
+    for (int i = 10; i < 30; i++) {
+      lines.append("line-").append(i).append('\n');
+    }
+    FakeProcess process = new FakeProcess(lines.toString(), "");
+    process.alive = true;
+
+    pump.pump(process, out, new CollectingSink());
+    long deadline = System.currentTimeMillis() + 5000;
+    while (pump.getDroppedLines() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    out.unblock();
+    process.alive = false;
+
+    assertTrue(out.awaitClose());
+    String content = out.getContent();
+    Matcher note = Pattern.compile("\\[(\\d+) lines dropped by the log pump\\]").matcher(content);
+    assertTrue(content, note.find());
+    long dropped = Long.parseLong(note.group(1));
+    assertEquals(dropped, pump.getDroppedLines());
+    assertEquals(20, content.split("line-", -1).length - 1 + dropped);
+    assertTrue(content.startsWith("line-10\n"));
+  }
+
+  /**
+   * A sink collecting what it is written, which can be made to block to fall behind.
+   */
+  private static class CollectingSink implements LogSink {
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile CountDownLatch blocked = new CountDownLatch(0);
+
+    void block() {
+      blocked = new CountDownLatch(1);
+    }
+
+    void unblock() {
+      blocked.countDown();
+    }
+
+    boolean awaitClose() throws InterruptedException {
+      return closed.await(10, TimeUnit.SECONDS);
+    }
+
+    synchronized String getContent() {
+      return new String(content.toByteArray(), UTF8);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+      try {
+        blocked.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      synchronized (this) {
+        content.write(buffer, offset, length);
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+  }
+
+  /**
+   * A process whose output is given up front, which is alive until told otherwise.
+   */
+  private static class FakeProcess extends Process {
+    private final InputStream out;
+    private final InputStream err;
+    private volatile boolean alive;
+
+    FakeProcess(String out, String err) {
+      this.out = new ByteArrayInputStream(out.getBytes(UTF8));
+      this.err = new ByteArrayInputStream(err.getBytes(UTF8));
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return new ByteArrayOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return out;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+      return err;
+    }
+
+    @Override
+    public int waitFor() {
+      return 0;
+    }
+
+    @Override
+    public int exitValue() {
+      if (alive) {
+        throw new IllegalThreadStateException();
+      }
+      return 0;
+    }
+
+    @Override
+    public void destroy() {
+      alive = false;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package org.apache.mesos.stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RotatingLogFileTest {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void rotatesIntoGzippedSegmentsNewestFirst() throws Exception {
+    File file = new File(folder.getRoot(), "logs/node.log");
+    RotatingLogFile log = new RotatingLogFile(file, 10, 2);
+
+    write(log, "0123456789");
+    log.flush();
+    assertEquals("0123456789", read(file));
+    assertFalse(segment(file, 1).exists());
+
+    write(log, "abc");
+    write(log, "defghij");
+    write(log, "klm");
+    log.close();
+    assertEquals("klm", read(file));
+    assertEquals("abcdefghij", gunzip(segment(file, 1)));
+    assertEquals("0123456789", gunzip(segment(file, 2)));
+
+    log = new RotatingLogFile(file, 10, 2);
+    write(log, "nopqrstu");
+    log.close();
+    // Only the newest two segments are kept
+    assertEquals("nopqrstu", read(file));
+    assertEquals("klm", gunzip(segment(file, 1)));
+    assertEquals("abcdefghij", gunzip(segment(file, 2)));
+    assertFalse(segment(file, 3).exists());
+    assertFalse(new File(segment(file, 1).getPath() + ".tmp").exists());
+  }
+
+  @Test
+  public void discardsOldOutputWithoutSegments() throws Exception {
+    File file = folder.newFile("node.log");
+    RotatingLogFile log = new RotatingLogFile(file, 4, 0);
+
+    write(log, "abcd");
+    write(log, "ef");
+    log.close();
+    assertEquals("ef", read(file));
+    assertFalse(segment(file, 1).exists());
+  }
+
+  @Test
+  public void writesLinesLongerThanMaximumWhole() throws Exception {
+    File file = folder.newFile("node.log");
+    RotatingLogFile log = new RotatingLogFile(file, 4, 1);
+
+    write(log, "0123456789");
+    log.close();
+    assertEquals("0123456789", read(file));
+    assertFalse(segment(file, 1).exists());
+  }
+
+  private void write(RotatingLogFile log, String content) throws IOException {
+    byte[] bytes = ("x" + content).getBytes(UTF8);
+    log.write(bytes, 1, bytes.length - 1);
+  }
+
+  private File segment(File file, int i) {
+    return new File(file.getPath() + "." + i + ".gz");
+  }
+
+  private String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), UTF8);
+  }
+
+  private String gunzip(File file) throws IOException {
+    assertTrue(file + " is missing", file.exists());
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        content.write(buffer, 0, read);
+      }
+    }
+    return new String(content.toByteArray(), UTF8);
+  }
+}